@@ -60,6 +60,21 @@ public class SimpleStateRegistry {
     return monitoringInfos;
   }
 
+  /**
+   * @return The total milliseconds of the registered states summed by the value of the label,
+   *     omitting states without the label or without any time.
+   */
+  public Map<String, Long> getTotalMillisByLabel(String label) {
+    Map<String, Long> result = new HashMap<>();
+    for (SimpleExecutionState state : executionStates) {
+      String value = state.getLabels().get(label);
+      if (value != null && state.getTotalMillis() != 0) {
+        result.merge(value, state.getTotalMillis(), Long::sum);
+      }
+    }
+    return result;
+  }
+
   public Map<String, ByteString> getExecutionTimeMonitoringData(ShortIdMap shortIds) {
     Map<String, ByteString> result = new HashMap<>(executionStates.size());
     for (SimpleExecutionState state : executionStates) {
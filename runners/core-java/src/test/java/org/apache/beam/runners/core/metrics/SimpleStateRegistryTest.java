@@ -18,6 +18,7 @@
 package org.apache.beam.runners.core.metrics;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -26,6 +27,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import org.apache.beam.model.pipeline.v1.MetricsApi.MonitoringInfo;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableMap;
 import org.hamcrest.Matcher;
 import org.hamcrest.Matchers;
 import org.junit.Test;
@@ -98,4 +100,46 @@ public class SimpleStateRegistryTest {
     verify(state1, times(1)).reset();
     verify(state2, times(1)).reset();
   }
+
+  @Test
+  public void testTotalMillisByLabel() {
+    HashMap<String, String> labelsA = new HashMap<>();
+    labelsA.put(MonitoringInfoConstants.Labels.PTRANSFORM, "a");
+    HashMap<String, String> labelsB = new HashMap<>();
+    labelsB.put(MonitoringInfoConstants.Labels.PTRANSFORM, "b");
+    SimpleExecutionState startA =
+        new SimpleExecutionState(
+            ExecutionStateTracker.START_STATE_NAME,
+            MonitoringInfoConstants.Urns.START_BUNDLE_MSECS,
+            labelsA);
+    SimpleExecutionState processA =
+        new SimpleExecutionState(
+            ExecutionStateTracker.PROCESS_STATE_NAME,
+            MonitoringInfoConstants.Urns.PROCESS_BUNDLE_MSECS,
+            labelsA);
+    SimpleExecutionState processB =
+        new SimpleExecutionState(
+            ExecutionStateTracker.PROCESS_STATE_NAME,
+            MonitoringInfoConstants.Urns.PROCESS_BUNDLE_MSECS,
+            labelsB);
+    SimpleExecutionState unlabeled =
+        new SimpleExecutionState(
+            ExecutionStateTracker.PROCESS_STATE_NAME,
+            MonitoringInfoConstants.Urns.PROCESS_BUNDLE_MSECS,
+            null);
+
+    SimpleStateRegistry testObject = new SimpleStateRegistry();
+    testObject.register(startA);
+    testObject.register(processA);
+    testObject.register(processB);
+    testObject.register(unlabeled);
+    startA.takeSample(3);
+    processA.takeSample(5);
+    unlabeled.takeSample(7);
+
+    // States without any time are omitted.
+    assertEquals(
+        ImmutableMap.of("a", 8L),
+        testObject.getTotalMillisByLabel(MonitoringInfoConstants.Labels.PTRANSFORM));
+  }
 }
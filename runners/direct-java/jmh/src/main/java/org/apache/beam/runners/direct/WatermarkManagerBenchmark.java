@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.beam.runners.core.StateNamespaces;
+import org.apache.beam.runners.core.TimerInternals.TimerData;
+import org.apache.beam.runners.direct.WatermarkManager.TimerUpdate;
+import org.apache.beam.runners.local.Bundle;
+import org.apache.beam.runners.local.StructuralKey;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.state.TimeDomain;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.apache.beam.sdk.util.WindowedValue;
+import org.joda.time.Instant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks committing the results of a keyed step to a {@link WatermarkManager} from many threads
+ * while another thread refreshes the watermarks, reported in operations per second.
+ *
+ * <p>Each committing thread completes a bundle of its own key, which replaces the pending bundle,
+ * the event time timer and the watermark hold of the key, as a stateful step does. The refreshing
+ * thread refreshes the watermarks and extracts the fired timers in a loop, as the {@link
+ * QuiescenceDriver} does. The number of committing and refreshing threads defaults to 4 and 1, and
+ * is changed with the {@code -tg} option, e.g. {@code -tg 16,1}, to measure how commits scale with
+ * the number of cores.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class WatermarkManagerBenchmark {
+  private static final String SOURCE = "source";
+  private static final String VALUES = "values";
+  private static final String STEP = "step";
+
+  @State(Scope.Group)
+  public static class Manager {
+    final AtomicInteger nextKey = new AtomicInteger();
+    WatermarkManager<String, ? super String> manager;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+      manager = WatermarkManager.create(NanosOffsetClock.create(), new Graph(), name -> name);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Committer {
+    StructuralKey<Integer> key;
+    Bundle<?, String> pending;
+    long timestamp;
+
+    @Setup(Level.Iteration)
+    public void setUp(Manager manager) {
+      key = StructuralKey.of(manager.nextKey.getAndIncrement(), VarIntCoder.of());
+      pending = new KeyedBundle(key, new Instant(0L));
+      manager.manager.updateWatermarks(
+          null,
+          TimerUpdate.empty(),
+          SOURCE,
+          null,
+          Collections.singleton(pending),
+          BoundedWindow.TIMESTAMP_MAX_VALUE);
+      timestamp = 0L;
+    }
+  }
+
+  @Benchmark
+  @Group("commit")
+  @GroupThreads(4)
+  public void commit(Manager manager, Committer committer) {
+    Instant timestamp = new Instant(++committer.timestamp);
+    Bundle<?, String> unprocessed = new KeyedBundle(committer.key, timestamp);
+    TimerData timer =
+        TimerData.of(
+            StateNamespaces.global(),
+            timestamp.plus(1000L),
+            timestamp.plus(1000L),
+            TimeDomain.EVENT_TIME);
+    manager.manager.updateWatermarks(
+        committer.pending,
+        TimerUpdate.builder(committer.key).setTimer(timer).build(),
+        STEP,
+        unprocessed,
+        Collections.emptyList(),
+        timestamp);
+    committer.pending = unprocessed;
+  }
+
+  @Benchmark
+  @Group("commit")
+  @GroupThreads(1)
+  public Object refresh(Manager manager) {
+    // As the QuiescenceDriver does on every iteration
+    manager.manager.refreshAll();
+    return manager.manager.extractFiredTimers();
+  }
+
+  /** A source which produces the values consumed by the keyed step. */
+  private static class Graph implements ExecutableGraph<String, String> {
+    @Override
+    public Collection<String> getRootTransforms() {
+      return Collections.singleton(SOURCE);
+    }
+
+    @Override
+    public Collection<String> getExecutables() {
+      return Collections.singleton(STEP);
+    }
+
+    @Override
+    public String getProducer(String collection) {
+      return SOURCE;
+    }
+
+    @Override
+    public Collection<String> getProduced(String producer) {
+      return SOURCE.equals(producer) ? Collections.singleton(VALUES) : Collections.emptyList();
+    }
+
+    @Override
+    public Collection<String> getPerElementInputs(String transform) {
+      return STEP.equals(transform) ? Collections.singleton(VALUES) : Collections.emptyList();
+    }
+
+    @Override
+    public Collection<String> getPerElementConsumers(String collection) {
+      return Collections.singleton(STEP);
+    }
+  }
+
+  /** An empty bundle of a key, which holds the watermark at its timestamp. */
+  private static class KeyedBundle implements Bundle<Object, String> {
+    private final StructuralKey<?> key;
+    private final Instant timestamp;
+
+    private KeyedBundle(StructuralKey<?> key, Instant timestamp) {
+      this.key = key;
+      this.timestamp = timestamp;
+    }
+
+    @Override
+    public String getPCollection() {
+      return VALUES;
+    }
+
+    @Override
+    public StructuralKey<?> getKey() {
+      return key;
+    }
+
+    @Override
+    public Instant getMinimumTimestamp() {
+      return timestamp;
+    }
+
+    @Override
+    public Instant getSynchronizedProcessingOutputWatermark() {
+      return timestamp;
+    }
+
+    @Override
+    public Iterator<WindowedValue<Object>> iterator() {
+      return Collections.emptyIterator();
+    }
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct.jmh;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkState;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.beam.runners.direct.DirectOptions;
+import org.apache.beam.runners.direct.DirectRunner;
+import org.apache.beam.runners.direct.DirectStepReplay;
+import org.apache.beam.sdk.Pipeline;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.options.PipelineOptions;
+import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.apache.beam.sdk.state.StateSpec;
+import org.apache.beam.sdk.state.StateSpecs;
+import org.apache.beam.sdk.state.TimeDomain;
+import org.apache.beam.sdk.state.Timer;
+import org.apache.beam.sdk.state.TimerSpec;
+import org.apache.beam.sdk.state.TimerSpecs;
+import org.apache.beam.sdk.state.ValueState;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.transforms.View;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.PCollectionView;
+import org.apache.beam.sdk.values.TimestampedValue;
+import org.joda.time.Duration;
+import org.joda.time.Instant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link DirectStepReplay#replay()} of a stateful step which reads a side input and
+ * buffers the values of each key until an event time timer fires, reported in milliseconds per
+ * replay.
+ *
+ * <p>The inputs of the step are recorded once per trial by running the pipeline with the {@link
+ * DirectRunner}, so each invocation only evaluates the recorded bundles, restores the recorded
+ * watermarks and side inputs, and fires the timers of the step.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DirectStepReplayBenchmark {
+  static final String STEP = "Buffer/ParMultiDo(Buffer)/Stateful ParDo";
+
+  @State(Scope.Benchmark)
+  public static class RecordedStep {
+    @Param({"1000", "100000"})
+    public int elements;
+
+    @Param({"100"})
+    public int keys;
+
+    File recording;
+    DirectStepReplay replay;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+      recording = File.createTempFile("direct-step-replay", ".bundles");
+      createPipeline(recording.getPath()).run().waitUntilFinish();
+      replay = DirectStepReplay.of(createPipeline(null), recording.getPath(), STEP);
+      checkState(replay.getBundleCount() > 0, "No bundles of step %s were recorded", STEP);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      checkState(recording.delete() || !recording.exists(), "Unable to delete %s", recording);
+    }
+
+    private Pipeline createPipeline(String recordBundlesTo) {
+      PipelineOptions options = PipelineOptionsFactory.create();
+      options.setRunner(DirectRunner.class);
+      options.as(DirectOptions.class).setRecordBundlesTo(recordBundlesTo);
+      Pipeline pipeline = Pipeline.create(options);
+      List<TimestampedValue<KV<Integer, Integer>>> values = new ArrayList<>(elements);
+      for (int i = 0; i < elements; i++) {
+        values.add(TimestampedValue.of(KV.of(i % keys, i), new Instant(i)));
+      }
+      PCollectionView<Integer> multiplier =
+          pipeline.apply("Multiplier", Create.of(3)).apply("AsMultiplier", View.asSingleton());
+      pipeline
+          .apply(Create.timestamped(values))
+          .apply("Buffer", ParDo.of(new Buffer(multiplier)).withSideInputs(multiplier));
+      return pipeline;
+    }
+  }
+
+  /**
+   * Sums the values of each key multiplied by a side input, and outputs the sum an interval after
+   * the first value of the key.
+   */
+  private static class Buffer extends DoFn<KV<Integer, Integer>, Integer> {
+    private static final Duration FLUSH_INTERVAL = Duration.millis(1000);
+
+    private final PCollectionView<Integer> multiplier;
+
+    @StateId("sum")
+    private final StateSpec<ValueState<Integer>> sumSpec = StateSpecs.value(VarIntCoder.of());
+
+    @TimerId("flush")
+    private final TimerSpec flushSpec = TimerSpecs.timer(TimeDomain.EVENT_TIME);
+
+    private Buffer(PCollectionView<Integer> multiplier) {
+      this.multiplier = multiplier;
+    }
+
+    @ProcessElement
+    public void processElement(
+        ProcessContext c, @StateId("sum") ValueState<Integer> sum, @TimerId("flush") Timer flush) {
+      Integer current = sum.read();
+      if (current == null) {
+        current = 0;
+        flush.offset(FLUSH_INTERVAL).setRelative();
+      }
+      sum.write(current + c.element().getValue() * c.sideInput(multiplier));
+    }
+
+    @OnTimer("flush")
+    public void flush(OnTimerContext c, @StateId("sum") ValueState<Integer> sum) {
+      c.output(sum.read());
+      sum.clear();
+    }
+  }
+
+  @Benchmark
+  public long replay(RecordedStep step) throws Exception {
+    return step.replay.replay();
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.beam.runners.direct.WatermarkManagerBenchmark.Committer;
+import org.apache.beam.runners.direct.WatermarkManagerBenchmark.Manager;
+import org.joda.time.Instant;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link WatermarkManagerBenchmark}. */
+@RunWith(JUnit4.class)
+public class WatermarkManagerBenchmarkTest {
+  @Test
+  public void testCommit() {
+    Manager manager = new Manager();
+    manager.setUp();
+    Committer committer = new Committer();
+    committer.setUp(manager);
+
+    WatermarkManagerBenchmark benchmark = new WatermarkManagerBenchmark();
+    for (int i = 0; i < 10; i++) {
+      benchmark.commit(manager, committer);
+    }
+    benchmark.refresh(manager);
+
+    // The watermarks are held by the bundle and the hold of the latest commit.
+    WatermarkManager<String, ?>.TransformWatermarks watermarks =
+        manager.manager.getWatermarks("step");
+    assertEquals(new Instant(10L), watermarks.getInputWatermark());
+    assertEquals(new Instant(10L), watermarks.getOutputWatermark());
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct.jmh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.beam.runners.direct.jmh.DirectStepReplayBenchmark.RecordedStep;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link DirectStepReplayBenchmark}. */
+@RunWith(JUnit4.class)
+public class DirectStepReplayBenchmarkTest {
+  @Test
+  public void testReplay() throws Exception {
+    RecordedStep step = new RecordedStep();
+    step.elements = 1000;
+    step.keys = 10;
+    step.setUp();
+    try {
+      DirectStepReplayBenchmark benchmark = new DirectStepReplayBenchmark();
+      long evaluated = benchmark.replay(step);
+      assertTrue(evaluated > 0);
+      // Each replay evaluates the same recorded inputs and fires the same timers.
+      assertEquals(evaluated, benchmark.replay(step));
+    } finally {
+      step.tearDown();
+    }
+  }
+}
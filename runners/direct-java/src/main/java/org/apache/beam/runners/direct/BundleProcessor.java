@@ -17,6 +17,7 @@
  */
 package org.apache.beam.runners.direct;
 
+import java.util.List;
 import org.apache.beam.runners.local.Bundle;
 
 /**
@@ -30,4 +31,15 @@ interface BundleProcessor<
    * CompletionCallback} when execution completes.
    */
   void process(BundleT bundle, ExecutableT consumer, CompletionCallback onComplete);
+
+  /**
+   * Execute the provided bundles, each of which belongs to a different key, using the provided
+   * Executable as a single unit of work. Each bundle is evaluated with the state of its key, and
+   * the {@link CompletionCallback} is called back as the evaluation of each bundle completes.
+   *
+   * <p>The caller must not execute any other bundle using the Executable until every bundle of the
+   * batch has completed.
+   */
+  void processKeyedBatch(
+      List<BundleT> bundles, ExecutableT consumer, CompletionCallback onComplete);
 }
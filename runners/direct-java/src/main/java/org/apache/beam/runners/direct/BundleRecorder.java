@@ -0,0 +1,340 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import org.apache.beam.runners.core.KeyedWorkItemCoder;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.CoderException;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.apache.beam.sdk.util.CoderUtils;
+import org.apache.beam.sdk.util.WindowedValue;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.PCollectionView;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.joda.time.Instant;
+
+/**
+ * Records the input bundles of the steps of a pipeline executed by the {@link DirectRunner} to a
+ * local file, from which a single step can be re-executed by a {@link DirectStepReplay}.
+ *
+ * <p>Each record of an input bundle contains the full name of the step and its input {@link
+ * PCollection}, the input watermark of the step when the bundle was committed, whether the bundle
+ * delivered timers, the key of the bundle if it is keyed, and the elements of the bundle encoded
+ * with their windows, timestamps and panes. Timers are delivered to steps as elements of their
+ * input, so fired timers are recorded with the bundles which delivered them.
+ *
+ * <p>The contents of each window of each {@link PCollectionView} are recorded whenever they are
+ * written, in the same order as the bundles, so that a replay can make the side inputs of a step
+ * ready when they were ready in the recorded execution. A window which closed without elements is
+ * recorded with empty contents.
+ */
+class BundleRecorder implements Closeable {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final byte BUNDLE_RECORD = 0;
+  private static final byte VIEW_RECORD = 1;
+
+  public static BundleRecorder create(Path file) throws IOException {
+    return new BundleRecorder(
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE)));
+  }
+
+  private final DataOutputStream output;
+
+  private BundleRecorder(DataOutputStream output) {
+    this.output = output;
+  }
+
+  /**
+   * Appends the provided input bundle of the step with the provided name to the recording. Keyed
+   * bundles are recorded with their key if it can be encoded with the key coder of the coder of the
+   * input.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  void record(
+      String stepName,
+      CommittedBundle<?> bundle,
+      boolean keyed,
+      Instant inputWatermark,
+      boolean deliversTimers) {
+    PCollection<?> input = bundle.getPCollection();
+    Coder<?> keyCoder = keyed ? getKeyCoder(input.getCoder()) : null;
+    byte[] key = keyCoder == null ? null : encode((Coder) keyCoder, bundle.getKey().getKey());
+    List<byte[]> elements = new ArrayList<>();
+    Coder<WindowedValue<?>> elementCoder = getElementCoder(input);
+    for (WindowedValue<?> element : bundle.getElements()) {
+      elements.add(encode(elementCoder, element));
+    }
+    synchronized (output) {
+      try {
+        output.writeByte(BUNDLE_RECORD);
+        output.writeUTF(stepName);
+        output.writeUTF(input.getName());
+        output.writeLong(inputWatermark.getMillis());
+        output.writeBoolean(deliversTimers);
+        output.writeBoolean(key != null);
+        if (key != null) {
+          writeBytes(output, key);
+        }
+        output.writeInt(elements.size());
+        for (byte[] element : elements) {
+          writeBytes(output, element);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException("Unable to record the input of step " + stepName, e);
+      }
+    }
+  }
+
+  /**
+   * Appends the contents of the provided window of the provided view to the recording. Empty
+   * contents record that the window closed without elements.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  void recordView(
+      PCollectionView<?> view, BoundedWindow window, Collection<WindowedValue<?>> values) {
+    byte[] encodedWindow = encode((Coder) getWindowCoder(view), window);
+    List<byte[]> encodedValues = new ArrayList<>(values.size());
+    Coder<WindowedValue<?>> valueCoder = getValueCoder(view);
+    for (WindowedValue<?> value : values) {
+      encodedValues.add(encode(valueCoder, value));
+    }
+    String viewName = view.getPCollection().getName();
+    synchronized (output) {
+      try {
+        output.writeByte(VIEW_RECORD);
+        output.writeUTF(viewName);
+        writeBytes(output, encodedWindow);
+        output.writeInt(encodedValues.size());
+        for (byte[] value : encodedValues) {
+          writeBytes(output, value);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException("Unable to record the contents of view " + viewName, e);
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (output) {
+      output.close();
+    }
+  }
+
+  /**
+   * Returns the recorded input bundles of the step with the provided name and the recorded contents
+   * of the views whose {@link PCollection PCollections} have the provided names, in recorded order.
+   */
+  static List<Record> read(Path file, String stepName, Set<String> viewNames) throws IOException {
+    List<Record> records = new ArrayList<>();
+    try (DataInputStream input =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+      while (true) {
+        byte recordType;
+        try {
+          recordType = input.readByte();
+        } catch (EOFException e) {
+          return records;
+        }
+        switch (recordType) {
+          case BUNDLE_RECORD:
+            {
+              String recordedStep = input.readUTF();
+              String inputName = input.readUTF();
+              Instant inputWatermark = new Instant(input.readLong());
+              boolean deliversTimers = input.readBoolean();
+              byte[] key = input.readBoolean() ? readBytes(input) : null;
+              List<byte[]> elements = readByteArrays(input);
+              if (recordedStep.equals(stepName)) {
+                records.add(
+                    new RecordedBundle(inputName, inputWatermark, deliversTimers, key, elements));
+              }
+              break;
+            }
+          case VIEW_RECORD:
+            {
+              String viewName = input.readUTF();
+              byte[] window = readBytes(input);
+              List<byte[]> values = readByteArrays(input);
+              if (viewNames.contains(viewName)) {
+                records.add(new RecordedViewContents(viewName, window, values));
+              }
+              break;
+            }
+          default:
+            throw new IOException(
+                String.format("Unknown record type %d in recording %s", recordType, file));
+        }
+      }
+    }
+  }
+
+  /** Returns the coder of the keys of the provided coder of a keyed input, if it has one. */
+  static @Nullable Coder<?> getKeyCoder(Coder<?> inputCoder) {
+    if (inputCoder instanceof KvCoder) {
+      return ((KvCoder<?, ?>) inputCoder).getKeyCoder();
+    } else if (inputCoder instanceof KeyedWorkItemCoder) {
+      return ((KeyedWorkItemCoder<?, ?>) inputCoder).getKeyCoder();
+    }
+    return null;
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  static Coder<WindowedValue<?>> getElementCoder(PCollection<?> input) {
+    return (Coder)
+        WindowedValue.getFullCoder(
+            input.getCoder(), input.getWindowingStrategy().getWindowFn().windowCoder());
+  }
+
+  static Coder<? extends BoundedWindow> getWindowCoder(PCollectionView<?> view) {
+    return view.getWindowingStrategyInternal().getWindowFn().windowCoder();
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  static Coder<WindowedValue<?>> getValueCoder(PCollectionView<?> view) {
+    return (Coder) WindowedValue.getFullCoder(view.getCoderInternal(), getWindowCoder(view));
+  }
+
+  private static <T> byte[] encode(Coder<T> coder, T value) {
+    try {
+      return CoderUtils.encodeToByteArray(coder, value);
+    } catch (CoderException e) {
+      throw new IllegalArgumentException(
+          String.format("Unable to encode %s with coder %s", value, coder), e);
+    }
+  }
+
+  private static void writeBytes(DataOutputStream output, byte[] bytes) throws IOException {
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static byte[] readBytes(DataInputStream input) throws IOException {
+    byte[] bytes = new byte[input.readInt()];
+    input.readFully(bytes);
+    return bytes;
+  }
+
+  private static List<byte[]> readByteArrays(DataInputStream input) throws IOException {
+    int count = input.readInt();
+    List<byte[]> arrays = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      arrays.add(readBytes(input));
+    }
+    return arrays;
+  }
+
+  /**
+   * A record read from a recording, either a {@link RecordedBundle} or a {@link
+   * RecordedViewContents}.
+   */
+  abstract static class Record {}
+
+  /** An input bundle of a step as recorded by a {@link BundleRecorder}. */
+  static class RecordedBundle extends Record {
+    private final String inputName;
+    private final Instant inputWatermark;
+    private final boolean deliversTimers;
+    private final byte @Nullable [] key;
+    private final List<byte[]> elements;
+
+    private RecordedBundle(
+        String inputName,
+        Instant inputWatermark,
+        boolean deliversTimers,
+        byte @Nullable [] key,
+        List<byte[]> elements) {
+      this.inputName = inputName;
+      this.inputWatermark = inputWatermark;
+      this.deliversTimers = deliversTimers;
+      this.key = key;
+      this.elements = elements;
+    }
+
+    /** The name of the {@link PCollection} the bundle belongs to. */
+    String getInputName() {
+      return inputName;
+    }
+
+    /** The input watermark of the step when the bundle was committed. */
+    Instant getInputWatermark() {
+      return inputWatermark;
+    }
+
+    /** Whether the bundle delivered fired timers, rather than elements, to the step. */
+    boolean deliversTimers() {
+      return deliversTimers;
+    }
+
+    /** The encoded key of the bundle, or null if the bundle is not keyed. */
+    byte @Nullable [] getKey() {
+      return key;
+    }
+
+    /** The encoded elements of the bundle. */
+    List<byte[]> getElements() {
+      return elements;
+    }
+  }
+
+  /**
+   * The contents of a window of a {@link PCollectionView} as recorded by a {@link BundleRecorder}.
+   */
+  static class RecordedViewContents extends Record {
+    private final String viewName;
+    private final byte[] window;
+    private final List<byte[]> values;
+
+    private RecordedViewContents(String viewName, byte[] window, List<byte[]> values) {
+      this.viewName = viewName;
+      this.window = window;
+      this.values = values;
+    }
+
+    /** The name of the {@link PCollection} of the view. */
+    String getViewName() {
+      return viewName;
+    }
+
+    /** The encoded window. */
+    byte[] getWindow() {
+      return window;
+    }
+
+    /** The encoded values of the view in the window, which are empty if the window closed empty. */
+    List<byte[]> getValues() {
+      return values;
+    }
+  }
+}
@@ -19,8 +19,10 @@ package org.apache.beam.runners.direct;
 
 import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkState;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.apache.beam.runners.core.InMemoryStateInternals.InMemoryBag;
@@ -37,6 +39,7 @@ import org.apache.beam.runners.core.StateNamespace;
 import org.apache.beam.runners.core.StateTable;
 import org.apache.beam.runners.core.StateTag;
 import org.apache.beam.runners.core.StateTag.StateBinder;
+import org.apache.beam.runners.direct.StateSpiller.Account;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.state.BagState;
 import org.apache.beam.sdk.state.CombiningState;
@@ -77,12 +80,26 @@ class CopyOnAccessInMemoryStateInternals<K> implements StateInternals {
    */
   public static <K> CopyOnAccessInMemoryStateInternals withUnderlying(
       K key, @Nullable CopyOnAccessInMemoryStateInternals underlying) {
-    return new CopyOnAccessInMemoryStateInternals<>(key, underlying);
+    return withUnderlying(key, underlying, null);
   }
 
-  private CopyOnAccessInMemoryStateInternals(K key, CopyOnAccessInMemoryStateInternals underlying) {
+  /**
+   * Creates a new {@link CopyOnAccessInMemoryStateInternals} with the underlying (possibly null)
+   * StateInternals, which keeps the contents of {@link BagState} within the memory budget of the
+   * provided (possibly null) {@link StateSpiller} once committed.
+   */
+  public static <K> CopyOnAccessInMemoryStateInternals withUnderlying(
+      K key,
+      @Nullable CopyOnAccessInMemoryStateInternals underlying,
+      @Nullable StateSpiller spiller) {
+    return new CopyOnAccessInMemoryStateInternals<>(key, underlying, spiller);
+  }
+
+  private CopyOnAccessInMemoryStateInternals(
+      K key, CopyOnAccessInMemoryStateInternals underlying, StateSpiller spiller) {
     this.key = key;
-    table = new CopyOnAccessInMemoryStateTable(underlying == null ? null : underlying.table);
+    table =
+        new CopyOnAccessInMemoryStateTable(underlying == null ? null : underlying.table, spiller);
   }
 
   /**
@@ -97,6 +114,10 @@ class CopyOnAccessInMemoryStateInternals<K> implements StateInternals {
    * state table after the commit is completed, enabling calls to {@link
    * #getEarliestWatermarkHold()}.
    *
+   * <p>If there is a {@link StateSpiller}, the {@link BagState BagStates} in this table are
+   * registered with it, and if the committed state of all steps and keys buffered on the heap
+   * exceeds its memory budget, the contents of the largest of them are spilled.
+   *
    * @return this table
    */
   public CopyOnAccessInMemoryStateInternals commit() {
@@ -143,6 +164,14 @@ class CopyOnAccessInMemoryStateInternals<K> implements StateInternals {
   private static class CopyOnAccessInMemoryStateTable extends StateTable {
     private Optional<StateTable> underlying;
 
+    private final @Nullable StateSpiller spiller;
+
+    /**
+     * The {@link Account} of the {@link SpillingBag SpillingBags} of this step and key. Inherited
+     * from the underlying table, which is discarded once this table is committed.
+     */
+    private final @Nullable Account account;
+
     /**
      * The StateBinderFactory currently in use by this {@link CopyOnAccessInMemoryStateTable}.
      *
@@ -167,9 +196,16 @@ class CopyOnAccessInMemoryStateInternals<K> implements StateInternals {
     /** The earliest watermark hold in this table. */
     private Optional<Instant> earliestWatermarkHold;
 
-    public CopyOnAccessInMemoryStateTable(StateTable underlying) {
+    public CopyOnAccessInMemoryStateTable(
+        CopyOnAccessInMemoryStateTable underlying, @Nullable StateSpiller spiller) {
       this.underlying = Optional.ofNullable(underlying);
-      binderFactory = new CopyOnBindBinderFactory(this.underlying);
+      this.spiller = spiller;
+      if (underlying != null) {
+        this.account = underlying.account;
+      } else {
+        this.account = spiller == null ? null : spiller.newAccount();
+      }
+      binderFactory = new CopyOnBindBinderFactory(this.underlying, spiller);
       earliestWatermarkHold = Optional.empty();
     }
 
@@ -198,7 +234,16 @@ class CopyOnAccessInMemoryStateInternals<K> implements StateInternals {
       }
       earliestWatermarkHold = Optional.of(earliestHold);
       clearEmpty();
-      binderFactory = new InMemoryStateBinderFactory();
+      if (account != null) {
+        List<SpillingBag<?>> bags = new ArrayList<>();
+        for (State existingState : this.values()) {
+          if (existingState instanceof SpillingBag) {
+            bags.add((SpillingBag<?>) existingState);
+          }
+        }
+        account.commit(bags);
+      }
+      binderFactory = new InMemoryStateBinderFactory(spiller);
       underlying = Optional.empty();
     }
 
@@ -256,9 +301,12 @@ class CopyOnAccessInMemoryStateInternals<K> implements StateInternals {
      */
     private static class CopyOnBindBinderFactory implements StateBinderFactory {
       private final Optional<StateTable> underlying;
+      private final @Nullable StateSpiller spiller;
 
-      public CopyOnBindBinderFactory(Optional<StateTable> underlying) {
+      public CopyOnBindBinderFactory(
+          Optional<StateTable> underlying, @Nullable StateSpiller spiller) {
         this.underlying = underlying;
+        this.spiller = spiller;
       }
 
       private boolean containedInUnderlying(StateNamespace namespace, StateTag<?> tag) {
@@ -322,6 +370,8 @@ class CopyOnAccessInMemoryStateInternals<K> implements StateInternals {
                   (InMemoryState<? extends BagState<T>>)
                       underlying.get().get(namespace, address, c);
               return existingState.copy();
+            } else if (spiller != null) {
+              return new SpillingBag<>(elemCoder, spiller);
             } else {
               return new InMemoryBag<>(elemCoder);
             }
@@ -477,12 +527,23 @@ class CopyOnAccessInMemoryStateInternals<K> implements StateInternals {
     }
 
     private static class InMemoryStateBinderFactory implements StateBinderFactory {
+      private final @Nullable StateSpiller spiller;
 
-      public InMemoryStateBinderFactory() {}
+      public InMemoryStateBinderFactory(@Nullable StateSpiller spiller) {
+        this.spiller = spiller;
+      }
 
       @Override
       public StateBinder forNamespace(StateNamespace namespace, StateContext<?> c) {
-        return new InMemoryStateBinder(c);
+        if (spiller == null) {
+          return new InMemoryStateBinder(c);
+        }
+        return new InMemoryStateBinder(c) {
+          @Override
+          public <T> BagState<T> bindBag(StateTag<BagState<T>> address, Coder<T> elemCoder) {
+            return new SpillingBag<>(elemCoder, spiller);
+          }
+        };
       }
     }
   }
@@ -20,6 +20,8 @@ package org.apache.beam.runners.direct;
 import static java.util.Arrays.asList;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
@@ -41,14 +43,19 @@ import org.apache.beam.sdk.metrics.MetricQueryResults;
 import org.apache.beam.sdk.metrics.MetricResult;
 import org.apache.beam.sdk.metrics.MetricResults;
 import org.apache.beam.sdk.metrics.MetricsFilter;
+import org.apache.beam.sdk.util.HistogramData;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
 import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /** Implementation of {@link MetricResults} for the Direct Runner. */
 @SuppressWarnings({
   "nullness" // TODO(https://github.com/apache/beam/issues/20497)
 })
 class DirectMetrics extends MetricResults {
+  private static final Logger LOG = LoggerFactory.getLogger(DirectMetrics.class);
 
   private interface MetricAggregation<UpdateT, ResultT> {
     UpdateT zero();
@@ -119,6 +126,21 @@ class DirectMetrics extends MetricResults {
           });
     }
 
+    /**
+     * Commit a value which is not produced by a bundle, such as a metric of the executor, as both
+     * its physical and logical value.
+     */
+    public void commitUnbundled(UpdateT update) {
+      synchronized (attemptedLock) {
+        finishedAttempted = aggregation.combine(asList(finishedAttempted, update));
+      }
+      UpdateT current;
+      do {
+        current = finishedCommitted.get();
+      } while (!finishedCommitted.compareAndSet(
+          current, aggregation.combine(asList(current, update))));
+    }
+
     /** Extract the latest values from all attempted and in-progress bundles. */
     public ResultT extractLatestAttempted() {
       ArrayList<UpdateT> updates = new ArrayList<>(inflightAttempted.size() + 1);
@@ -225,11 +247,15 @@ class DirectMetrics extends MetricResults {
 
   private final MetricsMap<MetricKey, DirectMetric<GaugeData, GaugeResult>> gauges;
 
+  /** The latencies reported in {@link DirectSystemMetrics}, across all attempted bundles. */
+  private final MetricsMap<MetricKey, HistogramData> latencies;
+
   DirectMetrics(ExecutorService executorService) {
     this.counters = new MetricsMap<>(unusedKey -> new DirectMetric<>(COUNTER, executorService));
     this.distributions =
         new MetricsMap<>(unusedKey -> new DirectMetric<>(DISTRIBUTION, executorService));
     this.gauges = new MetricsMap<>(unusedKey -> new DirectMetric<>(GAUGE, executorService));
+    this.latencies = new MetricsMap<>(unusedKey -> DirectSystemMetrics.newLatencyHistogram());
   }
 
   @Override
@@ -291,6 +317,50 @@ class DirectMetrics extends MetricResults {
     }
   }
 
+  /**
+   * Returns the updates of both arguments. The updates are expected to be for distinct {@link
+   * MetricKey MetricKeys}, such as those of different steps.
+   */
+  static MetricUpdates concat(MetricUpdates first, MetricUpdates second) {
+    return MetricUpdates.create(
+        ImmutableList.copyOf(Iterables.concat(first.counterUpdates(), second.counterUpdates())),
+        ImmutableList.copyOf(
+            Iterables.concat(first.distributionUpdates(), second.distributionUpdates())),
+        ImmutableList.copyOf(Iterables.concat(first.gaugeUpdates(), second.gaugeUpdates())));
+  }
+
+  /** Sets the value of the gauge of the provided key, which is not reported by any bundle. */
+  void setGauge(MetricKey key, long value) {
+    gauges.get(key).commitUnbundled(GaugeData.create(value));
+  }
+
+  /** Records a latency, in microseconds, in the histogram of the provided key. */
+  void recordLatency(MetricKey key, long micros) {
+    latencies.get(key).record(micros);
+  }
+
+  /** Returns the histogram of the latencies recorded for the provided key, if any. */
+  @Nullable
+  HistogramData getLatencies(MetricKey key) {
+    return latencies.tryGet(key);
+  }
+
+  /** Logs the percentiles of all recorded latencies, grouped by step. */
+  void logLatencies() {
+    List<Entry<MetricKey, HistogramData>> entries = new ArrayList<>();
+    latencies.entries().forEach(entries::add);
+    entries.sort(
+        Comparator.comparing((Entry<MetricKey, HistogramData> entry) -> entry.getKey().stepName())
+            .thenComparing(entry -> entry.getKey().metricName().getName()));
+    for (Entry<MetricKey, HistogramData> entry : entries) {
+      LOG.info(
+          "{} {}: {}",
+          entry.getKey().stepName(),
+          entry.getKey().metricName().getName(),
+          entry.getValue().getPercentileString("bundles", "us"));
+    }
+  }
+
   /** Apply metric updates that represent new logical values from a bundle being committed. */
   public void commitLogical(CommittedBundle<?> bundle, MetricUpdates updates) {
     for (MetricUpdate<Long> counter : updates.counterUpdates()) {
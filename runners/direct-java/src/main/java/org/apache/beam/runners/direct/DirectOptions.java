@@ -22,6 +22,7 @@ import org.apache.beam.sdk.options.Default;
 import org.apache.beam.sdk.options.DefaultValueFactory;
 import org.apache.beam.sdk.options.Description;
 import org.apache.beam.sdk.options.PipelineOptions;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  * Options that can be used to configure the {@link org.apache.beam.runners.direct.DirectRunner}.
@@ -54,6 +55,49 @@ public interface DirectOptions extends PipelineOptions, ApplicationNameOptions {
 
   void setEnforceEncodability(boolean test);
 
+  @Default.Boolean(false)
+  @Description(
+      "Runs the pipeline for performance rather than for testing. Trusts that the pipeline "
+          + "respects the Beam model, disabling the immutability and encodability enforcements "
+          + "regardless of their own options, and fuses each ParDo without side inputs into the "
+          + "ParDo producing its input when it is the only consumer of that input, so elements "
+          + "are passed between them without an intermediate bundle. Readers of unbounded "
+          + "sources are also kept open across bundles rather than occasionally being closed "
+          + "and resumed from their checkpoint.")
+  boolean isPerformanceMode();
+
+  void setPerformanceMode(boolean performanceMode);
+
+  @Default.Integer(-1)
+  @Description(
+      "The number of megabytes of committed bag state, including the values buffered by "
+          + "GroupByKey, which the DirectRunner keeps on the heap. Once exceeded, the contents of "
+          + "the bags are spilled to a local temporary file and read back from it on demand. "
+          + "A negative value keeps all state on the heap.")
+  int getStateMemoryMb();
+
+  void setStateMemoryMb(int stateMemoryMb);
+
+  @Default.Boolean(false)
+  @Description(
+      "Logs the percentiles of the bundle processing time and queueing delay of each step when "
+          + "the pipeline terminates. These and other metrics of the execution of each step are "
+          + "always available in the DirectRunner namespace of the metrics of the PipelineResult.")
+  boolean isLogSystemMetrics();
+
+  void setLogSystemMetrics(boolean logSystemMetrics);
+
+  @Description(
+      "A local file to which the DirectRunner records the input bundles of every step which "
+          + "consumes a PCollection, with their keys and the input watermark of the step, and the "
+          + "contents of every side input. A step can then be re-executed in isolation "
+          + "against its recorded inputs with a DirectStepReplay, for example to benchmark or "
+          + "profile it. Nothing is recorded if unset.")
+  @Nullable
+  String getRecordBundlesTo();
+
+  void setRecordBundlesTo(@Nullable String recordBundlesTo);
+
   @Default.InstanceFactory(AvailableParallelismFactory.class)
   @Description(
       "Controls the amount of target parallelism the DirectRunner will use. Defaults to"
@@ -19,6 +19,7 @@ package org.apache.beam.runners.direct;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
@@ -45,13 +46,13 @@ import org.apache.beam.sdk.transforms.PTransform;
 import org.apache.beam.sdk.util.UserCodeException;
 import org.apache.beam.sdk.util.common.ReflectHelpers;
 import org.apache.beam.sdk.values.PCollection;
-import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Supplier;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableMap;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableSet;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.MoreExecutors;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.joda.time.Duration;
 
 /**
@@ -99,6 +100,9 @@ public class DirectRunner extends PipelineRunner<DirectPipelineResult> {
     // Utilities for creating enforcements
     static Set<Enforcement> enabled(DirectOptions options) {
       EnumSet<Enforcement> enabled = EnumSet.noneOf(Enforcement.class);
+      if (options.isPerformanceMode()) {
+        return Collections.unmodifiableSet(enabled);
+      }
       if (options.isEnforceEncodability()) {
         enabled.add(ENCODABILITY);
       }
@@ -199,7 +203,9 @@ public class DirectRunner extends PipelineRunner<DirectPipelineResult> {
               Enforcement.bundleFactoryFor(enabledEnforcements, graph),
               graph,
               keyedPValueVisitor.getKeyedPValues(),
-              metricsPool);
+              metricsPool,
+              createStateSpiller(options),
+              createBundleRecorder(options));
 
       TransformEvaluatorRegistry registry =
           TransformEvaluatorRegistry.javaSdkNativeRegistry(context, options);
@@ -212,7 +218,8 @@ public class DirectRunner extends PipelineRunner<DirectPipelineResult> {
               metricsPool);
       executor.start(graph, RootProviderRegistry.javaNativeRegistry(context, options));
 
-      DirectPipelineResult result = new DirectPipelineResult(executor, context);
+      DirectPipelineResult result =
+          new DirectPipelineResult(executor, context, options.isLogSystemMetrics());
       if (options.isBlockOnRun()) {
         try {
           result.waitUntilFinish();
@@ -231,6 +238,29 @@ public class DirectRunner extends PipelineRunner<DirectPipelineResult> {
     }
   }
 
+  private static @Nullable StateSpiller createStateSpiller(DirectOptions options) {
+    if (options.getStateMemoryMb() < 0) {
+      return null;
+    }
+    try {
+      return StateSpiller.create(options.getStateMemoryMb() * 1024L * 1024L);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to create a local file to spill state to", e);
+    }
+  }
+
+  private static @Nullable BundleRecorder createBundleRecorder(DirectOptions options) {
+    if (options.getRecordBundlesTo() == null) {
+      return null;
+    }
+    try {
+      return BundleRecorder.create(Paths.get(options.getRecordBundlesTo()));
+    } catch (IOException e) {
+      throw new IllegalArgumentException(
+          "Unable to create the file to record bundles to " + options.getRecordBundlesTo(), e);
+    }
+  }
+
   /**
    * Rewrites to the pipeline to make it ready for scheduling.
    *
@@ -239,7 +269,6 @@ public class DirectRunner extends PipelineRunner<DirectPipelineResult> {
    * these PTransforms must occur later in the iteration order. {@link ImmutableMap} has an
    * iteration order based on the order at which elements are added to it.
    */
-  @VisibleForTesting
   void performRewrites(Pipeline pipeline) {
     // These overrides introduce side inputs so they must be
     // applied before the viewVisitor, next.
@@ -311,11 +340,14 @@ public class DirectRunner extends PipelineRunner<DirectPipelineResult> {
   public static class DirectPipelineResult implements PipelineResult {
     private final PipelineExecutor executor;
     private final EvaluationContext evaluationContext;
+    private final boolean logSystemMetrics;
     private State state;
 
-    private DirectPipelineResult(PipelineExecutor executor, EvaluationContext evaluationContext) {
+    private DirectPipelineResult(
+        PipelineExecutor executor, EvaluationContext evaluationContext, boolean logSystemMetrics) {
       this.executor = executor;
       this.evaluationContext = evaluationContext;
+      this.logSystemMetrics = logSystemMetrics;
       // Only ever constructed after the executor has started.
       this.state = State.RUNNING;
     }
@@ -383,6 +415,9 @@ public class DirectRunner extends PipelineRunner<DirectPipelineResult> {
       }
       if (endState != null) {
         this.state = endState;
+        if (logSystemMetrics) {
+          evaluationContext.getMetrics().logLatencies();
+        }
       }
       return endState;
     }
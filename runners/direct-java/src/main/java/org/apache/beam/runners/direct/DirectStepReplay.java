@@ -0,0 +1,333 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import org.apache.beam.runners.core.KeyedWorkItem;
+import org.apache.beam.runners.core.KeyedWorkItems;
+import org.apache.beam.runners.core.TimerInternals.TimerData;
+import org.apache.beam.runners.direct.BundleRecorder.Record;
+import org.apache.beam.runners.direct.BundleRecorder.RecordedBundle;
+import org.apache.beam.runners.direct.BundleRecorder.RecordedViewContents;
+import org.apache.beam.runners.local.StructuralKey;
+import org.apache.beam.sdk.Pipeline;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.CoderException;
+import org.apache.beam.sdk.runners.AppliedPTransform;
+import org.apache.beam.sdk.state.TimeDomain;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.apache.beam.sdk.util.CoderUtils;
+import org.apache.beam.sdk.util.WindowedValue;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.PCollectionView;
+import org.apache.beam.sdk.values.PValue;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.MoreExecutors;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.joda.time.Instant;
+
+/**
+ * Re-executes a single step of a {@link Pipeline} against the input bundles recorded by a previous
+ * execution of the pipeline by the {@link DirectRunner} with {@link
+ * DirectOptions#getRecordBundlesTo()} set, so that the step can be benchmarked or profiled in
+ * isolation.
+ *
+ * <p>The recording is read and decoded when the {@link DirectStepReplay} is created, so each call
+ * to {@link #replay()} only evaluates the step. Each replay starts from empty state, evaluates the
+ * recorded bundles in the order they were committed, and commits the state they produce, while
+ * their outputs are discarded.
+ *
+ * <p>Before each bundle is evaluated, the input watermark of the step is advanced to the watermark
+ * recorded with the bundle, and the side inputs of the step are set to the contents they had when
+ * the bundle was committed. Event time timers fire as the input watermark passes them, after the
+ * bundle which advanced it, so recorded deliveries of event time timers are not replayed. Timers in
+ * other time domains fire as they were recorded, since processing time is not replayed.
+ *
+ * <p>The pipeline must be constructed as it was when it was recorded, and must not have been run.
+ */
+public final class DirectStepReplay {
+  /**
+   * Reads the input bundles of the step of the pipeline with the provided full name, and the
+   * contents of the side inputs of the step, from the provided recording file.
+   */
+  public static DirectStepReplay of(Pipeline pipeline, String recordingFile, String stepName)
+      throws IOException {
+    DirectOptions options = pipeline.getOptions().as(DirectOptions.class);
+    DirectRunner.fromOptions(options).performRewrites(pipeline);
+    DirectGraphVisitor graphVisitor = new DirectGraphVisitor();
+    pipeline.traverseTopologically(graphVisitor);
+    KeyedPValueTrackingVisitor keyedPValueVisitor = KeyedPValueTrackingVisitor.create();
+    pipeline.traverseTopologically(keyedPValueVisitor);
+    DirectGraph graph = graphVisitor.getGraph();
+
+    AppliedPTransform<?, ?, ?> step = null;
+    for (AppliedPTransform<?, ?, ?> executable : graph.getExecutables()) {
+      if (executable.getFullName().equals(stepName)) {
+        step = executable;
+      }
+    }
+    checkArgument(step != null, "No step named %s in the pipeline", stepName);
+
+    Map<String, PCollectionView<?>> sideInputs = new HashMap<>();
+    for (PCollectionView<?> view : EvaluationContext.getSideInputs(graph, step)) {
+      sideInputs.put(view.getPCollection().getName(), view);
+    }
+    ImmutableList.Builder<Object> inputs = ImmutableList.builder();
+    int bundleCount = 0;
+    for (Record record :
+        BundleRecorder.read(Paths.get(recordingFile), stepName, sideInputs.keySet())) {
+      if (record instanceof RecordedBundle) {
+        inputs.add(decode(step, (RecordedBundle) record));
+        bundleCount++;
+      } else {
+        RecordedViewContents contents = (RecordedViewContents) record;
+        inputs.add(decode(sideInputs.get(contents.getViewName()), contents));
+      }
+    }
+    return new DirectStepReplay(
+        options, graph, keyedPValueVisitor.getKeyedPValues(), step, inputs.build(), bundleCount);
+  }
+
+  private final DirectOptions options;
+  private final DirectGraph graph;
+  private final Set<PValue> keyedPValues;
+  private final AppliedPTransform<?, ?, ?> step;
+  /** The {@link ReplayedBundle bundles} and {@link ReplayedViewContents} in recorded order. */
+  private final List<Object> inputs;
+
+  private final int bundleCount;
+
+  private DirectStepReplay(
+      DirectOptions options,
+      DirectGraph graph,
+      Set<PValue> keyedPValues,
+      AppliedPTransform<?, ?, ?> step,
+      List<Object> inputs,
+      int bundleCount) {
+    this.options = options;
+    this.graph = graph;
+    this.keyedPValues = keyedPValues;
+    this.step = step;
+    this.inputs = inputs;
+    this.bundleCount = bundleCount;
+  }
+
+  /** Returns the number of recorded input bundles of the step. */
+  public int getBundleCount() {
+    return bundleCount;
+  }
+
+  /**
+   * Evaluates the step over every recorded input bundle and every timer which fires, returning the
+   * number of elements evaluated.
+   */
+  public long replay() throws Exception {
+    ExecutorService metricsExecutor = MoreExecutors.newDirectExecutorService();
+    EvaluationContext context =
+        EvaluationContext.create(
+            NanosOffsetClock.create(),
+            ImmutableListBundleFactory.create(),
+            graph,
+            keyedPValues,
+            metricsExecutor);
+    TransformEvaluatorRegistry registry =
+        TransformEvaluatorRegistry.javaSdkNativeRegistry(context, options);
+    long elements = 0L;
+    try {
+      for (Object input : inputs) {
+        if (input instanceof ReplayedViewContents) {
+          ReplayedViewContents contents = (ReplayedViewContents) input;
+          context.restoreViewContents(contents.view, contents.window, contents.values);
+          continue;
+        }
+        ReplayedBundle replayed = (ReplayedBundle) input;
+        context.advanceInputWatermark(step, replayed.inputWatermark);
+        if (replayed.bundle != null) {
+          elements += evaluate(context, registry, replayed.bundle, replayed.timers);
+        }
+        elements += fireEventTimeTimers(context, registry);
+      }
+    } finally {
+      registry.cleanup();
+      context.cleanup();
+      metricsExecutor.shutdown();
+    }
+    return elements;
+  }
+
+  /**
+   * Delivers the event time timers of the step which have fired at its current input watermark,
+   * including those set by the delivered timers, returning the number of elements evaluated.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private long fireEventTimeTimers(EvaluationContext context, TransformEvaluatorRegistry registry)
+      throws Exception {
+    PCollection<?> input = Iterables.getOnlyElement(step.getMainInputs().values());
+    long elements = 0L;
+    Map<StructuralKey<?>, List<TimerData>> firedTimers;
+    while (!(firedTimers = context.extractFiredEventTimeTimers(step)).isEmpty()) {
+      for (Map.Entry<StructuralKey<?>, List<TimerData>> keyTimers : firedTimers.entrySet()) {
+        KeyedWorkItem<?, Object> work =
+            KeyedWorkItems.timersWorkItem(keyTimers.getKey().getKey(), keyTimers.getValue());
+        CommittedBundle<?> bundle =
+            context
+                .createKeyedBundle(keyTimers.getKey(), (PCollection) input)
+                .add(WindowedValue.valueInGlobalWindow(work))
+                .commit(context.now());
+        elements += evaluate(context, registry, bundle, keyTimers.getValue());
+      }
+    }
+    return elements;
+  }
+
+  private <T> long evaluate(
+      EvaluationContext context,
+      TransformEvaluatorRegistry registry,
+      CommittedBundle<T> bundle,
+      List<TimerData> timers)
+      throws Exception {
+    TransformEvaluator<T> evaluator = registry.forApplication(step, bundle);
+    if (evaluator == null) {
+      return 0L;
+    }
+    long elements = 0L;
+    for (WindowedValue<T> element : bundle.getElements()) {
+      evaluator.processElement(element);
+      elements++;
+    }
+    context.handleResult(bundle, timers, evaluator.finishBundle());
+    return elements;
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static ReplayedBundle decode(AppliedPTransform<?, ?, ?> step, RecordedBundle recorded) {
+    PCollection<?> input = null;
+    for (PCollection<?> mainInput : step.getMainInputs().values()) {
+      if (mainInput.getName().equals(recorded.getInputName())) {
+        input = mainInput;
+      }
+    }
+    checkArgument(
+        input != null,
+        "Step %s has no input named %s. Was the pipeline changed since it was recorded?",
+        step.getFullName(),
+        recorded.getInputName());
+
+    byte @Nullable [] encodedKey = recorded.getKey();
+    Coder<?> keyCoder = encodedKey == null ? null : BundleRecorder.getKeyCoder(input.getCoder());
+    UncommittedBundle<Object> bundle =
+        keyCoder == null
+            ? ImmutableListBundleFactory.create().createBundle((PCollection) input)
+            : ImmutableListBundleFactory.create()
+                .createKeyedBundle(
+                    StructuralKey.of(decode((Coder) keyCoder, encodedKey), (Coder) keyCoder),
+                    (PCollection) input);
+    Coder<WindowedValue<?>> elementCoder = BundleRecorder.getElementCoder(input);
+    List<TimerData> timers = new ArrayList<>();
+    for (byte[] encodedElement : recorded.getElements()) {
+      WindowedValue<?> element = decode(elementCoder, encodedElement);
+      if (recorded.deliversTimers()) {
+        // Event time timers fire from the replayed input watermark rather than as recorded.
+        KeyedWorkItem<?, ?> work = (KeyedWorkItem<?, ?>) element.getValue();
+        List<TimerData> workTimers = new ArrayList<>();
+        for (TimerData timer : work.timersIterable()) {
+          if (!TimeDomain.EVENT_TIME.equals(timer.getDomain())) {
+            workTimers.add(timer);
+          }
+        }
+        if (workTimers.isEmpty() && Iterables.isEmpty(work.elementsIterable())) {
+          continue;
+        }
+        timers.addAll(workTimers);
+        element =
+            element.withValue(
+                KeyedWorkItems.workItem(
+                    work.key(), workTimers, (Iterable) work.elementsIterable()));
+      }
+      bundle.add((WindowedValue) element);
+    }
+    CommittedBundle<?> committed = bundle.commit(Instant.now());
+    return new ReplayedBundle(
+        Iterables.isEmpty(committed.getElements()) ? null : committed,
+        recorded.getInputWatermark(),
+        timers);
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static ReplayedViewContents decode(
+      PCollectionView<?> view, RecordedViewContents recorded) {
+    BoundedWindow window =
+        decode((Coder<BoundedWindow>) BundleRecorder.getWindowCoder(view), recorded.getWindow());
+    Coder<WindowedValue<?>> valueCoder = BundleRecorder.getValueCoder(view);
+    List<WindowedValue<?>> values = new ArrayList<>(recorded.getValues().size());
+    for (byte[] value : recorded.getValues()) {
+      values.add(decode(valueCoder, value));
+    }
+    return new ReplayedViewContents(view, window, values);
+  }
+
+  private static <T> T decode(Coder<T> coder, byte[] encoded) {
+    try {
+      return CoderUtils.decodeFromByteArray(coder, encoded);
+    } catch (CoderException e) {
+      throw new IllegalArgumentException(
+          String.format("Unable to decode a recorded value with coder %s", coder), e);
+    }
+  }
+
+  /**
+   * A decoded input bundle of the step, the timers it delivers, and the input watermark of the step
+   * when it was committed. The bundle is absent if it only delivered event time timers.
+   */
+  private static class ReplayedBundle {
+    private final @Nullable CommittedBundle<?> bundle;
+    private final Instant inputWatermark;
+    private final List<TimerData> timers;
+
+    private ReplayedBundle(
+        @Nullable CommittedBundle<?> bundle, Instant inputWatermark, List<TimerData> timers) {
+      this.bundle = bundle;
+      this.inputWatermark = inputWatermark;
+      this.timers = timers;
+    }
+  }
+
+  /** The decoded contents of a window of a side input of the step. */
+  private static class ReplayedViewContents {
+    private final PCollectionView<?> view;
+    private final BoundedWindow window;
+    private final List<WindowedValue<?>> values;
+
+    private ReplayedViewContents(
+        PCollectionView<?> view, BoundedWindow window, List<WindowedValue<?>> values) {
+      this.view = view;
+      this.window = window;
+      this.values = values;
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import org.apache.beam.sdk.metrics.MetricName;
+import org.apache.beam.sdk.util.HistogramData;
+import org.apache.beam.sdk.util.HistogramData.BucketType;
+
+/**
+ * The metrics the {@link DirectRunner} reports about its own execution of each step, in the {@link
+ * #NAMESPACE} namespace.
+ *
+ * <p>Counters and distributions are reported alongside the user metrics of the step. The latencies
+ * are additionally recorded in histograms, which can be logged when the pipeline terminates. The
+ * gauges of the executor are reported under the {@link #EXECUTOR_STEP} step name.
+ */
+final class DirectSystemMetrics {
+  static final String NAMESPACE = "DirectRunner";
+
+  /** A counter of the elements processed by the step. */
+  static final MetricName ELEMENTS = MetricName.named(NAMESPACE, "elements");
+
+  /** A distribution of the number of elements in the bundles processed by the step. */
+  static final MetricName BUNDLE_SIZE = MetricName.named(NAMESPACE, "bundleSize");
+
+  /** A distribution of the wall time spent evaluating each bundle, in microseconds. */
+  static final MetricName BUNDLE_PROCESSING_MICROS =
+      MetricName.named(NAMESPACE, "bundleProcessingMicros");
+
+  /**
+   * A distribution of the time each bundle waited to be evaluated once scheduled, in microseconds.
+   * Includes the time spent waiting for earlier bundles of the same key of a keyed step.
+   */
+  static final MetricName QUEUEING_DELAY_MICROS =
+      MetricName.named(NAMESPACE, "queueingDelayMicros");
+
+  /**
+   * A distribution of how far the input watermark of the step trailed processing time when each
+   * bundle was evaluated, in milliseconds. Not reported while the watermark is at either bound.
+   */
+  static final MetricName INPUT_WATERMARK_LAG_MILLIS =
+      MetricName.named(NAMESPACE, "inputWatermarkLagMillis");
+
+  /**
+   * The step name of the metrics which are reported about the executor of the pipeline as a whole
+   * rather than about a step.
+   */
+  static final String EXECUTOR_STEP = NAMESPACE;
+
+  /**
+   * A gauge of the percentage of the capacity of the workers of the executor which was spent
+   * evaluating bundles since the pipeline started.
+   */
+  static final MetricName WORKER_UTILIZATION_PERCENT =
+      MetricName.named(NAMESPACE, "workerUtilizationPercent");
+
+  /**
+   * A gauge of the number of bundles evaluated by a worker other than the one which queued them.
+   */
+  static final MetricName WORKER_STEALS = MetricName.named(NAMESPACE, "workerSteals");
+
+  private DirectSystemMetrics() {}
+
+  /** Returns a new histogram of latencies in microseconds. */
+  static HistogramData newLatencyHistogram() {
+    return new HistogramData(LogLinearBuckets.INSTANCE);
+  }
+
+  /**
+   * Buckets which divide each power of two into {@link #SUB_BUCKETS} linear buckets, which bounds
+   * the relative error of percentiles independently of their magnitude. Values below one fall into
+   * the first bucket.
+   */
+  private static final class LogLinearBuckets implements BucketType {
+    private static final LogLinearBuckets INSTANCE = new LogLinearBuckets();
+    private static final int SUB_BUCKETS = 8;
+    private static final int MAX_EXPONENT = 40;
+
+    @Override
+    public double getRangeFrom() {
+      return 0;
+    }
+
+    @Override
+    public double getRangeTo() {
+      return Math.scalb(1.0, MAX_EXPONENT);
+    }
+
+    @Override
+    public int getNumBuckets() {
+      return 1 + MAX_EXPONENT * SUB_BUCKETS;
+    }
+
+    @Override
+    public int getBucketIndex(double value) {
+      if (value < 1) {
+        return 0;
+      }
+      int exponent = Math.getExponent(value);
+      int subBucket = (int) ((Math.scalb(value, -exponent) - 1) * SUB_BUCKETS);
+      return 1 + exponent * SUB_BUCKETS + subBucket;
+    }
+
+    @Override
+    public double getBucketSize(int index) {
+      if (index == 0) {
+        return 1;
+      }
+      return Math.scalb(1.0, (index - 1) / SUB_BUCKETS) / SUB_BUCKETS;
+    }
+
+    @Override
+    public double getAccumulatedBucketSize(int endIndex) {
+      if (endIndex == 0) {
+        return 0;
+      }
+      int exponent = (endIndex - 1) / SUB_BUCKETS;
+      int subBucket = (endIndex - 1) % SUB_BUCKETS;
+      return Math.scalb(1.0 + (double) subBucket / SUB_BUCKETS, exponent);
+    }
+
+    private Object readResolve() {
+      return INSTANCE;
+    }
+  }
+}
@@ -23,15 +23,20 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import org.apache.beam.runners.core.construction.PTransformTranslation;
 import org.apache.beam.runners.core.metrics.MetricUpdates;
 import org.apache.beam.runners.core.metrics.MetricsContainerImpl;
+import org.apache.beam.sdk.metrics.MetricKey;
+import org.apache.beam.sdk.metrics.MetricName;
 import org.apache.beam.sdk.metrics.MetricsEnvironment;
 import org.apache.beam.sdk.runners.AppliedPTransform;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.util.WindowedValue;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.MoreObjects;
 import org.checkerframework.checker.nullness.qual.Nullable;
+import org.joda.time.Instant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -88,6 +93,9 @@ class DirectTransformExecutor<T> implements TransformExecutor {
   private final TransformExecutorService transformEvaluationState;
   private final EvaluationContext context;
 
+  /** When this executor was created, which is immediately before it is scheduled. */
+  private final long createdNanos;
+
   @VisibleForTesting
   DirectTransformExecutor(
       EvaluationContext context,
@@ -107,12 +115,19 @@ class DirectTransformExecutor<T> implements TransformExecutor {
 
     this.transformEvaluationState = transformEvaluationState;
     this.context = context;
+    this.createdNanos = System.nanoTime();
   }
 
   @Override
   public void run() {
+    long startNanos = System.nanoTime();
     MetricsContainerImpl metricsContainer = new MetricsContainerImpl(transform.getFullName());
     try (Closeable metricsScope = MetricsEnvironment.scopedMetricsContainer(metricsContainer)) {
+      recordLatency(
+          metricsContainer,
+          DirectSystemMetrics.QUEUEING_DELAY_MICROS,
+          TimeUnit.NANOSECONDS.toMicros(startNanos - createdNanos));
+      recordInputWatermarkLag(metricsContainer);
       Collection<ModelEnforcement<T>> enforcements = new ArrayList<>();
       for (ModelEnforcementFactory enforcementFactory : modelEnforcements) {
         ModelEnforcement<T> enforcement = enforcementFactory.forBundle(inputBundle, transform);
@@ -128,7 +143,7 @@ class DirectTransformExecutor<T> implements TransformExecutor {
 
       processElements(evaluator, metricsContainer, enforcements);
 
-      finishBundle(evaluator, metricsContainer, enforcements);
+      finishBundle(evaluator, metricsContainer, enforcements, startNanos);
     } catch (Exception e) {
       onComplete.handleException(inputBundle, e);
       if (e instanceof RuntimeException) {
@@ -157,7 +172,9 @@ class DirectTransformExecutor<T> implements TransformExecutor {
       Collection<ModelEnforcement<T>> enforcements)
       throws Exception {
     if (inputBundle != null) {
+      long elements = 0L;
       for (WindowedValue<T> value : inputBundle.getElements()) {
+        elements++;
         for (ModelEnforcement<T> enforcement : enforcements) {
           enforcement.beforeElement(value);
         }
@@ -175,6 +192,8 @@ class DirectTransformExecutor<T> implements TransformExecutor {
           enforcement.afterElement(value);
         }
       }
+      metricsContainer.getCounter(DirectSystemMetrics.ELEMENTS).inc(elements);
+      metricsContainer.getDistribution(DirectSystemMetrics.BUNDLE_SIZE).update(elements);
     }
   }
 
@@ -187,14 +206,42 @@ class DirectTransformExecutor<T> implements TransformExecutor {
   private TransformResult<T> finishBundle(
       TransformEvaluator<T> evaluator,
       MetricsContainerImpl metricsContainer,
-      Collection<ModelEnforcement<T>> enforcements)
+      Collection<ModelEnforcement<T>> enforcements,
+      long startNanos)
       throws Exception {
-    TransformResult<T> result =
-        evaluator.finishBundle().withLogicalMetricUpdates(metricsContainer.getCumulative());
+    TransformResult<T> result = evaluator.finishBundle();
+    recordLatency(
+        metricsContainer,
+        DirectSystemMetrics.BUNDLE_PROCESSING_MICROS,
+        TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    // Evaluators of fused steps report the logical metrics of those steps in their result.
+    result =
+        result.withLogicalMetricUpdates(
+            DirectMetrics.concat(
+                result.getLogicalMetricUpdates(), metricsContainer.getCumulative()));
     CommittedResult outputs = onComplete.handleResult(inputBundle, result);
     for (ModelEnforcement<T> enforcement : enforcements) {
       enforcement.afterFinish(inputBundle, result, outputs.getOutputs());
     }
     return result;
   }
+
+  /**
+   * Reports the latency both as a distribution of the step and in the latency histograms of the
+   * {@link DirectMetrics}.
+   */
+  private void recordLatency(MetricsContainerImpl metricsContainer, MetricName name, long micros) {
+    metricsContainer.getDistribution(name).update(micros);
+    context.getMetrics().recordLatency(MetricKey.create(transform.getFullName(), name), micros);
+  }
+
+  private void recordInputWatermarkLag(MetricsContainerImpl metricsContainer) {
+    Instant inputWatermark = context.getWatermarks(transform).getInputWatermark();
+    if (inputWatermark.isAfter(BoundedWindow.TIMESTAMP_MIN_VALUE)
+        && inputWatermark.isBefore(BoundedWindow.TIMESTAMP_MAX_VALUE)) {
+      metricsContainer
+          .getDistribution(DirectSystemMetrics.INPUT_WATERMARK_LAG_MILLIS)
+          .update(context.now().getMillis() - inputWatermark.getMillis());
+    }
+  }
 }
@@ -19,9 +19,11 @@ package org.apache.beam.runners.direct;
 
 import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkNotNull;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -43,6 +45,7 @@ import org.apache.beam.sdk.runners.AppliedPTransform;
 import org.apache.beam.sdk.transforms.PTransform;
 import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.transforms.windowing.Trigger;
+import org.apache.beam.sdk.util.WindowedValue;
 import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.PCollectionView;
 import org.apache.beam.sdk.values.PValue;
@@ -51,6 +54,7 @@ import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.Visi
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.MoreExecutors;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.joda.time.Instant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -99,17 +103,39 @@ class EvaluationContext {
 
   private final SideInputContainer sideInputContainer;
 
+  /** The side inputs read by each step which reads any, computed when first required. */
+  private final ConcurrentMap<AppliedPTransform<?, ?, ?>, Collection<PCollectionView<?>>>
+      sideInputsByStep;
+
   private final DirectMetrics metrics;
 
   private final Set<PValue> keyedPValues;
 
+  /** Bounds the memory used by state, if configured. */
+  private final @Nullable StateSpiller stateSpiller;
+
+  /** Records the input bundles of each step, if configured. */
+  private final @Nullable BundleRecorder recorder;
+
   public static EvaluationContext create(
       Clock clock,
       BundleFactory bundleFactory,
       DirectGraph graph,
       Set<PValue> keyedPValues,
       ExecutorService executorService) {
-    return new EvaluationContext(clock, bundleFactory, graph, keyedPValues, executorService);
+    return create(clock, bundleFactory, graph, keyedPValues, executorService, null, null);
+  }
+
+  public static EvaluationContext create(
+      Clock clock,
+      BundleFactory bundleFactory,
+      DirectGraph graph,
+      Set<PValue> keyedPValues,
+      ExecutorService executorService,
+      @Nullable StateSpiller stateSpiller,
+      @Nullable BundleRecorder recorder) {
+    return new EvaluationContext(
+        clock, bundleFactory, graph, keyedPValues, executorService, stateSpiller, recorder);
   }
 
   private EvaluationContext(
@@ -117,14 +143,19 @@ class EvaluationContext {
       BundleFactory bundleFactory,
       DirectGraph graph,
       Set<PValue> keyedPValues,
-      ExecutorService executorService) {
+      ExecutorService executorService,
+      @Nullable StateSpiller stateSpiller,
+      @Nullable BundleRecorder recorder) {
     this.clock = clock;
     this.bundleFactory = checkNotNull(bundleFactory);
     this.graph = checkNotNull(graph);
     this.keyedPValues = keyedPValues;
+    this.stateSpiller = stateSpiller;
+    this.recorder = recorder;
 
     this.watermarkManager = WatermarkManager.create(clock, graph, AppliedPTransform::getFullName);
-    this.sideInputContainer = SideInputContainer.create(this, graph.getViews());
+    this.sideInputContainer = SideInputContainer.create(this, graph.getViews(), recorder);
+    this.sideInputsByStep = new ConcurrentHashMap<>();
 
     this.applicationStateInternals = new ConcurrentHashMap<>();
     this.metrics = new DirectMetrics(executorService);
@@ -155,6 +186,14 @@ class EvaluationContext {
       CommittedBundle<?> completedBundle,
       Iterable<TimerData> completedTimers,
       TransformResult<?> result) {
+    if (recorder != null && completedBundle != null && completedBundle.getPCollection() != null) {
+      recorder.record(
+          result.getTransform().getFullName(),
+          completedBundle,
+          keyedPValues.contains(completedBundle.getPCollection()),
+          watermarkManager.getWatermarks(result.getTransform()).getInputWatermark(),
+          !Iterables.isEmpty(completedTimers));
+    }
 
     Iterable<? extends CommittedBundle<?>> committedBundles =
         commitBundles(result.getOutputBundles());
@@ -347,7 +386,25 @@ class EvaluationContext {
         clock,
         key,
         (CopyOnAccessInMemoryStateInternals) applicationStateInternals.get(stepAndKey),
-        watermarkManager.getWatermarks(application));
+        watermarkManager.getWatermarks(application),
+        stateSpiller);
+  }
+
+  /**
+   * Releases the resources held for the execution of the pipeline, such as spilled state, and
+   * completes the recording of input bundles.
+   */
+  public void cleanup() throws IOException {
+    if (stateSpiller != null) {
+      stateSpiller.close();
+    }
+    if (recorder != null) {
+      recorder.close();
+    }
+  }
+
+  DirectGraph getGraph() {
+    return graph;
   }
 
   /** Get the Step Name for the provided application. */
@@ -374,6 +431,76 @@ class EvaluationContext {
     return sideInputContainer.createReaderForViews(sideInputs);
   }
 
+  /**
+   * Runs the provided callback once the windows of every side input of the provided transform that
+   * the provided elements would read are ready. If they already are, including if the transform
+   * reads no side inputs, the callback is run immediately.
+   *
+   * <p>Used to retry elements which were pushed back because a side input was not ready only when
+   * the side input they are blocked on is updated, rather than whenever any output is produced.
+   */
+  public void whenSideInputsReady(
+      AppliedPTransform<?, ?, ?> application,
+      Iterable<? extends WindowedValue<?>> elements,
+      Runnable callback) {
+    Collection<PCollectionView<?>> sideInputs =
+        sideInputsByStep.computeIfAbsent(application, step -> getSideInputs(graph, step));
+    Set<PCollectionViewWindow<?>> viewWindows = new HashSet<>();
+    if (!sideInputs.isEmpty()) {
+      for (WindowedValue<?> element : elements) {
+        for (BoundedWindow window : element.getWindows()) {
+          for (PCollectionView<?> view : sideInputs) {
+            viewWindows.add(
+                PCollectionViewWindow.of(
+                    view, view.getWindowMappingFn().getSideInputWindow(window)));
+          }
+        }
+      }
+    }
+    sideInputContainer.whenReady(viewWindows, callback);
+  }
+
+  /** Returns the views whose contents are additional inputs of the provided transform. */
+  static Collection<PCollectionView<?>> getSideInputs(
+      DirectGraph graph, AppliedPTransform<?, ?, ?> application) {
+    Set<PCollection<?>> additionalInputs = new HashSet<>(application.getInputs().values());
+    additionalInputs.removeAll(application.getMainInputs().values());
+    ImmutableList.Builder<PCollectionView<?>> sideInputs = ImmutableList.builder();
+    for (PCollectionView<?> view : graph.getViews()) {
+      if (additionalInputs.contains(view.getPCollection())) {
+        sideInputs.add(view);
+      }
+    }
+    return sideInputs.build();
+  }
+
+  /**
+   * Sets the contents of the provided window of the provided view to contents recorded by a {@link
+   * BundleRecorder}.
+   */
+  void restoreViewContents(
+      PCollectionView<?> view, BoundedWindow window, Collection<WindowedValue<?>> values) {
+    sideInputContainer.restore(view, window, values);
+  }
+
+  /**
+   * Advances the input watermark of the provided step to at least the provided time, regardless of
+   * the watermarks of its inputs. Used to replay the recorded inputs of a step whose producers are
+   * not executed.
+   */
+  void advanceInputWatermark(AppliedPTransform<?, ?, ?> application, Instant inputWatermark) {
+    watermarkManager.advanceInputWatermark(application, inputWatermark);
+  }
+
+  /**
+   * Extracts the event time timers of the provided step which fired at its current input watermark,
+   * by key.
+   */
+  Map<StructuralKey<?>, List<TimerData>> extractFiredEventTimeTimers(
+      AppliedPTransform<?, ?, ?> application) {
+    return watermarkManager.extractFiredEventTimeTimers(application);
+  }
+
   /** Returns the metrics container for this pipeline. */
   public DirectMetrics getMetrics() {
     return metrics;
@@ -428,4 +555,8 @@ class EvaluationContext {
   Clock getClock() {
     return clock;
   }
+
+  TransformWatermarks getWatermarks(AppliedPTransform<?, ?, ?> transform) {
+    return watermarkManager.getWatermarks(transform);
+  }
 }
@@ -20,12 +20,12 @@ package org.apache.beam.runners.direct;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
@@ -35,6 +35,7 @@ import org.apache.beam.runners.local.ExecutionDriver.DriverState;
 import org.apache.beam.runners.local.PipelineMessageReceiver;
 import org.apache.beam.sdk.Pipeline;
 import org.apache.beam.sdk.PipelineResult.State;
+import org.apache.beam.sdk.metrics.MetricKey;
 import org.apache.beam.sdk.runners.AppliedPTransform;
 import org.apache.beam.sdk.util.UserCodeException;
 import org.apache.beam.sdk.values.PCollection;
@@ -45,8 +46,6 @@ import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.LoadingCac
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.RemovalListener;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableMap;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Queues;
-import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.MoreExecutors;
-import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.joda.time.Duration;
 import org.joda.time.Instant;
@@ -66,7 +65,7 @@ final class ExecutorServiceParallelExecutor
   private static final Logger LOG = LoggerFactory.getLogger(ExecutorServiceParallelExecutor.class);
 
   private final int targetParallelism;
-  private final ExecutorService executorService;
+  private final WorkStealingExecutorService executorService;
 
   private final TransformEvaluatorRegistry registry;
 
@@ -100,15 +99,10 @@ final class ExecutorServiceParallelExecutor
       ExecutorService metricsExecutor) {
     this.targetParallelism = targetParallelism;
     this.metricsExecutor = metricsExecutor;
-    // Don't use Daemon threads for workers. The Pipeline should continue to execute even if there
-    // are no other active threads (for example, because waitUntilFinish was not called)
+    // Bundles scheduled by a worker, such as those of consumers of the bundle it just evaluated,
+    // stay queued to that worker unless another worker is idle and steals them.
     this.executorService =
-        Executors.newFixedThreadPool(
-            targetParallelism,
-            new ThreadFactoryBuilder()
-                .setThreadFactory(MoreExecutors.platformThreadFactory())
-                .setNameFormat("direct-runner-worker")
-                .build());
+        WorkStealingExecutorService.create(targetParallelism, "direct-runner-worker");
     this.registry = registry;
     this.evaluationContext = context;
 
@@ -173,6 +167,7 @@ final class ExecutorServiceParallelExecutor
         new Runnable() {
           @Override
           public void run() {
+            reportExecutorMetrics();
             DriverState drive = executionDriver.drive();
             if (drive.isTerminal()) {
               State newPipelineState = State.UNKNOWN;
@@ -198,6 +193,18 @@ final class ExecutorServiceParallelExecutor
         });
   }
 
+  /** Reports the current utilization of the workers as {@link DirectSystemMetrics} gauges. */
+  private void reportExecutorMetrics() {
+    DirectMetrics metrics = evaluationContext.getMetrics();
+    metrics.setGauge(
+        MetricKey.create(
+            DirectSystemMetrics.EXECUTOR_STEP, DirectSystemMetrics.WORKER_UTILIZATION_PERCENT),
+        Math.round(executorService.getUtilization() * 100));
+    metrics.setGauge(
+        MetricKey.create(DirectSystemMetrics.EXECUTOR_STEP, DirectSystemMetrics.WORKER_STEALS),
+        executorService.getStealCount());
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public void process(
@@ -207,6 +214,22 @@ final class ExecutorServiceParallelExecutor
     evaluateBundle(consumer, bundle, onComplete);
   }
 
+  @Override
+  public void processKeyedBatch(
+      List<CommittedBundle<?>> bundles,
+      AppliedPTransform<?, ?, ?> consumer,
+      CompletionCallback onComplete) {
+    // No other bundle of the consumer is evaluated until the batch completes, so the bundles of
+    // the batch need not be serialized with the other bundles of their keys.
+    List<TransformExecutor> batch = new ArrayList<>(bundles.size());
+    for (CommittedBundle<?> bundle : bundles) {
+      batch.add(executorFactory.create(bundle, consumer, onComplete, parallelExecutorService));
+    }
+    if (!pipelineState.get().isTerminal()) {
+      parallelExecutorService.schedule(() -> batch.forEach(TransformExecutor::run));
+    }
+  }
+
   private <T> void evaluateBundle(
       final AppliedPTransform<?, ?, ?> transform,
       final CommittedBundle<T> bundle,
@@ -303,6 +326,8 @@ final class ExecutorServiceParallelExecutor
       return;
     }
     LOG.debug("Pipeline has terminated. Shutting down.");
+    reportExecutorMetrics();
+    LOG.debug("Scheduler statistics at shutdown: {}", executorService);
 
     final Collection<Exception> errors = new ArrayList<>();
     // Stop accepting new work before shutting down the executor. This ensures that thread don't try
@@ -337,6 +362,11 @@ final class ExecutorServiceParallelExecutor
     } catch (final Exception e) {
       errors.add(e);
     }
+    try {
+      evaluationContext.cleanup();
+    } catch (final Exception e) {
+      errors.add(e);
+    }
     pipelineState.compareAndSet(State.RUNNING, newState); // ensure we hit a terminal node
     if (!errors.isEmpty()) {
       final IllegalStateException exception =
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.beam.runners.core.InMemoryBundleFinalizer.Finalization;
+import org.apache.beam.runners.core.construction.PTransformTranslation;
+import org.apache.beam.runners.core.construction.ParDoTranslation;
+import org.apache.beam.runners.core.metrics.MetricUpdates;
+import org.apache.beam.runners.core.metrics.MetricsContainerImpl;
+import org.apache.beam.runners.direct.CommittedResult.OutputType;
+import org.apache.beam.sdk.metrics.MetricsEnvironment;
+import org.apache.beam.sdk.runners.AppliedPTransform;
+import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.util.UserCodeException;
+import org.apache.beam.sdk.util.WindowedValue;
+import org.apache.beam.sdk.values.PCollection;
+import org.joda.time.Instant;
+
+/**
+ * A {@link TransformEvaluator} for a {@link ParDo} whose consuming {@link ParDo ParDos} have been
+ * fused into it, as chosen by {@link #fusedConsumers(DirectGraph)}.
+ *
+ * <p>Elements output to a fused {@link PCollection} are passed by reference directly to the
+ * evaluator of its consumer, so no bundle of the fused {@link PCollection} is ever committed and
+ * the consumer is never scheduled on its own. The outputs of the consumers are committed as part of
+ * the result of the producing {@link ParDo}, which holds the watermarks of the consumers until they
+ * are.
+ */
+@SuppressWarnings({
+  "rawtypes", // TODO(https://github.com/apache/beam/issues/20447)
+  "nullness" // TODO(https://github.com/apache/beam/issues/20497)
+})
+class FusedParDoEvaluator<InputT> implements TransformEvaluator<InputT> {
+  /**
+   * Returns the {@link PCollection PCollections} which can be fused into their producer, mapped to
+   * their consumer.
+   *
+   * <p>A {@link PCollection} can be fused if it is produced by a {@link ParDo} and consumed only by
+   * a single {@link ParDo} without side inputs. Stateful and splittable {@link ParDo ParDos} have
+   * been replaced by other primitives by the time the graph is built and are never fused.
+   */
+  static Map<PCollection<?>, AppliedPTransform<?, ?, ?>> fusedConsumers(DirectGraph graph) {
+    Map<PCollection<?>, AppliedPTransform<?, ?, ?>> fusedConsumers = new HashMap<>();
+    for (AppliedPTransform<?, ?, ?> producer : graph.getExecutables()) {
+      if (!isParDo(producer)) {
+        continue;
+      }
+      for (PCollection<?> output : producer.getOutputs().values()) {
+        List<AppliedPTransform<?, ?, ?>> consumers = graph.getPerElementConsumers(output);
+        if (consumers.size() == 1
+            && isParDo(consumers.get(0))
+            && getSideInputCount(consumers.get(0)) == 0) {
+          fusedConsumers.put(output, consumers.get(0));
+        }
+      }
+    }
+    return fusedConsumers;
+  }
+
+  private static boolean isParDo(AppliedPTransform<?, ?, ?> application) {
+    return PTransformTranslation.PAR_DO_TRANSFORM_URN.equals(
+        PTransformTranslation.urnForTransformOrNull(application.getTransform()));
+  }
+
+  private static int getSideInputCount(AppliedPTransform<?, ?, ?> application) {
+    try {
+      return ParDoTranslation.getSideInputs(application).size();
+    } catch (IOException e) {
+      throw new IllegalArgumentException(
+          String.format("Unable to read the side inputs of %s", application.getFullName()), e);
+    }
+  }
+
+  public static <InputT> FusedParDoEvaluator<InputT> create(
+      EvaluationContext evaluationContext,
+      CommittedBundle<?> inputBundle,
+      TransformEvaluator<InputT> producer,
+      List<FusedConsumer<?>> consumers) {
+    return new FusedParDoEvaluator<>(evaluationContext, inputBundle, producer, consumers);
+  }
+
+  private final EvaluationContext evaluationContext;
+  private final CommittedBundle<?> inputBundle;
+  private final TransformEvaluator<InputT> producer;
+  private final List<FusedConsumer<?>> consumers;
+
+  private FusedParDoEvaluator(
+      EvaluationContext evaluationContext,
+      CommittedBundle<?> inputBundle,
+      TransformEvaluator<InputT> producer,
+      List<FusedConsumer<?>> consumers) {
+    this.evaluationContext = evaluationContext;
+    this.inputBundle = inputBundle;
+    this.producer = producer;
+    this.consumers = consumers;
+  }
+
+  @Override
+  public void processElement(WindowedValue<InputT> element) throws Exception {
+    producer.processElement(element);
+  }
+
+  @Override
+  public TransformResult<InputT> finishBundle() throws Exception {
+    TransformResult<InputT> producerResult = producer.finishBundle();
+    List<UncommittedBundle<?>> outputs = new ArrayList<>();
+    List<Finalization> finalizations = new ArrayList<>(producerResult.getBundleFinalizations());
+    MetricUpdates consumerMetrics = MetricUpdates.EMPTY;
+    addCommittableOutputs(producerResult, outputs);
+    // Consumers are finished after their producers, which may output within finishBundle.
+    for (FusedConsumer<?> consumer : consumers) {
+      TransformResult<?> consumerResult = consumer.finishBundle();
+      addCommittableOutputs(consumerResult, outputs);
+      finalizations.addAll(consumerResult.getBundleFinalizations());
+      MetricUpdates cumulative = consumer.metricsContainer.getCumulative();
+      evaluationContext.getMetrics().commitPhysical(inputBundle, cumulative);
+      consumerMetrics = DirectMetrics.concat(consumerMetrics, cumulative);
+    }
+
+    StepTransformResult.Builder<InputT> resultBuilder =
+        StepTransformResult.<InputT>withHold(
+                producerResult.getTransform(), producerResult.getWatermarkHold())
+            .withState(producerResult.getState())
+            .withTimerUpdate(producerResult.getTimerUpdate())
+            .addUnprocessedElements(producerResult.getUnprocessedElements())
+            .withBundleFinalizations(finalizations)
+            .withMetricUpdates(
+                DirectMetrics.concat(producerResult.getLogicalMetricUpdates(), consumerMetrics))
+            .addOutput(outputs);
+    for (OutputType outputType : producerResult.getOutputTypes()) {
+      resultBuilder.withAdditionalOutput(outputType);
+    }
+    return resultBuilder.build();
+  }
+
+  private static void addCommittableOutputs(
+      TransformResult<?> result, List<UncommittedBundle<?>> outputs) {
+    for (UncommittedBundle<?> output : result.getOutputBundles()) {
+      if (!(output instanceof FusedConsumer)) {
+        outputs.add(output);
+      }
+    }
+  }
+
+  /**
+   * The evaluator of a {@link ParDo} fused into its producer. Acts as the bundle its producer
+   * outputs to, processing each element as it is added within the metrics scope of the consumer.
+   */
+  static class FusedConsumer<T> implements UncommittedBundle<T> {
+    private final PCollection<T> input;
+    private final TransformEvaluator<T> evaluator;
+    private final MetricsContainerImpl metricsContainer;
+
+    FusedConsumer(
+        AppliedPTransform<?, ?, ?> consumer,
+        PCollection<T> input,
+        TransformEvaluator<T> evaluator) {
+      this.input = input;
+      this.evaluator = evaluator;
+      this.metricsContainer = new MetricsContainerImpl(consumer.getFullName());
+    }
+
+    @Override
+    public PCollection<T> getPCollection() {
+      return input;
+    }
+
+    @Override
+    public UncommittedBundle<T> add(WindowedValue<T> element) {
+      try (Closeable metricsScope = MetricsEnvironment.scopedMetricsContainer(metricsContainer)) {
+        evaluator.processElement(element);
+        metricsContainer.getCounter(DirectSystemMetrics.ELEMENTS).inc();
+      } catch (Exception e) {
+        throw UserCodeException.wrap(e);
+      }
+      return this;
+    }
+
+    private TransformResult<T> finishBundle() throws Exception {
+      try (Closeable metricsScope = MetricsEnvironment.scopedMetricsContainer(metricsContainer)) {
+        return evaluator.finishBundle();
+      }
+    }
+
+    /** Elements of a fused {@link PCollection} are never committed. */
+    @Override
+    public CommittedBundle<T> commit(Instant synchronizedProcessingTime) {
+      throw new IllegalStateException(
+          String.format("Cannot commit the fused %s %s", PCollection.class.getSimpleName(), input));
+    }
+  }
+}
@@ -19,6 +19,7 @@ package org.apache.beam.runners.direct;
 
 import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -142,8 +143,49 @@ class ParDoEvaluator<InputT> implements TransformEvaluator<InputT> {
       DoFnSchemaInformation doFnSchemaInformation,
       Map<String, PCollectionView<?>> sideInputMapping,
       DoFnRunnerFactory<InputT, OutputT> runnerFactory) {
+    return create(
+        evaluationContext,
+        options,
+        stepContext,
+        application,
+        inputCoder,
+        windowingStrategy,
+        fn,
+        key,
+        sideInputs,
+        mainOutputTag,
+        additionalOutputTags,
+        outputs,
+        Collections.emptyMap(),
+        doFnSchemaInformation,
+        sideInputMapping,
+        runnerFactory);
+  }
+
+  /**
+   * Creates a {@link ParDoEvaluator} which outputs to the provided bundles for the tags within
+   * {@code fusedOutputBundles}, rather than to bundles created by the {@link EvaluationContext}.
+   */
+  public static <InputT, OutputT> ParDoEvaluator<InputT> create(
+      EvaluationContext evaluationContext,
+      PipelineOptions options,
+      DirectStepContext stepContext,
+      AppliedPTransform<?, ?, ?> application,
+      Coder<InputT> inputCoder,
+      WindowingStrategy<?, ? extends BoundedWindow> windowingStrategy,
+      DoFn<InputT, OutputT> fn,
+      StructuralKey<?> key,
+      List<PCollectionView<?>> sideInputs,
+      TupleTag<OutputT> mainOutputTag,
+      List<TupleTag<?>> additionalOutputTags,
+      Map<TupleTag<?>, PCollection<?>> outputs,
+      Map<TupleTag<?>, UncommittedBundle<?>> fusedOutputBundles,
+      DoFnSchemaInformation doFnSchemaInformation,
+      Map<String, PCollectionView<?>> sideInputMapping,
+      DoFnRunnerFactory<InputT, OutputT> runnerFactory) {
 
-    BundleOutputManager outputManager = createOutputManager(evaluationContext, key, outputs);
+    BundleOutputManager outputManager =
+        createOutputManager(evaluationContext, key, outputs, fusedOutputBundles);
 
     ReadyCheckingSideInputReader sideInputReader =
         evaluationContext.createSideInputReader(sideInputs);
@@ -182,9 +224,13 @@ class ParDoEvaluator<InputT> implements TransformEvaluator<InputT> {
   static BundleOutputManager createOutputManager(
       EvaluationContext evaluationContext,
       StructuralKey<?> key,
-      Map<TupleTag<?>, PCollection<?>> outputs) {
-    Map<TupleTag<?>, UncommittedBundle<?>> outputBundles = new HashMap<>();
+      Map<TupleTag<?>, PCollection<?>> outputs,
+      Map<TupleTag<?>, UncommittedBundle<?>> fusedOutputBundles) {
+    Map<TupleTag<?>, UncommittedBundle<?>> outputBundles = new HashMap<>(fusedOutputBundles);
     for (Map.Entry<TupleTag<?>, PCollection<?>> outputEntry : outputs.entrySet()) {
+      if (outputBundles.containsKey(outputEntry.getKey())) {
+        continue;
+      }
       // Just trust the context's decision as to whether the output should be keyed.
       // The logic for whether this ParDo is key-preserving and whether the input
       // is keyed lives elsewhere.
@@ -17,10 +17,14 @@
  */
 package org.apache.beam.runners.direct;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.apache.beam.runners.core.construction.ParDoTranslation;
 import org.apache.beam.runners.direct.DirectExecutionContext.DirectStepContext;
+import org.apache.beam.runners.direct.FusedParDoEvaluator.FusedConsumer;
 import org.apache.beam.runners.direct.ParDoEvaluator.DoFnRunnerFactory;
 import org.apache.beam.runners.local.StructuralKey;
 import org.apache.beam.sdk.options.PipelineOptions;
@@ -49,15 +53,31 @@ final class ParDoEvaluatorFactory<InputT, OutputT> implements TransformEvaluator
   private final EvaluationContext evaluationContext;
   private final PipelineOptions options;
   private final ParDoEvaluator.DoFnRunnerFactory<InputT, OutputT> runnerFactory;
+  private final Map<PCollection<?>, AppliedPTransform<?, ?, ?>> fusedConsumers;
 
   ParDoEvaluatorFactory(
       EvaluationContext evaluationContext,
       DoFnRunnerFactory<InputT, OutputT> runnerFactory,
       CacheLoader<AppliedPTransform<?, ?, ?>, DoFnLifecycleManager> doFnCacheLoader,
       PipelineOptions options) {
+    this(evaluationContext, runnerFactory, doFnCacheLoader, options, Collections.emptyMap());
+  }
+
+  /**
+   * Creates a factory whose evaluators process the elements output to the keys of {@code
+   * fusedConsumers} with the evaluators of their consumers, as described in {@link
+   * FusedParDoEvaluator}.
+   */
+  ParDoEvaluatorFactory(
+      EvaluationContext evaluationContext,
+      DoFnRunnerFactory<InputT, OutputT> runnerFactory,
+      CacheLoader<AppliedPTransform<?, ?, ?>, DoFnLifecycleManager> doFnCacheLoader,
+      PipelineOptions options,
+      Map<PCollection<?>, AppliedPTransform<?, ?, ?>> fusedConsumers) {
     this.evaluationContext = evaluationContext;
     this.options = options;
     this.runnerFactory = runnerFactory;
+    this.fusedConsumers = fusedConsumers;
     fnClones = CacheBuilder.newBuilder().build(doFnCacheLoader);
   }
 
@@ -74,20 +94,58 @@ final class ParDoEvaluatorFactory<InputT, OutputT> implements TransformEvaluator
   @Override
   public <T> TransformEvaluator<T> forApplication(
       AppliedPTransform<?, ?, ?> application, CommittedBundle<?> inputBundle) throws Exception {
-
-    @SuppressWarnings({"unchecked", "rawtypes"})
+    List<FusedConsumer<?>> fusedSteps = new ArrayList<>();
     TransformEvaluator<T> evaluator =
-        (TransformEvaluator<T>)
-            createEvaluator(
-                (AppliedPTransform) application,
-                (PCollection<InputT>) inputBundle.getPCollection(),
-                inputBundle.getKey(),
-                ParDoTranslation.getSideInputs(application),
-                (TupleTag<OutputT>) ParDoTranslation.getMainOutputTag(application),
-                ParDoTranslation.getAdditionalOutputTags(application).getAll(),
-                ParDoTranslation.getSchemaInformation(application),
-                ParDoTranslation.getSideInputMapping(application));
-    return evaluator;
+        createFusingEvaluator(
+            application, inputBundle.getPCollection(), inputBundle.getKey(), fusedSteps);
+    if (fusedSteps.isEmpty()) {
+      return evaluator;
+    }
+    return FusedParDoEvaluator.create(evaluationContext, inputBundle, evaluator, fusedSteps);
+  }
+
+  /**
+   * Creates an evaluator for the application which outputs directly to the evaluators of its fused
+   * consumers, and those in turn to their fused consumers. The consumers are added to {@code
+   * fusedSteps} in the order in which their bundles must be finished.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private <T> TransformEvaluator<T> createFusingEvaluator(
+      AppliedPTransform<?, ?, ?> application,
+      PCollection<?> mainInput,
+      StructuralKey<?> key,
+      List<FusedConsumer<?>> fusedSteps)
+      throws Exception {
+    Map<TupleTag<?>, UncommittedBundle<?>> fusedOutputBundles = new HashMap<>();
+    for (Map.Entry<TupleTag<?>, PCollection<?>> output : application.getOutputs().entrySet()) {
+      AppliedPTransform<?, ?, ?> consumer = fusedConsumers.get(output.getValue());
+      if (consumer == null) {
+        continue;
+      }
+      // The key of the bundle the consumer would have been scheduled with.
+      StructuralKey<?> consumerKey =
+          evaluationContext.isKeyed(output.getValue()) ? key : StructuralKey.empty();
+      List<FusedConsumer<?>> consumerSteps = new ArrayList<>();
+      FusedConsumer<?> fusedConsumer =
+          new FusedConsumer(
+              consumer,
+              output.getValue(),
+              createFusingEvaluator(consumer, output.getValue(), consumerKey, consumerSteps));
+      fusedSteps.add(fusedConsumer);
+      fusedSteps.addAll(consumerSteps);
+      fusedOutputBundles.put(output.getKey(), fusedConsumer);
+    }
+    return (TransformEvaluator<T>)
+        createEvaluator(
+            (AppliedPTransform) application,
+            (PCollection<InputT>) mainInput,
+            key,
+            ParDoTranslation.getSideInputs(application),
+            (TupleTag<OutputT>) ParDoTranslation.getMainOutputTag(application),
+            ParDoTranslation.getAdditionalOutputTags(application).getAll(),
+            ParDoTranslation.getSchemaInformation(application),
+            ParDoTranslation.getSideInputMapping(application),
+            fusedOutputBundles);
   }
 
   @Override
@@ -113,6 +171,29 @@ final class ParDoEvaluatorFactory<InputT, OutputT> implements TransformEvaluator
       DoFnSchemaInformation doFnSchemaInformation,
       Map<String, PCollectionView<?>> sideInputMapping)
       throws Exception {
+    return createEvaluator(
+        application,
+        mainInput,
+        inputBundleKey,
+        sideInputs,
+        mainOutputTag,
+        additionalOutputTags,
+        doFnSchemaInformation,
+        sideInputMapping,
+        Collections.emptyMap());
+  }
+
+  private DoFnLifecycleManagerRemovingTransformEvaluator<InputT> createEvaluator(
+      AppliedPTransform<PCollection<InputT>, PCollectionTuple, ?> application,
+      PCollection<InputT> mainInput,
+      StructuralKey<?> inputBundleKey,
+      List<PCollectionView<?>> sideInputs,
+      TupleTag<OutputT> mainOutputTag,
+      List<TupleTag<?>> additionalOutputTags,
+      DoFnSchemaInformation doFnSchemaInformation,
+      Map<String, PCollectionView<?>> sideInputMapping,
+      Map<TupleTag<?>, UncommittedBundle<?>> fusedOutputBundles)
+      throws Exception {
     String stepName = evaluationContext.getStepName(application);
     DirectStepContext stepContext =
         evaluationContext.getExecutionContext(application, inputBundleKey).getStepContext(stepName);
@@ -131,7 +212,8 @@ final class ParDoEvaluatorFactory<InputT, OutputT> implements TransformEvaluator
             fnManager.get(),
             doFnSchemaInformation,
             sideInputMapping,
-            fnManager),
+            fnManager,
+            fusedOutputBundles),
         fnManager);
   }
 
@@ -148,6 +230,35 @@ final class ParDoEvaluatorFactory<InputT, OutputT> implements TransformEvaluator
       Map<String, PCollectionView<?>> sideInputMapping,
       DoFnLifecycleManager fnManager)
       throws Exception {
+    return createParDoEvaluator(
+        application,
+        key,
+        mainInput,
+        sideInputs,
+        mainOutputTag,
+        additionalOutputTags,
+        stepContext,
+        fn,
+        doFnSchemaInformation,
+        sideInputMapping,
+        fnManager,
+        Collections.emptyMap());
+  }
+
+  private ParDoEvaluator<InputT> createParDoEvaluator(
+      AppliedPTransform<PCollection<InputT>, PCollectionTuple, ?> application,
+      StructuralKey<?> key,
+      PCollection<InputT> mainInput,
+      List<PCollectionView<?>> sideInputs,
+      TupleTag<OutputT> mainOutputTag,
+      List<TupleTag<?>> additionalOutputTags,
+      DirectStepContext stepContext,
+      DoFn<InputT, OutputT> fn,
+      DoFnSchemaInformation doFnSchemaInformation,
+      Map<String, PCollectionView<?>> sideInputMapping,
+      DoFnLifecycleManager fnManager,
+      Map<TupleTag<?>, UncommittedBundle<?>> fusedOutputBundles)
+      throws Exception {
     try {
       return ParDoEvaluator.create(
           evaluationContext,
@@ -162,6 +273,7 @@ final class ParDoEvaluatorFactory<InputT, OutputT> implements TransformEvaluator
           mainOutputTag,
           additionalOutputTags,
           application.getOutputs(),
+          fusedOutputBundles,
           doFnSchemaInformation,
           sideInputMapping,
           runnerFactory);
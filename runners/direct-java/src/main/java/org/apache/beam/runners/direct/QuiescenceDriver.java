@@ -21,9 +21,13 @@ import com.google.auto.value.AutoValue;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -33,11 +37,13 @@ import org.apache.beam.runners.core.TimerInternals.TimerData;
 import org.apache.beam.runners.direct.WatermarkManager.FiredTimers;
 import org.apache.beam.runners.local.ExecutionDriver;
 import org.apache.beam.runners.local.PipelineMessageReceiver;
+import org.apache.beam.runners.local.StructuralKey;
 import org.apache.beam.sdk.runners.AppliedPTransform;
 import org.apache.beam.sdk.util.WindowedValue;
 import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.PCollectionView;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Lists;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Maps;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,6 +51,10 @@ import org.slf4j.LoggerFactory;
 /**
  * Pushes additional work onto a {@link BundleProcessor} based on the fact that a pipeline has
  * quiesced.
+ *
+ * <p>The timers of a step which fire together are delivered in batches of up to {@link
+ * #MAX_TIMER_BATCH_KEYS} keys, each of which is evaluated as a single unit of work. No other
+ * bundles of the step are evaluated while a batch of its timers is.
  */
 @SuppressWarnings({
   "rawtypes", // TODO(https://github.com/apache/beam/issues/20447)
@@ -54,6 +64,9 @@ import org.slf4j.LoggerFactory;
 class QuiescenceDriver implements ExecutionDriver {
   private static final Logger LOG = LoggerFactory.getLogger(QuiescenceDriver.class);
 
+  /** The maximum number of keys whose fired timers are delivered in a single unit of work. */
+  private static final int MAX_TIMER_BATCH_KEYS = 256;
+
   public static ExecutionDriver create(
       EvaluationContext context,
       DirectGraph graph,
@@ -71,7 +84,7 @@ class QuiescenceDriver implements ExecutionDriver {
   private final PipelineMessageReceiver pipelineMessageReceiver;
 
   private final CompletionCallback defaultCompletionCallback =
-      new TimerIterableCompletionCallback(Collections.emptyList());
+      new TimerIterableCompletionCallback(Collections.emptyMap());
 
   private final Map<AppliedPTransform<?, ?, ?>, Queue<CommittedBundle<?>>> pendingRootBundles;
   private final Queue<WorkUpdate> pendingWork = new ConcurrentLinkedQueue<>();
@@ -81,6 +94,10 @@ class QuiescenceDriver implements ExecutionDriver {
   // PTransform, which can lead to watermark being updated past the emitted elements.
   private final Map<AppliedPTransform<?, ?, ?>, Collection<CommittedBundle<?>>> inflightBundles =
       Maps.newHashMap();
+  // The steps which are evaluating a batch of fired timers. A batch evaluates its keys outside of
+  // their serial executors, so other bundles of these steps are deferred until the batch completes.
+  // Guarded by inflightBundles.
+  private final Set<AppliedPTransform<?, ?, ?>> stepsFiringTimers = new HashSet<>();
 
   private final AtomicReference<ExecutorState> state =
       new AtomicReference<>(ExecutorState.QUIESCENT);
@@ -147,7 +164,11 @@ class QuiescenceDriver implements ExecutionDriver {
           || (ExecutorState.PROCESSING == startingState && noWorkOutstanding)) {
         CommittedBundle<?> bundle = update.getBundle().get();
         for (AppliedPTransform<?, ?, ?> consumer : update.getConsumers()) {
-          processBundle(bundle, consumer);
+          if (isFiringTimers(consumer)) {
+            pendingWork.offer(WorkUpdate.fromBundle(bundle, Collections.singleton(consumer)));
+          } else {
+            processBundle(bundle, consumer);
+          }
         }
       } else {
         pendingWork.offer(update);
@@ -164,6 +185,11 @@ class QuiescenceDriver implements ExecutionDriver {
 
   private void processBundle(
       CommittedBundle<?> bundle, AppliedPTransform<?, ?, ?> consumer, CompletionCallback callback) {
+    addInflightBundle(bundle, consumer);
+    bundleProcessor.process(bundle, consumer, callback);
+  }
+
+  private void addInflightBundle(CommittedBundle<?> bundle, AppliedPTransform<?, ?, ?> consumer) {
     synchronized (inflightBundles) {
       inflightBundles.compute(
           consumer,
@@ -176,32 +202,35 @@ class QuiescenceDriver implements ExecutionDriver {
           });
     }
     outstandingWork.incrementAndGet();
-    bundleProcessor.process(bundle, consumer, callback);
   }
 
-  /** Fires any available timers. */
+  private boolean isFiringTimers(AppliedPTransform<?, ?, ?> step) {
+    synchronized (inflightBundles) {
+      return stepsFiringTimers.contains(step);
+    }
+  }
+
+  /**
+   * Fires any available timers. The timers of each step are delivered in batches of keys, each of
+   * which is evaluated as a single unit of work in which each key has its own state.
+   */
   private void fireTimers() {
     try {
       synchronized (inflightBundles) {
+        Map<AppliedPTransform<?, ?, ?>, List<FiredTimers<AppliedPTransform<?, ?, ?>>>>
+            timersByStep = new HashMap<>();
         for (FiredTimers<AppliedPTransform<?, ?, ?>> transformTimers :
             evaluationContext.extractFiredTimers(inflightBundles.keySet())) {
-          Collection<TimerData> delivery = transformTimers.getTimers();
-          KeyedWorkItem<?, Object> work =
-              KeyedWorkItems.timersWorkItem(transformTimers.getKey().getKey(), delivery);
-          @SuppressWarnings({"unchecked", "rawtypes"})
-          CommittedBundle<?> bundle =
-              evaluationContext
-                  .createKeyedBundle(
-                      transformTimers.getKey(),
-                      (PCollection)
-                          Iterables.getOnlyElement(
-                              transformTimers.getExecutable().getMainInputs().values()))
-                  .add(WindowedValue.valueInGlobalWindow(work))
-                  .commit(evaluationContext.now());
-          processBundle(
-              bundle,
-              transformTimers.getExecutable(),
-              new TimerIterableCompletionCallback(delivery));
+          timersByStep
+              .computeIfAbsent(transformTimers.getExecutable(), k -> new ArrayList<>())
+              .add(transformTimers);
+        }
+        for (Map.Entry<AppliedPTransform<?, ?, ?>, List<FiredTimers<AppliedPTransform<?, ?, ?>>>>
+            stepTimers : timersByStep.entrySet()) {
+          for (List<FiredTimers<AppliedPTransform<?, ?, ?>>> batch :
+              Lists.partition(stepTimers.getValue(), MAX_TIMER_BATCH_KEYS)) {
+            fireTimers(stepTimers.getKey(), batch);
+          }
           state.set(ExecutorState.ACTIVE);
         }
       }
@@ -212,6 +241,30 @@ class QuiescenceDriver implements ExecutionDriver {
     }
   }
 
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private void fireTimers(
+      AppliedPTransform<?, ?, ?> step, List<FiredTimers<AppliedPTransform<?, ?, ?>>> batch) {
+    PCollection<?> input = Iterables.getOnlyElement(step.getMainInputs().values());
+    List<CommittedBundle<?>> bundles = new ArrayList<>(batch.size());
+    Map<StructuralKey<?>, Collection<TimerData>> deliveries = new HashMap<>();
+    for (FiredTimers<AppliedPTransform<?, ?, ?>> keyTimers : batch) {
+      Collection<TimerData> delivery = keyTimers.getTimers();
+      KeyedWorkItem<?, Object> work =
+          KeyedWorkItems.timersWorkItem(keyTimers.getKey().getKey(), delivery);
+      CommittedBundle<?> bundle =
+          evaluationContext
+              .createKeyedBundle(keyTimers.getKey(), (PCollection) input)
+              .add(WindowedValue.valueInGlobalWindow(work))
+              .commit(evaluationContext.now());
+      addInflightBundle(bundle, step);
+      bundles.add(bundle);
+      deliveries.put(keyTimers.getKey(), delivery);
+    }
+    stepsFiringTimers.add(step);
+    bundleProcessor.processKeyedBatch(
+        bundles, step, new TimerIterableCompletionCallback(deliveries));
+  }
+
   /**
    * If all active {@link DirectTransformExecutor TransformExecutors} are in a blocked state, add
    * more work from root nodes that may have additional work. This ensures that if a pipeline has
@@ -258,8 +311,8 @@ class QuiescenceDriver implements ExecutionDriver {
      * Work should not be added until the Executor becomes active or no work is outstanding.
      *
      * <p>If all outstanding work completes without the executor becoming {@code ACTIVE}, the
-     * Executor enters state {@code QUIESCING}. Previously evaluated work must be reevaluated, in
-     * case a side input has made progress.
+     * Executor enters state {@code QUIESCING}. Work blocked on a side input is not reevaluated
+     * until that side input is ready, which makes the executor {@code ACTIVE}.
      */
     PROCESSING,
     /**
@@ -284,9 +337,10 @@ class QuiescenceDriver implements ExecutionDriver {
    */
   private class TimerIterableCompletionCallback implements CompletionCallback {
 
-    private final Iterable<TimerData> timers;
+    /** The timers delivered by the bundle of each key. */
+    private final Map<StructuralKey<?>, Collection<TimerData>> timers;
 
-    TimerIterableCompletionCallback(Iterable<TimerData> timers) {
+    TimerIterableCompletionCallback(Map<StructuralKey<?>, Collection<TimerData>> timers) {
       this.timers = timers;
     }
 
@@ -295,7 +349,9 @@ class QuiescenceDriver implements ExecutionDriver {
         CommittedBundle<?> inputBundle, TransformResult<?> result) {
 
       final CommittedResult<AppliedPTransform<?, ?, ?>> committedResult;
-      committedResult = evaluationContext.handleResult(inputBundle, timers, result);
+      Iterable<TimerData> completedTimers =
+          timers.getOrDefault(inputBundle.getKey(), Collections.emptyList());
+      committedResult = evaluationContext.handleResult(inputBundle, completedTimers, result);
       for (CommittedBundle<?> outputBundle : committedResult.getOutputs()) {
         pendingWork.offer(
             WorkUpdate.fromBundle(
@@ -310,21 +366,35 @@ class QuiescenceDriver implements ExecutionDriver {
             pendingRootBundles.get(result.getTransform()).offer(unprocessedInputs.get());
           }
         } else {
-          pendingWork.offer(
+          // Elements are pushed back when a side input they read is not ready, so they are only
+          // retried once it is, rather than each time the executor becomes active.
+          WorkUpdate retry =
               WorkUpdate.fromBundle(
-                  unprocessedInputs.get(), Collections.singleton(committedResult.getExecutable())));
+                  unprocessedInputs.get(), Collections.singleton(committedResult.getExecutable()));
+          evaluationContext.whenSideInputsReady(
+              committedResult.getExecutable(),
+              unprocessedInputs.get().getElements(),
+              () -> {
+                pendingWork.offer(retry);
+                state.set(ExecutorState.ACTIVE);
+              });
         }
       }
       if (!committedResult.getProducedOutputTypes().isEmpty()) {
         state.set(ExecutorState.ACTIVE);
       }
       synchronized (inflightBundles) {
-        inflightBundles.compute(
-            result.getTransform(),
-            (k, v) -> {
-              v.remove(inputBundle);
-              return v.isEmpty() ? null : v;
-            });
+        Collection<CommittedBundle<?>> stillInflight =
+            inflightBundles.compute(
+                result.getTransform(),
+                (k, v) -> {
+                  v.remove(inputBundle);
+                  return v.isEmpty() ? null : v;
+                });
+        if (stillInflight == null && stepsFiringTimers.remove(result.getTransform())) {
+          // Bundles of the step may have been deferred while its timers fired.
+          state.set(ExecutorState.ACTIVE);
+        }
       }
       outstandingWork.decrementAndGet();
       return committedResult;
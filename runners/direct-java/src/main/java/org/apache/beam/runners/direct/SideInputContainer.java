@@ -21,8 +21,8 @@ import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Prec
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -37,15 +37,17 @@ import org.apache.beam.sdk.transforms.Materializations.IterableView;
 import org.apache.beam.sdk.transforms.Materializations.MultimapView;
 import org.apache.beam.sdk.transforms.ViewFn;
 import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
-import org.apache.beam.sdk.transforms.windowing.PaneInfo;
 import org.apache.beam.sdk.util.WindowedValue;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PCollectionView;
 import org.apache.beam.sdk.values.WindowingStrategy;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.MoreObjects;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Supplier;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Suppliers;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.CacheBuilder;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.CacheLoader;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.LoadingCache;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableSet;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Sets;
@@ -55,6 +57,16 @@ import org.checkerframework.checker.nullness.qual.Nullable;
  * An in-process container for {@link PCollectionView PCollectionViews}, which provides methods for
  * constructing {@link SideInputReader SideInputReaders} which block until a side input is available
  * and writing to a {@link PCollectionView}.
+ *
+ * <p>The contents of each window of a view are held in an immutable {@link ViewContents}, which is
+ * replaced as a whole when a later pane is written. Readers which observe the same contents share
+ * them, including the materialized value of the view, rather than rebuilding it on every read.
+ * Callers which are blocked on a window which is not yet ready can register to be notified when it
+ * becomes ready with {@link #whenReady(Collection, Runnable)}, rather than polling.
+ *
+ * <p>If a {@link BundleRecorder} is provided, the contents of each window are recorded whenever
+ * they are set, and can be restored into another container with {@link #restore(PCollectionView,
+ * BoundedWindow, Collection)}.
  */
 @SuppressWarnings({
   "rawtypes", // TODO(https://github.com/apache/beam/issues/20447)
@@ -67,13 +79,27 @@ class SideInputContainer {
           Materializations.MULTIMAP_MATERIALIZATION_URN);
 
   private final Collection<PCollectionView<?>> containedViews;
-  private final LoadingCache<
-          PCollectionViewWindow<?>, AtomicReference<Iterable<? extends WindowedValue<?>>>>
+  private final LoadingCache<PCollectionViewWindow<?>, AtomicReference<ViewContents<?>>>
       viewByWindows;
+  /** The callbacks to run when each view window becomes ready. Guarded by itself. */
+  private final Map<PCollectionViewWindow<?>, List<Runnable>> readyCallbacks;
+  /** Records the contents of each view window when they are set, if configured. */
+  private final @Nullable BundleRecorder recorder;
 
   /** Create a new {@link SideInputContainer} with the provided views and the provided context. */
   public static SideInputContainer create(
       final EvaluationContext context, Collection<PCollectionView<?>> containedViews) {
+    return create(context, containedViews, null);
+  }
+
+  /**
+   * Create a new {@link SideInputContainer} with the provided views and the provided context, which
+   * records the contents of the views with the provided recorder.
+   */
+  public static SideInputContainer create(
+      final EvaluationContext context,
+      Collection<PCollectionView<?>> containedViews,
+      @Nullable BundleRecorder recorder) {
     for (PCollectionView<?> pCollectionView : containedViews) {
       checkArgument(
           SUPPORTED_MATERIALIZATIONS.contains(
@@ -84,17 +110,17 @@ class SideInputContainer {
           pCollectionView.getViewFn().getMaterialization().getUrn(),
           pCollectionView.getTagInternal().getId());
     }
-    LoadingCache<PCollectionViewWindow<?>, AtomicReference<Iterable<? extends WindowedValue<?>>>>
-        viewByWindows = CacheBuilder.newBuilder().build(new CallbackSchedulingLoader(context));
-    return new SideInputContainer(containedViews, viewByWindows);
+    return new SideInputContainer(context, containedViews, recorder);
   }
 
   private SideInputContainer(
+      EvaluationContext context,
       Collection<PCollectionView<?>> containedViews,
-      LoadingCache<PCollectionViewWindow<?>, AtomicReference<Iterable<? extends WindowedValue<?>>>>
-          viewByWindows) {
+      @Nullable BundleRecorder recorder) {
     this.containedViews = ImmutableSet.copyOf(containedViews);
-    this.viewByWindows = viewByWindows;
+    this.viewByWindows = CacheBuilder.newBuilder().build(new CallbackSchedulingLoader(context));
+    this.readyCallbacks = new HashMap<>();
+    this.recorder = recorder;
   }
 
   /**
@@ -114,6 +140,35 @@ class SideInputContainer {
     return new SideInputContainerSideInputReader(newContainedViews);
   }
 
+  /** Returns whether the provided window of a view has contents which can be read. */
+  public boolean isReady(PCollectionViewWindow<?> viewWindow) {
+    return viewByWindows.getUnchecked(viewWindow).get() != null;
+  }
+
+  /**
+   * Runs the provided callback once all of the provided windows of views are ready. The callback is
+   * run immediately if they already are, and otherwise by the thread which makes the last of them
+   * ready.
+   */
+  public void whenReady(Collection<PCollectionViewWindow<?>> viewWindows, Runnable callback) {
+    for (PCollectionViewWindow<?> viewWindow : viewWindows) {
+      AtomicReference<ViewContents<?>> contents = viewByWindows.getUnchecked(viewWindow);
+      if (contents.get() == null) {
+        synchronized (readyCallbacks) {
+          // Contents are set before the callbacks of the window are claimed, so checking again
+          // while holding the lock ensures the callback is never registered after it could run.
+          if (contents.get() == null) {
+            readyCallbacks
+                .computeIfAbsent(viewWindow, k -> new ArrayList<>())
+                .add(() -> whenReady(viewWindows, callback));
+            return;
+          }
+        }
+      }
+    }
+    callback.run();
+  }
+
   /**
    * Write the provided values to the provided view.
    *
@@ -131,6 +186,20 @@ class SideInputContainer {
     }
   }
 
+  /**
+   * Sets the contents of the provided window of the provided view to contents recorded by a {@link
+   * BundleRecorder}. Empty values close the window without elements, as when the window closes
+   * without any values having been written.
+   */
+  void restore(PCollectionView<?> view, BoundedWindow window, Collection<WindowedValue<?>> values) {
+    if (values.isEmpty()) {
+      PCollectionViewWindow<?> viewWindow = PCollectionViewWindow.of(view, window);
+      new WriteEmptyViewContents(viewWindow, viewByWindows.getUnchecked(viewWindow)).run();
+    } else {
+      updatePCollectionViewWindowValues(view, window, values);
+    }
+  }
+
   /** Index the provided values by all {@link BoundedWindow windows} in which they appear. */
   private Map<BoundedWindow, Collection<WindowedValue<?>>> indexValuesByWindow(
       Iterable<? extends WindowedValue<?>> values) {
@@ -153,29 +222,102 @@ class SideInputContainer {
   private void updatePCollectionViewWindowValues(
       PCollectionView<?> view, BoundedWindow window, Collection<WindowedValue<?>> windowValues) {
     PCollectionViewWindow<?> windowedView = PCollectionViewWindow.of(view, window);
-    AtomicReference<Iterable<? extends WindowedValue<?>>> contents =
-        viewByWindows.getUnchecked(windowedView);
-    if (contents.compareAndSet(null, windowValues)) {
+    AtomicReference<ViewContents<?>> contents = viewByWindows.getUnchecked(windowedView);
+    ViewContents<?> newContents =
+        ViewContents.of(view, windowValues.iterator().next().getPane().getIndex(), windowValues);
+    if (contents.compareAndSet(null, newContents)) {
       // the value had never been set, so we set it and are done.
+      record(view, window, windowValues);
+      notifyReady(windowedView);
       return;
     }
-    PaneInfo newPane = windowValues.iterator().next().getPane();
 
-    Iterable<? extends WindowedValue<?>> existingValues;
-    long existingPane;
+    ViewContents<?> existingContents;
     do {
-      existingValues = contents.get();
-      existingPane =
-          Iterables.isEmpty(existingValues)
-              ? -1L
-              : existingValues.iterator().next().getPane().getIndex();
-    } while (newPane.getIndex() > existingPane
-        && !contents.compareAndSet(existingValues, windowValues));
+      existingContents = contents.get();
+      if (newContents.paneIndex <= existingContents.paneIndex) {
+        return;
+      }
+    } while (!contents.compareAndSet(existingContents, newContents));
+    record(view, window, windowValues);
   }
 
-  private static class CallbackSchedulingLoader
-      extends CacheLoader<
-          PCollectionViewWindow<?>, AtomicReference<Iterable<? extends WindowedValue<?>>>> {
+  private void record(
+      PCollectionView<?> view, BoundedWindow window, Collection<WindowedValue<?>> windowValues) {
+    if (recorder != null) {
+      recorder.recordView(view, window, windowValues);
+    }
+  }
+
+  /** Runs the callbacks waiting for the provided window of a view, which has become ready. */
+  private void notifyReady(PCollectionViewWindow<?> viewWindow) {
+    List<Runnable> callbacks;
+    synchronized (readyCallbacks) {
+      callbacks = readyCallbacks.remove(viewWindow);
+    }
+    if (callbacks != null) {
+      callbacks.forEach(Runnable::run);
+    }
+  }
+
+  /**
+   * The immutable contents of a window of a {@link PCollectionView}, as of a single pane. The value
+   * of the view is materialized at most once, when first read.
+   */
+  private static final class ViewContents<T> {
+    private static <T> ViewContents<T> of(
+        PCollectionView<T> view, long paneIndex, Iterable<? extends WindowedValue<?>> values) {
+      return new ViewContents<>(view, paneIndex, ImmutableList.copyOf(values));
+    }
+
+    private static <T> ViewContents<T> empty(PCollectionView<T> view) {
+      return new ViewContents<>(view, -1L, ImmutableList.of());
+    }
+
+    private final long paneIndex;
+    private final Supplier<T> materialized;
+
+    private ViewContents(
+        PCollectionView<T> view, long paneIndex, List<? extends WindowedValue<?>> values) {
+      this.paneIndex = paneIndex;
+      this.materialized = Suppliers.memoize(() -> materialize(view, values));
+    }
+
+    private T get() {
+      return materialized.get();
+    }
+
+    private static <T> T materialize(
+        PCollectionView<T> view, List<? extends WindowedValue<?>> values) {
+      // Safe covariant cast since we know that the view only contains KVs.
+      @SuppressWarnings("unchecked")
+      Iterable<KV<?, ?>> elements =
+          Iterables.transform((Iterable<WindowedValue<KV<?, ?>>>) values, WindowedValue::getValue);
+
+      switch (view.getViewFn().getMaterialization().getUrn()) {
+        case Materializations.ITERABLE_MATERIALIZATION_URN:
+          {
+            ViewFn<IterableView, T> viewFn = (ViewFn<IterableView, T>) view.getViewFn();
+            return viewFn.apply(() -> elements);
+          }
+        case Materializations.MULTIMAP_MATERIALIZATION_URN:
+          {
+            ViewFn<MultimapView, T> viewFn = (ViewFn<MultimapView, T>) view.getViewFn();
+            Coder<?> keyCoder = ((KvCoder<?, ?>) view.getCoderInternal()).getKeyCoder();
+            return viewFn.apply(
+                InMemoryMultimapSideInputView.fromIterable(keyCoder, (Iterable) elements));
+          }
+        default:
+          throw new IllegalStateException(
+              String.format(
+                  "Unknown side input materialization format requested '%s'",
+                  view.getViewFn().getMaterialization().getUrn()));
+      }
+    }
+  }
+
+  private class CallbackSchedulingLoader
+      extends CacheLoader<PCollectionViewWindow<?>, AtomicReference<ViewContents<?>>> {
     private final EvaluationContext context;
 
     public CallbackSchedulingLoader(EvaluationContext context) {
@@ -183,53 +325,52 @@ class SideInputContainer {
     }
 
     @Override
-    public AtomicReference<Iterable<? extends WindowedValue<?>>> load(
-        PCollectionViewWindow<?> view) {
+    public AtomicReference<ViewContents<?>> load(PCollectionViewWindow<?> view) {
 
-      AtomicReference<Iterable<? extends WindowedValue<?>>> contents = new AtomicReference<>();
+      AtomicReference<ViewContents<?>> contents = new AtomicReference<>();
       WindowingStrategy<?, ?> windowingStrategy = view.getView().getWindowingStrategyInternal();
 
       context.scheduleAfterOutputWouldBeProduced(
           view.getView(),
           view.getWindow(),
           windowingStrategy,
-          new WriteEmptyViewContents(view.getView(), view.getWindow(), contents));
+          new WriteEmptyViewContents(view, contents));
       return contents;
     }
   }
 
-  private static class WriteEmptyViewContents implements Runnable {
-    private final PCollectionView<?> view;
-    private final BoundedWindow window;
-    private final AtomicReference<Iterable<? extends WindowedValue<?>>> contents;
+  private class WriteEmptyViewContents implements Runnable {
+    private final PCollectionViewWindow<?> viewWindow;
+    private final AtomicReference<ViewContents<?>> contents;
 
     private WriteEmptyViewContents(
-        PCollectionView<?> view,
-        BoundedWindow window,
-        AtomicReference<Iterable<? extends WindowedValue<?>>> contents) {
+        PCollectionViewWindow<?> viewWindow, AtomicReference<ViewContents<?>> contents) {
+      this.viewWindow = viewWindow;
       this.contents = contents;
-      this.view = view;
-      this.window = window;
     }
 
     @Override
     public void run() {
       // The requested window has closed without producing elements, so reflect that in
       // the PCollectionView. If set has already been called, will do nothing.
-      contents.compareAndSet(null, Collections.emptyList());
+      if (contents.compareAndSet(null, ViewContents.empty(viewWindow.getView()))) {
+        record(viewWindow.getView(), viewWindow.getWindow(), ImmutableList.of());
+        notifyReady(viewWindow);
+      }
     }
 
     @Override
     public String toString() {
-      return MoreObjects.toStringHelper(this).add("view", view).add("window", window).toString();
+      return MoreObjects.toStringHelper(this)
+          .add("view", viewWindow.getView())
+          .add("window", viewWindow.getWindow())
+          .toString();
     }
   }
 
   private final class SideInputContainerSideInputReader implements ReadyCheckingSideInputReader {
     private final Collection<PCollectionView<?>> readerViews;
-    private final LoadingCache<
-            PCollectionViewWindow<?>, Optional<? extends Iterable<? extends WindowedValue<?>>>>
-        viewContents;
+    private final LoadingCache<PCollectionViewWindow<?>, Optional<ViewContents<?>>> viewContents;
 
     private SideInputContainerSideInputReader(Collection<PCollectionView<?>> readerViews) {
       this.readerViews = ImmutableSet.copyOf(readerViews);
@@ -256,33 +397,11 @@ class SideInputContainer {
           "calling get() on PCollectionView %s that is not ready in window %s",
           view,
           window);
-      // Safe covariant cast since we know that the view only contains KVs.
+      // Safe cast since the contents are keyed by the view they contain.
       @SuppressWarnings("unchecked")
-      Iterable<KV<?, ?>> elements =
-          Iterables.transform(
-              (Iterable<WindowedValue<KV<?, ?>>>)
-                  viewContents.getUnchecked(PCollectionViewWindow.of(view, window)).get(),
-              WindowedValue::getValue);
-
-      switch (view.getViewFn().getMaterialization().getUrn()) {
-        case Materializations.ITERABLE_MATERIALIZATION_URN:
-          {
-            ViewFn<IterableView, T> viewFn = (ViewFn<IterableView, T>) view.getViewFn();
-            return viewFn.apply(() -> elements);
-          }
-        case Materializations.MULTIMAP_MATERIALIZATION_URN:
-          {
-            ViewFn<MultimapView, T> viewFn = (ViewFn<MultimapView, T>) view.getViewFn();
-            Coder<?> keyCoder = ((KvCoder<?, ?>) view.getCoderInternal()).getKeyCoder();
-            return viewFn.apply(
-                InMemoryMultimapSideInputView.fromIterable(keyCoder, (Iterable) elements));
-          }
-        default:
-          throw new IllegalStateException(
-              String.format(
-                  "Unknown side input materialization format requested '%s'",
-                  view.getViewFn().getMaterialization().getUrn()));
-      }
+      ViewContents<T> contents =
+          (ViewContents<T>) viewContents.getUnchecked(PCollectionViewWindow.of(view, window)).get();
+      return contents.get();
     }
 
     @Override
@@ -301,12 +420,10 @@ class SideInputContainer {
    * an optional.
    */
   private class CurrentViewContentsLoader
-      extends CacheLoader<
-          PCollectionViewWindow<?>, Optional<? extends Iterable<? extends WindowedValue<?>>>> {
+      extends CacheLoader<PCollectionViewWindow<?>, Optional<ViewContents<?>>> {
 
     @Override
-    public Optional<? extends Iterable<? extends WindowedValue<?>>> load(
-        PCollectionViewWindow<?> key) {
+    public Optional<ViewContents<?>> load(PCollectionViewWindow<?> key) {
       return Optional.ofNullable(viewByWindows.getUnchecked(key).get());
     }
   }
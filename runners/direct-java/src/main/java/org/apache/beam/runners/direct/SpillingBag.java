@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.beam.runners.core.InMemoryStateInternals.InMemoryBag;
+import org.apache.beam.runners.core.InMemoryStateInternals.InMemoryState;
+import org.apache.beam.runners.direct.StateSpiller.SpilledRun;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.CoderException;
+import org.apache.beam.sdk.state.BagState;
+import org.apache.beam.sdk.state.ReadableState;
+import org.apache.beam.sdk.util.CoderUtils;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.FluentIterable;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
+
+/**
+ * A {@link BagState} which holds its elements encoded, and which can move them from the heap to the
+ * local disk of a {@link StateSpiller}. Used in place of an {@link InMemoryBag} when the {@link
+ * DirectRunner} bounds the memory used by state.
+ *
+ * <p>Elements are decoded each time the result of {@link #read()} is iterated, so reading spilled
+ * elements does not bring them back onto the heap.
+ *
+ * <p>Once committed, a bag may be spilled by the {@link StateSpiller} on behalf of another step or
+ * key while it is copied or read, so all access is synchronized.
+ */
+class SpillingBag<T> implements BagState<T>, InMemoryState<SpillingBag<T>> {
+  private final Coder<T> elemCoder;
+  private final StateSpiller spiller;
+
+  private List<SpilledRun> spilled = new ArrayList<>();
+  private List<byte[]> buffered = new ArrayList<>();
+  private long bufferedBytes = 0L;
+
+  SpillingBag(Coder<T> elemCoder, StateSpiller spiller) {
+    this.elemCoder = elemCoder;
+    this.spiller = spiller;
+  }
+
+  @Override
+  public synchronized void clear() {
+    // As with an InMemoryBag, the contents are hot-swapped rather than cleared so that the results
+    // of earlier reads are stable for the lifetime of the bundle.
+    spilled = new ArrayList<>();
+    buffered = new ArrayList<>();
+    bufferedBytes = 0L;
+  }
+
+  @Override
+  public SpillingBag<T> readLater() {
+    return this;
+  }
+
+  @Override
+  public synchronized Iterable<T> read() {
+    List<SpilledRun> spilledSnapshot = ImmutableList.copyOf(spilled);
+    List<byte[]> bufferedSnapshot = ImmutableList.copyOf(buffered);
+    return FluentIterable.concat(
+            FluentIterable.from(spilledSnapshot).transformAndConcat(this::readSpilled),
+            bufferedSnapshot)
+        .transform(this::decode);
+  }
+
+  @Override
+  public synchronized void add(T input) {
+    byte[] encoded = encode(input);
+    buffered.add(encoded);
+    bufferedBytes += encoded.length;
+  }
+
+  @Override
+  public synchronized boolean isCleared() {
+    return spilled.isEmpty() && buffered.isEmpty();
+  }
+
+  @Override
+  public ReadableState<Boolean> isEmpty() {
+    return new ReadableState<Boolean>() {
+      @Override
+      public ReadableState<Boolean> readLater() {
+        return this;
+      }
+
+      @Override
+      public Boolean read() {
+        return isCleared();
+      }
+    };
+  }
+
+  /**
+   * Returns a copy of this bag. Encoded elements are never mutated, so they are shared between the
+   * copies rather than cloned.
+   */
+  @Override
+  public synchronized SpillingBag<T> copy() {
+    SpillingBag<T> that = new SpillingBag<>(elemCoder, spiller);
+    that.spilled.addAll(spilled);
+    that.buffered.addAll(buffered);
+    that.bufferedBytes = bufferedBytes;
+    return that;
+  }
+
+  /** Returns the number of encoded bytes of the elements of this bag held on the heap. */
+  synchronized long getBufferedBytes() {
+    return bufferedBytes;
+  }
+
+  /** Moves the elements of this bag held on the heap to the local disk of the spiller. */
+  synchronized void spill() {
+    if (!buffered.isEmpty()) {
+      spilled.add(spiller.spill(buffered));
+      buffered = new ArrayList<>();
+      bufferedBytes = 0L;
+    }
+  }
+
+  private Iterable<byte[]> readSpilled(SpilledRun run) {
+    return () -> spiller.read(run);
+  }
+
+  private byte[] encode(T element) {
+    try {
+      return CoderUtils.encodeToByteArray(elemCoder, element);
+    } catch (CoderException e) {
+      throw new IllegalArgumentException(
+          String.format("Unable to encode element %s with coder %s", element, elemCoder), e);
+    }
+  }
+
+  private T decode(byte[] encoded) {
+    try {
+      return CoderUtils.decodeFromByteArray(elemCoder, encoded);
+    } catch (CoderException e) {
+      throw new IllegalArgumentException(
+          String.format("Unable to decode an element with coder %s", elemCoder), e);
+    }
+  }
+}
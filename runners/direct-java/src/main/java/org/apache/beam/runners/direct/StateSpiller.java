@@ -0,0 +1,418 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.apache.beam.sdk.util.VarInt;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.io.ByteStreams;
+
+/**
+ * Keeps the encoded elements of bag state within a memory budget by appending them to a local
+ * temporary file, from which they are read back on demand.
+ *
+ * <p>The committed state of each step and key registers its {@link SpillingBag SpillingBags} with
+ * an {@link Account}. Whenever the bytes buffered on the heap by all accounts exceed the budget,
+ * the largest bags of any account are spilled first.
+ *
+ * <p>Spilled runs are immutable and are shared between the copies of the state which contain them,
+ * so a run is live for as long as any copy can reach it. Once the bytes of runs which are no longer
+ * reachable exceed those of the live runs, the live runs are compacted into a new file and the old
+ * file is deleted. The last file is deleted when the {@link StateSpiller} is closed at the end of
+ * the pipeline.
+ */
+class StateSpiller implements Closeable {
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+  /** The fewest bytes of unreachable runs for which the spill file is compacted. */
+  private static final long MIN_COMPACTION_BYTES = 64L * 1024L * 1024L;
+
+  public static StateSpiller create(long memoryBudgetBytes) throws IOException {
+    return create(memoryBudgetBytes, MIN_COMPACTION_BYTES);
+  }
+
+  @VisibleForTesting
+  static StateSpiller create(long memoryBudgetBytes, long minCompactionBytes) throws IOException {
+    checkArgument(
+        memoryBudgetBytes >= 0,
+        "The memory budget must be nonnegative but was %s",
+        memoryBudgetBytes);
+    return new StateSpiller(memoryBudgetBytes, minCompactionBytes, openSpillFile());
+  }
+
+  private static FileChannel openSpillFile() throws IOException {
+    Path file = Files.createTempFile("beam-direct-state", ".spill");
+    return FileChannel.open(
+        file,
+        StandardOpenOption.READ,
+        StandardOpenOption.WRITE,
+        StandardOpenOption.DELETE_ON_CLOSE);
+  }
+
+  private final long memoryBudgetBytes;
+  private final long minCompactionBytes;
+
+  // Guarded by this.
+  private final Set<Account> accounts;
+  private long bufferedBytes;
+
+  /**
+   * Held for reading to read or write the contents of runs, and for writing to replace the spill
+   * file and move the runs within it.
+   */
+  private final ReadWriteLock fileLock;
+
+  private FileChannel channel;
+
+  // Guarded by liveRuns.
+  private final Set<RunReference> liveRuns;
+  private final ReferenceQueue<SpilledRun> unreachableRuns;
+  private long size;
+  private long liveBytes;
+  private long deadBytes;
+
+  private StateSpiller(long memoryBudgetBytes, long minCompactionBytes, FileChannel channel) {
+    this.memoryBudgetBytes = memoryBudgetBytes;
+    this.minCompactionBytes = minCompactionBytes;
+    this.accounts = new HashSet<>();
+    this.fileLock = new ReentrantReadWriteLock();
+    this.channel = channel;
+    this.liveRuns = new HashSet<>();
+    this.unreachableRuns = new ReferenceQueue<>();
+  }
+
+  /** Returns a new {@link Account} for the committed state of a step and key. */
+  Account newAccount() {
+    return new Account();
+  }
+
+  /** Returns the number of bytes of committed state buffered on the heap by all accounts. */
+  synchronized long getBufferedBytes() {
+    return bufferedBytes;
+  }
+
+  /** Returns the size of the spill file, including the runs which are no longer reachable. */
+  @VisibleForTesting
+  long getSpillFileBytes() {
+    synchronized (liveRuns) {
+      return size;
+    }
+  }
+
+  /**
+   * Spills the bags with the most bytes on the heap, across all accounts, until the buffered bytes
+   * are within half of the budget, so that state which hovers around the budget does not spill a
+   * small run on every commit.
+   */
+  private void spillLargestBags() {
+    List<BufferedBag> candidates = new ArrayList<>();
+    for (Account account : accounts) {
+      for (SpillingBag<?> bag : account.bags) {
+        long bagBytes = bag.getBufferedBytes();
+        if (bagBytes > 0) {
+          candidates.add(new BufferedBag(account, bag, bagBytes));
+        }
+      }
+    }
+    candidates.sort(
+        Comparator.comparingLong((BufferedBag candidate) -> candidate.bytes).reversed());
+    for (BufferedBag candidate : candidates) {
+      if (bufferedBytes <= memoryBudgetBytes / 2) {
+        return;
+      }
+      candidate.bag.spill();
+      candidate.account.bufferedBytes -= candidate.bytes;
+      bufferedBytes -= candidate.bytes;
+    }
+  }
+
+  /** Appends the encoded elements to the spill file, returning the run that contains them. */
+  SpilledRun spill(List<byte[]> encodedElements) {
+    ByteArrayOutputStream contents = new ByteArrayOutputStream();
+    try {
+      for (byte[] encoded : encodedElements) {
+        VarInt.encode(encoded.length, contents);
+        contents.write(encoded);
+      }
+      ByteBuffer buffer = ByteBuffer.wrap(contents.toByteArray());
+      SpilledRun run;
+      fileLock.readLock().lock();
+      try {
+        synchronized (liveRuns) {
+          run = new SpilledRun(size, buffer.remaining());
+          liveRuns.add(new RunReference(run, unreachableRuns));
+          size += run.length;
+          liveBytes += run.length;
+        }
+        while (buffer.hasRemaining()) {
+          channel.write(buffer, run.position + buffer.position());
+        }
+      } finally {
+        fileLock.readLock().unlock();
+      }
+      compactIfMostlyDead();
+      return run;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to spill state to local disk", e);
+    }
+  }
+
+  /** Returns the encoded elements of the run, read lazily from the spill file. */
+  Iterator<byte[]> read(SpilledRun run) {
+    InputStream input = new BufferedInputStream(new RunInputStream(run), READ_BUFFER_SIZE);
+    return new Iterator<byte[]>() {
+      private long remaining = run.length;
+
+      @Override
+      public boolean hasNext() {
+        return remaining > 0;
+      }
+
+      @Override
+      public byte[] next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        try {
+          int length = VarInt.decodeInt(input);
+          byte[] encoded = new byte[length];
+          ByteStreams.readFully(input, encoded);
+          remaining -= VarInt.getLength(length) + length;
+          return encoded;
+        } catch (IOException e) {
+          throw new UncheckedIOException("Unable to read state spilled to local disk", e);
+        }
+      }
+    };
+  }
+
+  /**
+   * Copies the live runs to a new spill file and deletes the current one if the runs which are no
+   * longer reachable take up most of it.
+   */
+  private void compactIfMostlyDead() throws IOException {
+    synchronized (liveRuns) {
+      if (!isMostlyDead()) {
+        return;
+      }
+    }
+    fileLock.writeLock().lock();
+    try {
+      synchronized (liveRuns) {
+        if (!isMostlyDead()) {
+          return;
+        }
+        FileChannel compacted = openSpillFile();
+        long compactedSize = 0L;
+        for (Iterator<RunReference> refs = liveRuns.iterator(); refs.hasNext(); ) {
+          RunReference ref = refs.next();
+          SpilledRun run = ref.get();
+          if (run == null) {
+            // Unreachable, but not yet enqueued. It is not counted again once it is.
+            refs.remove();
+            liveBytes -= ref.length;
+            continue;
+          }
+          long transferred = 0L;
+          while (transferred < run.length) {
+            transferred +=
+                channel.transferTo(run.position + transferred, run.length - transferred, compacted);
+          }
+          run.position = compactedSize;
+          compactedSize += run.length;
+        }
+        channel.close();
+        channel = compacted;
+        size = compactedSize;
+        deadBytes = 0L;
+      }
+    } finally {
+      fileLock.writeLock().unlock();
+    }
+  }
+
+  // Must hold liveRuns.
+  private boolean isMostlyDead() {
+    for (Reference<? extends SpilledRun> ref = unreachableRuns.poll();
+        ref != null;
+        ref = unreachableRuns.poll()) {
+      RunReference unreachable = (RunReference) ref;
+      if (liveRuns.remove(unreachable)) {
+        liveBytes -= unreachable.length;
+        deadBytes += unreachable.length;
+      }
+    }
+    return deadBytes >= minCompactionBytes && deadBytes > liveBytes;
+  }
+
+  @Override
+  public void close() throws IOException {
+    fileLock.writeLock().lock();
+    try {
+      channel.close();
+    } finally {
+      fileLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * The committed state of a single step and key, which accounts the bytes its {@link SpillingBag
+   * SpillingBags} hold on the heap against the memory budget.
+   */
+  class Account {
+    // Guarded by StateSpiller.this.
+    private List<SpillingBag<?>> bags = Collections.emptyList();
+    private long bufferedBytes = 0L;
+
+    private Account() {}
+
+    /**
+     * Replaces the bags of this account with those of newly committed state, spilling the largest
+     * bags of any account if the memory budget is exceeded.
+     */
+    void commit(List<SpillingBag<?>> committedBags) {
+      synchronized (StateSpiller.this) {
+        long committedBytes = 0L;
+        for (SpillingBag<?> bag : committedBags) {
+          committedBytes += bag.getBufferedBytes();
+        }
+        StateSpiller.this.bufferedBytes += committedBytes - bufferedBytes;
+        bags = committedBags;
+        bufferedBytes = committedBytes;
+        if (bags.isEmpty()) {
+          accounts.remove(this);
+        } else {
+          accounts.add(this);
+        }
+        if (StateSpiller.this.bufferedBytes > memoryBudgetBytes) {
+          spillLargestBags();
+        }
+      }
+    }
+
+    /** Returns the number of bytes of the bags of this account buffered on the heap. */
+    long getBufferedBytes() {
+      synchronized (StateSpiller.this) {
+        return bufferedBytes;
+      }
+    }
+  }
+
+  /**
+   * The location of a contiguous run of encoded elements within the spill file. The position
+   * changes when the file is compacted, and is guarded by the file lock.
+   */
+  static class SpilledRun {
+    private long position;
+    private final long length;
+
+    private SpilledRun(long position, long length) {
+      this.position = position;
+      this.length = length;
+    }
+  }
+
+  /** Tracks whether a {@link SpilledRun} is still reachable from any copy of state. */
+  private static class RunReference extends WeakReference<SpilledRun> {
+    private final long length;
+
+    private RunReference(SpilledRun run, ReferenceQueue<SpilledRun> queue) {
+      super(run, queue);
+      this.length = run.length;
+    }
+  }
+
+  /** A bag buffering bytes on the heap, and the account which holds it. */
+  private static class BufferedBag {
+    private final Account account;
+    private final SpillingBag<?> bag;
+    private final long bytes;
+
+    private BufferedBag(Account account, SpillingBag<?> bag, long bytes) {
+      this.account = account;
+      this.bag = bag;
+      this.bytes = bytes;
+    }
+  }
+
+  /**
+   * Reads a run with positional reads, which do not interfere with concurrent readers and writers
+   * of the shared channel. The run is located again on each read, since the file may have been
+   * compacted in between.
+   */
+  private class RunInputStream extends InputStream {
+    private final SpilledRun run;
+    private long offset;
+
+    private RunInputStream(SpilledRun run) {
+      this.run = run;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (offset >= run.length) {
+        return -1;
+      }
+      ByteBuffer target = ByteBuffer.wrap(b, off, (int) Math.min(len, run.length - offset));
+      int read;
+      fileLock.readLock().lock();
+      try {
+        read = channel.read(target, run.position + offset);
+      } finally {
+        fileLock.readLock().unlock();
+      }
+      if (read == -1) {
+        throw new EOFException("Spilled state ended before the end of its run");
+      }
+      offset += read;
+      return read;
+    }
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.apache.beam.runners.core.TimerInternals.TimerData;
+import org.apache.beam.runners.local.StructuralKey;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.joda.time.Instant;
+
+/**
+ * The timers of a step which have been set but not yet fired, across all keys.
+ *
+ * <p>The timers of each key are ordered by timestamp, and the keys are indexed by the timestamp of
+ * their earliest timer. Extracting the timers which have fired visits only the keys with timers
+ * which are eligible to fire, rather than every key with a pending timer, and the earliest output
+ * timestamp is maintained rather than computed by visiting every timer.
+ *
+ * <p>Not thread-safe. Callers must hold the monitor of the stripe of timers which owns the index.
+ */
+class TimerIndex {
+  /**
+   * Orders timers by output timestamp, and otherwise by their natural ordering so that distinct
+   * timers are never equal.
+   */
+  static final Comparator<TimerData> BY_OUTPUT_TIMESTAMP =
+      Comparator.comparing(TimerData::getOutputTimestamp).thenComparing(Comparator.naturalOrder());
+
+  private final Map<StructuralKey<?>, NavigableSet<TimerData>> timersByKey = new HashMap<>();
+  private final NavigableMap<Instant, Set<StructuralKey<?>>> keysByEarliestTimer = new TreeMap<>();
+  private final NavigableMap<Instant, Integer> outputTimestampCounts = new TreeMap<>();
+
+  /** Adds the timer for the provided key, returning whether it was not already present. */
+  boolean add(StructuralKey<?> key, TimerData timer) {
+    NavigableSet<TimerData> keyTimers = timersByKey.computeIfAbsent(key, k -> new TreeSet<>());
+    @Nullable TimerData earliest = keyTimers.isEmpty() ? null : keyTimers.first();
+    if (!keyTimers.add(timer)) {
+      return false;
+    }
+    reindex(key, earliest, keyTimers);
+    outputTimestampCounts.merge(timer.getOutputTimestamp(), 1, Integer::sum);
+    return true;
+  }
+
+  /** Removes the timer for the provided key, returning whether it was present. */
+  boolean remove(StructuralKey<?> key, TimerData timer) {
+    NavigableSet<TimerData> keyTimers = timersByKey.get(key);
+    if (keyTimers == null) {
+      return false;
+    }
+    @Nullable TimerData earliest = keyTimers.first();
+    if (!keyTimers.remove(timer)) {
+      return false;
+    }
+    reindex(key, earliest, keyTimers);
+    outputTimestampCounts.computeIfPresent(
+        timer.getOutputTimestamp(), (ts, count) -> count == 1 ? null : count - 1);
+    return true;
+  }
+
+  /**
+   * Returns the earliest output timestamp of the timers in this index, or {@link
+   * BoundedWindow#TIMESTAMP_MAX_VALUE} if there are none.
+   */
+  Instant getEarliestOutputTimestamp() {
+    return outputTimestampCounts.isEmpty()
+        ? BoundedWindow.TIMESTAMP_MAX_VALUE
+        : outputTimestampCounts.firstKey();
+  }
+
+  /**
+   * Removes every timer with a timestamp before the provided time and returns them grouped by key.
+   * The timers of each key are ordered from earliest to latest.
+   */
+  Map<StructuralKey<?>, List<TimerData>> extractFiredTimers(Instant latestTime) {
+    Map<StructuralKey<?>, List<TimerData>> result = new HashMap<>();
+    NavigableMap<Instant, Set<StructuralKey<?>>> eligible =
+        keysByEarliestTimer.headMap(latestTime, false);
+    Set<StructuralKey<?>> firedKeys = new HashSet<>();
+    for (Set<StructuralKey<?>> keys : eligible.values()) {
+      firedKeys.addAll(keys);
+    }
+    eligible.clear();
+    for (StructuralKey<?> key : firedKeys) {
+      NavigableSet<TimerData> keyTimers = timersByKey.get(key);
+      List<TimerData> keyFiredTimers = new ArrayList<>();
+      Iterator<TimerData> timers = keyTimers.iterator();
+      while (timers.hasNext()) {
+        TimerData timer = timers.next();
+        if (!timer.getTimestamp().isBefore(latestTime)) {
+          break;
+        }
+        keyFiredTimers.add(timer);
+        timers.remove();
+        outputTimestampCounts.computeIfPresent(
+            timer.getOutputTimestamp(), (ts, count) -> count == 1 ? null : count - 1);
+      }
+      result.put(key, keyFiredTimers);
+      if (keyTimers.isEmpty()) {
+        timersByKey.remove(key);
+      } else {
+        keysByEarliestTimer
+            .computeIfAbsent(keyTimers.first().getTimestamp(), ts -> new HashSet<>())
+            .add(key);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Moves the key to the timestamp of its earliest timer after the timers of the key changed from
+   * having the provided earliest timer.
+   */
+  private void reindex(
+      StructuralKey<?> key,
+      @Nullable TimerData previousEarliest,
+      NavigableSet<TimerData> keyTimers) {
+    @Nullable Instant previous = previousEarliest == null ? null : previousEarliest.getTimestamp();
+    @Nullable Instant current = keyTimers.isEmpty() ? null : keyTimers.first().getTimestamp();
+    if (previous != null && previous.equals(current)) {
+      return;
+    }
+    if (previous != null) {
+      Set<StructuralKey<?>> keys = keysByEarliestTimer.get(previous);
+      keys.remove(key);
+      if (keys.isEmpty()) {
+        keysByEarliestTimer.remove(previous);
+      }
+    }
+    if (current == null) {
+      timersByKey.remove(key);
+    } else {
+      keysByEarliestTimer.computeIfAbsent(current, ts -> new HashSet<>()).add(key);
+    }
+  }
+}
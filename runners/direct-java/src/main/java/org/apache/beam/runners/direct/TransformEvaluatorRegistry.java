@@ -36,6 +36,7 @@ import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Prec
 import com.google.auto.service.AutoService;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.beam.runners.core.SplittableParDoViaKeyedWorkItems;
@@ -81,7 +82,10 @@ class TransformEvaluatorRegistry {
                     ctxt,
                     ParDoEvaluator.defaultRunnerFactory(),
                     ParDoEvaluatorFactory.basicDoFnCacheLoader(),
-                    options))
+                    options,
+                    options.as(DirectOptions.class).isPerformanceMode()
+                        ? FusedParDoEvaluator.fusedConsumers(ctxt.getGraph())
+                        : Collections.emptyMap()))
             .put(FLATTEN_TRANSFORM_URN, new FlattenEvaluatorFactory(ctxt))
             .put(ASSIGN_WINDOWS_TRANSFORM_URN, new WindowEvaluatorFactory(ctxt))
             .put(IMPULSE_TRANSFORM_URN, new ImpulseEvaluatorFactory(ctxt))
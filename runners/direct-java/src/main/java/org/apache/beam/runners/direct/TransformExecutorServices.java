@@ -111,18 +111,34 @@ final class TransformExecutorServices {
    *
    * <p>A principal use of this is for the serial evaluation of a (Step, Key) pair. Keyed
    * computations are processed serially per step.
+   *
+   * <p>Work which becomes eligible when a {@link TransformExecutor} completes on the thread which
+   * evaluated it is evaluated on that thread once it returns, up to {@link #MAX_COALESCED_WORK}
+   * items in a row, rather than being submitted to the {@link ExecutorService} separately. This
+   * keeps the bundles of a hot key on one thread and avoids a round trip through the executor for
+   * each small bundle of a cold key.
    */
   private static class SerialTransformExecutor implements TransformExecutorService {
+    private static final int MAX_COALESCED_WORK = 16;
+
     private final ExecutorService executor;
 
     private AtomicReference<TransformExecutor> currentlyEvaluating;
     private final Queue<TransformExecutor> workQueue;
     private boolean active = true;
 
+    /**
+     * The work coalesced by the evaluation of this executor on the current thread, if any. Each
+     * evaluation has its own slot, so an evaluation which has already completed its work and handed
+     * this executor to another thread cannot observe or clobber the work of that thread.
+     */
+    private final ThreadLocal<CoalescedWork> coalescedWork;
+
     private SerialTransformExecutor(ExecutorService executor) {
       this.executor = executor;
       this.currentlyEvaluating = new AtomicReference<>();
       this.workQueue = new ConcurrentLinkedQueue<>();
+      this.coalescedWork = new ThreadLocal<>();
     }
 
     /**
@@ -165,7 +181,7 @@ final class TransformExecutorServices {
           TransformExecutor newWork = workQueue.poll();
           if (active && newWork != null) {
             if (currentlyEvaluating.compareAndSet(null, newWork)) {
-              executor.submit(newWork);
+              submit(newWork);
             } else {
               workQueue.offer(newWork);
             }
@@ -174,6 +190,39 @@ final class TransformExecutorServices {
       }
     }
 
+    @SuppressWarnings("FutureReturnValueIgnored")
+    private void submit(TransformExecutor work) {
+      CoalescedWork evaluation = coalescedWork.get();
+      if (evaluation != null
+          && evaluation.successor == null
+          && evaluation.count < MAX_COALESCED_WORK) {
+        evaluation.successor = work;
+      } else {
+        executor.submit(() -> evaluate(work));
+      }
+    }
+
+    @SuppressWarnings("FutureReturnValueIgnored")
+    private void evaluate(TransformExecutor work) {
+      CoalescedWork evaluation = new CoalescedWork();
+      coalescedWork.set(evaluation);
+      try {
+        while (work != null) {
+          work.run();
+          work = evaluation.successor;
+          evaluation.successor = null;
+          evaluation.count++;
+        }
+      } finally {
+        coalescedWork.remove();
+        if (evaluation.successor != null) {
+          // The work completed exceptionally after scheduling its successor.
+          TransformExecutor successor = evaluation.successor;
+          executor.submit(() -> evaluate(successor));
+        }
+      }
+    }
+
     @Override
     public String toString() {
       return MoreObjects.toStringHelper(SerialTransformExecutor.class)
@@ -181,5 +230,11 @@ final class TransformExecutorServices {
           .add("workQueue", workQueue)
           .toString();
     }
+
+    /** The work scheduled to be evaluated next by a single evaluation, on the same thread. */
+    private static class CoalescedWork {
+      private TransformExecutor successor;
+      private int count;
+    }
   }
 }
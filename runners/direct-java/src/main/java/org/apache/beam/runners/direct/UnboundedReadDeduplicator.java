@@ -17,16 +17,14 @@
  */
 package org.apache.beam.runners.direct;
 
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import org.apache.beam.runners.core.construction.SplittableParDo.PrimitiveUnboundedRead;
-import org.apache.beam.runners.local.StructuralKey;
-import org.apache.beam.sdk.coders.ByteArrayCoder;
 import org.apache.beam.sdk.transforms.PTransform;
-import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.CacheBuilder;
-import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.CacheLoader;
-import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.LoadingCache;
 import org.joda.time.Duration;
+import org.joda.time.Instant;
 
 /**
  * Provides methods to determine if a record is a duplicate within the evaluation of a {@link
@@ -58,37 +56,77 @@ interface UnboundedReadDeduplicator {
   /**
    * An {@link UnboundedReadDeduplicator} that returns true if the record ID has not been seen
    * within 10 minutes.
+   *
+   * <p>The IDs are kept in two generations, each of which holds the IDs seen within 10 minutes of
+   * it being started. When the current generation expires it becomes the previous generation,
+   * replacing the IDs of the generation before it, so an ID is remembered for between 10 and 20
+   * minutes since it was last seen. A generation is also rotated once it holds 50,000 IDs, which
+   * bounds the number of retained IDs. IDs are compared exactly, as a false positive would drop a
+   * record which is not a duplicate.
+   *
+   * <p>The IDs are striped by their hash across independently locked generations, so that the
+   * splits of a source reading concurrently rarely contend. Each ID always belongs to the same
+   * stripe, so it is deduplicated exactly as if there were a single stripe.
    */
   class CachedIdDeduplicator implements UnboundedReadDeduplicator {
-    private static final ByteArrayCoder RECORD_ID_CODER = ByteArrayCoder.of();
     private static final long MAX_RETENTION_SINCE_ACCESS =
         Duration.standardMinutes(10L).getMillis();
+    private static final int MAX_IDS_PER_GENERATION = 50_000;
+    // A power of two.
+    private static final int STRIPES = 16;
 
-    private final LoadingCache<StructuralKey<byte[]>, AtomicBoolean> ids;
+    private final Stripe[] stripes;
 
     /** Create a new {@link CachedIdDeduplicator}. */
     public static UnboundedReadDeduplicator create() {
-      return new CachedIdDeduplicator();
+      return create(NanosOffsetClock.create());
     }
 
-    private CachedIdDeduplicator() {
-      ids =
-          CacheBuilder.newBuilder()
-              .expireAfterAccess(MAX_RETENTION_SINCE_ACCESS, TimeUnit.MILLISECONDS)
-              .maximumSize(100_000L)
-              .build(new TrueBooleanLoader());
+    static UnboundedReadDeduplicator create(Clock clock) {
+      return new CachedIdDeduplicator(clock);
+    }
+
+    private CachedIdDeduplicator(Clock clock) {
+      this.stripes = new Stripe[STRIPES];
+      for (int i = 0; i < STRIPES; i++) {
+        stripes[i] = new Stripe(clock, MAX_IDS_PER_GENERATION / STRIPES);
+      }
     }
 
     @Override
     public boolean shouldOutput(byte[] recordId) {
-      return ids.getUnchecked(StructuralKey.of(recordId, RECORD_ID_CODER)).getAndSet(false);
+      ByteBuffer id = ByteBuffer.wrap(Arrays.copyOf(recordId, recordId.length));
+      int hash = id.hashCode();
+      return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)].shouldOutput(id);
     }
 
-    private static class TrueBooleanLoader
-        extends CacheLoader<StructuralKey<byte[]>, AtomicBoolean> {
-      @Override
-      public AtomicBoolean load(StructuralKey<byte[]> key) throws Exception {
-        return new AtomicBoolean(true);
+    /** The generations of the IDs with hashes of a single stripe. */
+    private static class Stripe {
+      private final Clock clock;
+      private final int maxIdsPerGeneration;
+
+      private Set<ByteBuffer> current = new HashSet<>();
+      private Set<ByteBuffer> previous = new HashSet<>();
+      private Instant currentStarted;
+
+      private Stripe(Clock clock, int maxIdsPerGeneration) {
+        this.clock = clock;
+        this.maxIdsPerGeneration = maxIdsPerGeneration;
+        this.currentStarted = clock.now();
+      }
+
+      private synchronized boolean shouldOutput(ByteBuffer id) {
+        Instant now = clock.now();
+        long sinceStarted = now.getMillis() - currentStarted.getMillis();
+        if (sinceStarted >= MAX_RETENTION_SINCE_ACCESS || current.size() >= maxIdsPerGeneration) {
+          // A stripe which was not accessed while its current generation expired would have
+          // rotated it out by now had it been accessed, so none of its IDs are retained.
+          previous = sinceStarted >= 2 * MAX_RETENTION_SINCE_ACCESS ? new HashSet<>() : current;
+          current = new HashSet<>();
+          currentStarted = now;
+        }
+        // Seeing an ID moves it to the current generation, so it is retained since last access
+        return current.add(id) && !previous.remove(id);
       }
     }
   }
@@ -63,7 +63,11 @@ class UnboundedReadEvaluatorFactory implements TransformEvaluatorFactory {
   private final double readerReuseChance;
 
   UnboundedReadEvaluatorFactory(EvaluationContext evaluationContext, PipelineOptions options) {
-    this(evaluationContext, options, DEFAULT_READER_REUSE_CHANCE);
+    // In performance mode, readers are kept for as long as they produce input
+    this(
+        evaluationContext,
+        options,
+        options.as(DirectOptions.class).isPerformanceMode() ? 1.0 : DEFAULT_READER_REUSE_CHANCE);
   }
 
   @VisibleForTesting
@@ -100,10 +104,16 @@ class UnboundedReadEvaluatorFactory implements TransformEvaluatorFactory {
    * used by a single thread at a time. Each {@link UnboundedReadEvaluator} maintains its own
    * checkpoint, and constructs its reader from the current checkpoint in each call to {@link
    * #finishBundle()}.
+   *
+   * <p>Each evaluation reads at most {@link UnboundedSourceShard#getMaxElements()} elements. The
+   * residual shard reads up to twice as many elements if the reader filled its bundle and may have
+   * more backlog, and restarts from {@link #MIN_ELEMENTS} once the reader has caught up, so a shard
+   * which is behind reads in large bundles while one which is caught up stays responsive.
    */
   private static class UnboundedReadEvaluator<OutputT, CheckpointMarkT extends CheckpointMark>
       implements TransformEvaluator<UnboundedSourceShard<OutputT, CheckpointMarkT>> {
-    private static final int ARBITRARY_MAX_ELEMENTS = 10;
+    private static final int MIN_ELEMENTS = 10;
+    private static final int MAX_ELEMENTS = 10_000;
 
     private final AppliedPTransform<?, PCollection<OutputT>, ?> transform;
     private final EvaluationContext evaluationContext;
@@ -147,8 +157,13 @@ class UnboundedReadEvaluatorFactory implements TransformEvaluatorFactory {
                       reader.getCurrent(), reader.getCurrentTimestamp()));
             }
             numElements++;
-          } while (numElements < ARBITRARY_MAX_ELEMENTS && reader.advance());
+          } while (numElements < shard.getMaxElements() && reader.advance());
           Instant watermark = reader.getWatermark();
+          boolean filledBundle = numElements >= shard.getMaxElements();
+          int maxElements =
+              filledBundle && reader.getSplitBacklogBytes() != 0
+                  ? Math.min(shard.getMaxElements() * 2, MAX_ELEMENTS)
+                  : MIN_ELEMENTS;
 
           CheckpointMarkT finishedCheckpoint = finishRead(reader, watermark, shard);
           // Sometimes resume from a checkpoint even if it's not required
@@ -162,7 +177,11 @@ class UnboundedReadEvaluatorFactory implements TransformEvaluatorFactory {
           }
           UnboundedSourceShard<OutputT, CheckpointMarkT> residual =
               UnboundedSourceShard.of(
-                  shard.getSource(), shard.getDeduplicator(), reader, finishedCheckpoint);
+                  shard.getSource(),
+                  shard.getDeduplicator(),
+                  reader,
+                  finishedCheckpoint,
+                  maxElements);
 
           resultBuilder
               .addOutput(output)
@@ -301,8 +320,17 @@ class UnboundedReadEvaluatorFactory implements TransformEvaluatorFactory {
         UnboundedReadDeduplicator deduplicator,
         @Nullable UnboundedReader<T> reader,
         @Nullable CheckpointT checkpoint) {
+      return of(source, deduplicator, reader, checkpoint, UnboundedReadEvaluator.MIN_ELEMENTS);
+    }
+
+    static <T, CheckpointT extends CheckpointMark> UnboundedSourceShard<T, CheckpointT> of(
+        UnboundedSource<T, CheckpointT> source,
+        UnboundedReadDeduplicator deduplicator,
+        @Nullable UnboundedReader<T> reader,
+        @Nullable CheckpointT checkpoint,
+        int maxElements) {
       return new AutoValue_UnboundedReadEvaluatorFactory_UnboundedSourceShard<>(
-          source, deduplicator, reader, checkpoint);
+          source, deduplicator, reader, checkpoint, maxElements);
     }
 
     @Override
@@ -313,6 +341,9 @@ class UnboundedReadEvaluatorFactory implements TransformEvaluatorFactory {
     abstract @Nullable UnboundedReader<T> getExistingReader();
 
     abstract @Nullable CheckpointT getCheckpoint();
+
+    /** The maximum number of elements to read from this shard in a single evaluation. */
+    abstract int getMaxElements();
   }
 
   static class InputProvider<T>
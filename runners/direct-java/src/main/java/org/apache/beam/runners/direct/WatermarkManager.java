@@ -23,11 +23,14 @@ import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Prec
 import com.google.auto.value.AutoValue;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
@@ -35,11 +38,15 @@ import java.util.Objects;
 import java.util.Queue;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import javax.annotation.concurrent.GuardedBy;
@@ -62,7 +69,6 @@ import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Immutabl
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Maps;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Ordering;
-import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Queues;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Sets;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.SortedMultiset;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.TreeMultiset;
@@ -133,8 +139,8 @@ import org.joda.time.Instant;
   "nullness" // TODO(https://github.com/apache/beam/issues/20497)
 })
 class WatermarkManager<ExecutableT, CollectionT> {
-  // The number of updates to apply in #tryApplyPendingUpdates
-  private static final int MAX_INCREMENTAL_UPDATES = 10;
+  // The number of stripes of the pending elements, timers and holds of each watermark
+  private static final int NUM_STRIPES = 16;
 
   /**
    * The watermark of some {@link Pipeline} element, usually a {@link PTransform} or a {@link
@@ -219,6 +225,10 @@ class WatermarkManager<ExecutableT, CollectionT> {
    * minimum watermark across all of its input {@link Watermark Watermarks}, and the minimum
    * timestamp of all of the pending elements, restricted to be monotonically increasing.
    *
+   * <p>The pending elements and timers are split into stripes, each guarded by its own monitor.
+   * Threads committing bundles of different keys concurrently update different stripes, and the
+   * watermark is refreshed from the stripes while no update is being applied.
+   *
    * <p>See {@link #refresh()} for more information.
    */
   @VisibleForTesting
@@ -226,18 +236,8 @@ class WatermarkManager<ExecutableT, CollectionT> {
     private final String name;
 
     private final Collection<? extends Watermark> inputWatermarks;
-    private final SortedMultiset<Bundle<?, ?>> pendingElements;
-
-    // This tracks only the quantity of timers at each timestamp, for quickly getting the cross-key
-    // minimum
-    private final SortedMultiset<TimerData> pendingTimers;
-
-    // Entries in this table represent the authoritative timestamp for which
-    // a per-key-and-StateNamespace timer is set.
-    private final Map<StructuralKey<?>, Map<String, TimerData>> existingTimers;
-
-    // This per-key sorted set allows quick retrieval of timers that should fire for a key
-    private final Map<StructuralKey<?>, NavigableSet<TimerData>> objectTimers;
+    private final Stripes<SortedMultiset<Bundle<?, ?>>> pendingElements;
+    private final Stripes<EventTimeTimers> timers;
 
     private final AtomicReference<Instant> currentWatermark;
 
@@ -258,10 +258,8 @@ class WatermarkManager<ExecutableT, CollectionT> {
       // The same logic is applied for pending timers
       Ordering<Bundle<?, ?>> pendingBundleComparator =
           new BundleByElementTimestampComparator().compound(Ordering.arbitrary());
-      this.pendingElements = TreeMultiset.create(pendingBundleComparator);
-      this.pendingTimers = TreeMultiset.create();
-      this.objectTimers = new HashMap<>();
-      this.existingTimers = new HashMap<>();
+      this.pendingElements = new Stripes<>(() -> TreeMultiset.create(pendingBundleComparator));
+      this.timers = new Stripes<>(EventTimeTimers::new);
       this.currentWatermark = new AtomicReference<>(BoundedWindow.TIMESTAMP_MIN_VALUE);
       this.timerUpdateNotification = timerUpdateNotification;
     }
@@ -292,52 +290,82 @@ class WatermarkManager<ExecutableT, CollectionT> {
      * </ul>
      */
     @Override
-    public synchronized WatermarkUpdate refresh() {
-      Instant oldWatermark = currentWatermark.get();
+    public WatermarkUpdate refresh() {
       Instant minInputWatermark = BoundedWindow.TIMESTAMP_MAX_VALUE;
       for (Watermark inputWatermark : inputWatermarks) {
         minInputWatermark = INSTANT_ORDERING.min(minInputWatermark, inputWatermark.get());
       }
-      if (!pendingElements.isEmpty()) {
-        minInputWatermark =
-            INSTANT_ORDERING.min(
-                minInputWatermark, pendingElements.firstEntry().getElement().getMinimumTimestamp());
+      for (SortedMultiset<Bundle<?, ?>> stripe : pendingElements) {
+        synchronized (stripe) {
+          if (!stripe.isEmpty()) {
+            minInputWatermark =
+                INSTANT_ORDERING.min(
+                    minInputWatermark, stripe.firstEntry().getElement().getMinimumTimestamp());
+          }
+        }
       }
+      Instant oldWatermark =
+          currentWatermark.getAndAccumulate(minInputWatermark, INSTANT_ORDERING::max);
       Instant newWatermark = INSTANT_ORDERING.max(oldWatermark, minInputWatermark);
-      currentWatermark.set(newWatermark);
       return updateAndTrace(getName(), oldWatermark, newWatermark);
     }
 
-    private synchronized void addPending(Bundle<?, ?> newPending) {
-      pendingElements.add(newPending);
+    /** Advances this watermark to at least the provided time, regardless of its inputs. */
+    void advanceTo(Instant watermark) {
+      currentWatermark.accumulateAndGet(watermark, INSTANT_ORDERING::max);
     }
 
-    private synchronized void removePending(Bundle<?, ?> completed) {
-      pendingElements.remove(completed);
+    private void addPending(Bundle<?, ?> newPending) {
+      SortedMultiset<Bundle<?, ?>> stripe =
+          pendingElements.get(System.identityHashCode(newPending));
+      synchronized (stripe) {
+        stripe.add(newPending);
+      }
     }
 
-    @VisibleForTesting
-    synchronized Instant getEarliestTimerTimestamp() {
-      if (pendingTimers.isEmpty()) {
-        return BoundedWindow.TIMESTAMP_MAX_VALUE;
-      } else {
-        return getMinimumOutputTimestamp(pendingTimers);
+    private void removePending(Bundle<?, ?> completed) {
+      SortedMultiset<Bundle<?, ?>> stripe = pendingElements.get(System.identityHashCode(completed));
+      synchronized (stripe) {
+        stripe.remove(completed);
       }
     }
 
-    private Instant getMinimumOutputTimestamp(SortedMultiset<TimerData> timers) {
-      Instant minimumOutputTimestamp = timers.firstEntry().getElement().getOutputTimestamp();
-      for (TimerData timerData : timers) {
-        minimumOutputTimestamp =
-            INSTANT_ORDERING.min(timerData.getOutputTimestamp(), minimumOutputTimestamp);
+    @VisibleForTesting
+    Instant getEarliestTimerTimestamp() {
+      Instant earliest = BoundedWindow.TIMESTAMP_MAX_VALUE;
+      for (EventTimeTimers stripe : timers) {
+        synchronized (stripe) {
+          if (!stripe.pendingTimers.isEmpty()) {
+            earliest =
+                INSTANT_ORDERING.min(
+                    earliest, stripe.pendingTimers.firstEntry().getElement().getOutputTimestamp());
+          }
+        }
       }
-      return minimumOutputTimestamp;
+      return earliest;
     }
 
     @VisibleForTesting
-    synchronized void updateTimers(TimerUpdate update) {
-      NavigableSet<TimerData> keyTimers =
-          objectTimers.computeIfAbsent(update.key, k -> new TreeSet<>());
+    void updateTimers(TimerUpdate update) {
+      EventTimeTimers stripe = timers.get(Objects.hashCode(update.key));
+      synchronized (stripe) {
+        updateTimers(update, stripe.pendingTimers, stripe.existingTimers, stripe.objectTimers);
+      }
+
+      if (!update.isEmpty()) {
+        // notify of TimerData update
+        Iterables.concat(
+                update.getCompletedTimers(), update.getDeletedTimers(), update.getSetTimers())
+            .forEach(timerUpdateNotification);
+      }
+    }
+
+    /** Applies the update to the timers of the stripe of its key, whose monitor must be held. */
+    private static void updateTimers(
+        TimerUpdate update,
+        SortedMultiset<TimerData> pendingTimers,
+        Map<StructuralKey<?>, Map<String, TimerData>> existingTimers,
+        TimerIndex objectTimers) {
       Map<String, TimerData> existingTimersForKey =
           existingTimers.computeIfAbsent(update.key, k -> Maps.newHashMap());
 
@@ -348,15 +376,15 @@ class WatermarkManager<ExecutableT, CollectionT> {
           @Nullable TimerData existingTimer = existingTimersForKey.get(timer.stringKey());
           if (existingTimer == null) {
             pendingTimers.add(timer);
-            keyTimers.add(timer);
+            objectTimers.add(update.key, timer);
           } else {
             // reinitialize the timer even if identical,
             // because it might be removed from objectTimers
             // by timer push back
             pendingTimers.remove(existingTimer);
-            keyTimers.remove(existingTimer);
+            objectTimers.remove(update.key, existingTimer);
             pendingTimers.add(timer);
-            keyTimers.add(timer);
+            objectTimers.add(update.key, timer);
           }
 
           existingTimersForKey.put(timer.stringKey(), timer);
@@ -369,7 +397,7 @@ class WatermarkManager<ExecutableT, CollectionT> {
 
           if (existingTimer != null) {
             pendingTimers.remove(existingTimer);
-            keyTimers.remove(existingTimer);
+            objectTimers.remove(update.key, existingTimer);
             existingTimersForKey.remove(existingTimer.stringKey());
           }
         }
@@ -378,33 +406,49 @@ class WatermarkManager<ExecutableT, CollectionT> {
       for (TimerData timer : update.getCompletedTimers()) {
         if (TimeDomain.EVENT_TIME.equals(timer.getDomain())) {
           if (!newSetTimers.contains(timer.stringKey())) {
-            keyTimers.remove(timer);
+            objectTimers.remove(update.key, timer);
             pendingTimers.remove(timer);
             existingTimersForKey.remove(timer.stringKey());
           }
         }
       }
-
-      if (!update.isEmpty()) {
-        // notify of TimerData update
-        Iterables.concat(
-                update.getCompletedTimers(), update.getDeletedTimers(), update.getSetTimers())
-            .forEach(timerUpdateNotification);
-      }
     }
 
     @VisibleForTesting
-    synchronized Map<StructuralKey<?>, List<TimerData>> extractFiredEventTimeTimers() {
-      return extractFiredTimers(currentWatermark.get(), objectTimers);
+    Map<StructuralKey<?>, List<TimerData>> extractFiredEventTimeTimers() {
+      Instant firingTime = currentWatermark.get();
+      // Each key belongs to a single stripe, so the timers of different stripes never share a key.
+      Map<StructuralKey<?>, List<TimerData>> firedTimers = new HashMap<>();
+      for (EventTimeTimers stripe : timers) {
+        synchronized (stripe) {
+          firedTimers.putAll(stripe.objectTimers.extractFiredTimers(firingTime));
+        }
+      }
+      return firedTimers;
     }
 
     @Override
-    public synchronized String toString() {
+    public String toString() {
       return MoreObjects.toStringHelper(AppliedPTransformInputWatermark.class)
           .add("pendingElements", pendingElements)
           .add("currentWatermark", currentWatermark)
           .toString();
     }
+
+    /** The event time timers of the keys which belong to one stripe. */
+    private static class EventTimeTimers {
+      // This tracks the timers which have been set but not completed, including timers which have
+      // been extracted, ordered by output timestamp for quickly getting the cross-key minimum
+      private final SortedMultiset<TimerData> pendingTimers =
+          TreeMultiset.create(TimerIndex.BY_OUTPUT_TIMESTAMP);
+
+      // Entries in this table represent the authoritative timestamp for which
+      // a per-key-and-StateNamespace timer is set.
+      private final Map<StructuralKey<?>, Map<String, TimerData>> existingTimers = new HashMap<>();
+
+      // This index allows quick retrieval of the keys and timers that should fire
+      private final TimerIndex objectTimers = new TimerIndex();
+    }
   }
 
   /**
@@ -430,7 +474,7 @@ class WatermarkManager<ExecutableT, CollectionT> {
       currentWatermark = new AtomicReference<>(BoundedWindow.TIMESTAMP_MIN_VALUE);
     }
 
-    public synchronized void updateHold(Object key, Instant newHold) {
+    public void updateHold(Object key, Instant newHold) {
       if (newHold == null) {
         holds.removeHold(key);
       } else {
@@ -464,19 +508,17 @@ class WatermarkManager<ExecutableT, CollectionT> {
      * </ul>
      */
     @Override
-    public synchronized WatermarkUpdate refresh() {
-      Instant oldWatermark = currentWatermark.get();
-      Instant newWatermark =
+    public WatermarkUpdate refresh() {
+      Instant minWatermark =
           INSTANT_ORDERING.min(
               inputWatermark.get(), holds.getMinHold(), inputWatermark.getEarliestTimerTimestamp());
-
-      newWatermark = INSTANT_ORDERING.max(oldWatermark, newWatermark);
-      currentWatermark.set(newWatermark);
+      Instant oldWatermark = currentWatermark.getAndAccumulate(minWatermark, INSTANT_ORDERING::max);
+      Instant newWatermark = INSTANT_ORDERING.max(oldWatermark, minWatermark);
       return updateAndTrace(getName(), oldWatermark, newWatermark);
     }
 
     @Override
-    public synchronized String toString() {
+    public String toString() {
       return MoreObjects.toStringHelper(AppliedPTransformOutputWatermark.class)
           .add("holds", holds)
           .add("currentWatermark", currentWatermark)
@@ -506,12 +548,8 @@ class WatermarkManager<ExecutableT, CollectionT> {
     private final String name;
 
     private final Collection<? extends Watermark> inputWms;
-    private final Collection<Bundle<?, ?>> pendingBundles;
-    private final Map<StructuralKey<?>, NavigableSet<TimerData>> processingTimers;
-    private final Map<StructuralKey<?>, NavigableSet<TimerData>> synchronizedProcessingTimers;
-    private final Map<StructuralKey<?>, Map<String, TimerData>> existingTimers;
-
-    private final NavigableSet<TimerData> pendingTimers;
+    private final Stripes<Set<Bundle<?, ?>>> pendingBundles;
+    private final Stripes<ProcessingTimeTimers> timers;
 
     private AtomicReference<Instant> earliestHold;
 
@@ -524,11 +562,8 @@ class WatermarkManager<ExecutableT, CollectionT> {
 
       this.name = name;
       this.inputWms = inputWms;
-      this.pendingBundles = new HashSet<>();
-      this.processingTimers = new HashMap<>();
-      this.synchronizedProcessingTimers = new HashMap<>();
-      this.existingTimers = new HashMap<>();
-      this.pendingTimers = new TreeSet<>();
+      this.pendingBundles = new Stripes<>(HashSet::new);
+      this.timers = new Stripes<>(ProcessingTimeTimers::new);
       Instant initialHold = BoundedWindow.TIMESTAMP_MAX_VALUE;
       for (Watermark wm : inputWms) {
         initialHold = INSTANT_ORDERING.min(initialHold, wm.get());
@@ -562,28 +597,38 @@ class WatermarkManager<ExecutableT, CollectionT> {
      * processing time must be.
      */
     @Override
-    public synchronized WatermarkUpdate refresh() {
-      Instant oldHold = earliestHold.get();
+    public WatermarkUpdate refresh() {
       Instant minTime = THE_END_OF_TIME.get();
       for (Watermark input : inputWms) {
         minTime = INSTANT_ORDERING.min(minTime, input.get());
       }
-      for (Bundle<?, ?> bundle : pendingBundles) {
-        // TODO: Track elements in the bundle by the processing time they were output instead of
-        // entire bundles. Requried to support arbitrarily splitting and merging bundles between
-        // steps
-        minTime = INSTANT_ORDERING.min(minTime, bundle.getSynchronizedProcessingOutputWatermark());
+      for (Set<Bundle<?, ?>> stripe : pendingBundles) {
+        synchronized (stripe) {
+          for (Bundle<?, ?> bundle : stripe) {
+            // TODO: Track elements in the bundle by the processing time they were output instead
+            // of entire bundles. Requried to support arbitrarily splitting and merging bundles
+            // between steps
+            minTime =
+                INSTANT_ORDERING.min(minTime, bundle.getSynchronizedProcessingOutputWatermark());
+          }
+        }
       }
-      earliestHold.set(minTime);
+      Instant oldHold = earliestHold.getAndSet(minTime);
       return updateAndTrace(getName(), oldHold, minTime);
     }
 
-    public synchronized void addPending(Bundle<?, ?> bundle) {
-      pendingBundles.add(bundle);
+    public void addPending(Bundle<?, ?> bundle) {
+      Set<Bundle<?, ?>> stripe = pendingBundles.get(bundle.hashCode());
+      synchronized (stripe) {
+        stripe.add(bundle);
+      }
     }
 
-    public synchronized void removePending(Bundle<?, ?> bundle) {
-      pendingBundles.remove(bundle);
+    public void removePending(Bundle<?, ?> bundle) {
+      Set<Bundle<?, ?>> stripe = pendingBundles.get(bundle.hashCode());
+      synchronized (stripe) {
+        stripe.remove(bundle);
+      }
     }
 
     /**
@@ -591,77 +636,20 @@ class WatermarkManager<ExecutableT, CollectionT> {
      * either the earliest timestamp across timers that have not been completed, or the earliest
      * timestamp across timers that have been delivered but have not been completed.
      */
-    public synchronized Instant getEarliestTimerTimestamp() {
+    public Instant getEarliestTimerTimestamp() {
       Instant earliest = THE_END_OF_TIME.get();
-      for (NavigableSet<TimerData> timers : processingTimers.values()) {
-        if (!timers.isEmpty()) {
-          earliest = INSTANT_ORDERING.min(getMinimumOutputTimestamp(timers), earliest);
-        }
-      }
-      for (NavigableSet<TimerData> timers : synchronizedProcessingTimers.values()) {
-        if (!timers.isEmpty()) {
-          earliest = INSTANT_ORDERING.min(getMinimumOutputTimestamp(timers), earliest);
+      for (ProcessingTimeTimers stripe : timers) {
+        synchronized (stripe) {
+          earliest = INSTANT_ORDERING.min(stripe.getEarliestTimerTimestamp(), earliest);
         }
       }
-      if (!pendingTimers.isEmpty()) {
-        earliest = INSTANT_ORDERING.min(getMinimumOutputTimestamp(pendingTimers), earliest);
-      }
       return earliest;
     }
 
-    private Instant getMinimumOutputTimestamp(NavigableSet<TimerData> timers) {
-      Instant minimumOutputTimestamp = timers.first().getOutputTimestamp();
-      for (TimerData timerData : timers) {
-        minimumOutputTimestamp =
-            INSTANT_ORDERING.min(timerData.getOutputTimestamp(), minimumOutputTimestamp);
-      }
-      return minimumOutputTimestamp;
-    }
-
-    private synchronized void updateTimers(TimerUpdate update) {
-      Map<String, TimerData> existingTimersForKey =
-          existingTimers.computeIfAbsent(update.key, k -> Maps.newHashMap());
-
-      HashSet<String> newSetTimers = Sets.newHashSet();
-      for (TimerData addedTimer : update.setTimers.values()) {
-        NavigableSet<TimerData> timerQueue =
-            processQueueForDomain(update.key, addedTimer.getDomain());
-        if (timerQueue == null) {
-          continue;
-        }
-        newSetTimers.add(addedTimer.stringKey());
-        @Nullable TimerData existingTimer = existingTimersForKey.get(addedTimer.stringKey());
-        if (existingTimer == null) {
-          timerQueue.add(addedTimer);
-        } else if (!existingTimer.equals(addedTimer)) {
-          timerQueue.remove(existingTimer);
-          timerQueue.add(addedTimer);
-        } // else the timer is already set identically, so noop.
-
-        existingTimersForKey.put(addedTimer.stringKey(), addedTimer);
-      }
-
-      for (TimerData deletedTimer : update.deletedTimers.values()) {
-        NavigableSet<TimerData> timerQueue =
-            processQueueForDomain(update.key, deletedTimer.getDomain());
-        if (timerQueue == null) {
-          continue;
-        }
-        String timerKey = deletedTimer.stringKey();
-        @Nullable TimerData existingTimer = existingTimersForKey.get(timerKey);
-        if (existingTimer != null) {
-          pendingTimers.remove(existingTimer);
-          timerQueue.remove(existingTimer);
-          existingTimersForKey.remove(timerKey);
-        }
-      }
-
-      for (TimerData completedTimer : update.completedTimers) {
-        String timerKey = completedTimer.stringKey();
-        if (!newSetTimers.contains(timerKey)) {
-          pendingTimers.remove(completedTimer);
-          existingTimersForKey.remove(timerKey);
-        }
+    private void updateTimers(TimerUpdate update) {
+      ProcessingTimeTimers stripe = timers.get(Objects.hashCode(update.key));
+      synchronized (stripe) {
+        stripe.updateTimers(update);
       }
 
       // notify of TimerData update
@@ -670,50 +658,129 @@ class WatermarkManager<ExecutableT, CollectionT> {
           .forEach(timerUpdateNotification);
     }
 
-    private synchronized Map<StructuralKey<?>, List<TimerData>> extractFiredDomainTimers(
+    private Map<StructuralKey<?>, List<TimerData>> extractFiredDomainTimers(
         TimeDomain domain, Instant firingTime) {
-      Map<StructuralKey<?>, List<TimerData>> firedTimers;
-      switch (domain) {
-        case PROCESSING_TIME:
-          firedTimers = extractFiredTimers(firingTime, processingTimers);
-          break;
-        case SYNCHRONIZED_PROCESSING_TIME:
-          firedTimers =
-              extractFiredTimers(
-                  INSTANT_ORDERING.min(firingTime, earliestHold.get()),
-                  synchronizedProcessingTimers);
-          break;
-        default:
-          throw new IllegalArgumentException(
-              "Called getFiredTimers on a Synchronized Processing Time watermark"
-                  + " and gave a non-processing time domain "
-                  + domain);
-      }
-      for (Map.Entry<StructuralKey<?>, ? extends Collection<TimerData>> firedTimer :
-          firedTimers.entrySet()) {
-        pendingTimers.addAll(firedTimer.getValue());
+      // Each key belongs to a single stripe, so the timers of different stripes never share a key.
+      Map<StructuralKey<?>, List<TimerData>> firedTimers = new HashMap<>();
+      for (ProcessingTimeTimers stripe : timers) {
+        synchronized (stripe) {
+          firedTimers.putAll(stripe.extractFiredDomainTimers(domain, firingTime));
+        }
       }
       return firedTimers;
     }
 
-    private @Nullable NavigableSet<TimerData> processQueueForDomain(
-        StructuralKey<?> key, TimeDomain timeDomain) {
-      switch (timeDomain) {
-        case PROCESSING_TIME:
-          return processingTimers.computeIfAbsent(key, k -> new TreeSet<>());
-        case SYNCHRONIZED_PROCESSING_TIME:
-          return synchronizedProcessingTimers.computeIfAbsent(key, k -> new TreeSet<>());
-        default:
-          return null;
-      }
-    }
-
     @Override
-    public synchronized String toString() {
+    public String toString() {
       return MoreObjects.toStringHelper(SynchronizedProcessingTimeInputWatermark.class)
           .add("earliestHold", earliestHold)
           .toString();
     }
+
+    /**
+     * The processing time and synchronized processing time timers of the keys which belong to one
+     * stripe. Callers hold the monitor of the stripe.
+     */
+    private class ProcessingTimeTimers {
+      private final TimerIndex processingTimers = new TimerIndex();
+      private final TimerIndex synchronizedProcessingTimers = new TimerIndex();
+      private final Map<StructuralKey<?>, Map<String, TimerData>> existingTimers = new HashMap<>();
+      private final NavigableSet<TimerData> pendingTimers =
+          new TreeSet<>(TimerIndex.BY_OUTPUT_TIMESTAMP);
+
+      private Instant getEarliestTimerTimestamp() {
+        Instant earliest = THE_END_OF_TIME.get();
+        earliest = INSTANT_ORDERING.min(processingTimers.getEarliestOutputTimestamp(), earliest);
+        earliest =
+            INSTANT_ORDERING.min(
+                synchronizedProcessingTimers.getEarliestOutputTimestamp(), earliest);
+        if (!pendingTimers.isEmpty()) {
+          earliest = INSTANT_ORDERING.min(pendingTimers.first().getOutputTimestamp(), earliest);
+        }
+        return earliest;
+      }
+
+      private void updateTimers(TimerUpdate update) {
+        Map<String, TimerData> existingTimersForKey =
+            existingTimers.computeIfAbsent(update.key, k -> Maps.newHashMap());
+
+        HashSet<String> newSetTimers = Sets.newHashSet();
+        for (TimerData addedTimer : update.setTimers.values()) {
+          TimerIndex timerQueue = processQueueForDomain(addedTimer.getDomain());
+          if (timerQueue == null) {
+            continue;
+          }
+          newSetTimers.add(addedTimer.stringKey());
+          @Nullable TimerData existingTimer = existingTimersForKey.get(addedTimer.stringKey());
+          if (existingTimer == null) {
+            timerQueue.add(update.key, addedTimer);
+          } else if (!existingTimer.equals(addedTimer)) {
+            timerQueue.remove(update.key, existingTimer);
+            timerQueue.add(update.key, addedTimer);
+          } // else the timer is already set identically, so noop.
+
+          existingTimersForKey.put(addedTimer.stringKey(), addedTimer);
+        }
+
+        for (TimerData deletedTimer : update.deletedTimers.values()) {
+          TimerIndex timerQueue = processQueueForDomain(deletedTimer.getDomain());
+          if (timerQueue == null) {
+            continue;
+          }
+          String timerKey = deletedTimer.stringKey();
+          @Nullable TimerData existingTimer = existingTimersForKey.get(timerKey);
+          if (existingTimer != null) {
+            pendingTimers.remove(existingTimer);
+            timerQueue.remove(update.key, existingTimer);
+            existingTimersForKey.remove(timerKey);
+          }
+        }
+
+        for (TimerData completedTimer : update.completedTimers) {
+          String timerKey = completedTimer.stringKey();
+          if (!newSetTimers.contains(timerKey)) {
+            pendingTimers.remove(completedTimer);
+            existingTimersForKey.remove(timerKey);
+          }
+        }
+      }
+
+      private Map<StructuralKey<?>, List<TimerData>> extractFiredDomainTimers(
+          TimeDomain domain, Instant firingTime) {
+        Map<StructuralKey<?>, List<TimerData>> firedTimers;
+        switch (domain) {
+          case PROCESSING_TIME:
+            firedTimers = processingTimers.extractFiredTimers(firingTime);
+            break;
+          case SYNCHRONIZED_PROCESSING_TIME:
+            firedTimers =
+                synchronizedProcessingTimers.extractFiredTimers(
+                    INSTANT_ORDERING.min(firingTime, earliestHold.get()));
+            break;
+          default:
+            throw new IllegalArgumentException(
+                "Called getFiredTimers on a Synchronized Processing Time watermark"
+                    + " and gave a non-processing time domain "
+                    + domain);
+        }
+        for (Map.Entry<StructuralKey<?>, ? extends Collection<TimerData>> firedTimer :
+            firedTimers.entrySet()) {
+          pendingTimers.addAll(firedTimer.getValue());
+        }
+        return firedTimers;
+      }
+
+      private @Nullable TimerIndex processQueueForDomain(TimeDomain timeDomain) {
+        switch (timeDomain) {
+          case PROCESSING_TIME:
+            return processingTimers;
+          case SYNCHRONIZED_PROCESSING_TIME:
+            return synchronizedProcessingTimers;
+          default:
+            return null;
+        }
+      }
+    }
   }
 
   /**
@@ -749,7 +816,7 @@ class WatermarkManager<ExecutableT, CollectionT> {
       this.latestRefresh = new AtomicReference<>(BoundedWindow.TIMESTAMP_MIN_VALUE);
     }
 
-    public synchronized void updateHold(Object key, Instant newHold) {
+    public void updateHold(Object key, Instant newHold) {
       if (newHold == null) {
         holds.removeHold(key);
       } else {
@@ -784,20 +851,19 @@ class WatermarkManager<ExecutableT, CollectionT> {
      * processing time must be.
      */
     @Override
-    public synchronized WatermarkUpdate refresh() {
+    public WatermarkUpdate refresh() {
       // Hold the output synchronized processing time to the input watermark, which takes into
       // account buffered bundles, and the earliest pending timer, which determines what to hold
       // downstream timers to.
-      Instant oldRefresh = latestRefresh.get();
       Instant newTimestamp =
           INSTANT_ORDERING.min(
               inputWm.get(), holds.getMinHold(), inputWm.getEarliestTimerTimestamp());
-      latestRefresh.set(newTimestamp);
+      Instant oldRefresh = latestRefresh.getAndSet(newTimestamp);
       return updateAndTrace(getName(), oldRefresh, newTimestamp);
     }
 
     @Override
-    public synchronized String toString() {
+    public String toString() {
       return MoreObjects.toStringHelper(SynchronizedProcessingTimeOutputWatermark.class)
           .add("holds", holds)
           .add("latestRefresh", latestRefresh)
@@ -830,36 +896,6 @@ class WatermarkManager<ExecutableT, CollectionT> {
 
   private static final Ordering<Instant> INSTANT_ORDERING = Ordering.natural();
 
-  /**
-   * For each (Object, NavigableSet) pair in the provided map, remove each Timer that is before the
-   * latestTime argument and put in the result with the same key, then remove all of the keys which
-   * have no more pending timers.
-   *
-   * <p>The result collection retains ordering of timers (from earliest to latest).
-   */
-  private static synchronized Map<StructuralKey<?>, List<TimerData>> extractFiredTimers(
-      Instant latestTime, Map<StructuralKey<?>, NavigableSet<TimerData>> objectTimers) {
-    Map<StructuralKey<?>, List<TimerData>> result = new HashMap<>();
-    Set<StructuralKey<?>> emptyKeys = new HashSet<>();
-    for (Map.Entry<StructuralKey<?>, NavigableSet<TimerData>> pendingTimers :
-        objectTimers.entrySet()) {
-      NavigableSet<TimerData> timers = pendingTimers.getValue();
-      if (!timers.isEmpty() && timers.first().getTimestamp().isBefore(latestTime)) {
-        ArrayList<TimerData> keyFiredTimers = new ArrayList<>();
-        result.put(pendingTimers.getKey(), keyFiredTimers);
-        while (!timers.isEmpty() && timers.first().getTimestamp().isBefore(latestTime)) {
-          keyFiredTimers.add(timers.first());
-          timers.remove(timers.first());
-        }
-      }
-      if (timers.isEmpty()) {
-        emptyKeys.add(pendingTimers.getKey());
-      }
-    }
-    objectTimers.keySet().removeAll(emptyKeys);
-    return result;
-  }
-
   ////////////////////////////////////////////////////////////////////////////////////////////////
 
   /**
@@ -878,26 +914,42 @@ class WatermarkManager<ExecutableT, CollectionT> {
   /** The input and output watermark of each {@link AppliedPTransform}. */
   private final Map<ExecutableT, TransformWatermarks> transformToWatermarks;
 
-  /** A queue of pending updates to the state of this {@link WatermarkManager}. */
-  private final Queue<PendingWatermarkUpdate<ExecutableT, CollectionT>> pendingUpdates;
+  /**
+   * A lock used to control concurrency for updating pending values. Updates are applied
+   * concurrently by the threads committing them while holding the read lock, each within the
+   * stripes of its key. Watermarks are refreshed while holding the write lock, so they never
+   * observe a partially applied update.
+   */
+  private final ReadWriteLock refreshLock;
 
-  /** A lock used to control concurrency for updating pending values. */
-  private final Lock refreshLock;
+  /**
+   * A lock held while extracting fired timers. Extracting timers only holds the read lock of the
+   * {@link #refreshLock}, as watermarks do not change while it is held, so it does not block
+   * threads committing updates.
+   */
+  private final Lock extractLock;
 
   /**
-   * A queue of pending {@link AppliedPTransform AppliedPTransforms} that have potentially stale
-   * data.
+   * A set of pending {@link AppliedPTransform AppliedPTransforms} that have potentially stale data.
+   * Added to while holding the read lock of the {@link #refreshLock} and drained while holding its
+   * write lock.
    */
-  @GuardedBy("refreshLock")
   private final Set<ExecutableT> pendingRefreshes;
 
+  /**
+   * The position of each executable in a topological order of the graph, such that every executable
+   * comes after all of its producers. Used to refresh each stale executable at most once per {@link
+   * #refreshAll()}, after all of its inputs have been refreshed.
+   */
+  private final Map<ExecutableT, Integer> topologicalOrder;
+
   /**
    * A set of executables with currently extracted timers, that are to be processed. Note that, due
    * to consistency, we can have only single extracted set of timers that are being processed by
    * bundle processor at a time.
    */
   private final Map<ExecutableT, Set<String>> transformsWithAlreadyExtractedTimers =
-      Maps.newHashMap();
+      new ConcurrentHashMap<>();
 
   /**
    * Creates a new {@link WatermarkManager}. All watermarks within the newly created {@link
@@ -925,10 +977,9 @@ class WatermarkManager<ExecutableT, CollectionT> {
     this.graph = graph;
     this.getName = getName;
 
-    this.pendingUpdates = Queues.newArrayDeque();
-
-    this.refreshLock = new ReentrantLock();
-    this.pendingRefreshes = new HashSet<>();
+    this.refreshLock = new ReentrantReadWriteLock();
+    this.extractLock = new ReentrantLock();
+    this.pendingRefreshes = ConcurrentHashMap.newKeySet();
 
     transformToWatermarks = new HashMap<>();
 
@@ -938,6 +989,47 @@ class WatermarkManager<ExecutableT, CollectionT> {
     for (ExecutableT primitiveTransform : graph.getExecutables()) {
       getTransformWatermark(primitiveTransform);
     }
+    this.topologicalOrder = topologicalOrder(graph, transformToWatermarks.keySet());
+  }
+
+  /**
+   * Orders the executables such that each executable comes after the producers of all of its
+   * inputs. Executables that are not reachable from an executable without inputs are appended in
+   * iteration order.
+   */
+  private static <ExecutableT, CollectionT> Map<ExecutableT, Integer> topologicalOrder(
+      ExecutableGraph<ExecutableT, CollectionT> graph, Collection<ExecutableT> executables) {
+    Map<ExecutableT, Integer> unorderedInputs = new HashMap<>();
+    for (ExecutableT executable : executables) {
+      unorderedInputs.putIfAbsent(executable, 0);
+      for (CollectionT produced : graph.getProduced(executable)) {
+        for (ExecutableT consumer : graph.getPerElementConsumers(produced)) {
+          unorderedInputs.merge(consumer, 1, Integer::sum);
+        }
+      }
+    }
+    Map<ExecutableT, Integer> order = new HashMap<>();
+    Queue<ExecutableT> ready = new ArrayDeque<>();
+    for (ExecutableT executable : executables) {
+      if (unorderedInputs.get(executable) == 0) {
+        ready.add(executable);
+      }
+    }
+    while (!ready.isEmpty()) {
+      ExecutableT executable = ready.poll();
+      order.put(executable, order.size());
+      for (CollectionT produced : graph.getProduced(executable)) {
+        for (ExecutableT consumer : graph.getPerElementConsumers(produced)) {
+          if (unorderedInputs.merge(consumer, -1, Integer::sum) == 0) {
+            ready.add(consumer);
+          }
+        }
+      }
+    }
+    for (ExecutableT executable : executables) {
+      order.putIfAbsent(executable, order.size());
+    }
+    return order;
   }
 
   private TransformWatermarks getValueWatermark(CollectionT value) {
@@ -984,19 +1076,12 @@ class WatermarkManager<ExecutableT, CollectionT> {
 
     return update -> {
       String timerIdWithNs = update.stringKey();
-      synchronized (transformsWithAlreadyExtractedTimers) {
-        transformsWithAlreadyExtractedTimers.compute(
-            executable,
-            (k, v) -> {
-              if (v != null) {
-                v.remove(timerIdWithNs);
-                if (v.isEmpty()) {
-                  v = null;
-                }
-              }
-              return v;
-            });
-      }
+      transformsWithAlreadyExtractedTimers.computeIfPresent(
+          executable,
+          (k, v) -> {
+            v.remove(timerIdWithNs);
+            return v.isEmpty() ? null : v;
+          });
     };
   }
 
@@ -1042,7 +1127,7 @@ class WatermarkManager<ExecutableT, CollectionT> {
 
   public void initialize(
       Map<ExecutableT, ? extends Iterable<Bundle<?, CollectionT>>> initialBundles) {
-    refreshLock.lock();
+    refreshLock.writeLock().lock();
     try {
       for (Map.Entry<ExecutableT, ? extends Iterable<Bundle<?, CollectionT>>> rootEntry :
           initialBundles.entrySet()) {
@@ -1053,7 +1138,7 @@ class WatermarkManager<ExecutableT, CollectionT> {
         pendingRefreshes.add(rootEntry.getKey());
       }
     } finally {
-      refreshLock.unlock();
+      refreshLock.writeLock().unlock();
     }
   }
 
@@ -1075,7 +1160,8 @@ class WatermarkManager<ExecutableT, CollectionT> {
    *
    * .
    *
-   * <p>Updates to watermarks may not be immediately visible.
+   * <p>The update is applied by the calling thread, concurrently with updates committed by other
+   * threads. Updates to watermarks are not visible until the watermarks are refreshed.
    *
    * @param completed the input that has completed
    * @param timerUpdate the timers that were added, removed, and completed as part of producing this
@@ -1093,50 +1179,20 @@ class WatermarkManager<ExecutableT, CollectionT> {
       @Nullable Bundle<?, ? extends CollectionT> unprocessedInputs,
       Iterable<? extends Bundle<?, ? extends CollectionT>> outputs,
       Instant earliestHold) {
-    synchronized (pendingUpdates) {
-      pendingUpdates.offer(
-          PendingWatermarkUpdate.create(
-              executable, completed, timerUpdate, unprocessedInputs, outputs, earliestHold));
-    }
-    tryApplyPendingUpdates();
-  }
-
-  private void tryApplyPendingUpdates() {
-    if (refreshLock.tryLock()) {
-      try {
-        applyNUpdates(MAX_INCREMENTAL_UPDATES);
-      } finally {
-        refreshLock.unlock();
-      }
-    }
-  }
-
-  /**
-   * Applies all pending updates to this {@link WatermarkManager}, causing the pending state of all
-   * {@link TransformWatermarks} to be advanced as far as possible.
-   */
-  private void applyAllPendingUpdates() {
-    refreshLock.lock();
+    PendingWatermarkUpdate<ExecutableT, CollectionT> pending =
+        PendingWatermarkUpdate.create(
+            executable, completed, timerUpdate, unprocessedInputs, outputs, earliestHold);
+    refreshLock.readLock().lock();
     try {
-      applyNUpdates(-1);
+      applyPendingUpdate(pending);
+      pendingRefreshes.add(executable);
     } finally {
-      refreshLock.unlock();
-    }
-  }
-
-  /** Applies up to {@code numUpdates}, or all available updates if numUpdates is non-positive. */
-  @GuardedBy("refreshLock")
-  private void applyNUpdates(int numUpdates) {
-    synchronized (pendingUpdates) {
-      for (int i = 0; !pendingUpdates.isEmpty() && ((i < numUpdates) || (numUpdates <= 0)); i++) {
-        PendingWatermarkUpdate<ExecutableT, CollectionT> pending = pendingUpdates.poll();
-        applyPendingUpdate(pending);
-        pendingRefreshes.add(pending.getExecutable());
-      }
+      refreshLock.readLock().unlock();
     }
   }
 
   /** Apply a {@link PendingWatermarkUpdate} to the {@link WatermarkManager}. */
+  @GuardedBy("refreshLock")
   private void applyPendingUpdate(PendingWatermarkUpdate<ExecutableT, CollectionT> pending) {
     ExecutableT executable = pending.getExecutable();
     Bundle<?, ? extends CollectionT> inputBundle = pending.getInputBundle();
@@ -1177,9 +1233,8 @@ class WatermarkManager<ExecutableT, CollectionT> {
       ExecutableT executable,
       @Nullable Bundle<?, ? extends CollectionT> unprocessedInputs,
       Iterable<? extends Bundle<?, ? extends CollectionT>> outputs) {
-    // Newly pending elements must be added before completed elements are removed, as the two
-    // do not share a Mutex within this call and thus can be interleaved with external calls to
-    // refresh.
+    // Newly pending elements must be added before completed elements are removed. Refreshes are
+    // excluded while an update is applied, but the two are guarded by different stripe monitors.
     for (Bundle<?, ? extends CollectionT> bundle : outputs) {
       for (ExecutableT consumer : graph.getPerElementConsumers(bundle.getPCollection())) {
         TransformWatermarks watermarks = transformToWatermarks.get(consumer);
@@ -1202,39 +1257,69 @@ class WatermarkManager<ExecutableT, CollectionT> {
    * Refresh the watermarks contained within this {@link WatermarkManager}, causing all watermarks
    * to be advanced as far as possible.
    */
-  public synchronized void refreshAll() {
-    refreshLock.lock();
+  public void refreshAll() {
+    // An update is added to the pending refreshes after it is applied, so if there are none there
+    // is nothing to refresh, and threads committing updates are not blocked by the write lock.
+    if (pendingRefreshes.isEmpty()) {
+      return;
+    }
+    refreshLock.writeLock().lock();
     try {
-      applyAllPendingUpdates();
-      Set<ExecutableT> toRefresh = pendingRefreshes;
-      while (!toRefresh.isEmpty()) {
-        toRefresh = refreshAllOf(toRefresh);
-      }
+      // Refreshing in topological order visits each executable at most once, after any of its
+      // producers whose watermarks advanced.
+      NavigableSet<ExecutableT> toRefresh =
+          new TreeSet<>(Comparator.comparingInt(topologicalOrder::get));
+      toRefresh.addAll(pendingRefreshes);
       pendingRefreshes.clear();
+      ExecutableT executable;
+      while ((executable = toRefresh.pollFirst()) != null) {
+        refreshWatermarks(executable, toRefresh);
+      }
     } finally {
-      refreshLock.unlock();
-    }
-  }
-
-  private Set<ExecutableT> refreshAllOf(Set<ExecutableT> toRefresh) {
-    Set<ExecutableT> newRefreshes = new HashSet<>();
-    for (ExecutableT executable : toRefresh) {
-      newRefreshes.addAll(refreshWatermarks(executable));
+      refreshLock.writeLock().unlock();
     }
-    return newRefreshes;
   }
 
-  private Set<ExecutableT> refreshWatermarks(final ExecutableT toRefresh) {
+  private void refreshWatermarks(
+      final ExecutableT toRefresh, Collection<ExecutableT> additionalRefreshes) {
     TransformWatermarks myWatermarks = transformToWatermarks.get(toRefresh);
     WatermarkUpdate updateResult = myWatermarks.refresh();
     if (updateResult.isAdvanced()) {
-      Set<ExecutableT> additionalRefreshes = new HashSet<>();
       for (CollectionT outputPValue : graph.getProduced(toRefresh)) {
         additionalRefreshes.addAll(graph.getPerElementConsumers(outputPValue));
       }
-      return additionalRefreshes;
     }
-    return Collections.emptySet();
+  }
+
+  /**
+   * Advances the input watermark of the provided executable to at least the provided time, as if
+   * all of its inputs had advanced to it. Used to replay the inputs of an executable whose
+   * producers are not executed.
+   */
+  void advanceInputWatermark(ExecutableT executable, Instant inputWatermark) {
+    refreshLock.writeLock().lock();
+    try {
+      transformToWatermarks.get(executable).inputWatermark.advanceTo(inputWatermark);
+      refreshWatermarks(executable, new ArrayList<>());
+    } finally {
+      refreshLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the event time timers of the provided executable which have fired at its current input
+   * watermark, by key. Unlike {@link #extractFiredTimers(Collection)}, the timers are extracted
+   * even if previously extracted timers of the executable have not been completed.
+   */
+  Map<StructuralKey<?>, List<TimerData>> extractFiredEventTimeTimers(ExecutableT executable) {
+    refreshLock.readLock().lock();
+    extractLock.lock();
+    try {
+      return transformToWatermarks.get(executable).inputWatermark.extractFiredEventTimeTimers();
+    } finally {
+      extractLock.unlock();
+      refreshLock.readLock().unlock();
+    }
   }
 
   @VisibleForTesting
@@ -1250,7 +1335,8 @@ class WatermarkManager<ExecutableT, CollectionT> {
       Collection<ExecutableT> ignoredExecutables) {
 
     Collection<FiredTimers<ExecutableT>> allTimers = new ArrayList<>();
-    refreshLock.lock();
+    refreshLock.readLock().lock();
+    extractLock.lock();
     try {
       for (Map.Entry<ExecutableT, TransformWatermarks> watermarksEntry :
           transformToWatermarks.entrySet()) {
@@ -1258,33 +1344,27 @@ class WatermarkManager<ExecutableT, CollectionT> {
         if (ignoredExecutables.contains(transform)) {
           continue;
         }
-        synchronized (transformsWithAlreadyExtractedTimers) {
-          if (!transformsWithAlreadyExtractedTimers.containsKey(transform)) {
-            TransformWatermarks watermarks = watermarksEntry.getValue();
-            Collection<FiredTimers<ExecutableT>> firedTimers = watermarks.extractFiredTimers();
-            if (!firedTimers.isEmpty()) {
-              List<TimerData> newTimers =
-                  firedTimers.stream()
-                      .flatMap(f -> f.getTimers().stream())
-                      .collect(Collectors.toList());
-              transformsWithAlreadyExtractedTimers.compute(
-                  transform,
-                  (k, v) -> {
-                    if (v == null) {
-                      v = new HashSet<>();
-                    }
-                    final Set<String> toUpdate = v;
-                    newTimers.forEach(td -> toUpdate.add(td.stringKey()));
-                    return v;
-                  });
-              allTimers.addAll(firedTimers);
-            }
+        // Extracted timers are only added while holding the extractLock, and are completed by the
+        // bundles which deliver them, so a transform without extracted timers cannot gain any
+        // concurrently.
+        if (!transformsWithAlreadyExtractedTimers.containsKey(transform)) {
+          TransformWatermarks watermarks = watermarksEntry.getValue();
+          Collection<FiredTimers<ExecutableT>> firedTimers = watermarks.extractFiredTimers();
+          if (!firedTimers.isEmpty()) {
+            Set<String> newTimers =
+                firedTimers.stream()
+                    .flatMap(f -> f.getTimers().stream())
+                    .map(TimerData::stringKey)
+                    .collect(Collectors.toCollection(HashSet::new));
+            transformsWithAlreadyExtractedTimers.put(transform, newTimers);
+            allTimers.addAll(firedTimers);
           }
         }
       }
       return allTimers;
     } finally {
-      refreshLock.unlock();
+      extractLock.unlock();
+      refreshLock.readLock().unlock();
     }
   }
 
@@ -1347,13 +1427,15 @@ class WatermarkManager<ExecutableT, CollectionT> {
     }
   }
 
+  /**
+   * The watermark holds of each key. The holds are split into stripes by the hash of their key, so
+   * the holds of keys in different stripes are updated without contending.
+   */
   private static class PerKeyHolds {
-    private final Map<Object, KeyedHold> keyedHolds;
-    private final NavigableSet<KeyedHold> allHolds;
+    private final Stripes<HoldsStripe> stripes;
 
     private PerKeyHolds() {
-      this.keyedHolds = new HashMap<>();
-      this.allHolds = new TreeSet<>();
+      this.stripes = new Stripes<>(HoldsStripe::new);
     }
 
     /**
@@ -1361,7 +1443,15 @@ class WatermarkManager<ExecutableT, CollectionT> {
      * there are no holds within this {@link PerKeyHolds}.
      */
     public Instant getMinHold() {
-      return allHolds.isEmpty() ? THE_END_OF_TIME.get() : allHolds.first().getTimestamp();
+      Instant minHold = THE_END_OF_TIME.get();
+      for (HoldsStripe stripe : stripes) {
+        synchronized (stripe) {
+          if (!stripe.allHolds.isEmpty()) {
+            minHold = INSTANT_ORDERING.min(minHold, stripe.allHolds.first().getTimestamp());
+          }
+        }
+      }
+      return minHold;
     }
 
     /**
@@ -1369,18 +1459,72 @@ class WatermarkManager<ExecutableT, CollectionT> {
      * same key.
      */
     public void updateHold(@Nullable Object key, Instant newHold) {
-      removeHold(key);
-      KeyedHold newKeyedHold = KeyedHold.of(key, newHold);
-      keyedHolds.put(key, newKeyedHold);
-      allHolds.add(newKeyedHold);
+      HoldsStripe stripe = stripes.get(Objects.hashCode(key));
+      synchronized (stripe) {
+        stripe.removeHold(key);
+        KeyedHold newKeyedHold = KeyedHold.of(key, newHold);
+        stripe.keyedHolds.put(key, newKeyedHold);
+        stripe.allHolds.add(newKeyedHold);
+      }
     }
 
     /** Removes the hold of the provided key. */
     public void removeHold(Object key) {
-      KeyedHold oldHold = keyedHolds.remove(key);
-      if (oldHold != null) {
-        allHolds.remove(oldHold);
+      HoldsStripe stripe = stripes.get(Objects.hashCode(key));
+      synchronized (stripe) {
+        stripe.removeHold(key);
+      }
+    }
+
+    /** The holds of the keys which belong to one stripe. Callers hold the monitor of the stripe. */
+    private static class HoldsStripe {
+      private final Map<Object, KeyedHold> keyedHolds = new HashMap<>();
+      private final NavigableSet<KeyedHold> allHolds = new TreeSet<>();
+
+      private void removeHold(Object key) {
+        KeyedHold oldHold = keyedHolds.remove(key);
+        if (oldHold != null) {
+          allHolds.remove(oldHold);
+        }
+      }
+    }
+  }
+
+  /**
+   * A fixed number of stripes of some state, each guarded by its own monitor, which are selected by
+   * a hash. Threads which update state in different stripes do not contend, and readers combine the
+   * state of every stripe.
+   */
+  private static final class Stripes<T> implements Iterable<T> {
+    private final List<T> stripes;
+
+    private Stripes(Supplier<T> newStripe) {
+      ImmutableList.Builder<T> stripesBuilder = ImmutableList.builder();
+      for (int i = 0; i < NUM_STRIPES; i++) {
+        stripesBuilder.add(newStripe.get());
+      }
+      this.stripes = stripesBuilder.build();
+    }
+
+    /** Returns the stripe for the provided hash. */
+    private T get(int hash) {
+      return stripes.get(Math.floorMod(hash ^ (hash >>> 16), NUM_STRIPES));
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+      return stripes.iterator();
+    }
+
+    @Override
+    public String toString() {
+      List<String> contents = new ArrayList<>(NUM_STRIPES);
+      for (T stripe : stripes) {
+        synchronized (stripe) {
+          contents.add(stripe.toString());
+        }
       }
+      return contents.toString();
     }
   }
 
@@ -1394,8 +1538,8 @@ class WatermarkManager<ExecutableT, CollectionT> {
     private final SynchronizedProcessingTimeInputWatermark synchronizedProcessingInputWatermark;
     private final SynchronizedProcessingTimeOutputWatermark synchronizedProcessingOutputWatermark;
 
-    private Instant latestSynchronizedInputWm;
-    private Instant latestSynchronizedOutputWm;
+    private final AtomicReference<Instant> latestSynchronizedInputWm;
+    private final AtomicReference<Instant> latestSynchronizedOutputWm;
 
     private TransformWatermarks(
         ExecutableT executable,
@@ -1409,8 +1553,8 @@ class WatermarkManager<ExecutableT, CollectionT> {
 
       this.synchronizedProcessingInputWatermark = inputSynchProcessingWatermark;
       this.synchronizedProcessingOutputWatermark = outputSynchProcessingWatermark;
-      this.latestSynchronizedInputWm = BoundedWindow.TIMESTAMP_MIN_VALUE;
-      this.latestSynchronizedOutputWm = BoundedWindow.TIMESTAMP_MIN_VALUE;
+      this.latestSynchronizedInputWm = new AtomicReference<>(BoundedWindow.TIMESTAMP_MIN_VALUE);
+      this.latestSynchronizedOutputWm = new AtomicReference<>(BoundedWindow.TIMESTAMP_MIN_VALUE);
     }
 
     /** Returns the input watermark of the {@link AppliedPTransform}. */
@@ -1429,12 +1573,10 @@ class WatermarkManager<ExecutableT, CollectionT> {
      * <p>The returned value is guaranteed to be monotonically increasing, and outside of the
      * presence of holds, will increase as the system time progresses.
      */
-    public synchronized Instant getSynchronizedProcessingInputTime() {
-      latestSynchronizedInputWm =
-          INSTANT_ORDERING.max(
-              latestSynchronizedInputWm,
-              INSTANT_ORDERING.min(clock.now(), synchronizedProcessingInputWatermark.get()));
-      return latestSynchronizedInputWm;
+    public Instant getSynchronizedProcessingInputTime() {
+      return latestSynchronizedInputWm.accumulateAndGet(
+          INSTANT_ORDERING.min(clock.now(), synchronizedProcessingInputWatermark.get()),
+          INSTANT_ORDERING::max);
     }
 
     /**
@@ -1443,12 +1585,10 @@ class WatermarkManager<ExecutableT, CollectionT> {
      * <p>The returned value is guaranteed to be monotonically increasing, and outside of the
      * presence of holds, will increase as the system time progresses.
      */
-    public synchronized Instant getSynchronizedProcessingOutputTime() {
-      latestSynchronizedOutputWm =
-          INSTANT_ORDERING.max(
-              latestSynchronizedOutputWm,
-              INSTANT_ORDERING.min(clock.now(), synchronizedProcessingOutputWatermark.get()));
-      return latestSynchronizedOutputWm;
+    public Instant getSynchronizedProcessingOutputTime() {
+      return latestSynchronizedOutputWm.accumulateAndGet(
+          INSTANT_ORDERING.min(clock.now(), synchronizedProcessingOutputWatermark.get()),
+          INSTANT_ORDERING::max);
     }
 
     private WatermarkUpdate refresh() {
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An {@link java.util.concurrent.ExecutorService} backed by a work-stealing {@link ForkJoinPool}.
+ *
+ * <p>Work submitted by a worker of the pool, such as the bundles scheduled when a bundle completes,
+ * is queued locally to that worker and executed by it unless an idle worker steals it first. This
+ * keeps follow-up work on the thread which produced its input while letting idle workers balance
+ * the load, rather than contending on a single shared queue.
+ */
+final class WorkStealingExecutorService extends AbstractExecutorService {
+  public static WorkStealingExecutorService create(int parallelism, String threadNamePrefix) {
+    return new WorkStealingExecutorService(parallelism, threadNamePrefix);
+  }
+
+  private final ForkJoinPool pool;
+  private final long createdNanos;
+  private final LongAdder busyNanos;
+
+  private WorkStealingExecutorService(int parallelism, String threadNamePrefix) {
+    AtomicInteger threadCount = new AtomicInteger();
+    // The default factory of worker threads uses the system class loader, so the workers inherit
+    // the context class loader of the thread creating the executor instead.
+    ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+    this.pool =
+        new ForkJoinPool(
+            parallelism,
+            forkJoinPool -> {
+              ForkJoinWorkerThread thread =
+                  ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+              // Don't use Daemon threads for workers. The Pipeline should continue to execute even
+              // if there are no other active threads.
+              thread.setDaemon(false);
+              thread.setName(threadNamePrefix + "-" + threadCount.getAndIncrement());
+              thread.setContextClassLoader(contextClassLoader);
+              return thread;
+            },
+            null,
+            true);
+    this.createdNanos = System.nanoTime();
+    this.busyNanos = new LongAdder();
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    ForkJoinTask<?> task = ForkJoinTask.adapt(() -> executeMeasured(command));
+    if (ForkJoinTask.getPool() == pool) {
+      task.fork();
+    } else {
+      pool.execute(task);
+    }
+  }
+
+  private void executeMeasured(Runnable command) {
+    long startNanos = System.nanoTime();
+    try {
+      command.run();
+    } finally {
+      busyNanos.add(System.nanoTime() - startNanos);
+    }
+  }
+
+  /**
+   * Returns the fraction of the capacity of the workers since this executor was created which was
+   * spent executing work.
+   */
+  public double getUtilization() {
+    long elapsedNanos = System.nanoTime() - createdNanos;
+    if (elapsedNanos <= 0) {
+      return 0;
+    }
+    return (double) busyNanos.sum() / ((double) elapsedNanos * pool.getParallelism());
+  }
+
+  /** Returns the number of tasks executed by a worker other than the one which queued them. */
+  public long getStealCount() {
+    return pool.getStealCount();
+  }
+
+  @Override
+  public void shutdown() {
+    pool.shutdown();
+  }
+
+  @Override
+  public List<Runnable> shutdownNow() {
+    return pool.shutdownNow();
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return pool.isShutdown();
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return pool.isTerminated();
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return pool.awaitTermination(timeout, unit);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s{parallelism=%s, utilization=%.2f, steals=%s}",
+        WorkStealingExecutorService.class.getSimpleName(),
+        pool.getParallelism(),
+        getUtilization(),
+        getStealCount());
+  }
+}
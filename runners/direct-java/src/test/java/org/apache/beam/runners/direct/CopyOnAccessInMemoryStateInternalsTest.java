@@ -302,6 +302,46 @@ public class CopyOnAccessInMemoryStateInternalsTest {
     assertThat(internals.isEmpty(), is(false));
   }
 
+  @Test
+  public void testCommitSpillsBagsOverMemoryBudget() throws Exception {
+    try (StateSpiller spiller = StateSpiller.create(8L)) {
+      StateNamespace namespace = new StateNamespaceForTest("foo");
+      StateTag<BagState<String>> bagTag = StateTags.bag("foo", StringUtf8Coder.of());
+      CopyOnAccessInMemoryStateInternals<String> first =
+          CopyOnAccessInMemoryStateInternals.withUnderlying(key, null, spiller);
+      first.state(namespace, bagTag).add("bar");
+      first.commit();
+      // Within the budget, so the contents stay on the heap.
+      assertThat(spiller.getBufferedBytes(), equalTo(3L));
+
+      CopyOnAccessInMemoryStateInternals<String> second =
+          CopyOnAccessInMemoryStateInternals.withUnderlying(key, first, spiller);
+      second.state(namespace, bagTag).add("bazqux");
+      second.commit();
+      // Over the budget, so the contents of the bag are spilled.
+      assertThat(spiller.getBufferedBytes(), equalTo(0L));
+      SpillingBag<String> spilled = (SpillingBag<String>) second.state(namespace, bagTag);
+      assertThat(spilled.getBufferedBytes(), equalTo(0L));
+      assertThat(spilled.read(), containsInAnyOrder("bar", "bazqux"));
+
+      CopyOnAccessInMemoryStateInternals<String> third =
+          CopyOnAccessInMemoryStateInternals.withUnderlying(key, second, spiller);
+      third.state(namespace, bagTag).add("spam");
+      third.commit();
+      assertThat(spiller.getBufferedBytes(), equalTo(4L));
+      assertThat(
+          third.state(namespace, bagTag).read(), containsInAnyOrder("bar", "bazqux", "spam"));
+
+      CopyOnAccessInMemoryStateInternals<String> fourth =
+          CopyOnAccessInMemoryStateInternals.withUnderlying(key, third, spiller);
+      fourth.state(namespace, bagTag).clear();
+      fourth.commit();
+      // Cleared state is no longer accounted.
+      assertThat(spiller.getBufferedBytes(), equalTo(0L));
+      assertThat(fourth.isEmpty(), is(true));
+    }
+  }
+
   @Test
   public void testCommitWithUnderlying() {
     CopyOnAccessInMemoryStateInternals<String> underlying =
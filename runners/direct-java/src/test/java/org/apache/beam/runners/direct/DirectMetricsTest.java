@@ -21,8 +21,11 @@ import static org.apache.beam.sdk.metrics.MetricNameFilter.inNamespace;
 import static org.apache.beam.sdk.metrics.MetricResultsMatchers.attemptedMetricsResult;
 import static org.apache.beam.sdk.metrics.MetricResultsMatchers.committedMetricsResult;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -36,6 +39,7 @@ import org.apache.beam.sdk.metrics.MetricKey;
 import org.apache.beam.sdk.metrics.MetricName;
 import org.apache.beam.sdk.metrics.MetricQueryResults;
 import org.apache.beam.sdk.metrics.MetricsFilter;
+import org.apache.beam.sdk.util.HistogramData;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
 import org.joda.time.Instant;
 import org.junit.After;
@@ -239,4 +243,20 @@ public class DirectMetricsTest {
             attemptedMetricsResult("ns1", "name1", "Top1/Outer1/Inner2", 8L),
             attemptedMetricsResult("ns1", "name1", "Top1/Outer2/Inner2", 18L)));
   }
+
+  @Test
+  public void testRecordLatency() {
+    MetricKey key = MetricKey.create("step1", DirectSystemMetrics.BUNDLE_PROCESSING_MICROS);
+    for (long micros = 1; micros <= 1000; micros++) {
+      metrics.recordLatency(key, micros);
+    }
+    metrics.recordLatency(key, 0L);
+
+    HistogramData latencies = metrics.getLatencies(key);
+    assertThat(latencies.getTotalCount(), equalTo(1001L));
+    // Each power of two is divided into eight buckets, so percentiles are within an eighth.
+    assertThat(latencies.p50(), closeTo(500, 500 / 8.0));
+    assertThat(latencies.p99(), closeTo(990, 990 / 8.0));
+    assertThat(metrics.getLatencies(MetricKey.create("step2", NAME1)), nullValue());
+  }
 }
@@ -19,8 +19,11 @@ package org.apache.beam.runners.direct;
 
 import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkState;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.isA;
 import static org.junit.Assert.assertEquals;
@@ -31,11 +34,16 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
@@ -62,21 +70,39 @@ import org.apache.beam.sdk.io.CountingSource;
 import org.apache.beam.sdk.io.GenerateSequence;
 import org.apache.beam.sdk.io.Read;
 import org.apache.beam.sdk.io.UnboundedSource;
+import org.apache.beam.sdk.metrics.Counter;
+import org.apache.beam.sdk.metrics.DistributionResult;
+import org.apache.beam.sdk.metrics.GaugeResult;
+import org.apache.beam.sdk.metrics.MetricNameFilter;
+import org.apache.beam.sdk.metrics.MetricQueryResults;
+import org.apache.beam.sdk.metrics.MetricResult;
+import org.apache.beam.sdk.metrics.Metrics;
+import org.apache.beam.sdk.metrics.MetricsFilter;
 import org.apache.beam.sdk.options.Default;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.apache.beam.sdk.state.StateSpec;
+import org.apache.beam.sdk.state.StateSpecs;
+import org.apache.beam.sdk.state.TimeDomain;
+import org.apache.beam.sdk.state.Timer;
+import org.apache.beam.sdk.state.TimerSpec;
+import org.apache.beam.sdk.state.TimerSpecs;
+import org.apache.beam.sdk.state.ValueState;
 import org.apache.beam.sdk.testing.PAssert;
 import org.apache.beam.sdk.testing.TestPipeline;
 import org.apache.beam.sdk.transforms.Count;
 import org.apache.beam.sdk.transforms.Create;
 import org.apache.beam.sdk.transforms.DoFn;
 import org.apache.beam.sdk.transforms.Flatten;
+import org.apache.beam.sdk.transforms.GroupByKey;
 import org.apache.beam.sdk.transforms.MapElements;
 import org.apache.beam.sdk.transforms.PTransform;
 import org.apache.beam.sdk.transforms.ParDo;
 import org.apache.beam.sdk.transforms.SerializableFunction;
 import org.apache.beam.sdk.transforms.SimpleFunction;
 import org.apache.beam.sdk.transforms.Sum;
+import org.apache.beam.sdk.transforms.Values;
+import org.apache.beam.sdk.transforms.WithKeys;
 import org.apache.beam.sdk.transforms.display.DisplayData;
 import org.apache.beam.sdk.transforms.windowing.AfterWatermark;
 import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
@@ -93,6 +119,7 @@ import org.apache.beam.sdk.values.TypeDescriptor;
 import org.apache.beam.sdk.values.TypeDescriptors;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableMap;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.hamcrest.Matchers;
 import org.joda.time.Duration;
@@ -450,6 +477,209 @@ public class DirectRunnerTest implements Serializable {
     pipeline.run();
   }
 
+  /**
+   * Tests that chains of {@link ParDo ParDos} produce the same output in performance mode, with the
+   * metrics of fused steps attributed to those steps.
+   */
+  @Test
+  public void testPerformanceModeFusesParDos() {
+    PipelineOptions options = PipelineOptionsFactory.create();
+    options.setRunner(DirectRunner.class);
+    options.as(DirectOptions.class).setPerformanceMode(true);
+    Pipeline pipeline = Pipeline.create(options);
+
+    PCollection<Integer> incremented =
+        pipeline
+            .apply(Create.of(1, 2, 3))
+            .apply("Double", ParDo.of(new CountingMultiplyFn(2)))
+            .apply("Triple", ParDo.of(new CountingMultiplyFn(3)))
+            .apply(
+                "Increment",
+                MapElements.into(TypeDescriptors.integers()).via((Integer i) -> i + 1));
+    PAssert.that(incremented).containsInAnyOrder(7, 13, 19);
+    PAssert.that(incremented.apply(Sum.integersGlobally())).containsInAnyOrder(39);
+
+    PipelineResult result = pipeline.run();
+    for (String step : Arrays.asList("Double", "Triple")) {
+      MetricQueryResults metrics =
+          result
+              .metrics()
+              .queryMetrics(
+                  MetricsFilter.builder()
+                      .addStep(step)
+                      .addNameFilter(MetricNameFilter.named(CountingMultiplyFn.class, "elements"))
+                      .build());
+      assertThat(Iterables.getOnlyElement(metrics.getCounters()).getCommitted(), equalTo(3L));
+    }
+  }
+
+  /** Tests that grouped values spilled to local disk are read back in full. */
+  @Test
+  public void testGroupByKeyWithSpilledState() {
+    PipelineOptions options = PipelineOptionsFactory.create();
+    options.setRunner(DirectRunner.class);
+    options.as(DirectOptions.class).setStateMemoryMb(0);
+    Pipeline pipeline = Pipeline.create(options);
+
+    PCollection<KV<Integer, Iterable<Long>>> grouped =
+        pipeline
+            .apply(GenerateSequence.from(0).to(1000))
+            .apply(WithKeys.of((Long i) -> (int) (i % 10)).withKeyType(TypeDescriptors.integers()))
+            .apply(GroupByKey.create());
+    PAssert.that(
+            grouped.apply(
+                MapElements.into(TypeDescriptors.integers())
+                    .via((KV<Integer, Iterable<Long>> kv) -> Iterables.size(kv.getValue()))))
+        .containsInAnyOrder(Collections.nCopies(10, 100));
+    PAssert.that(grouped.apply(Values.create()).apply(Flatten.iterables()).apply(Count.globally()))
+        .containsInAnyOrder(1000L);
+
+    pipeline.run();
+  }
+
+  /** Tests that the DirectRunner reports metrics about its execution of each step. */
+  @Test
+  public void testSystemMetrics() {
+    Pipeline pipeline = getPipeline();
+    pipeline.apply(Create.of(1, 2, 3)).apply("Double", ParDo.of(new CountingMultiplyFn(2)));
+
+    PipelineResult result = pipeline.run();
+    MetricQueryResults metrics =
+        result
+            .metrics()
+            .queryMetrics(
+                MetricsFilter.builder()
+                    .addStep("Double")
+                    .addNameFilter(MetricNameFilter.inNamespace(DirectSystemMetrics.NAMESPACE))
+                    .build());
+    MetricResult<Long> elements = Iterables.getOnlyElement(metrics.getCounters());
+    assertThat(elements.getName(), equalTo(DirectSystemMetrics.ELEMENTS));
+    assertThat(elements.getCommitted(), equalTo(3L));
+    for (MetricResult<DistributionResult> distribution : metrics.getDistributions()) {
+      assertThat(distribution.getCommitted().getCount(), greaterThan(0L));
+    }
+    assertThat(
+        Iterables.transform(metrics.getDistributions(), MetricResult::getName),
+        hasItems(
+            DirectSystemMetrics.BUNDLE_SIZE,
+            DirectSystemMetrics.BUNDLE_PROCESSING_MICROS,
+            DirectSystemMetrics.QUEUEING_DELAY_MICROS));
+  }
+
+  /** Tests that the DirectRunner reports the utilization of its workers. */
+  @Test
+  public void testExecutorMetrics() {
+    Pipeline pipeline = getPipeline();
+    pipeline.apply(Create.of(1, 2, 3)).apply("Double", ParDo.of(new CountingMultiplyFn(2)));
+
+    PipelineResult result = pipeline.run();
+    MetricQueryResults metrics =
+        result
+            .metrics()
+            .queryMetrics(
+                MetricsFilter.builder().addStep(DirectSystemMetrics.EXECUTOR_STEP).build());
+    assertThat(
+        Iterables.transform(metrics.getGauges(), MetricResult::getName),
+        hasItems(
+            DirectSystemMetrics.WORKER_UTILIZATION_PERCENT, DirectSystemMetrics.WORKER_STEALS));
+    for (MetricResult<GaugeResult> gauge : metrics.getGauges()) {
+      assertThat(gauge.getAttempted().getValue(), greaterThanOrEqualTo(0L));
+    }
+  }
+
+  /**
+   * Tests that {@link DoFn DoFns} are executed with the context class loader of the thread which
+   * runs the pipeline.
+   */
+  @Test
+  public void testDoFnsUseContextClassLoaderOfCaller() throws Exception {
+    ClassLoader original = Thread.currentThread().getContextClassLoader();
+    ClassLoader custom = new URLClassLoader(new URL[0], original);
+    CONTEXT_CLASS_LOADERS.clear();
+    Thread.currentThread().setContextClassLoader(custom);
+    try {
+      Pipeline pipeline = getPipeline();
+      pipeline.apply(Create.of(1, 2, 3)).apply(ParDo.of(new RecordContextClassLoaderFn()));
+      pipeline.run();
+    } finally {
+      Thread.currentThread().setContextClassLoader(original);
+    }
+
+    assertThat(CONTEXT_CLASS_LOADERS, contains(custom));
+  }
+
+  private static final Set<ClassLoader> CONTEXT_CLASS_LOADERS = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Tests that the timers of many keys of a step which fire together are delivered in a single unit
+   * of work, with the state of each key.
+   */
+  @Test
+  public void testTimersOfManyKeysFireInOneBatch() {
+    TIMER_THREADS.clear();
+    Pipeline pipeline = getPipeline();
+    List<KV<Integer, Integer>> values = new ArrayList<>();
+    List<Integer> expected = new ArrayList<>();
+    for (int key = 0; key < 100; key++) {
+      values.add(KV.of(key, key * 2));
+      expected.add(key * 2);
+    }
+    PCollection<Integer> flushed =
+        pipeline.apply(Create.of(values)).apply(ParDo.of(new FlushAtEndOfWindowFn()));
+    PAssert.that(flushed).containsInAnyOrder(expected);
+    pipeline.run();
+
+    assertThat(TIMER_THREADS.size(), equalTo(1));
+  }
+
+  private static final Set<Thread> TIMER_THREADS = ConcurrentHashMap.newKeySet();
+
+  private static class FlushAtEndOfWindowFn extends DoFn<KV<Integer, Integer>, Integer> {
+    @StateId("value")
+    private final StateSpec<ValueState<Integer>> valueSpec = StateSpecs.value(VarIntCoder.of());
+
+    @TimerId("flush")
+    private final TimerSpec flushSpec = TimerSpecs.timer(TimeDomain.EVENT_TIME);
+
+    @ProcessElement
+    public void processElement(
+        @Element KV<Integer, Integer> element,
+        BoundedWindow window,
+        @StateId("value") ValueState<Integer> value,
+        @TimerId("flush") Timer flush) {
+      value.write(element.getValue());
+      flush.set(window.maxTimestamp());
+    }
+
+    @OnTimer("flush")
+    public void flush(OutputReceiver<Integer> output, @StateId("value") ValueState<Integer> value) {
+      TIMER_THREADS.add(Thread.currentThread());
+      output.output(value.read());
+    }
+  }
+
+  private static class RecordContextClassLoaderFn extends DoFn<Integer, Void> {
+    @ProcessElement
+    public void processElement() {
+      CONTEXT_CLASS_LOADERS.add(Thread.currentThread().getContextClassLoader());
+    }
+  }
+
+  private static class CountingMultiplyFn extends DoFn<Integer, Integer> {
+    private final Counter elements = Metrics.counter(CountingMultiplyFn.class, "elements");
+    private final int factor;
+
+    private CountingMultiplyFn(int factor) {
+      this.factor = factor;
+    }
+
+    @ProcessElement
+    public void processElement(@Element Integer element, OutputReceiver<Integer> receiver) {
+      elements.inc();
+      receiver.output(element * factor);
+    }
+  }
+
   /**
    * Tests that a {@link DoFn} that mutates an output with a good equals() fails in the {@link
    * DirectRunner}.
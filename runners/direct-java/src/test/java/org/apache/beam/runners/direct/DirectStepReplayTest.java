@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.notNullValue;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.apache.beam.runners.direct.BundleRecorder.Record;
+import org.apache.beam.runners.direct.BundleRecorder.RecordedBundle;
+import org.apache.beam.runners.direct.BundleRecorder.RecordedViewContents;
+import org.apache.beam.sdk.Pipeline;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.options.PipelineOptions;
+import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.apache.beam.sdk.state.StateSpec;
+import org.apache.beam.sdk.state.StateSpecs;
+import org.apache.beam.sdk.state.TimeDomain;
+import org.apache.beam.sdk.state.Timer;
+import org.apache.beam.sdk.state.TimerSpec;
+import org.apache.beam.sdk.state.TimerSpecs;
+import org.apache.beam.sdk.state.ValueState;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.GroupByKey;
+import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.transforms.View;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.PCollectionView;
+import org.apache.beam.sdk.values.TimestampedValue;
+import org.joda.time.Instant;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link DirectStepReplay} and the recording of bundles by the {@link DirectRunner}. */
+@RunWith(JUnit4.class)
+public class DirectStepReplayTest {
+  private static final String SUM_STEP = "Sum/ParMultiDo(Sum)";
+  private static final String BUFFER_STEP = "Buffer/ParMultiDo(Buffer)/Stateful ParDo";
+  private static final String MULTIPLIER_VIEW =
+      "AsMultiplier/Combine.GloballyAsSingletonView/CombineValues/Values/Values/Map/"
+          + "ParMultiDo(Anonymous).output";
+  private static final Instant TIMER_TIMESTAMP = new Instant(100);
+  private static final Queue<String> SUMS = new ConcurrentLinkedQueue<>();
+
+  @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Before
+  public void setup() {
+    SUMS.clear();
+  }
+
+  @Test
+  public void replaysRecordedInputsOfStep() throws Exception {
+    Path recording = tmp.getRoot().toPath().resolve("bundles");
+    Pipeline recorded = createPipeline(recording.toString());
+    recorded.run();
+    assertThat(SUMS, containsInAnyOrder("foo=3", "bar=3"));
+
+    List<Record> bundles = BundleRecorder.read(recording, SUM_STEP, Collections.emptySet());
+    assertThat(bundles.size(), greaterThan(0));
+    for (Record bundle : bundles) {
+      // The outputs of GroupByKey are keyed.
+      assertThat(((RecordedBundle) bundle).getKey(), notNullValue());
+    }
+
+    SUMS.clear();
+    DirectStepReplay replay =
+        DirectStepReplay.of(createPipeline(null), recording.toString(), SUM_STEP);
+    assertThat(replay.getBundleCount(), equalTo(bundles.size()));
+    assertThat(replay.replay(), equalTo(2L));
+    assertThat(SUMS, containsInAnyOrder("foo=3", "bar=3"));
+
+    // Each replay evaluates the same inputs.
+    SUMS.clear();
+    assertThat(replay.replay(), equalTo(2L));
+    assertThat(SUMS, containsInAnyOrder("foo=3", "bar=3"));
+  }
+
+  @Test
+  public void replaysSideInputsAndEventTimeTimers() throws Exception {
+    Path recording = tmp.getRoot().toPath().resolve("bundles");
+    Pipeline recorded = createTimerPipeline(recording.toString());
+    recorded.run();
+    assertThat(SUMS, containsInAnyOrder("foo=30", "bar=40"));
+
+    Set<String> views = Collections.singleton(MULTIPLIER_VIEW);
+    List<Record> records = BundleRecorder.read(recording, BUFFER_STEP, views);
+    assertThat(records, hasItem(instanceOf(RecordedViewContents.class)));
+    Instant latestInputWatermark = BoundedWindow.TIMESTAMP_MIN_VALUE;
+    for (Record record : records) {
+      if (record instanceof RecordedBundle) {
+        latestInputWatermark = ((RecordedBundle) record).getInputWatermark();
+      }
+    }
+    // The timers fired once the input watermark passed them.
+    assertThat(latestInputWatermark, greaterThan(TIMER_TIMESTAMP));
+
+    // The side input is only ready, and the timers only fire, if the replay restores the
+    // contents of the view and advances the input watermark.
+    SUMS.clear();
+    DirectStepReplay replay =
+        DirectStepReplay.of(createTimerPipeline(null), recording.toString(), BUFFER_STEP);
+    replay.replay();
+    assertThat(SUMS, containsInAnyOrder("foo=30", "bar=40"));
+
+    SUMS.clear();
+    replay.replay();
+    assertThat(SUMS, containsInAnyOrder("foo=30", "bar=40"));
+  }
+
+  private static Pipeline createPipeline(String recordBundlesTo) {
+    PipelineOptions options = PipelineOptionsFactory.create();
+    options.setRunner(DirectRunner.class);
+    options.as(DirectOptions.class).setRecordBundlesTo(recordBundlesTo);
+    Pipeline pipeline = Pipeline.create(options);
+    pipeline
+        .apply(Create.of(KV.of("foo", 1), KV.of("bar", 3), KV.of("foo", 2)))
+        .apply(GroupByKey.create())
+        .apply("Sum", ParDo.of(new Sum()));
+    return pipeline;
+  }
+
+  private static Pipeline createTimerPipeline(String recordBundlesTo) {
+    PipelineOptions options = PipelineOptionsFactory.create();
+    options.setRunner(DirectRunner.class);
+    options.as(DirectOptions.class).setRecordBundlesTo(recordBundlesTo);
+    Pipeline pipeline = Pipeline.create(options);
+    PCollectionView<Integer> multiplier =
+        pipeline.apply("Multiplier", Create.of(10)).apply("AsMultiplier", View.asSingleton());
+    pipeline
+        .apply(
+            Create.timestamped(
+                TimestampedValue.of(KV.of("foo", 1), new Instant(1)),
+                TimestampedValue.of(KV.of("bar", 4), new Instant(2)),
+                TimestampedValue.of(KV.of("foo", 2), new Instant(3))))
+        .apply("Buffer", ParDo.of(new Buffer(multiplier)).withSideInputs(multiplier));
+    return pipeline;
+  }
+
+  /** Buffers the values of each key multiplied by a side input until an event time timer fires. */
+  private static class Buffer extends DoFn<KV<String, Integer>, Integer> {
+    private final PCollectionView<Integer> multiplier;
+
+    @StateId("key")
+    private final StateSpec<ValueState<String>> keySpec = StateSpecs.value(StringUtf8Coder.of());
+
+    @StateId("sum")
+    private final StateSpec<ValueState<Integer>> sumSpec = StateSpecs.value(VarIntCoder.of());
+
+    @TimerId("flush")
+    private final TimerSpec flushSpec = TimerSpecs.timer(TimeDomain.EVENT_TIME);
+
+    private Buffer(PCollectionView<Integer> multiplier) {
+      this.multiplier = multiplier;
+    }
+
+    @ProcessElement
+    public void processElement(
+        ProcessContext c,
+        @StateId("key") ValueState<String> key,
+        @StateId("sum") ValueState<Integer> sum,
+        @TimerId("flush") Timer flush) {
+      Integer current = sum.read();
+      key.write(c.element().getKey());
+      sum.write((current == null ? 0 : current) + c.element().getValue() * c.sideInput(multiplier));
+      flush.set(TIMER_TIMESTAMP);
+    }
+
+    @OnTimer("flush")
+    public void flush(
+        OnTimerContext c,
+        @StateId("key") ValueState<String> key,
+        @StateId("sum") ValueState<Integer> sum) {
+      SUMS.add(key.read() + "=" + sum.read());
+      c.output(sum.read());
+    }
+  }
+
+  private static class Sum extends DoFn<KV<String, Iterable<Integer>>, Integer> {
+    @ProcessElement
+    public void processElement(ProcessContext c) {
+      int sum = 0;
+      for (int value : c.element().getValue()) {
+        sum += value;
+      }
+      SUMS.add(c.element().getKey() + "=" + sum);
+      c.output(sum);
+    }
+  }
+}
@@ -18,11 +18,14 @@
 package org.apache.beam.runners.direct;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.isA;
 import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
@@ -35,11 +38,17 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.beam.runners.core.metrics.DistributionData;
+import org.apache.beam.runners.core.metrics.MetricUpdates;
+import org.apache.beam.runners.core.metrics.MetricUpdates.MetricUpdate;
 import org.apache.beam.runners.direct.CommittedResult.OutputType;
+import org.apache.beam.runners.direct.WatermarkManager.TransformWatermarks;
+import org.apache.beam.sdk.metrics.MetricKey;
 import org.apache.beam.sdk.runners.AppliedPTransform;
 import org.apache.beam.sdk.testing.TestPipeline;
 import org.apache.beam.sdk.transforms.Create;
 import org.apache.beam.sdk.transforms.WithKeys;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.util.WindowedValue;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PCollection;
@@ -76,6 +85,7 @@ public class DirectTransformExecutorTest {
   @Mock private DirectMetrics metrics;
   @Mock private EvaluationContext evaluationContext;
   @Mock private TransformEvaluatorRegistry registry;
+  @Mock private TransformWatermarks watermarks;
 
   @Rule public TestPipeline p = TestPipeline.create().enableAbandonedNodeEnforcement(false);
 
@@ -100,6 +110,8 @@ public class DirectTransformExecutorTest {
     downstreamProducer = graph.getProducer(downstream);
 
     when(evaluationContext.getMetrics()).thenReturn(metrics);
+    when(evaluationContext.getWatermarks(any())).thenReturn(watermarks);
+    when(watermarks.getInputWatermark()).thenReturn(BoundedWindow.TIMESTAMP_MIN_VALUE);
   }
 
   @Test
@@ -134,7 +146,7 @@ public class DirectTransformExecutorTest {
     executor.run();
 
     assertThat(finishCalled.get(), is(true));
-    assertThat(completionCallback.handledResult, equalTo(result));
+    assertThat(withoutMetrics(completionCallback.handledResult), equalTo(result));
     assertThat(completionCallback.handledException, is(nullValue()));
   }
 
@@ -199,8 +211,19 @@ public class DirectTransformExecutorTest {
     future.get();
 
     assertThat(elementsProcessed, containsInAnyOrder(spam, third, foo));
-    assertThat(completionCallback.handledResult, equalTo(result));
+    assertThat(withoutMetrics(completionCallback.handledResult), equalTo(result));
     assertThat(completionCallback.handledException, is(nullValue()));
+
+    // The system metrics of the step are reported as logical updates of the result.
+    MetricUpdates systemMetrics = completionCallback.handledResult.getLogicalMetricUpdates();
+    MetricKey elementsKey =
+        MetricKey.create(downstreamProducer.getFullName(), DirectSystemMetrics.ELEMENTS);
+    assertThat(systemMetrics.counterUpdates(), contains(MetricUpdate.create(elementsKey, 3L)));
+    MetricKey bundleSizeKey =
+        MetricKey.create(downstreamProducer.getFullName(), DirectSystemMetrics.BUNDLE_SIZE);
+    assertThat(
+        systemMetrics.distributionUpdates(),
+        hasItem(MetricUpdate.create(bundleSizeKey, DistributionData.singleton(3L))));
   }
 
   @Test
@@ -316,7 +339,8 @@ public class DirectTransformExecutorTest {
     TestEnforcement<?> testEnforcement = enforcement.instance;
     assertThat(testEnforcement.beforeElements, containsInAnyOrder(barElem, fooElem));
     assertThat(testEnforcement.afterElements, containsInAnyOrder(barElem, fooElem));
-    assertThat(testEnforcement.finishedBundles, Matchers.contains(result));
+    assertThat(
+        withoutMetrics(Iterables.getOnlyElement(testEnforcement.finishedBundles)), equalTo(result));
   }
 
   @Test
@@ -395,6 +419,11 @@ public class DirectTransformExecutorTest {
     task.get();
   }
 
+  /** Strips the system metrics reported by every {@link DirectTransformExecutor}. */
+  private static TransformResult<?> withoutMetrics(TransformResult<?> result) {
+    return result.withLogicalMetricUpdates(MetricUpdates.EMPTY);
+  }
+
   private static class RegisteringCompletionCallback implements CompletionCallback {
     private TransformResult<?> handledResult = null;
     private boolean handledEmpty = false;
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.not;
+
+import java.util.Map;
+import org.apache.beam.sdk.runners.AppliedPTransform;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.Impulse;
+import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.transforms.View;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.PCollectionView;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link FusedParDoEvaluator}. */
+@RunWith(JUnit4.class)
+public class FusedParDoEvaluatorTest {
+  @Rule public TestPipeline p = TestPipeline.create().enableAbandonedNodeEnforcement(false);
+
+  @Test
+  public void fusesParDosWithSingleConsumer() {
+    PCollection<byte[]> impulse = p.apply(Impulse.create());
+    PCollection<byte[]> first = impulse.apply("First", ParDo.of(new IdentityFn()));
+    PCollection<byte[]> second = first.apply("Second", ParDo.of(new IdentityFn()));
+    PCollection<byte[]> third = second.apply("Third", ParDo.of(new IdentityFn()));
+    second.apply("Fourth", ParDo.of(new IdentityFn()));
+    PCollectionView<byte[]> view = impulse.apply(View.asSingleton());
+    third.apply("Fifth", ParDo.of(new IdentityFn()).withSideInputs(view));
+
+    DirectGraphs.performDirectOverrides(p);
+    DirectGraph graph = DirectGraphs.getGraph(p);
+    Map<PCollection<?>, AppliedPTransform<?, ?, ?>> fusedConsumers =
+        FusedParDoEvaluator.fusedConsumers(graph);
+
+    // Impulse is not a ParDo.
+    assertThat(fusedConsumers, not(hasKey(impulse)));
+    assertThat(fusedConsumers.get(first), equalTo(graph.getProducer(second)));
+    // Consumed by both Third and Fourth.
+    assertThat(fusedConsumers, not(hasKey(second)));
+    // Consumed by a ParDo with side inputs.
+    assertThat(fusedConsumers, not(hasKey(third)));
+  }
+
+  private static class IdentityFn extends DoFn<byte[], byte[]> {
+    @ProcessElement
+    public void processElement(@Element byte[] element, OutputReceiver<byte[]> receiver) {
+      receiver.output(element);
+    }
+  }
+}
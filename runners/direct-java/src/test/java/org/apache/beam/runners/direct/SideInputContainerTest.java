@@ -23,6 +23,7 @@ import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.doAnswer;
 
@@ -32,6 +33,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.beam.runners.core.ReadyCheckingSideInputReader;
 import org.apache.beam.runners.core.SideInputReader;
 import org.apache.beam.sdk.testing.TestPipeline;
@@ -447,6 +449,83 @@ public class SideInputContainerTest {
     assertThat(reader.isReady(singletonView, GlobalWindow.INSTANCE), is(true));
   }
 
+  @Test
+  public void whenReadyRunsCallbackOnceAllWindowsAreReady() {
+    AtomicInteger callbacks = new AtomicInteger();
+    container.whenReady(
+        ImmutableList.of(
+            PCollectionViewWindow.of(mapView, FIRST_WINDOW),
+            PCollectionViewWindow.of(singletonView, SECOND_WINDOW)),
+        callbacks::incrementAndGet);
+    assertThat(callbacks.get(), equalTo(0));
+
+    ImmutableList.Builder<WindowedValue<?>> mapValuesBuilder = ImmutableList.builder();
+    for (Object materializedValue :
+        materializeValuesFor(mapView.getPipeline().getOptions(), View.asMap(), KV.of("one", 1))) {
+      mapValuesBuilder.add(
+          WindowedValue.of(
+              materializedValue, new Instant(1L), FIRST_WINDOW, PaneInfo.ON_TIME_AND_ONLY_FIRING));
+    }
+    container.write(mapView, mapValuesBuilder.build());
+    assertThat(callbacks.get(), equalTo(0));
+
+    ImmutableList.Builder<WindowedValue<?>> singletonValuesBuilder = ImmutableList.builder();
+    for (Object materializedValue :
+        materializeValuesFor(singletonView.getPipeline().getOptions(), View.asSingleton(), 1.25)) {
+      singletonValuesBuilder.add(
+          WindowedValue.of(
+              materializedValue,
+              new Instant(1L),
+              SECOND_WINDOW,
+              PaneInfo.createPane(true, false, Timing.EARLY)));
+    }
+    container.write(singletonView, singletonValuesBuilder.build());
+    assertThat(callbacks.get(), equalTo(1));
+
+    // Later panes do not notify again, and windows which are already ready run callbacks in place.
+    container.write(mapView, mapValuesBuilder.build());
+    assertThat(callbacks.get(), equalTo(1));
+    container.whenReady(
+        ImmutableList.of(PCollectionViewWindow.of(mapView, FIRST_WINDOW)),
+        callbacks::incrementAndGet);
+    assertThat(callbacks.get(), equalTo(2));
+  }
+
+  @Test
+  public void whenReadyRunsCallbackWhenEmptyContentsAreWritten() throws Exception {
+    CountDownLatch onComplete = new CountDownLatch(1);
+    CountDownLatch latch = invokeLatchedCallback(singletonView, GlobalWindow.INSTANCE, onComplete);
+    AtomicInteger callbacks = new AtomicInteger();
+    container.whenReady(
+        ImmutableList.of(PCollectionViewWindow.of(singletonView, GlobalWindow.INSTANCE)),
+        callbacks::incrementAndGet);
+    assertThat(callbacks.get(), equalTo(0));
+
+    latch.countDown();
+    if (!onComplete.await(1500L, TimeUnit.MILLISECONDS)) {
+      fail("Callback to set empty values did not complete!");
+    }
+    assertThat(callbacks.get(), equalTo(1));
+  }
+
+  @Test
+  public void readersShareMaterializedContents() {
+    ImmutableList.Builder<WindowedValue<?>> valuesBuilder = ImmutableList.builder();
+    for (Object materializedValue :
+        materializeValuesFor(mapView.getPipeline().getOptions(), View.asMap(), KV.of("one", 1))) {
+      valuesBuilder.add(
+          WindowedValue.of(
+              materializedValue, new Instant(1L), FIRST_WINDOW, PaneInfo.ON_TIME_AND_ONLY_FIRING));
+    }
+    container.write(mapView, valuesBuilder.build());
+
+    Map<String, Integer> first =
+        container.createReaderForViews(ImmutableList.of(mapView)).get(mapView, FIRST_WINDOW);
+    Map<String, Integer> second =
+        container.createReaderForViews(ImmutableList.of(mapView)).get(mapView, FIRST_WINDOW);
+    assertThat(second, sameInstance(first));
+  }
+
   /**
    * When a callAfterWindowCloses with the specified view's producing transform, window, and
    * windowing strategy is invoked, immediately execute the callback.
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.emptyIterable;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link SpillingBag}. */
+@RunWith(JUnit4.class)
+public class SpillingBagTest {
+  private StateSpiller spiller;
+
+  @Before
+  public void setup() throws Exception {
+    spiller = StateSpiller.create(0L);
+  }
+
+  @After
+  public void teardown() throws Exception {
+    spiller.close();
+  }
+
+  @Test
+  public void readsSpilledAndBufferedElementsInOrder() {
+    SpillingBag<String> bag = new SpillingBag<>(StringUtf8Coder.of(), spiller);
+    bag.add("foo");
+    bag.add("bar");
+    assertThat(bag.getBufferedBytes(), equalTo(6L));
+
+    bag.spill();
+    assertThat(bag.getBufferedBytes(), equalTo(0L));
+    bag.add("baz");
+    bag.spill();
+    bag.add("qux");
+
+    assertThat(bag.read(), contains("foo", "bar", "baz", "qux"));
+    // Spilled elements can be read any number of times.
+    assertThat(bag.read(), contains("foo", "bar", "baz", "qux"));
+    assertThat(bag.isEmpty().read(), is(false));
+  }
+
+  @Test
+  public void readIsStableAcrossMutations() {
+    SpillingBag<String> bag = new SpillingBag<>(StringUtf8Coder.of(), spiller);
+    bag.add("foo");
+    bag.spill();
+    bag.add("bar");
+    Iterable<String> contents = bag.read();
+
+    bag.add("baz");
+    bag.spill();
+    assertThat(contents, contains("foo", "bar"));
+
+    bag.clear();
+    assertThat(contents, contains("foo", "bar"));
+    assertThat(bag.read(), emptyIterable());
+    assertThat(bag.isCleared(), is(true));
+  }
+
+  @Test
+  public void copyIsIndependent() {
+    SpillingBag<String> bag = new SpillingBag<>(StringUtf8Coder.of(), spiller);
+    bag.add("foo");
+    bag.spill();
+    bag.add("bar");
+
+    SpillingBag<String> copy = bag.copy();
+    copy.add("baz");
+    copy.spill();
+    bag.clear();
+
+    assertThat(copy.read(), contains("foo", "bar", "baz"));
+    assertThat(bag.read(), emptyIterable());
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Strings;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link StateSpiller}. */
+@RunWith(JUnit4.class)
+public class StateSpillerTest {
+  @Test
+  public void spillsLargestBagsOfAnyAccount() throws Exception {
+    try (StateSpiller spiller = StateSpiller.create(16L)) {
+      SpillingBag<String> small = new SpillingBag<>(StringUtf8Coder.of(), spiller);
+      small.add("fo");
+      SpillingBag<String> large = new SpillingBag<>(StringUtf8Coder.of(), spiller);
+      large.add("foobarbaz");
+      StateSpiller.Account first = spiller.newAccount();
+      first.commit(Arrays.asList(small, large));
+      assertThat(spiller.getBufferedBytes(), equalTo(11L));
+
+      SpillingBag<String> medium = new SpillingBag<>(StringUtf8Coder.of(), spiller);
+      medium.add("barbaz");
+      StateSpiller.Account second = spiller.newAccount();
+      second.commit(Collections.singletonList(medium));
+
+      // Over the budget, so bags are spilled largest first until within half of it, although the
+      // largest belongs to another account.
+      assertThat(large.getBufferedBytes(), equalTo(0L));
+      assertThat(first.getBufferedBytes(), equalTo(2L));
+      assertThat(second.getBufferedBytes(), equalTo(6L));
+      assertThat(spiller.getBufferedBytes(), equalTo(8L));
+      assertThat(large.read(), contains("foobarbaz"));
+
+      second.commit(Collections.emptyList());
+      assertThat(spiller.getBufferedBytes(), equalTo(2L));
+    }
+  }
+
+  @Test
+  public void compactsUnreachableRuns() throws Exception {
+    try (StateSpiller spiller = StateSpiller.create(0L, 1L)) {
+      SpillingBag<String> live = new SpillingBag<>(StringUtf8Coder.of(), spiller);
+      live.add("foo");
+      live.spill();
+      Iterable<String> contents = live.read();
+
+      String large = Strings.repeat("bar", 1024);
+      long uncompactedBytes = 0L;
+      for (int i = 0; i < 100; i++) {
+        SpillingBag<String> dead = new SpillingBag<>(StringUtf8Coder.of(), spiller);
+        dead.add(large);
+        dead.spill();
+        long spillFileBytes = spiller.getSpillFileBytes();
+        if (spillFileBytes < uncompactedBytes) {
+          break;
+        }
+        uncompactedBytes = spillFileBytes;
+        System.gc();
+      }
+
+      assertThat(spiller.getSpillFileBytes(), lessThan(uncompactedBytes));
+      // Live runs remain readable after they are moved, including by earlier reads.
+      assertThat(live.read(), contains("foo"));
+      assertThat(contents, contains("foo"));
+    }
+  }
+}
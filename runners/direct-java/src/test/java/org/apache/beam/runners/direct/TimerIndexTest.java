@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.anEmptyMap;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.util.List;
+import java.util.Map;
+import org.apache.beam.runners.core.StateNamespaces;
+import org.apache.beam.runners.core.TimerInternals.TimerData;
+import org.apache.beam.runners.local.StructuralKey;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.state.TimeDomain;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.joda.time.Instant;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link TimerIndex}. */
+@RunWith(JUnit4.class)
+public class TimerIndexTest {
+  private static final StructuralKey<String> FOO = StructuralKey.of("foo", StringUtf8Coder.of());
+  private static final StructuralKey<String> BAR = StructuralKey.of("bar", StringUtf8Coder.of());
+
+  @Test
+  public void extractsEligibleTimersOfEveryKeyInOrder() {
+    TimerIndex index = new TimerIndex();
+    TimerData fooEarly = timer("early", 10L, 10L);
+    TimerData fooLate = timer("late", 20L, 20L);
+    TimerData fooFuture = timer("future", 40L, 40L);
+    TimerData barEarly = timer("early", 15L, 15L);
+    TimerData barFuture = timer("future", 50L, 50L);
+    index.add(FOO, fooFuture);
+    index.add(FOO, fooLate);
+    index.add(FOO, fooEarly);
+    index.add(BAR, barEarly);
+    index.add(BAR, barFuture);
+
+    Map<StructuralKey<?>, List<TimerData>> fired = index.extractFiredTimers(new Instant(30L));
+    assertThat(fired.size(), equalTo(2));
+    // An equal key which is a distinct instance finds the timers of the key.
+    assertThat(
+        fired.get(StructuralKey.of("foo", StringUtf8Coder.of())), contains(fooEarly, fooLate));
+    assertThat(fired.get(BAR), contains(barEarly));
+
+    assertThat(index.extractFiredTimers(new Instant(30L)), is(anEmptyMap()));
+    fired = index.extractFiredTimers(BoundedWindow.TIMESTAMP_MAX_VALUE);
+    assertThat(fired.get(FOO), contains(fooFuture));
+    assertThat(fired.get(BAR), contains(barFuture));
+  }
+
+  @Test
+  public void removedTimersDoNotFire() {
+    TimerIndex index = new TimerIndex();
+    TimerData first = timer("first", 10L, 10L);
+    TimerData second = timer("second", 20L, 20L);
+    index.add(FOO, first);
+    index.add(FOO, second);
+
+    assertThat(index.remove(FOO, first), is(true));
+    assertThat(index.remove(FOO, first), is(false));
+    assertThat(index.remove(BAR, second), is(false));
+
+    assertThat(index.extractFiredTimers(new Instant(15L)), is(anEmptyMap()));
+    assertThat(index.extractFiredTimers(new Instant(25L)).get(FOO), contains(second));
+  }
+
+  @Test
+  public void tracksEarliestOutputTimestamp() {
+    TimerIndex index = new TimerIndex();
+    assertThat(index.getEarliestOutputTimestamp(), equalTo(BoundedWindow.TIMESTAMP_MAX_VALUE));
+
+    TimerData heldEarly = timer("heldEarly", 30L, 5L);
+    TimerData unheld = timer("unheld", 10L, 10L);
+    TimerData sameHold = timer("sameHold", 40L, 5L);
+    index.add(FOO, heldEarly);
+    index.add(BAR, unheld);
+    index.add(BAR, sameHold);
+    assertThat(index.getEarliestOutputTimestamp(), equalTo(new Instant(5L)));
+
+    index.remove(FOO, heldEarly);
+    assertThat(index.getEarliestOutputTimestamp(), equalTo(new Instant(5L)));
+    index.extractFiredTimers(BoundedWindow.TIMESTAMP_MAX_VALUE);
+    assertThat(index.getEarliestOutputTimestamp(), equalTo(BoundedWindow.TIMESTAMP_MAX_VALUE));
+  }
+
+  private static TimerData timer(String timerId, long timestamp, long outputTimestamp) {
+    return TimerData.of(
+        timerId,
+        StateNamespaces.global(),
+        new Instant(timestamp),
+        new Instant(outputTimestamp),
+        TimeDomain.EVENT_TIME);
+  }
+}
@@ -17,11 +17,22 @@
  */
 package org.apache.beam.runners.direct;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.MoreExecutors;
 import org.junit.Before;
 import org.junit.Rule;
@@ -140,4 +151,139 @@ public class TransformExecutorServicesTest {
     serial.complete(first);
     verify(second, never()).run();
   }
+
+  @Test
+  public void serialCompleteWhileEvaluatingCoalescesFollowUpWork() {
+    @SuppressWarnings("unchecked")
+    DirectTransformExecutor<Object> first = mock(DirectTransformExecutor.class);
+    @SuppressWarnings("unchecked")
+    DirectTransformExecutor<Object> second = mock(DirectTransformExecutor.class);
+    AtomicInteger submitted = new AtomicInteger();
+    ExecutorService countingExecutor =
+        new AbstractExecutorService() {
+          @Override
+          public void execute(Runnable command) {
+            submitted.incrementAndGet();
+            executorService.execute(command);
+          }
+
+          @Override
+          public void shutdown() {
+            executorService.shutdown();
+          }
+
+          @Override
+          public List<Runnable> shutdownNow() {
+            return executorService.shutdownNow();
+          }
+
+          @Override
+          public boolean isShutdown() {
+            return executorService.isShutdown();
+          }
+
+          @Override
+          public boolean isTerminated() {
+            return executorService.isTerminated();
+          }
+
+          @Override
+          public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return executorService.awaitTermination(timeout, unit);
+          }
+        };
+
+    TransformExecutorService serial = TransformExecutorServices.serial(countingExecutor);
+    doAnswer(
+            invocation -> {
+              serial.schedule(second);
+              serial.complete(first);
+              return null;
+            })
+        .when(first)
+        .run();
+    doAnswer(
+            invocation -> {
+              serial.complete(second);
+              return null;
+            })
+        .when(second)
+        .run();
+
+    serial.schedule(first);
+    verify(first).run();
+    verify(second).run();
+    // The second bundle was evaluated by the task which evaluated the first.
+    assertThat(submitted.get(), equalTo(1));
+  }
+
+  @Test
+  public void serialScheduleConcurrentlyWithCompletionCoalescesOnlyOnEvaluatingThread()
+      throws Exception {
+    ExecutorService evaluators = Executors.newFixedThreadPool(2);
+    try {
+      TransformExecutorService serial = TransformExecutorServices.serial(evaluators);
+      CountDownLatch firstCompleted = new CountDownLatch(1);
+      CountDownLatch secondCompleted = new CountDownLatch(1);
+      CountDownLatch thirdStarted = new CountDownLatch(1);
+      AtomicReference<Thread> secondThread = new AtomicReference<>();
+      AtomicReference<Thread> thirdThread = new AtomicReference<>();
+      AtomicInteger thirdEvaluations = new AtomicInteger();
+      TransformExecutor third =
+          new TransformExecutor() {
+            @Override
+            public void run() {
+              thirdThread.set(Thread.currentThread());
+              thirdEvaluations.incrementAndGet();
+              thirdStarted.countDown();
+              serial.complete(this);
+            }
+          };
+      TransformExecutor second =
+          new TransformExecutor() {
+            @Override
+            public void run() {
+              secondThread.set(Thread.currentThread());
+              serial.schedule(third);
+              serial.complete(this);
+              secondCompleted.countDown();
+              try {
+                // Give the evaluation of the first work the chance to take the coalesced third
+                // work, which it must not do.
+                thirdStarted.await(500, TimeUnit.MILLISECONDS);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            }
+          };
+      TransformExecutor first =
+          new TransformExecutor() {
+            @Override
+            public void run() {
+              serial.complete(this);
+              firstCompleted.countDown();
+              try {
+                // Returns only once the executor has been handed to another thread.
+                secondCompleted.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            }
+          };
+
+      serial.schedule(first);
+      firstCompleted.await();
+      // Scheduled after the first work has completed, but before its evaluation returns.
+      serial.schedule(second);
+
+      assertThat(thirdStarted.await(1, TimeUnit.MINUTES), is(true));
+      evaluators.shutdown();
+      assertThat(evaluators.awaitTermination(1, TimeUnit.MINUTES), is(true));
+      assertThat(thirdEvaluations.get(), equalTo(1));
+      // The third work was coalesced by the evaluation of the second.
+      assertThat(thirdThread.get(), equalTo(secondThread.get()));
+    } finally {
+      evaluators.shutdownNow();
+    }
+  }
 }
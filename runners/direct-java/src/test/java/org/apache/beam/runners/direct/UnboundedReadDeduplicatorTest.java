@@ -22,6 +22,7 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.lessThan;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
@@ -35,6 +36,8 @@ import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ListenableFuture;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ListeningExecutorService;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.MoreExecutors;
+import org.joda.time.Duration;
+import org.joda.time.Instant;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -60,6 +63,23 @@ public class UnboundedReadDeduplicatorTest {
     assertThat(dedupper.shouldOutput(id), is(false));
   }
 
+  @Test
+  public void cachedIdDeduplicatorForgetsIdsNotSeenWithinRetention() {
+    byte[] seenOnce = new byte[] {1, 2, 3};
+    byte[] seenRepeatedly = new byte[] {4, 5, 6};
+    MockClock clock = MockClock.fromInstant(new Instant(0L));
+    UnboundedReadDeduplicator dedupper = CachedIdDeduplicator.create(clock);
+
+    assertThat(dedupper.shouldOutput(seenOnce), is(true));
+    assertThat(dedupper.shouldOutput(seenRepeatedly), is(true));
+    clock.advance(Duration.standardMinutes(15L));
+    // An equal ID in a distinct array is a duplicate
+    assertThat(dedupper.shouldOutput(new byte[] {4, 5, 6}), is(false));
+    clock.advance(Duration.standardMinutes(10L));
+    assertThat(dedupper.shouldOutput(seenRepeatedly), is(false));
+    assertThat(dedupper.shouldOutput(seenOnce), is(true));
+  }
+
   @Test
   public void cachedIdDeduplicatorMultithreaded() throws InterruptedException, ExecutionException {
     byte[] id = new byte[] {-1, 2, 4, 22};
@@ -93,6 +113,33 @@ public class UnboundedReadDeduplicatorTest {
     assertThat(noOutputCount.get(), lessThan(numThreads));
   }
 
+  @Test
+  public void cachedIdDeduplicatorDistinctIdsFromManyThreads() throws Exception {
+    UnboundedReadDeduplicator dedupper = CachedIdDeduplicator.create();
+    int numThreads = 4;
+    int numIds = 10_000;
+    ListeningExecutorService executor =
+        MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(numThreads));
+    AtomicInteger successCount = new AtomicInteger();
+    List<ListenableFuture<?>> futures = new ArrayList<>();
+    for (int i = 0; i < numThreads; i++) {
+      futures.add(
+          executor.submit(
+              () -> {
+                for (int id = 0; id < numIds; id++) {
+                  if (dedupper.shouldOutput(ByteBuffer.allocate(4).putInt(id).array())) {
+                    successCount.incrementAndGet();
+                  }
+                }
+              }));
+    }
+    Futures.allAsList(futures).get();
+    executor.shutdownNow();
+
+    // Every ID is output exactly once, by whichever thread saw it first
+    assertThat(successCount.get(), equalTo(numIds));
+  }
+
   private static class TryOutputIdRunnable implements Runnable {
     private final UnboundedReadDeduplicator deduplicator;
     private final byte[] id;
@@ -342,6 +342,49 @@ public class UnboundedReadEvaluatorFactoryTest {
     assertThat(TestUnboundedSource.readerClosedCount, equalTo(1));
   }
 
+  @Test
+  public void evaluatorGrowsBundlesWhileReaderHasBacklog() throws Exception {
+    int numElements = 1000;
+    ContiguousSet<Long> elems =
+        ContiguousSet.create(Range.openClosed(0L, (long) numElements), DiscreteDomain.longs());
+    TestUnboundedSource<Long> source =
+        new TestUnboundedSource<>(BigEndianLongCoder.of(), elems.toArray(new Long[0]));
+    source.advanceWatermarkToInfinity = true;
+
+    PCollection<Long> pcollection = p.apply(Read.from(source));
+    SplittableParDo.convertReadBasedSplittableDoFnsToPrimitiveReads(p);
+    AppliedPTransform<?, ?, ?> sourceTransform = DirectGraphs.getGraph(p).getProducer(pcollection);
+    UncommittedBundle<Long> output = mock(UncommittedBundle.class);
+    when(context.createBundle(pcollection)).thenReturn(output);
+
+    CommittedBundle<UnboundedSourceShard<Long, TestCheckpointMark>> residual =
+        bundleFactory
+            .<UnboundedSourceShard<Long, TestCheckpointMark>>createRootBundle()
+            .add(
+                WindowedValue.valueInGlobalWindow(
+                    UnboundedSourceShard.unstarted(source, NeverDeduplicator.create())))
+            .commit(Instant.now());
+    UnboundedReadEvaluatorFactory factory =
+        new UnboundedReadEvaluatorFactory(context, p.getOptions(), 1.0 /* Always reuse */);
+    List<Integer> bundleLimits = new ArrayList<>();
+    do {
+      WindowedValue<UnboundedSourceShard<Long, TestCheckpointMark>> shard =
+          Iterables.getOnlyElement(residual.getElements());
+      bundleLimits.add(shard.getValue().getMaxElements());
+      TransformEvaluator<UnboundedSourceShard<Long, TestCheckpointMark>> evaluator =
+          factory.forApplication(sourceTransform, residual);
+      evaluator.processElement(shard);
+      residual =
+          residual.withElements(
+              (Iterable<WindowedValue<UnboundedSourceShard<Long, TestCheckpointMark>>>)
+                  evaluator.finishBundle().getUnprocessedElements());
+    } while (!Iterables.isEmpty(residual.getElements()));
+
+    verify(output, times(numElements)).add(any());
+    // The bundle doubles while it is filled, and shrinks once the reader has caught up
+    assertThat(bundleLimits, Matchers.contains(10, 20, 40, 80, 160, 320, 640, 10));
+  }
+
   @Test
   public void evaluatorClosesReaderAndResumesFromCheckpoint() throws Exception {
     ContiguousSet<Long> elems = ContiguousSet.create(Range.closed(0L, 20L), DiscreteDomain.longs());
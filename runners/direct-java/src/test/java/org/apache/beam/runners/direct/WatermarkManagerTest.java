@@ -32,10 +32,15 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.beam.runners.core.StateNamespaces;
 import org.apache.beam.runners.core.TimerInternals.TimerData;
 import org.apache.beam.runners.direct.WatermarkManager.AppliedPTransformInputWatermark;
@@ -713,6 +718,132 @@ public class WatermarkManagerTest implements Serializable {
     assertThat(filteredWms.getInputWatermark(), equalTo(new Instant(22L)));
   }
 
+  /**
+   * Demonstrates that updates committed concurrently by many threads are all applied, and that a
+   * single refresh propagates the resulting watermarks through a chain of transforms.
+   */
+  @Test
+  public void updateWatermarksConcurrently() throws Exception {
+    List<CommittedBundle<byte[]>> impulseBundles = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      impulseBundles.add(
+          timestampedBundle(impulse, TimestampedValue.of(new byte[1], new Instant(i))));
+    }
+    manager.updateWatermarks(
+        null,
+        TimerUpdate.empty(),
+        graph.getProducer(impulse),
+        null,
+        impulseBundles,
+        BoundedWindow.TIMESTAMP_MAX_VALUE);
+    manager.refreshAll();
+    TransformWatermarks filteredWms = manager.getWatermarks(graph.getProducer(filtered));
+    assertThat(filteredWms.getInputWatermark(), equalTo(new Instant(0L)));
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> updates = new ArrayList<>();
+      for (CommittedBundle<byte[]> impulseBundle : impulseBundles) {
+        updates.add(
+            executor.submit(
+                () ->
+                    manager.updateWatermarks(
+                        impulseBundle,
+                        TimerUpdate.empty(),
+                        graph.getProducer(filtered),
+                        null,
+                        Collections.emptyList(),
+                        BoundedWindow.TIMESTAMP_MAX_VALUE)));
+      }
+      for (Future<?> update : updates) {
+        update.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    manager.refreshAll();
+
+    assertThat(filteredWms.getInputWatermark(), equalTo(BoundedWindow.TIMESTAMP_MAX_VALUE));
+    assertThat(
+        manager.getWatermarks(graph.getProducer(filteredNotEmpty)).getOutputWatermark(),
+        equalTo(BoundedWindow.TIMESTAMP_MAX_VALUE));
+  }
+
+  /**
+   * Demonstrates that timers of many keys committed concurrently, while watermarks are refreshed
+   * concurrently, are all held and fired.
+   */
+  @Test
+  public void updateTimersConcurrentlyWithRefreshes() throws Exception {
+    List<CommittedBundle<byte[]>> impulseBundles = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      impulseBundles.add(
+          timestampedBundle(impulse, TimestampedValue.of(new byte[1], new Instant(i))));
+    }
+    manager.updateWatermarks(
+        null,
+        TimerUpdate.empty(),
+        graph.getProducer(impulse),
+        null,
+        impulseBundles,
+        BoundedWindow.TIMESTAMP_MAX_VALUE);
+
+    ExecutorService executor = Executors.newFixedThreadPool(9);
+    AtomicBoolean committing = new AtomicBoolean(true);
+    try {
+      Future<?> refreshes =
+          executor.submit(
+              () -> {
+                while (committing.get()) {
+                  manager.refreshAll();
+                }
+              });
+      List<Future<?>> updates = new ArrayList<>();
+      for (int i = 0; i < impulseBundles.size(); i++) {
+        CommittedBundle<byte[]> impulseBundle = impulseBundles.get(i);
+        TimerData timer =
+            TimerData.of(
+                StateNamespaces.global(),
+                new Instant(5000L),
+                new Instant(i),
+                TimeDomain.EVENT_TIME);
+        TimerUpdate timerUpdate =
+            TimerUpdate.builder(StructuralKey.of("key" + i, StringUtf8Coder.of()))
+                .setTimer(timer)
+                .build();
+        updates.add(
+            executor.submit(
+                () ->
+                    manager.updateWatermarks(
+                        impulseBundle,
+                        timerUpdate,
+                        graph.getProducer(keyed),
+                        null,
+                        Collections.emptyList(),
+                        BoundedWindow.TIMESTAMP_MAX_VALUE)));
+      }
+      for (Future<?> update : updates) {
+        update.get();
+      }
+      committing.set(false);
+      refreshes.get();
+    } finally {
+      executor.shutdownNow();
+    }
+    manager.refreshAll();
+
+    TransformWatermarks keyedWms = manager.getWatermarks(graph.getProducer(keyed));
+    assertThat(keyedWms.getInputWatermark(), equalTo(BoundedWindow.TIMESTAMP_MAX_VALUE));
+    assertThat(keyedWms.getOutputWatermark(), equalTo(new Instant(0L)));
+
+    Collection<FiredTimers<AppliedPTransform<?, ?, ?>>> firedTimers = manager.extractFiredTimers();
+    assertThat(firedTimers.size(), equalTo(impulseBundles.size()));
+    for (FiredTimers<AppliedPTransform<?, ?, ?>> fired : firedTimers) {
+      assertThat(fired.getExecutable(), equalTo(graph.getProducer(keyed)));
+      assertThat(fired.getTimers().size(), equalTo(1));
+    }
+  }
+
   /** Demonstrates that updateWatermarks in the presence of late data is monotonic. */
   @Test
   public void updateWatermarkWithLateData() {
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.startsWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link WorkStealingExecutorService}. */
+@RunWith(JUnit4.class)
+public class WorkStealingExecutorServiceTest {
+  private WorkStealingExecutorService executor;
+
+  @Before
+  public void setup() {
+    executor = WorkStealingExecutorService.create(2, "test-worker");
+  }
+
+  @After
+  public void teardown() throws Exception {
+    executor.shutdownNow();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void workersAreNamedNonDaemonThreads() throws Exception {
+    AtomicReference<Thread> worker = new AtomicReference<>();
+    executor.submit(() -> worker.set(Thread.currentThread())).get();
+
+    assertThat(worker.get().getName(), startsWith("test-worker-"));
+    assertThat(worker.get().isDaemon(), is(false));
+  }
+
+  @Test
+  public void executesWorkSubmittedByWorkers() throws Exception {
+    CountDownLatch followUpExecuted = new CountDownLatch(1);
+    AtomicReference<Future<?>> followUp = new AtomicReference<>();
+    executor.submit(() -> followUp.set(executor.submit(followUpExecuted::countDown))).get();
+
+    assertThat(followUpExecuted.await(10, TimeUnit.SECONDS), is(true));
+    followUp.get().get();
+  }
+
+  @Test
+  public void reportsUtilization() throws Exception {
+    executor
+        .submit(
+            () -> {
+              Thread.sleep(20L);
+              return null;
+            })
+        .get();
+    // Busy time is recorded once the task has returned, which may be after its future completes.
+    executor.shutdown();
+    assertThat(executor.awaitTermination(10, TimeUnit.SECONDS), is(true));
+
+    assertThat(executor.getUtilization(), greaterThan(0.0));
+    assertThat(executor.getUtilization(), lessThanOrEqualTo(1.0));
+  }
+}
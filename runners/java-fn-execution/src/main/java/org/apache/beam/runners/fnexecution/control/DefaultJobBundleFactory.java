@@ -32,8 +32,10 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.annotation.concurrent.ThreadSafe;
 import org.apache.beam.model.fnexecution.v1.ProvisionApi;
+import org.apache.beam.model.pipeline.v1.Endpoints.ApiServiceDescriptor;
 import org.apache.beam.model.pipeline.v1.RunnerApi.Environment;
 import org.apache.beam.model.pipeline.v1.RunnerApi.StandardEnvironments;
+import org.apache.beam.model.pipeline.v1.RunnerApi.StandardProtocols;
 import org.apache.beam.runners.core.construction.BeamUrns;
 import org.apache.beam.runners.core.construction.Environments;
 import org.apache.beam.runners.core.construction.PipelineOptionsTranslation;
@@ -44,6 +46,7 @@ import org.apache.beam.runners.fnexecution.control.ProcessBundleDescriptors.Exec
 import org.apache.beam.runners.fnexecution.control.ProcessBundleDescriptors.TimerSpec;
 import org.apache.beam.runners.fnexecution.control.SdkHarnessClient.BundleProcessor;
 import org.apache.beam.runners.fnexecution.data.GrpcDataService;
+import org.apache.beam.runners.fnexecution.data.SharedMemoryDataServer;
 import org.apache.beam.runners.fnexecution.environment.DockerEnvironmentFactory;
 import org.apache.beam.runners.fnexecution.environment.EmbeddedEnvironmentFactory;
 import org.apache.beam.runners.fnexecution.environment.EnvironmentFactory;
@@ -78,8 +81,10 @@ import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.CacheLoade
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.LoadingCache;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableMap;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableSet;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Sets;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -98,6 +103,10 @@ import org.slf4j.LoggerFactory;
 public class DefaultJobBundleFactory implements JobBundleFactory {
   private static final Logger LOG = LoggerFactory.getLogger(DefaultJobBundleFactory.class);
   private static final IdGenerator factoryIdGenerator = IdGenerators.incrementingLongs();
+  private static final ImmutableSet<String> SAME_HOST_ENVIRONMENT_URNS =
+      ImmutableSet.of(
+          BeamUrns.getUrn(StandardEnvironments.Environments.PROCESS),
+          Environments.ENVIRONMENT_EMBEDDED);
 
   private final String factoryId = factoryIdGenerator.getId();
   private final ImmutableList<EnvironmentCacheAndLock> environmentCaches;
@@ -412,7 +421,7 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
           ProcessBundleDescriptors.fromExecutableStage(
               stageIdGenerator.getId(),
               executableStage,
-              wrappedClient.getServerInfo().getDataServer().getApiServiceDescriptor(),
+              getDataApiServiceDescriptor(wrappedClient),
               wrappedClient.getServerInfo().getStateServer().getApiServiceDescriptor());
     } catch (IOException e) {
       throw new RuntimeException("Failed to create ProcessBundleDescriptor.", e);
@@ -631,6 +640,7 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
           AutoCloseable retrievalServer = serverInfo.getRetrievalServer();
           AutoCloseable stateServer = serverInfo.getStateServer();
           AutoCloseable dataServer = serverInfo.getDataServer();
+          AutoCloseable sharedMemoryDataServer = serverInfo.getSharedMemoryDataServer();
           AutoCloseable controlServer = serverInfo.getControlServer();
           // Close the logging server first to prevent spaming the logs with error messages
           AutoCloseable loggingServer = serverInfo.getLoggingServer()) {
@@ -661,6 +671,25 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
     }
   }
 
+  /**
+   * Returns the shared memory data endpoint for environments on the same host which support it if
+   * one was created, and the gRPC data endpoint otherwise.
+   */
+  private static ApiServiceDescriptor getDataApiServiceDescriptor(
+      WrappedSdkHarnessClient wrappedClient) {
+    ServerInfo serverInfo = wrappedClient.getServerInfo();
+    SharedMemoryDataServer sharedMemoryDataServer = serverInfo.getSharedMemoryDataServer();
+    Environment environment = wrappedClient.environment.getEnvironment();
+    if (sharedMemoryDataServer != null
+        && SAME_HOST_ENVIRONMENT_URNS.contains(environment.getUrn())
+        && environment
+            .getCapabilitiesList()
+            .contains(BeamUrns.getUrn(StandardProtocols.Enum.SHARED_MEMORY_DATA_CHANNEL))) {
+      return sharedMemoryDataServer.getApiServiceDescriptor();
+    }
+    return serverInfo.getDataServer().getApiServiceDescriptor();
+  }
+
   private ServerInfo createServerInfo(JobInfo jobInfo, ServerFactory serverFactory)
       throws IOException {
     Preconditions.checkNotNull(serverFactory, "serverFactory can not be null");
@@ -695,6 +724,10 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
             serverFactory);
     GrpcFnServer<GrpcStateService> stateServer =
         GrpcFnServer.allocatePortAndCreateFor(GrpcStateService.create(), serverFactory);
+    SharedMemoryDataServer sharedMemoryDataServer = null;
+    if (ExperimentalOptions.hasExperiment(portableOptions, SharedMemoryDataServer.EXPERIMENT)) {
+      sharedMemoryDataServer = SharedMemoryDataServer.create(dataServer.getService());
+    }
 
     ServerInfo serverInfo =
         new AutoValue_DefaultJobBundleFactory_ServerInfo.Builder()
@@ -703,6 +736,7 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
             .setRetrievalServer(retrievalServer)
             .setProvisioningServer(provisioningServer)
             .setDataServer(dataServer)
+            .setSharedMemoryDataServer(sharedMemoryDataServer)
             .setStateServer(stateServer)
             .build();
     return serverInfo;
@@ -721,6 +755,8 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
 
     abstract GrpcFnServer<GrpcDataService> getDataServer();
 
+    abstract @Nullable SharedMemoryDataServer getSharedMemoryDataServer();
+
     abstract GrpcFnServer<GrpcStateService> getStateServer();
 
     abstract Builder toBuilder();
@@ -737,6 +773,8 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
 
       abstract Builder setDataServer(GrpcFnServer<GrpcDataService> server);
 
+      abstract Builder setSharedMemoryDataServer(@Nullable SharedMemoryDataServer server);
+
       abstract Builder setStateServer(GrpcFnServer<GrpcStateService> server);
 
       abstract ServerInfo build();
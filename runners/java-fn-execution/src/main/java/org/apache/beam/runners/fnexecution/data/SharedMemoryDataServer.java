@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.fnexecution.data;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.Elements;
+import org.apache.beam.model.pipeline.v1.Endpoints.ApiServiceDescriptor;
+import org.apache.beam.sdk.fn.data.SharedMemoryDataChannel;
+import org.apache.beam.sdk.fn.stream.OutboundObserverFactory;
+import org.apache.beam.vendor.grpc.v1p43p2.io.grpc.stub.StreamObserver;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Accepts {@link SharedMemoryDataChannel} connections from SDK harnesses on the same host and
+ * connects them to a {@link GrpcDataService} exactly like connections over gRPC.
+ *
+ * <p>Used for environments running on the same host as the runner when the {@value #EXPERIMENT}
+ * experiment is enabled and the environment declares support for the shared memory data channel.
+ */
+public class SharedMemoryDataServer implements AutoCloseable {
+  private static final Logger LOG = LoggerFactory.getLogger(SharedMemoryDataServer.class);
+
+  public static final String EXPERIMENT = "use_shared_memory_data_channel";
+
+  private static final long POLL_INTERVAL_MILLIS = 10;
+
+  /**
+   * Creates a server for the service within a new directory in {@code /dev/shm} if it exists and
+   * within the default temporary directory otherwise.
+   */
+  public static SharedMemoryDataServer create(GrpcDataService service) throws IOException {
+    Path sharedMemory = Paths.get("/dev/shm");
+    Path directory =
+        Files.isDirectory(sharedMemory) && Files.isWritable(sharedMemory)
+            ? Files.createTempDirectory(sharedMemory, "beam-data")
+            : Files.createTempDirectory("beam-data");
+    return create(directory, service::data);
+  }
+
+  /** Creates a server accepting connections within the directory. */
+  public static SharedMemoryDataServer create(
+      Path directory, OutboundObserverFactory.BasicFactory<Elements, Elements> service) {
+    return new SharedMemoryDataServer(directory, service);
+  }
+
+  private final Path directory;
+  private final OutboundObserverFactory.BasicFactory<Elements, Elements> service;
+  private final ScheduledExecutorService acceptor;
+  private final List<SharedMemoryDataChannel> channels;
+
+  private SharedMemoryDataServer(
+      Path directory, OutboundObserverFactory.BasicFactory<Elements, Elements> service) {
+    this.directory = directory;
+    this.service = service;
+    this.channels = new ArrayList<>();
+    this.acceptor =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("SharedMemoryDataServer-" + directory.getFileName())
+                .build());
+    acceptor.scheduleWithFixedDelay(
+        this::acceptPending, 0, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  public ApiServiceDescriptor getApiServiceDescriptor() {
+    return SharedMemoryDataChannel.descriptorFor(directory);
+  }
+
+  private void acceptPending() {
+    try (DirectoryStream<Path> readyMarkers =
+        Files.newDirectoryStream(directory, "*" + SharedMemoryDataChannel.READY_SUFFIX)) {
+      for (Path readyMarker : readyMarkers) {
+        SharedMemoryDataChannel channel = SharedMemoryDataChannel.accept(readyMarker);
+        synchronized (channels) {
+          channels.add(channel);
+        }
+        StreamObserver<Elements> inboundObserver =
+            service.outboundObserverFor(channel.getOutboundObserver());
+        channel.start(inboundObserver);
+        LOG.info("Accepted shared memory data connection {}.", readyMarker);
+      }
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Failed to accept shared memory data connections in {}.", directory, e);
+    }
+  }
+
+  @Override
+  public void close() throws Exception {
+    acceptor.shutdownNow();
+    acceptor.awaitTermination(1, TimeUnit.MINUTES);
+    synchronized (channels) {
+      for (SharedMemoryDataChannel channel : channels) {
+        channel.close();
+      }
+      channels.clear();
+    }
+    try (DirectoryStream<Path> remaining = Files.newDirectoryStream(directory)) {
+      for (Path path : remaining) {
+        Files.deleteIfExists(path);
+      }
+    }
+    Files.deleteIfExists(directory);
+  }
+}
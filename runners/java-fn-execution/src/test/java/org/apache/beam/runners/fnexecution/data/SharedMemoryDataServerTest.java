@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.fnexecution.data;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.Elements;
+import org.apache.beam.sdk.fn.data.SharedMemoryDataChannel;
+import org.apache.beam.sdk.fn.test.TestStreams;
+import org.apache.beam.vendor.grpc.v1p43p2.io.grpc.stub.StreamObserver;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link SharedMemoryDataServer}. */
+@RunWith(JUnit4.class)
+public class SharedMemoryDataServerTest {
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testClientsAreConnectedToService() throws Exception {
+    Path directory = tempFolder.newFolder().toPath();
+    // A service which echoes everything it receives.
+    SharedMemoryDataServer server =
+        SharedMemoryDataServer.create(
+            directory,
+            outbound ->
+                TestStreams.withOnNext(outbound::onNext)
+                    .withOnCompleted(outbound::onCompleted)
+                    .build());
+    assertTrue(SharedMemoryDataChannel.isSharedMemory(server.getApiServiceDescriptor()));
+
+    for (String instructionId : new String[] {"A", "B"}) {
+      LinkedBlockingQueue<Elements> received = new LinkedBlockingQueue<>();
+      CountDownLatch completed = new CountDownLatch(1);
+      StreamObserver<Elements> outbound =
+          SharedMemoryDataChannel.clientFactory(server.getApiServiceDescriptor())
+              .outboundObserverFor(
+                  TestStreams.<Elements>withOnNext(received::add)
+                      .withOnCompleted(completed::countDown)
+                      .build());
+      Elements elements =
+          Elements.newBuilder()
+              .addData(Elements.Data.newBuilder().setInstructionId(instructionId))
+              .build();
+      outbound.onNext(elements);
+      outbound.onCompleted();
+      assertTrue(completed.await(10, TimeUnit.SECONDS));
+      assertThat(received, contains(elements));
+    }
+
+    server.close();
+    assertFalse(Files.exists(directory));
+  }
+}
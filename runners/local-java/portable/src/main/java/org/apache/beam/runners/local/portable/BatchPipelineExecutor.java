@@ -0,0 +1,323 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.local.portable;
+
+import static org.apache.beam.runners.fnexecution.translation.PipelineTranslatorUtils.getInputId;
+import static org.apache.beam.runners.fnexecution.translation.PipelineTranslatorUtils.getOutputId;
+import static org.apache.beam.runners.fnexecution.translation.PipelineTranslatorUtils.getWindowedValueCoder;
+import static org.apache.beam.runners.fnexecution.translation.PipelineTranslatorUtils.getWindowingStrategy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.apache.beam.model.pipeline.v1.RunnerApi;
+import org.apache.beam.runners.core.construction.PTransformTranslation;
+import org.apache.beam.runners.core.construction.graph.ExecutableStage;
+import org.apache.beam.runners.core.construction.graph.PipelineNode.PTransformNode;
+import org.apache.beam.runners.core.construction.graph.QueryablePipeline;
+import org.apache.beam.runners.core.metrics.MetricsContainerStepMap;
+import org.apache.beam.runners.fnexecution.control.JobBundleFactory;
+import org.apache.beam.runners.fnexecution.control.StageBundleFactory;
+import org.apache.beam.runners.local.StructuralKey;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.apache.beam.sdk.transforms.windowing.PaneInfo;
+import org.apache.beam.sdk.transforms.windowing.TimestampCombiner;
+import org.apache.beam.sdk.util.WindowedValue;
+import org.apache.beam.sdk.util.WindowedValue.WindowedValueCoder;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.WindowingStrategy;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableMap;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Lists;
+import org.joda.time.Instant;
+
+/**
+ * Executes the transforms of a fused, bounded pipeline in topological order, materializing each
+ * {@code PCollection} in memory until all of its consumers have been executed.
+ *
+ * <p>The bundles of an {@link ExecutableStage} are executed concurrently by the SDK harness, while
+ * Impulse, GroupByKey and Flatten are executed by the runner.
+ */
+@SuppressWarnings({
+  "rawtypes", // TODO(https://github.com/apache/beam/issues/20447)
+  "nullness" // TODO(https://github.com/apache/beam/issues/20497)
+})
+class BatchPipelineExecutor {
+  private final RunnerApi.Pipeline pipeline;
+  private final JobBundleFactory jobBundleFactory;
+  private final ExecutorService bundleExecutor;
+  private final int concurrentBundles;
+  private final int elementsPerBundle;
+  private final MetricsContainerStepMap metrics;
+  private final ImmutableMap<String, PrimitiveExecutor> urnToExecutor;
+
+  /** The contents of each materialized PCollection which has consumers yet to be executed. */
+  private final Map<String, List<WindowedValue<?>>> pCollections = new HashMap<>();
+  /** The number of executions of transforms which are yet to consume each PCollection. */
+  private final Map<String, Integer> pendingConsumers = new HashMap<>();
+
+  BatchPipelineExecutor(
+      RunnerApi.Pipeline pipeline,
+      JobBundleFactory jobBundleFactory,
+      ExecutorService bundleExecutor,
+      int concurrentBundles,
+      int elementsPerBundle,
+      MetricsContainerStepMap metrics) {
+    this.pipeline = pipeline;
+    this.jobBundleFactory = jobBundleFactory;
+    this.bundleExecutor = bundleExecutor;
+    this.concurrentBundles = concurrentBundles;
+    this.elementsPerBundle = elementsPerBundle;
+    this.metrics = metrics;
+    this.urnToExecutor =
+        ImmutableMap.of(
+            PTransformTranslation.IMPULSE_TRANSFORM_URN, this::executeImpulse,
+            PTransformTranslation.GROUP_BY_KEY_TRANSFORM_URN, this::executeGroupByKey,
+            PTransformTranslation.FLATTEN_TRANSFORM_URN, this::executeFlatten,
+            ExecutableStage.URN, this::executeStage);
+  }
+
+  /** Executes a transform of the pipeline, once all of its inputs have been materialized. */
+  private interface PrimitiveExecutor {
+    void execute(PTransformNode transformNode) throws Exception;
+  }
+
+  void execute() throws Exception {
+    QueryablePipeline queryablePipeline =
+        QueryablePipeline.forTransforms(
+            pipeline.getRootTransformIdsList(), pipeline.getComponents());
+    Iterable<PTransformNode> transforms = queryablePipeline.getTopologicallyOrderedTransforms();
+    for (PTransformNode transformNode : transforms) {
+      for (String inputId : transformNode.getTransform().getInputsMap().values()) {
+        pendingConsumers.merge(inputId, 1, Integer::sum);
+      }
+    }
+    for (PTransformNode transformNode : transforms) {
+      String urn = transformNode.getTransform().getSpec().getUrn();
+      PrimitiveExecutor executor = urnToExecutor.get(urn);
+      if (executor == null) {
+        throw new IllegalArgumentException(
+            String.format("Transform %s has unknown URN %s", transformNode.getId(), urn));
+      }
+      executor.execute(transformNode);
+    }
+  }
+
+  private void executeImpulse(PTransformNode transformNode) {
+    produce(
+        getOutputId(transformNode),
+        Collections.singletonList(WindowedValue.valueInGlobalWindow(new byte[0])));
+  }
+
+  private void executeFlatten(PTransformNode transformNode) {
+    List<WindowedValue<?>> flattened = new ArrayList<>();
+    for (String inputId : transformNode.getTransform().getInputsMap().values()) {
+      flattened.addAll(consume(inputId));
+    }
+    produce(getOutputId(transformNode), flattened);
+  }
+
+  /**
+   * Groups the input by key and window. As the pipeline is bounded, all of the input is available,
+   * so each group is output once, as the only firing of its pane, and triggers and allowed lateness
+   * can be ignored.
+   */
+  private <K, V> void executeGroupByKey(PTransformNode transformNode) {
+    String inputId = getInputId(transformNode);
+    RunnerApi.Components components = pipeline.getComponents();
+    WindowedValueCoder<KV<K, V>> inputCoder = getWindowedValueCoder(inputId, components);
+    Coder<K> keyCoder = ((KvCoder<K, V>) inputCoder.getValueCoder()).getKeyCoder();
+    WindowingStrategy<?, BoundedWindow> windowingStrategy =
+        getWindowingStrategy(inputId, components);
+    if (!windowingStrategy.getWindowFn().isNonMerging()) {
+      throw new UnsupportedOperationException(
+          String.format(
+              "%s does not support merging windows, but GroupByKey %s has input windowed by %s",
+              LocalPortableRunner.class.getSimpleName(),
+              transformNode.getId(),
+              windowingStrategy.getWindowFn()));
+    }
+    TimestampCombiner timestampCombiner = windowingStrategy.getTimestampCombiner();
+
+    Map<KV<StructuralKey<K>, BoundedWindow>, Group<K, V>> groups = new LinkedHashMap<>();
+    for (WindowedValue<?> element : consume(inputId)) {
+      for (WindowedValue<?> windowedElement : element.explodeWindows()) {
+        KV<K, V> kv = (KV<K, V>) windowedElement.getValue();
+        BoundedWindow window = Iterables.getOnlyElement(windowedElement.getWindows());
+        Instant timestamp = timestampCombiner.assign(window, windowedElement.getTimestamp());
+        groups
+            .computeIfAbsent(
+                KV.of(StructuralKey.of(kv.getKey(), keyCoder), window),
+                keyAndWindow -> new Group<>(kv.getKey(), window))
+            .add(kv.getValue(), timestamp, timestampCombiner);
+      }
+    }
+    List<WindowedValue<?>> grouped = new ArrayList<>(groups.size());
+    for (Group<K, V> group : groups.values()) {
+      grouped.add(
+          WindowedValue.of(
+              KV.of(group.key, group.values),
+              group.timestamp,
+              group.window,
+              PaneInfo.ON_TIME_AND_ONLY_FIRING));
+    }
+    produce(getOutputId(transformNode), grouped);
+  }
+
+  private static class Group<K, V> {
+    private final K key;
+    private final BoundedWindow window;
+    private final List<V> values = new ArrayList<>();
+    private Instant timestamp;
+
+    private Group(K key, BoundedWindow window) {
+      this.key = key;
+      this.window = window;
+    }
+
+    private void add(V value, Instant valueTimestamp, TimestampCombiner timestampCombiner) {
+      values.add(value);
+      timestamp =
+          timestamp == null ? valueTimestamp : timestampCombiner.combine(timestamp, valueTimestamp);
+    }
+  }
+
+  /**
+   * Executes the bundles of the stage on up to {@link #concurrentBundles} threads, each of which
+   * uses its own {@link StageBundleFactory}.
+   */
+  private void executeStage(PTransformNode transformNode) throws Exception {
+    RunnerApi.ExecutableStagePayload stagePayload =
+        RunnerApi.ExecutableStagePayload.parseFrom(
+            transformNode.getTransform().getSpec().getPayload());
+    ExecutableStage stage = ExecutableStage.fromPayload(stagePayload);
+    String inputId = stagePayload.getInput();
+
+    List<String> sideInputIds =
+        new ArrayList<>(transformNode.getTransform().getInputsMap().values());
+    sideInputIds.remove(inputId);
+    Map<String, List<WindowedValue<?>>> sideInputs = new HashMap<>();
+    for (String sideInputId : sideInputIds) {
+      sideInputs.put(sideInputId, consume(sideInputId));
+    }
+    Queue<List<WindowedValue<?>>> bundles =
+        new ConcurrentLinkedQueue<>(createBundles(stage, consume(inputId)));
+
+    Map<String, Queue<WindowedValue<?>>> outputs = new LinkedHashMap<>();
+    for (String outputId : transformNode.getTransform().getOutputsMap().values()) {
+      outputs.put(outputId, new ConcurrentLinkedQueue<>());
+    }
+    Coder<BoundedWindow> windowCoder =
+        getWindowingStrategy(inputId, pipeline.getComponents()).getWindowFn().windowCoder();
+    StageBundleProcessor processor =
+        new StageBundleProcessor(stage, windowCoder, sideInputs, outputs, metrics);
+
+    List<Future<?>> workers = new ArrayList<>();
+    for (int i = 0; i < Math.min(concurrentBundles, bundles.size()); i++) {
+      workers.add(
+          bundleExecutor.submit(
+              () -> {
+                try (StageBundleFactory stageBundleFactory = jobBundleFactory.forStage(stage)) {
+                  List<WindowedValue<?>> bundle;
+                  while ((bundle = bundles.poll()) != null) {
+                    processor.process(stageBundleFactory, bundle);
+                  }
+                }
+                return null;
+              }));
+    }
+    awaitAll(workers);
+
+    for (Map.Entry<String, Queue<WindowedValue<?>>> output : outputs.entrySet()) {
+      produce(output.getKey(), new ArrayList<>(output.getValue()));
+    }
+  }
+
+  /**
+   * Divides the input of the stage into bundles. The input of a stage which uses state or timers is
+   * divided by key, so that all of the elements of a key are processed in one bundle, after which
+   * its timers can fire.
+   */
+  private List<List<WindowedValue<?>>> createBundles(
+      ExecutableStage stage, List<WindowedValue<?>> input) {
+    if (stage.getUserStates().isEmpty() && stage.getTimers().isEmpty()) {
+      return Lists.partition(input, elementsPerBundle);
+    }
+    String inputId = stage.getInputPCollection().getId();
+    Coder<?> valueCoder = getWindowedValueCoder(inputId, pipeline.getComponents()).getValueCoder();
+    if (!(valueCoder instanceof KvCoder)) {
+      throw new IllegalStateException(
+          String.format(
+              "The element coder for stateful DoFn '%s' must be KvCoder but is: %s",
+              inputId, valueCoder.getClass().getSimpleName()));
+    }
+    Coder<Object> keyCoder = ((KvCoder) valueCoder).getKeyCoder();
+    Map<StructuralKey<Object>, List<WindowedValue<?>>> bundles = new LinkedHashMap<>();
+    for (WindowedValue<?> element : input) {
+      Object key = ((KV<?, ?>) element.getValue()).getKey();
+      bundles
+          .computeIfAbsent(StructuralKey.of(key, keyCoder), structuralKey -> new ArrayList<>())
+          .add(element);
+    }
+    return new ArrayList<>(bundles.values());
+  }
+
+  private static void awaitAll(Collection<Future<?>> futures) throws Exception {
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (ExecutionException e) {
+      futures.forEach(future -> future.cancel(true));
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    } catch (InterruptedException e) {
+      futures.forEach(future -> future.cancel(true));
+      throw e;
+    }
+  }
+
+  /** Returns the contents of the PCollection, releasing them after their last consumer. */
+  private List<WindowedValue<?>> consume(String pCollectionId) {
+    List<WindowedValue<?>> contents = pCollections.get(pCollectionId);
+    if (pendingConsumers.merge(pCollectionId, -1, Integer::sum) == 0) {
+      pCollections.remove(pCollectionId);
+    }
+    return contents;
+  }
+
+  /** Materializes the contents of the PCollection if any transform consumes it. */
+  private void produce(String pCollectionId, List<WindowedValue<?>> contents) {
+    if (pendingConsumers.getOrDefault(pCollectionId, 0) > 0) {
+      pCollections.put(pCollectionId, contents);
+    }
+  }
+}
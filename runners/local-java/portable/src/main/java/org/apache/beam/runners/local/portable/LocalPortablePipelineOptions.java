@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.local.portable;
+
+import org.apache.beam.sdk.options.Default;
+import org.apache.beam.sdk.options.DefaultValueFactory;
+import org.apache.beam.sdk.options.Description;
+import org.apache.beam.sdk.options.PipelineOptions;
+
+/** Options which configure the execution of a pipeline by the {@link LocalPortableRunner}. */
+public interface LocalPortablePipelineOptions extends PipelineOptions {
+  @Default.InstanceFactory(AvailableParallelismFactory.class)
+  @Description(
+      "The number of bundles the LocalPortableRunner executes concurrently. Defaults to the"
+          + " greater of the number of available processors and 3. Must be a value greater than"
+          + " zero.")
+  int getConcurrentBundles();
+
+  void setConcurrentBundles(int concurrentBundles);
+
+  @Default.Integer(1000)
+  @Description(
+      "The maximum number of elements in each bundle of an executable stage which does not use"
+          + " state or timers. Must be a value greater than zero.")
+  int getElementsPerBundle();
+
+  void setElementsPerBundle(int elementsPerBundle);
+
+  /**
+   * A {@link DefaultValueFactory} that returns the greater of {@link Runtime#availableProcessors()}
+   * and 3.
+   */
+  class AvailableParallelismFactory implements DefaultValueFactory<Integer> {
+    private static final int MIN_PARALLELISM = 3;
+
+    @Override
+    public Integer create(PipelineOptions options) {
+      return Math.max(Runtime.getRuntime().availableProcessors(), MIN_PARALLELISM);
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.local.portable;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.beam.runners.core.metrics.MetricsContainerStepMap;
+import org.apache.beam.sdk.Pipeline;
+import org.apache.beam.sdk.PipelineResult;
+import org.apache.beam.sdk.metrics.MetricResults;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.joda.time.Duration;
+
+/** The result of running a pipeline with the {@link LocalPortableRunner}. */
+public class LocalPortablePipelineResult implements PipelineResult {
+  private final Future<?> execution;
+  private final MetricsContainerStepMap metrics;
+
+  LocalPortablePipelineResult(Future<?> execution, MetricsContainerStepMap metrics) {
+    this.execution = execution;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public State getState() {
+    if (!execution.isDone()) {
+      return State.RUNNING;
+    } else if (execution.isCancelled()) {
+      return State.CANCELLED;
+    }
+    try {
+      execution.get();
+      return State.DONE;
+    } catch (ExecutionException e) {
+      return State.FAILED;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public State cancel() {
+    execution.cancel(true);
+    return getState();
+  }
+
+  /**
+   * {@inheritDoc}.
+   *
+   * <p>If the pipeline fails, throws a {@link Pipeline.PipelineExecutionException} with the cause
+   * of the failure.
+   */
+  @Override
+  public @Nullable State waitUntilFinish(Duration duration) {
+    try {
+      if (duration.compareTo(Duration.millis(1)) < 1) {
+        // Equivalent to waitUntilFinish().
+        execution.get();
+      } else {
+        execution.get(duration.getMillis(), TimeUnit.MILLISECONDS);
+      }
+    } catch (TimeoutException e) {
+      // The pipeline has not finished within the duration.
+      return null;
+    } catch (CancellationException e) {
+      return State.CANCELLED;
+    } catch (ExecutionException e) {
+      throw new Pipeline.PipelineExecutionException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+    return State.DONE;
+  }
+
+  @Override
+  public State waitUntilFinish() {
+    return waitUntilFinish(Duration.ZERO);
+  }
+
+  /**
+   * Returns the metrics reported by the SDK harness for the bundles which have completed so far.
+   * Only attempted values are available.
+   */
+  @Override
+  public MetricResults metrics() {
+    return MetricsContainerStepMap.asAttemptedOnlyMetricResults(metrics);
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.local.portable;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import org.apache.beam.model.pipeline.v1.RunnerApi;
+import org.apache.beam.runners.core.construction.PTransformTranslation;
+import org.apache.beam.runners.core.construction.PipelineOptionsTranslation;
+import org.apache.beam.runners.core.construction.graph.ExecutableStage;
+import org.apache.beam.runners.core.construction.graph.GreedyPipelineFuser;
+import org.apache.beam.runners.core.construction.graph.ProtoOverrides;
+import org.apache.beam.runners.core.construction.graph.SplittableParDoExpander;
+import org.apache.beam.runners.core.construction.graph.TrivialNativeTransformExpander;
+import org.apache.beam.runners.core.metrics.MetricsContainerStepMap;
+import org.apache.beam.runners.fnexecution.control.DefaultJobBundleFactory;
+import org.apache.beam.runners.fnexecution.control.JobBundleFactory;
+import org.apache.beam.runners.fnexecution.environment.EmbeddedEnvironmentFactory;
+import org.apache.beam.runners.fnexecution.environment.EnvironmentFactory;
+import org.apache.beam.runners.fnexecution.provisioning.JobInfo;
+import org.apache.beam.runners.fnexecution.translation.PipelineTranslatorUtils;
+import org.apache.beam.sdk.options.PipelineOptions;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableSet;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a bounded portable pipeline within the current process.
+ *
+ * <p>The pipeline is fused into {@link ExecutableStage ExecutableStages}, which are executed by a
+ * {@code FnHarness} embedded in this process and connected to it by in-process gRPC channels. The
+ * runner groups, flattens and materializes the {@code PCollections} between stages in memory, and
+ * executes up to {@link LocalPortablePipelineOptions#getConcurrentBundles()} bundles concurrently.
+ *
+ * <p>As the SDK harness is embedded, every environment of the pipeline is executed by the Java SDK
+ * harness on the classpath of this process, regardless of what the environment specifies. Pipelines
+ * with unbounded {@code PCollections} or merging windows are not supported.
+ */
+public class LocalPortableRunner {
+  private static final Logger LOG = LoggerFactory.getLogger(LocalPortableRunner.class);
+
+  /** The URNs of the transforms which the runner executes itself rather than in the harness. */
+  static final ImmutableSet<String> KNOWN_URNS =
+      ImmutableSet.of(
+          PTransformTranslation.IMPULSE_TRANSFORM_URN,
+          PTransformTranslation.GROUP_BY_KEY_TRANSFORM_URN,
+          PTransformTranslation.FLATTEN_TRANSFORM_URN,
+          ExecutableStage.URN);
+
+  public static LocalPortableRunner create(PipelineOptions options) {
+    LocalPortablePipelineOptions localOptions = options.as(LocalPortablePipelineOptions.class);
+    checkArgument(
+        localOptions.getConcurrentBundles() > 0,
+        "The number of concurrent bundles must be greater than zero but was %s",
+        localOptions.getConcurrentBundles());
+    checkArgument(
+        localOptions.getElementsPerBundle() > 0,
+        "The number of elements per bundle must be greater than zero but was %s",
+        localOptions.getElementsPerBundle());
+    return new LocalPortableRunner(localOptions);
+  }
+
+  private final LocalPortablePipelineOptions options;
+
+  private LocalPortableRunner(LocalPortablePipelineOptions options) {
+    this.options = options;
+  }
+
+  /**
+   * Starts executing the pipeline, returning a {@link LocalPortablePipelineResult} which can be
+   * used to wait for it to finish.
+   */
+  public LocalPortablePipelineResult run(RunnerApi.Pipeline pipeline) {
+    if (PipelineTranslatorUtils.hasUnboundedPCollections(pipeline)) {
+      throw new UnsupportedOperationException(
+          String.format(
+              "%s only supports bounded pipelines", LocalPortableRunner.class.getSimpleName()));
+    }
+    RunnerApi.Pipeline fusedPipeline = fuse(pipeline);
+    JobInfo jobInfo =
+        JobInfo.create(
+            String.format("%s-%s", options.getJobName(), UUID.randomUUID()),
+            options.getJobName(),
+            "",
+            PipelineOptionsTranslation.toProto(options));
+
+    MetricsContainerStepMap metrics = new MetricsContainerStepMap();
+    ExecutorService bundleExecutor =
+        Executors.newFixedThreadPool(
+            options.getConcurrentBundles(),
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("local-portable-worker-%d")
+                .build());
+    ExecutorService driverExecutor =
+        Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("local-portable-driver-%d")
+                .build());
+    Future<?> execution =
+        driverExecutor.submit(
+            () -> {
+              LOG.info("Running job {}", jobInfo.jobId());
+              try (JobBundleFactory jobBundleFactory =
+                  createJobBundleFactory(fusedPipeline, jobInfo)) {
+                new BatchPipelineExecutor(
+                        fusedPipeline,
+                        jobBundleFactory,
+                        bundleExecutor,
+                        options.getConcurrentBundles(),
+                        options.getElementsPerBundle(),
+                        metrics)
+                    .execute();
+              } finally {
+                bundleExecutor.shutdownNow();
+              }
+              LOG.info("Job {} finished", jobInfo.jobId());
+              return null;
+            });
+    driverExecutor.shutdown();
+    return new LocalPortablePipelineResult(execution, metrics);
+  }
+
+  /** Expands splittable DoFns and fuses the pipeline, unless it is already fused. */
+  static RunnerApi.Pipeline fuse(RunnerApi.Pipeline pipeline) {
+    RunnerApi.Pipeline pipelineWithSdfExpanded =
+        ProtoOverrides.updateTransform(
+            PTransformTranslation.PAR_DO_TRANSFORM_URN,
+            pipeline,
+            SplittableParDoExpander.createSizedReplacement());
+    // Don't let the fuser fuse any subcomponents of the transforms the runner executes itself.
+    RunnerApi.Pipeline trimmedPipeline =
+        TrivialNativeTransformExpander.forKnownUrns(pipelineWithSdfExpanded, KNOWN_URNS);
+    boolean alreadyFused =
+        trimmedPipeline.getComponents().getTransformsMap().values().stream()
+            .anyMatch(transform -> ExecutableStage.URN.equals(transform.getSpec().getUrn()));
+    return alreadyFused ? trimmedPipeline : GreedyPipelineFuser.fuse(trimmedPipeline).toPipeline();
+  }
+
+  private JobBundleFactory createJobBundleFactory(RunnerApi.Pipeline pipeline, JobInfo jobInfo) {
+    EnvironmentFactory.Provider embedded = new EmbeddedEnvironmentFactory.Provider(options);
+    Map<String, EnvironmentFactory.Provider> environmentFactoryProviders =
+        pipeline.getComponents().getEnvironmentsMap().values().stream()
+            .map(RunnerApi.Environment::getUrn)
+            .distinct()
+            .collect(Collectors.toMap(urn -> urn, urn -> embedded));
+    return DefaultJobBundleFactory.create(jobInfo, environmentFactoryProviders);
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.local.portable;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.ProcessBundleProgressResponse;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.ProcessBundleResponse;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateKey.TypeCase;
+import org.apache.beam.model.pipeline.v1.MetricsApi.MonitoringInfo;
+import org.apache.beam.runners.core.InMemoryTimerInternals;
+import org.apache.beam.runners.core.TimerInternals.TimerData;
+import org.apache.beam.runners.core.construction.Timer;
+import org.apache.beam.runners.core.construction.graph.ExecutableStage;
+import org.apache.beam.runners.core.metrics.MetricsContainerStepMap;
+import org.apache.beam.runners.core.metrics.MonitoringInfoConstants;
+import org.apache.beam.runners.fnexecution.control.BundleProgressHandler;
+import org.apache.beam.runners.fnexecution.control.OutputReceiverFactory;
+import org.apache.beam.runners.fnexecution.control.ProcessBundleDescriptors;
+import org.apache.beam.runners.fnexecution.control.ProcessBundleDescriptors.ExecutableProcessBundleDescriptor;
+import org.apache.beam.runners.fnexecution.control.RemoteBundle;
+import org.apache.beam.runners.fnexecution.control.StageBundleFactory;
+import org.apache.beam.runners.fnexecution.control.TimerReceiverFactory;
+import org.apache.beam.runners.fnexecution.state.InMemoryBagUserStateFactory;
+import org.apache.beam.runners.fnexecution.state.StateRequestHandler;
+import org.apache.beam.runners.fnexecution.state.StateRequestHandlers;
+import org.apache.beam.runners.fnexecution.translation.BatchSideInputHandlerFactory;
+import org.apache.beam.runners.fnexecution.translation.PipelineTranslatorUtils;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.fn.data.FnDataReceiver;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.apache.beam.sdk.util.WindowedValue;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
+import org.joda.time.Instant;
+
+/**
+ * Processes bundles of the input of an {@link ExecutableStage} in the SDK harness, adding the
+ * outputs of the stage to the queues of their {@code PCollections}.
+ *
+ * <p>A {@link StageBundleProcessor} is shared by the threads executing the bundles of a stage, each
+ * of which provides its own {@link StageBundleFactory}.
+ */
+@SuppressWarnings({
+  "rawtypes", // TODO(https://github.com/apache/beam/issues/20447)
+  "nullness" // TODO(https://github.com/apache/beam/issues/20497)
+})
+class StageBundleProcessor {
+  private final ExecutableStage stage;
+  private final Coder<BoundedWindow> windowCoder;
+  private final Map<String, List<WindowedValue<?>>> sideInputs;
+  private final OutputReceiverFactory receiverFactory;
+  private final MetricsContainerStepMap metrics;
+
+  StageBundleProcessor(
+      ExecutableStage stage,
+      Coder<BoundedWindow> windowCoder,
+      Map<String, List<WindowedValue<?>>> sideInputs,
+      Map<String, Queue<WindowedValue<?>>> outputs,
+      MetricsContainerStepMap metrics) {
+    this.stage = stage;
+    this.windowCoder = windowCoder;
+    this.sideInputs = sideInputs;
+    this.receiverFactory = new QueueReceiverFactory(outputs);
+    this.metrics = metrics;
+  }
+
+  /**
+   * Processes the elements in a bundle. If the stage uses timers, the elements must all have the
+   * same key, and the timers set for that key are fired once all of them have been processed.
+   */
+  void process(StageBundleFactory stageBundleFactory, List<WindowedValue<?>> elements)
+      throws Exception {
+    StateRequestHandler stateRequestHandler =
+        createStateRequestHandler(stageBundleFactory.getProcessBundleDescriptor());
+    if (stage.getTimers().isEmpty()) {
+      processElements(stageBundleFactory, stateRequestHandler, null, elements);
+      return;
+    }
+
+    // All of the input of the key is in this bundle, so its timers can fire as soon as it has been
+    // processed. The timers are held here rather than by a shared timer manager.
+    InMemoryTimerInternals timerInternals = new InMemoryTimerInternals();
+    timerInternals.advanceProcessingTime(Instant.now());
+    timerInternals.advanceSynchronizedProcessingTime(Instant.now());
+    AtomicReference<Object> timerKey = new AtomicReference<>();
+    TimerReceiverFactory timerReceiverFactory =
+        new TimerReceiverFactory(
+            stageBundleFactory,
+            (Timer<?> timer, TimerData timerData) -> {
+              timerKey.set(timer.getUserKey());
+              if (timer.getClearBit()) {
+                timerInternals.deleteTimer(timerData);
+              } else {
+                timerInternals.setTimer(timerData);
+              }
+            },
+            windowCoder);
+    processElements(stageBundleFactory, stateRequestHandler, timerReceiverFactory, elements);
+
+    timerInternals.advanceInputWatermark(BoundedWindow.TIMESTAMP_MAX_VALUE);
+    timerInternals.advanceProcessingTime(BoundedWindow.TIMESTAMP_MAX_VALUE);
+    timerInternals.advanceSynchronizedProcessingTime(BoundedWindow.TIMESTAMP_MAX_VALUE);
+    // Firing timers may set further timers, so fire until none are pending.
+    while (timerInternals.hasPendingTimers()) {
+      try (RemoteBundle bundle =
+          stageBundleFactory.getBundle(
+              receiverFactory, timerReceiverFactory, stateRequestHandler, progressHandler())) {
+        PipelineTranslatorUtils.fireEligibleTimers(
+            timerInternals, bundle.getTimerReceivers(), timerKey.get());
+      }
+    }
+  }
+
+  private void processElements(
+      StageBundleFactory stageBundleFactory,
+      StateRequestHandler stateRequestHandler,
+      TimerReceiverFactory timerReceiverFactory,
+      List<WindowedValue<?>> elements)
+      throws Exception {
+    try (RemoteBundle bundle =
+        stageBundleFactory.getBundle(
+            receiverFactory, timerReceiverFactory, stateRequestHandler, progressHandler())) {
+      FnDataReceiver<WindowedValue<?>> mainReceiver =
+          Iterables.getOnlyElement(bundle.getInputReceivers().values());
+      for (WindowedValue<?> element : elements) {
+        mainReceiver.accept(element);
+      }
+    }
+  }
+
+  /**
+   * Serves side inputs from their materialized contents and, for a stateful stage, user state from
+   * memory. The user state is created for each bundle, which holds all of the elements of a key.
+   */
+  private StateRequestHandler createStateRequestHandler(
+      ExecutableProcessBundleDescriptor processBundleDescriptor) throws IOException {
+    EnumMap<TypeCase, StateRequestHandler> handlerMap = new EnumMap<>(TypeCase.class);
+    StateRequestHandler sideInputHandler =
+        StateRequestHandlers.forSideInputHandlerFactory(
+            ProcessBundleDescriptors.getSideInputs(stage),
+            BatchSideInputHandlerFactory.forStage(
+                stage,
+                new BatchSideInputHandlerFactory.SideInputGetter() {
+                  @Override
+                  public <T> List<T> getSideInput(String pCollectionId) {
+                    return (List<T>) sideInputs.get(pCollectionId);
+                  }
+                }));
+    handlerMap.put(TypeCase.ITERABLE_SIDE_INPUT, sideInputHandler);
+    handlerMap.put(TypeCase.MULTIMAP_SIDE_INPUT, sideInputHandler);
+    handlerMap.put(TypeCase.MULTIMAP_KEYS_SIDE_INPUT, sideInputHandler);
+    handlerMap.put(
+        TypeCase.BAG_USER_STATE,
+        stage.getUserStates().isEmpty()
+            ? StateRequestHandler.unsupported()
+            : StateRequestHandlers.forBagUserStateHandlerFactory(
+                processBundleDescriptor, new InMemoryBagUserStateFactory()));
+    return StateRequestHandlers.delegateBasedUponType(handlerMap);
+  }
+
+  private BundleProgressHandler progressHandler() {
+    return new BundleProgressHandler() {
+      @Override
+      public void onProgress(ProcessBundleProgressResponse progress) {
+        // Progress reports are cumulative within the bundle, so only the final report is recorded.
+      }
+
+      @Override
+      public void onCompleted(ProcessBundleResponse response) {
+        for (MonitoringInfo monitoringInfo : response.getMonitoringInfosList()) {
+          String transformId =
+              monitoringInfo.getLabelsMap().get(MonitoringInfoConstants.Labels.PTRANSFORM);
+          if (transformId != null) {
+            metrics.getContainer(transformId).update(Collections.singletonList(monitoringInfo));
+          }
+        }
+      }
+    };
+  }
+
+  /** Adds the elements output by the harness to the queue of their {@code PCollection}. */
+  private static class QueueReceiverFactory implements OutputReceiverFactory {
+    private final Map<String, Queue<WindowedValue<?>>> outputs;
+
+    private QueueReceiverFactory(Map<String, Queue<WindowedValue<?>>> outputs) {
+      this.outputs = outputs;
+    }
+
+    @Override
+    public <OutputT> FnDataReceiver<OutputT> create(String pCollectionId) {
+      Queue<WindowedValue<?>> output = outputs.get(pCollectionId);
+      if (output == null) {
+        throw new IllegalStateException(String.format("Unknown PCollectionId %s", pCollectionId));
+      }
+      return element -> output.add((WindowedValue<?>) element);
+    }
+  }
+}
@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.local.portable;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import org.apache.beam.runners.core.construction.PipelineTranslation;
+import org.apache.beam.sdk.Pipeline;
+import org.apache.beam.sdk.PipelineResult;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.metrics.Counter;
+import org.apache.beam.sdk.metrics.MetricNameFilter;
+import org.apache.beam.sdk.metrics.MetricQueryResults;
+import org.apache.beam.sdk.metrics.Metrics;
+import org.apache.beam.sdk.metrics.MetricsFilter;
+import org.apache.beam.sdk.options.PipelineOptions;
+import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.apache.beam.sdk.state.StateSpec;
+import org.apache.beam.sdk.state.StateSpecs;
+import org.apache.beam.sdk.state.TimeDomain;
+import org.apache.beam.sdk.state.Timer;
+import org.apache.beam.sdk.state.TimerSpec;
+import org.apache.beam.sdk.state.TimerSpecs;
+import org.apache.beam.sdk.state.ValueState;
+import org.apache.beam.sdk.testing.PAssert;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.Flatten;
+import org.apache.beam.sdk.transforms.GroupByKey;
+import org.apache.beam.sdk.transforms.MapElements;
+import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.transforms.Sum;
+import org.apache.beam.sdk.transforms.View;
+import org.apache.beam.sdk.transforms.windowing.FixedWindows;
+import org.apache.beam.sdk.transforms.windowing.Window;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.PCollectionList;
+import org.apache.beam.sdk.values.PCollectionView;
+import org.apache.beam.sdk.values.TimestampedValue;
+import org.apache.beam.sdk.values.TypeDescriptors;
+import org.joda.time.Duration;
+import org.joda.time.Instant;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link LocalPortableRunner}. */
+@RunWith(JUnit4.class)
+public class LocalPortableRunnerTest {
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  private PipelineOptions options;
+
+  @Before
+  public void setup() {
+    options = PipelineOptionsFactory.create();
+    options.as(LocalPortablePipelineOptions.class).setElementsPerBundle(2);
+  }
+
+  private PipelineResult run(Pipeline p) {
+    PipelineResult result = LocalPortableRunner.create(options).run(PipelineTranslation.toProto(p));
+    assertThat(result.waitUntilFinish(), is(PipelineResult.State.DONE));
+    return result;
+  }
+
+  @Test
+  public void groupsFlattensAndReadsSideInputs() {
+    Pipeline p = Pipeline.create(options);
+    PCollection<KV<String, Integer>> first =
+        p.apply("First", Create.of(KV.of("foo", 1), KV.of("bar", 2), KV.of("foo", 3)));
+    PCollection<KV<String, Integer>> second =
+        p.apply("Second", Create.of(KV.of("foo", 4), KV.of("baz", 5)));
+    PCollectionView<Integer> offset = p.apply("Offset", Create.of(10)).apply(View.asSingleton());
+
+    PCollection<KV<String, Integer>> sums =
+        PCollectionList.of(first)
+            .and(second)
+            .apply(Flatten.pCollections())
+            .apply(Sum.integersPerKey())
+            .apply(ParDo.of(new AddOffsetFn(offset)).withSideInputs(offset));
+
+    PAssert.that(sums).containsInAnyOrder(KV.of("foo", 18), KV.of("bar", 12), KV.of("baz", 15));
+    run(p);
+  }
+
+  private static class AddOffsetFn extends DoFn<KV<String, Integer>, KV<String, Integer>> {
+    private final PCollectionView<Integer> offset;
+
+    private AddOffsetFn(PCollectionView<Integer> offset) {
+      this.offset = offset;
+    }
+
+    @ProcessElement
+    public void process(ProcessContext c) {
+      c.output(KV.of(c.element().getKey(), c.element().getValue() + c.sideInput(offset)));
+    }
+  }
+
+  @Test
+  public void groupsByWindow() {
+    Pipeline p = Pipeline.create(options);
+    PCollection<KV<String, Iterable<Integer>>> grouped =
+        p.apply(
+                Create.timestamped(
+                    TimestampedValue.of(KV.of("foo", 1), new Instant(0)),
+                    TimestampedValue.of(KV.of("foo", 2), new Instant(5)),
+                    TimestampedValue.of(KV.of("foo", 3), new Instant(15))))
+            .apply(Window.into(FixedWindows.of(Duration.millis(10))))
+            .apply(GroupByKey.create());
+
+    PCollection<Integer> sizes =
+        grouped.apply(
+            MapElements.into(TypeDescriptors.integers())
+                .via(kv -> (int) kv.getValue().spliterator().getExactSizeIfKnown()));
+    PAssert.that(sizes).containsInAnyOrder(2, 1);
+    run(p);
+  }
+
+  @Test
+  public void executesStatefulDoFnsWithTimers() {
+    Pipeline p = Pipeline.create(options);
+    PCollection<KV<String, Integer>> totals =
+        p.apply(Create.of(KV.of("foo", 1), KV.of("bar", 2), KV.of("foo", 3)))
+            .apply(ParDo.of(new SumOnExpiryFn()));
+
+    PAssert.that(totals).containsInAnyOrder(KV.of("foo", 4), KV.of("bar", 2));
+    run(p);
+  }
+
+  private static class SumOnExpiryFn extends DoFn<KV<String, Integer>, KV<String, Integer>> {
+    @StateId("key")
+    private final StateSpec<ValueState<String>> keySpec = StateSpecs.value(StringUtf8Coder.of());
+
+    @StateId("sum")
+    private final StateSpec<ValueState<Integer>> sumSpec = StateSpecs.value(VarIntCoder.of());
+
+    @TimerId("expiry")
+    private final TimerSpec expirySpec = TimerSpecs.timer(TimeDomain.EVENT_TIME);
+
+    @ProcessElement
+    public void process(
+        @Element KV<String, Integer> element,
+        @StateId("key") ValueState<String> key,
+        @StateId("sum") ValueState<Integer> sum,
+        @TimerId("expiry") Timer expiry) {
+      Integer current = sum.read();
+      key.write(element.getKey());
+      sum.write((current == null ? 0 : current) + element.getValue());
+      expiry.set(new Instant(0));
+    }
+
+    @OnTimer("expiry")
+    public void onExpiry(
+        @StateId("key") ValueState<String> key,
+        @StateId("sum") ValueState<Integer> sum,
+        OutputReceiver<KV<String, Integer>> output) {
+      output.output(KV.of(key.read(), sum.read()));
+    }
+  }
+
+  @Test
+  public void reportsUserMetrics() {
+    Pipeline p = Pipeline.create(options);
+    p.apply(Create.of(1, 2, 3)).apply("Count", ParDo.of(new CountFn()));
+
+    MetricQueryResults metrics =
+        run(p)
+            .metrics()
+            .queryMetrics(
+                MetricsFilter.builder()
+                    .addNameFilter(MetricNameFilter.named("test", "elements"))
+                    .build());
+    assertThat(metrics.getCounters().iterator().next().getAttempted(), equalTo(3L));
+  }
+
+  private static class CountFn extends DoFn<Integer, Integer> {
+    private final Counter elements = Metrics.counter("test", "elements");
+
+    @ProcessElement
+    public void process(@Element Integer element) {
+      elements.inc();
+    }
+  }
+
+  @Test
+  public void failedAssertionFailsPipeline() {
+    Pipeline p = Pipeline.create(options);
+    PAssert.that(p.apply(Create.of(1, 2, 3))).containsInAnyOrder(1, 2);
+
+    thrown.expect(Pipeline.PipelineExecutionException.class);
+    LocalPortableRunner.create(options).run(PipelineTranslation.toProto(p)).waitUntilFinish();
+  }
+}
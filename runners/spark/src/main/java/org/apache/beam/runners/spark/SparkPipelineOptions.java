@@ -94,4 +94,67 @@ public interface SparkPipelineOptions extends SparkCommonPipelineOptions {
   boolean isCacheDisabled();
 
   void setCacheDisabled(boolean value);
+
+  @Description(
+      "Combine per key in batch pipelines by merging accumulators in memory on both sides of the "
+          + "shuffle, spilling them encoded to local disk when the task cannot acquire execution "
+          + "memory for them, rather than with Spark's combineByKey.")
+  @Default.Boolean(false)
+  boolean isSpillableCombine();
+
+  @Experimental
+  void setSpillableCombine(boolean value);
+
+  @Description(
+      "Joins of the join library in batch pipelines are translated to broadcast hash joins when "
+          + "the side to broadcast is estimated to be at most this many bytes, from the size of "
+          + "the bounded source it was read from, and are shuffled if the collected side is "
+          + "larger. A negative value disables broadcast joins.")
+  @Default.Long(10 * 1024 * 1024)
+  Long getBroadcastJoinThresholdBytes();
+
+  @Experimental
+  void setBroadcastJoinThresholdBytes(Long value);
+
+  @Description(
+      "Reused PCollections which would be cached with the MEMORY_ONLY storage level, and are "
+          + "estimated to be larger than this many bytes from the size of the bounded source they "
+          + "were read from, are cached serialized instead: off heap if Spark off-heap memory is "
+          + "enabled, or in memory and on disk otherwise. A negative value disables this.")
+  @Default.Long(256 * 1024 * 1024)
+  Long getSerializedCacheThresholdBytes();
+
+  @Experimental
+  void setSerializedCacheThresholdBytes(Long value);
+
+  @Description(
+      "A directory of a filesystem shared by the driver and all executors, in which streaming "
+          + "pipelines keep the state of grouping by key and window in a log-structured store. Each "
+          + "micro-batch only writes the state cells it changed to the store, which is compacted "
+          + "into full snapshots periodically, so that Spark only checkpoints the version of the "
+          + "store and the timers of each key. If not set, Spark checkpoints the full state of each "
+          + "key.")
+  String getStateStoreDirectory();
+
+  @Experimental
+  void setStateStoreDirectory(String value);
+
+  @Description(
+      "The number of micro-batches after which the state store of a partition is compacted into a "
+          + "full snapshot, from which its state is recovered.")
+  @Default.Integer(10)
+  Integer getStateStoreSnapshotInterval();
+
+  @Experimental
+  void setStateStoreSnapshotInterval(Integer value);
+
+  @Description(
+      "The number of the last micro-batches whose state is retained by the state store, to "
+          + "recover from the last Spark checkpoint. It should cover the micro-batches of the "
+          + "checkpoint duration.")
+  @Default.Integer(100)
+  Integer getStateStoreRetainedVersions();
+
+  @Experimental
+  void setStateStoreRetainedVersions(Integer value);
 }
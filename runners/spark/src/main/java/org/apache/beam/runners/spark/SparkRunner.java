@@ -35,6 +35,7 @@ import org.apache.beam.runners.spark.metrics.AggregatorMetricSource;
 import org.apache.beam.runners.spark.metrics.CompositeSource;
 import org.apache.beam.runners.spark.metrics.MetricsAccumulator;
 import org.apache.beam.runners.spark.metrics.SparkBeamMetricSource;
+import org.apache.beam.runners.spark.translation.BroadcastHashJoins;
 import org.apache.beam.runners.spark.translation.EvaluationContext;
 import org.apache.beam.runners.spark.translation.SparkContextFactory;
 import org.apache.beam.runners.spark.translation.SparkPipelineTranslator;
@@ -385,6 +386,10 @@ public final class SparkRunner extends PipelineRunner<SparkPipelineResult> {
     }
 
     protected boolean shouldDefer(TransformHierarchy.Node node) {
+      // joins are translated directly only if they can be broadcast.
+      if (BroadcastHashJoins.isJoin(node.getTransform())) {
+        return !BroadcastHashJoins.canBroadcast(node.toAppliedPTransform(getPipeline()), ctxt);
+      }
       // if the input is not a PCollection, or it is but with non merging windows, don't defer.
       Collection<PValue> nonAdditionalInputs =
           TransformInputs.nonAdditionalInputs(node.toAppliedPTransform(getPipeline()));
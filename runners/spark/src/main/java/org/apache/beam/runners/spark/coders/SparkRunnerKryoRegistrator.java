@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import org.apache.beam.runners.spark.io.MicrobatchSource;
 import org.apache.beam.runners.spark.stateful.SparkGroupAlsoByWindowViaWindowSet.StateAndTimers;
+import org.apache.beam.runners.spark.stateful.StateAndTimersKryoSerializer;
 import org.apache.beam.runners.spark.translation.ValueAndCoderKryoSerializer;
 import org.apache.beam.runners.spark.translation.ValueAndCoderLazySerializable;
 import org.apache.beam.runners.spark.util.ByteArray;
@@ -51,6 +52,7 @@ public class SparkRunnerKryoRegistrator implements KryoRegistrator {
     // MicrobatchSource is serialized as data and may not be Kryo-serializable.
     kryo.register(MicrobatchSource.class, new StatelessJavaSerializer());
     kryo.register(ValueAndCoderLazySerializable.class, new ValueAndCoderKryoSerializer());
+    kryo.register(StateAndTimers.class, new StateAndTimersKryoSerializer());
 
     kryo.register(ArrayList.class);
     kryo.register(ByteArray.class);
@@ -59,7 +61,6 @@ public class SparkRunnerKryoRegistrator implements KryoRegistrator {
     kryo.register(LinkedHashMap.class);
     kryo.register(Object[].class);
     kryo.register(PaneInfo.class);
-    kryo.register(StateAndTimers.class);
     kryo.register(TupleTag.class);
     kryo.register(WrappedArray.ofRef.class);
 
@@ -17,6 +17,15 @@
  */
 package org.apache.beam.runners.spark.stateful;
 
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkState;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -43,13 +52,16 @@ import org.apache.beam.runners.spark.translation.TranslationUtils;
 import org.apache.beam.runners.spark.util.ByteArray;
 import org.apache.beam.runners.spark.util.GlobalWatermarkHolder;
 import org.apache.beam.runners.spark.util.TimerUtils;
+import org.apache.beam.sdk.coders.ByteArrayCoder;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.IterableCoder;
 import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
 import org.apache.beam.sdk.metrics.MetricName;
 import org.apache.beam.sdk.state.TimeDomain;
 import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.transforms.windowing.PaneInfo;
+import org.apache.beam.sdk.util.VarInt;
 import org.apache.beam.sdk.util.WindowedValue;
 import org.apache.beam.sdk.util.WindowedValue.FullWindowedValueCoder;
 import org.apache.beam.sdk.values.KV;
@@ -59,8 +71,11 @@ import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Joiner;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Predicate;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.AbstractIterator;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.FluentIterable;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.HashBasedTable;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Lists;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Table;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.io.ByteStreams;
+import org.apache.spark.TaskContext;
 import org.apache.spark.api.java.JavaSparkContext$;
 import org.apache.spark.api.java.function.FlatMapFunction;
 import org.apache.spark.streaming.Duration;
@@ -68,6 +83,7 @@ import org.apache.spark.streaming.api.java.JavaDStream;
 import org.apache.spark.streaming.api.java.JavaPairDStream;
 import org.apache.spark.streaming.dstream.DStream;
 import org.apache.spark.streaming.dstream.PairDStreamFunctions;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.joda.time.Instant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -100,25 +116,157 @@ public class SparkGroupAlsoByWindowViaWindowSet implements Serializable {
   private static final Logger LOG =
       LoggerFactory.getLogger(SparkGroupAlsoByWindowViaWindowSet.class);
 
-  /** State and Timers wrapper. */
+  /**
+   * State and Timers wrapper. Supports both Kryo and Java serialization.
+   *
+   * <p>The state is serialized as its encoded cells, and is only decoded when it is first accessed.
+   * The encoded state is kept, so that the state of a key which did not change in a micro-batch is
+   * serialized again as is, when Spark stores or checkpoints the state stream, rather than being
+   * decoded and encoded again.
+   *
+   * <p>If the state is kept in a {@link SparkStateStore}, only the version of the store which holds
+   * the state is serialized, with whether the state is empty.
+   */
   public static class StateAndTimers implements Serializable {
     // Serializable state for internals (namespace to state tag to coded value).
-    private final Table<String, String, byte[]> state;
-    private final Collection<byte[]> serTimers;
-
-    private StateAndTimers(
-        final Table<String, String, byte[]> state, final Collection<byte[]> timers) {
+    private transient @Nullable Table<String, String, byte[]> state;
+    // The encoded state, or null if it has not been encoded yet.
+    private transient byte @Nullable [] encodedState;
+    // The version of the state store which holds the state, if it is kept in a store.
+    private transient long storeVersion = SparkStateStore.NO_VERSION;
+    private transient boolean storeStateEmpty;
+    private transient Collection<byte[]> serTimers;
+
+    StateAndTimers(final Table<String, String, byte[]> state, final Collection<byte[]> timers) {
       this.state = state;
       this.serTimers = timers;
     }
 
+    @SuppressWarnings("unused") // for serialization
+    StateAndTimers() {}
+
+    /** Returns the state and timers of a key whose state is held by the given store version. */
+    static StateAndTimers inStore(
+        final long storeVersion, final boolean stateEmpty, final Collection<byte[]> timers) {
+      final StateAndTimers stateAndTimers = new StateAndTimers();
+      stateAndTimers.storeVersion = storeVersion;
+      stateAndTimers.storeStateEmpty = stateEmpty;
+      stateAndTimers.serTimers = timers;
+      return stateAndTimers;
+    }
+
+    /** Returns whether the state is kept in a {@link SparkStateStore}. */
+    boolean isInStore() {
+      return storeVersion != SparkStateStore.NO_VERSION;
+    }
+
+    long getStoreVersion() {
+      return storeVersion;
+    }
+
     Table<String, String, byte[]> getState() {
+      checkState(!isInStore(), "The state is kept in version %s of a state store.", storeVersion);
+      if (state == null) {
+        state = decodeState(encodedState);
+      }
       return state;
     }
 
+    /** Returns whether the state is empty, without decoding it. */
+    boolean isStateEmpty() {
+      if (isInStore()) {
+        return storeStateEmpty;
+      }
+      // the encoded state starts with the number of its cells
+      return state != null ? state.isEmpty() : encodedState[0] == 0;
+    }
+
     Collection<byte[]> getTimers() {
       return serTimers;
     }
+
+    /** Returns the unchanged state of this wrapper with the provided timers. */
+    StateAndTimers withTimers(final Collection<byte[]> timers) {
+      final StateAndTimers updated = new StateAndTimers(state, timers);
+      updated.encodedState = encodedState;
+      updated.storeVersion = storeVersion;
+      updated.storeStateEmpty = storeStateEmpty;
+      return updated;
+    }
+
+    void writeCommon(final OutputStream out) throws IOException {
+      VarInt.encode(storeVersion + 1, out);
+      if (isInStore()) {
+        out.write(storeStateEmpty ? 1 : 0);
+      } else {
+        if (encodedState == null) {
+          encodedState = encodeState(state);
+        }
+        VarInt.encode(encodedState.length, out);
+        out.write(encodedState);
+      }
+      VarInt.encode(serTimers.size(), out);
+      for (final byte[] timer : serTimers) {
+        VarInt.encode(timer.length, out);
+        out.write(timer);
+      }
+    }
+
+    void readCommon(final InputStream in) throws IOException {
+      storeVersion = VarInt.decodeLong(in) - 1;
+      if (isInStore()) {
+        storeStateEmpty = in.read() == 1;
+      } else {
+        encodedState = new byte[VarInt.decodeInt(in)];
+        ByteStreams.readFully(in, encodedState);
+      }
+      final int timers = VarInt.decodeInt(in);
+      serTimers = new ArrayList<>(timers);
+      for (int i = 0; i < timers; i++) {
+        final byte[] timer = new byte[VarInt.decodeInt(in)];
+        ByteStreams.readFully(in, timer);
+        serTimers.add(timer);
+      }
+    }
+
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+      out.defaultWriteObject();
+      writeCommon(out);
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+      in.defaultReadObject();
+      readCommon(in);
+    }
+
+    private static byte[] encodeState(final Table<String, String, byte[]> state)
+        throws IOException {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      VarInt.encode(state.size(), out);
+      for (final Table.Cell<String, String, byte[]> cell : state.cellSet()) {
+        StringUtf8Coder.of().encode(cell.getRowKey(), out);
+        StringUtf8Coder.of().encode(cell.getColumnKey(), out);
+        ByteArrayCoder.of().encode(cell.getValue(), out);
+      }
+      return out.toByteArray();
+    }
+
+    private static Table<String, String, byte[]> decodeState(final byte[] encodedState) {
+      final Table<String, String, byte[]> state = HashBasedTable.create();
+      final ByteArrayInputStream in = new ByteArrayInputStream(encodedState);
+      try {
+        final int cells = VarInt.decodeInt(in);
+        for (int i = 0; i < cells; i++) {
+          state.put(
+              StringUtf8Coder.of().decode(in),
+              StringUtf8Coder.of().decode(in),
+              ByteArrayCoder.of().decode(in));
+        }
+      } catch (final IOException e) {
+        throw new IllegalStateException("Error decoding state.", e);
+      }
+      return state;
+    }
   }
 
   private static class OutputWindowedValueHolder<K, V>
@@ -170,9 +318,12 @@ public class SparkGroupAlsoByWindowViaWindowSet implements Serializable {
           input;
       private final SystemReduceFn<K, InputT, Iterable<InputT>, Iterable<InputT>, W> reduceFn;
       private final CounterCell droppedDueToLateness;
+      // The update of the state store of the partition, if the state is kept in a store.
+      private final SparkStateStore.@Nullable Update stateStoreUpdate;
 
       private SparkStateInternals<K> processPreviousState(
           final Option<Tuple2<StateAndTimers, List<byte[]>>> prevStateAndTimersOpt,
+          final ByteArray encodedKey,
           final K key,
           final SparkTimerInternals timerInternals) {
 
@@ -184,8 +335,19 @@ public class SparkGroupAlsoByWindowViaWindowSet implements Serializable {
         } else {
           // with pre-existing state.
           final StateAndTimers prevStateAndTimers = prevStateAndTimersOpt.get()._1();
-          // get state(internals) per key.
-          stateInternals = SparkStateInternals.forKeyAndState(key, prevStateAndTimers.getState());
+          if (prevStateAndTimers.isInStore()) {
+            checkState(
+                stateStoreUpdate != null,
+                "The state of %s is kept in a state store, but no state store directory is set.",
+                logPrefix);
+            // get state(internals) per key, which is read from the store only if it is accessed.
+            stateStoreUpdate.derive(prevStateAndTimers.getStoreVersion());
+            stateInternals =
+                SparkStateInternals.forKeyAndState(key, () -> stateStoreUpdate.read(encodedKey));
+          } else {
+            // get state(internals) per key, which is decoded only if it is accessed.
+            stateInternals = SparkStateInternals.forKeyAndState(key, prevStateAndTimers::getState);
+          }
 
           timerInternals.addTimers(
               SparkTimerInternals.deserializeTimers(
@@ -200,10 +362,12 @@ public class SparkGroupAlsoByWindowViaWindowSet implements Serializable {
                   Tuple3<ByteArray, Seq<byte[]>, Option<Tuple2<StateAndTimers, List<byte[]>>>>>
               input,
           final SystemReduceFn<K, InputT, Iterable<InputT>, Iterable<InputT>, W> reduceFn,
-          final CounterCell droppedDueToLateness) {
+          final CounterCell droppedDueToLateness,
+          final SparkStateStore.@Nullable Update stateStoreUpdate) {
         this.input = input;
         this.reduceFn = reduceFn;
         this.droppedDueToLateness = droppedDueToLateness;
+        this.stateStoreUpdate = stateStoreUpdate;
       }
 
       /**
@@ -250,7 +414,7 @@ public class SparkGroupAlsoByWindowViaWindowSet implements Serializable {
               SparkTimerInternals.forStreamFromSources(sourceIds, watermarks);
 
           final SparkStateInternals<K> stateInternals =
-              processPreviousState(prevStateAndTimersOpt, key, timerInternals);
+              processPreviousState(prevStateAndTimersOpt, encodedKey, key, timerInternals);
 
           final ExecutableTriggerStateMachine triggerStateMachine =
               ExecutableTriggerStateMachine.create(
@@ -300,7 +464,8 @@ public class SparkGroupAlsoByWindowViaWindowSet implements Serializable {
             } catch (final Exception e) {
               throw new RuntimeException("Failed to process element with ReduceFnRunner", e);
             }
-          } else if (stateInternals.getState().isEmpty()) {
+          } else if (prevStateAndTimersOpt.isEmpty()
+              || prevStateAndTimersOpt.get()._1().isStateEmpty()) {
             // no input and no state -> GC evict now.
             continue;
           }
@@ -341,16 +506,42 @@ public class SparkGroupAlsoByWindowViaWindowSet implements Serializable {
           final List<WindowedValue<KV<K, Iterable<InputT>>>> outputs =
               outputHolder.getWindowedValues();
 
-          if (!outputs.isEmpty() || !stateInternals.getState().isEmpty()) {
+          // the previous state is reused as is, unless a state cell was written or cleared.
+          final boolean stateChanged =
+              stateInternals.isChanged() || prevStateAndTimersOpt.isEmpty();
+          final boolean stateEmpty =
+              stateChanged
+                  ? stateInternals.getState().isEmpty()
+                  : prevStateAndTimersOpt.get()._1().isStateEmpty();
+
+          if (stateStoreUpdate != null) {
+            if (prevStateAndTimersOpt.isDefined()
+                && !prevStateAndTimersOpt.get()._1().isInStore()) {
+              // the state of a key which is not in the store yet is written as a whole.
+              stateStoreUpdate.write(
+                  encodedKey, stateInternals.getState(), stateInternals.getState());
+            } else if (stateChanged) {
+              // only the written or cleared cells are written, also if the key is evicted.
+              stateStoreUpdate.write(
+                  encodedKey, stateInternals.getState(), stateInternals.getChangedCells());
+            }
+          }
+
+          if (!outputs.isEmpty() || !stateEmpty) {
 
             TimerUtils.dropExpiredTimers(timerInternals, windowingStrategy);
 
             // empty outputs are filtered later using DStream filtering
-            final StateAndTimers updated =
-                new StateAndTimers(
-                    stateInternals.getState(),
-                    SparkTimerInternals.serializeTimers(
-                        timerInternals.getTimers(), timerDataCoder));
+            final Collection<byte[]> serTimers =
+                SparkTimerInternals.serializeTimers(timerInternals.getTimers(), timerDataCoder);
+            final StateAndTimers updated;
+            if (stateStoreUpdate != null) {
+              updated = StateAndTimers.inStore(stateStoreUpdate.version(), stateEmpty, serTimers);
+            } else if (stateChanged) {
+              updated = new StateAndTimers(stateInternals.getState(), serTimers);
+            } else {
+              updated = prevStateAndTimersOpt.get()._1().withTimers(serTimers);
+            }
 
             /*
             Not something we want to happen in production, but is very helpful
@@ -364,6 +555,9 @@ public class SparkGroupAlsoByWindowViaWindowSet implements Serializable {
           }
           // an empty state with no output, can be evicted completely - do nothing.
         }
+        if (stateStoreUpdate != null) {
+          stateStoreUpdate.commit();
+        }
         return endOfData();
       }
     }
@@ -449,8 +643,21 @@ public class SparkGroupAlsoByWindowViaWindowSet implements Serializable {
         droppedDueToClosedWindow.inc(-droppedDueToClosedWindow.getCumulative());
       }
 
+      final SparkPipelineOptions sparkOptions = options.get().as(SparkPipelineOptions.class);
+      final SparkStateStore.Update stateStoreUpdate =
+          sparkOptions.getStateStoreDirectory() == null
+              ? null
+              : SparkStateStore.forPartition(
+                      sparkOptions.getStateStoreDirectory(),
+                      logPrefix,
+                      TaskContext.getPartitionId(),
+                      sparkOptions.getStateStoreSnapshotInterval(),
+                      sparkOptions.getStateStoreRetainedVersions())
+                  .update();
+
       return scala.collection.JavaConversions.asScalaIterator(
-          new UpdateStateByKeyOutputIterator(input, reduceFn, droppedDueToLateness));
+          new UpdateStateByKeyOutputIterator(
+              input, reduceFn, droppedDueToLateness, stateStoreUpdate));
     }
   }
 
@@ -42,6 +42,8 @@ import org.apache.beam.sdk.transforms.Combine.CombineFn;
 import org.apache.beam.sdk.transforms.CombineWithContext.CombineFnWithContext;
 import org.apache.beam.sdk.transforms.windowing.TimestampCombiner;
 import org.apache.beam.sdk.util.CombineFnUtil;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Supplier;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Suppliers;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.HashBasedTable;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Table;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -54,17 +56,20 @@ import org.joda.time.Instant;
 class SparkStateInternals<K> implements StateInternals {
 
   private final K key;
-  // Serializable state for internals (namespace to state tag to coded value).
-  private final Table<String, String, byte[]> stateTable;
+  // Serializable state for internals (namespace to state tag to coded value), which is only
+  // supplied when it is first accessed.
+  private final Supplier<Table<String, String, byte[]>> stateTable;
+  // The namespace and state tag of the state cells which were written or cleared.
+  private final Table<String, String, Boolean> changedCells = HashBasedTable.create();
 
   private SparkStateInternals(K key) {
     this.key = key;
-    this.stateTable = HashBasedTable.create();
+    this.stateTable = Suppliers.ofInstance(HashBasedTable.create());
   }
 
-  private SparkStateInternals(K key, Table<String, String, byte[]> stateTable) {
+  private SparkStateInternals(K key, Supplier<Table<String, String, byte[]>> stateTable) {
     this.key = key;
-    this.stateTable = stateTable;
+    this.stateTable = Suppliers.memoize(stateTable);
   }
 
   static <K> SparkStateInternals<K> forKey(K key) {
@@ -72,12 +77,22 @@ class SparkStateInternals<K> implements StateInternals {
   }
 
   static <K> SparkStateInternals<K> forKeyAndState(
-      K key, Table<String, String, byte[]> stateTable) {
+      K key, Supplier<Table<String, String, byte[]>> stateTable) {
     return new SparkStateInternals<>(key, stateTable);
   }
 
   public Table<String, String, byte[]> getState() {
-    return stateTable;
+    return stateTable.get();
+  }
+
+  /** Returns whether a state cell was written or cleared since these internals were created. */
+  boolean isChanged() {
+    return !changedCells.isEmpty();
+  }
+
+  /** Returns the state cells which were written or cleared since these internals were created. */
+  Table<String, String, Boolean> getChangedCells() {
+    return changedCells;
   }
 
   @Override
@@ -170,7 +185,7 @@ class SparkStateInternals<K> implements StateInternals {
     }
 
     T readValue() {
-      byte[] buf = stateTable.get(namespace.stringKey(), address.getId());
+      byte[] buf = getState().get(namespace.stringKey(), address.getId());
       if (buf != null) {
         return CoderHelpers.fromByteArray(buf, coder);
       }
@@ -178,12 +193,15 @@ class SparkStateInternals<K> implements StateInternals {
     }
 
     void writeValue(T input) {
-      stateTable.put(
-          namespace.stringKey(), address.getId(), CoderHelpers.toByteArray(input, coder));
+      getState()
+          .put(namespace.stringKey(), address.getId(), CoderHelpers.toByteArray(input, coder));
+      changedCells.put(namespace.stringKey(), address.getId(), true);
     }
 
     public void clear() {
-      stateTable.remove(namespace.stringKey(), address.getId());
+      if (getState().remove(namespace.stringKey(), address.getId()) != null) {
+        changedCells.put(namespace.stringKey(), address.getId(), true);
+      }
     }
 
     @Override
@@ -271,7 +289,7 @@ class SparkStateInternals<K> implements StateInternals {
 
         @Override
         public Boolean read() {
-          return stateTable.get(namespace.stringKey(), address.getId()) == null;
+          return getState().get(namespace.stringKey(), address.getId()) == null;
         }
       };
     }
@@ -332,7 +350,7 @@ class SparkStateInternals<K> implements StateInternals {
 
         @Override
         public Boolean read() {
-          return stateTable.get(namespace.stringKey(), address.getId()) == null;
+          return getState().get(namespace.stringKey(), address.getId()) == null;
         }
       };
     }
@@ -385,7 +403,7 @@ class SparkStateInternals<K> implements StateInternals {
 
         @Override
         public Boolean read() {
-          return stateTable.get(namespace.stringKey(), address.getId()) == null;
+          return getState().get(namespace.stringKey(), address.getId()) == null;
         }
       };
     }
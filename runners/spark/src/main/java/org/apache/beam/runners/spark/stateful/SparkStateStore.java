@@ -0,0 +1,433 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.spark.stateful;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkState;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.beam.runners.spark.util.ByteArray;
+import org.apache.beam.sdk.coders.ByteArrayCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.util.VarInt;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.HashBasedTable;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Table;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A log-structured store of the state of the keys of one partition of the state stream of {@link
+ * SparkGroupAlsoByWindowViaWindowSet}, in a directory of a filesystem which is shared by the driver
+ * and the executors.
+ *
+ * <p>Each micro-batch derives a new version of the store from the version which the state of its
+ * keys was read from, and writes only the state cells it wrote or cleared to the file of the new
+ * version, together with the version it was derived from. Every {@code snapshotInterval} versions,
+ * the state is compacted into a full snapshot, from which it is recovered without reading the
+ * versions before it, and the files of the versions before the last {@code retainedVersions}
+ * versions are deleted. The state stream of a Spark checkpoint thus only holds the version of the
+ * state of each key, which is recovered from the store as long as it is retained.
+ *
+ * <p>The state of the last committed version is kept in memory, so that the next micro-batch of the
+ * partition which runs in the same executor does not read it from the files.
+ */
+@SuppressWarnings({
+  "nullness" // TODO(https://github.com/apache/beam/issues/20497)
+})
+class SparkStateStore {
+  static final long NO_VERSION = -1L;
+
+  private static final String DELTA = ".delta";
+  private static final String SNAPSHOT = ".snapshot";
+  private static final String TEMP = ".tmp";
+
+  // The stores of the partitions which ran in this JVM, by directory.
+  private static final ConcurrentMap<Path, SparkStateStore> STORES = new ConcurrentHashMap<>();
+
+  private final Path directory;
+  private final int snapshotInterval;
+  private final int retainedVersions;
+  // The state of the last committed version, unless an update of the store took it.
+  private @Nullable Version committed;
+  private long nextVersion;
+
+  SparkStateStore(Path directory, int snapshotInterval, int retainedVersions) {
+    this.directory = directory;
+    this.snapshotInterval = snapshotInterval;
+    this.retainedVersions = retainedVersions;
+  }
+
+  /** Returns the store of the given partition of the state stream of the given transform. */
+  static SparkStateStore forPartition(
+      String directory,
+      String transformFullName,
+      int partition,
+      int snapshotInterval,
+      int retainedVersions) {
+    final Path path;
+    try {
+      path =
+          Paths.get(
+              directory,
+              URLEncoder.encode(transformFullName, StandardCharsets.UTF_8.name()),
+              Integer.toString(partition));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return STORES.computeIfAbsent(
+        path, p -> new SparkStateStore(p, snapshotInterval, retainedVersions));
+  }
+
+  /** Starts an update of this store by a micro-batch. */
+  Update update() {
+    return new Update();
+  }
+
+  /**
+   * An update of the store by a micro-batch, which reads the state of its keys from one version and
+   * commits the state cells it changed as a new version.
+   */
+  class Update {
+    private long parent = NO_VERSION;
+    private long version = NO_VERSION;
+    private @Nullable Version base;
+    // The new state of the keys whose state changed, and their changed cells encoded.
+    private final Map<ByteArray, Table<String, String, byte[]>> changed = new HashMap<>();
+    private final ByteArrayOutputStream changedCells = new ByteArrayOutputStream();
+
+    private Update() {}
+
+    /** Declares the version which the state of the keys of this update is read from. */
+    void derive(long parentVersion) {
+      checkState(
+          parent == NO_VERSION || parent == parentVersion,
+          "The state of a partition of %s was read from versions %s and %s.",
+          directory,
+          parent,
+          parentVersion);
+      parent = parentVersion;
+    }
+
+    /**
+     * Returns the state of the given key at the version this update derives from. The state of that
+     * version is taken from the store by the update, so it is updated in place, and is only
+     * released to the store when the update is committed.
+     */
+    Table<String, String, byte[]> read(ByteArray key) {
+      if (base == null && parent != NO_VERSION) {
+        base = take(parent);
+      }
+      final Table<String, String, byte[]> state = base == null ? null : base.state.get(key);
+      return state == null ? HashBasedTable.create() : state;
+    }
+
+    /**
+     * Writes the given cells of the new state of the given key, which are either written or
+     * cleared.
+     */
+    void write(ByteArray key, Table<String, String, byte[]> state, Table<String, String, ?> cells) {
+      if (cells.isEmpty()) {
+        return;
+      }
+      checkState(changed.put(key, state) == null, "The state of a key was written twice.");
+      try {
+        ByteArrayCoder.of().encode(key.getValue(), changedCells);
+        VarInt.encode(cells.size(), changedCells);
+        for (final Table.Cell<String, String, ?> cell : cells.cellSet()) {
+          final byte[] value = state.get(cell.getRowKey(), cell.getColumnKey());
+          StringUtf8Coder.of().encode(cell.getRowKey(), changedCells);
+          StringUtf8Coder.of().encode(cell.getColumnKey(), changedCells);
+          changedCells.write(value == null ? 0 : 1);
+          if (value != null) {
+            ByteArrayCoder.of().encode(value, changedCells);
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    /** Returns the version which this update commits, which the state of its keys refers to. */
+    long version() {
+      if (version == NO_VERSION) {
+        version = allocateVersion();
+      }
+      return version;
+    }
+
+    /**
+     * Commits the changed cells as the new version of the store, if a key refers to it or a cell
+     * changed, and writes a snapshot of the store if the last one was written {@code
+     * snapshotInterval} versions ago.
+     */
+    void commit() {
+      if (version == NO_VERSION && changed.isEmpty()) {
+        // no key refers to a new version, and the state of the version read from is unchanged.
+        if (base != null) {
+          release(base);
+        }
+        return;
+      }
+      version();
+      if (base == null) {
+        base = parent == NO_VERSION ? new Version(NO_VERSION, 0, new HashMap<>()) : take(parent);
+      }
+      for (final Map.Entry<ByteArray, Table<String, String, byte[]>> entry : changed.entrySet()) {
+        if (entry.getValue().isEmpty()) {
+          base.state.remove(entry.getKey());
+        } else {
+          base.state.put(entry.getKey(), entry.getValue());
+        }
+      }
+      try {
+        writeDelta(version, parent, changed.size(), changedCells);
+        Version updated = new Version(version, base.depth + 1, base.state);
+        if (updated.depth >= snapshotInterval) {
+          writeSnapshot(updated);
+          updated = new Version(version, 0, updated.state);
+          compact(version);
+        }
+        release(updated);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /** Takes the state of the given version, which is read from the files unless it is in memory. */
+  private synchronized Version take(long version) {
+    final Version taken = committed;
+    if (taken != null && taken.version == version) {
+      committed = null;
+      return taken;
+    }
+    try {
+      return read(version);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private synchronized void release(Version version) {
+    committed = version;
+  }
+
+  /**
+   * Allocates a version which is newer than all versions in the directory, by creating its empty
+   * file, which the changed cells of the version replace when it is committed.
+   */
+  private synchronized long allocateVersion() {
+    try {
+      Files.createDirectories(directory);
+      nextVersion = Math.max(nextVersion, lastVersion() + 1);
+      while (true) {
+        final long version = nextVersion++;
+        try {
+          Files.createFile(file(version, DELTA));
+          return version;
+        } catch (FileAlreadyExistsException e) {
+          // allocated by another executor.
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private long lastVersion() throws IOException {
+    long last = NO_VERSION;
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (final Path file : files) {
+        last = Math.max(last, versionOf(file));
+      }
+    }
+    return last;
+  }
+
+  /** Reads the state of a version from its last snapshot and the changed cells after it. */
+  private Version read(long version) throws IOException {
+    final Deque<Path> deltas = new ArrayDeque<>();
+    Map<ByteArray, Table<String, String, byte[]>> state = new HashMap<>();
+    long current = version;
+    while (current != NO_VERSION) {
+      final Path snapshot = file(current, SNAPSHOT);
+      if (Files.exists(snapshot)) {
+        state = readSnapshot(snapshot);
+        break;
+      }
+      final Path delta = file(current, DELTA);
+      checkState(
+          Files.exists(delta) && Files.size(delta) > 0,
+          "Version %s of the state store %s was not committed, or is older than the last %s "
+              + "versions which are retained.",
+          current,
+          directory,
+          retainedVersions);
+      deltas.push(delta);
+      try (InputStream in = Files.newInputStream(delta)) {
+        current = VarInt.decodeLong(in) - 1;
+      }
+    }
+    final int depth = deltas.size();
+    while (!deltas.isEmpty()) {
+      readDelta(deltas.pop(), state);
+    }
+    return new Version(version, depth, state);
+  }
+
+  private void writeDelta(long version, long parent, int keys, ByteArrayOutputStream cells)
+      throws IOException {
+    final Path temp = file(version, DELTA + TEMP);
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+      VarInt.encode(parent + 1, out);
+      VarInt.encode(keys, out);
+      cells.writeTo(out);
+    }
+    Files.move(temp, file(version, DELTA), StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static void readDelta(Path delta, Map<ByteArray, Table<String, String, byte[]>> state)
+      throws IOException {
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(delta))) {
+      VarInt.decodeLong(in);
+      final int keys = VarInt.decodeInt(in);
+      for (int i = 0; i < keys; i++) {
+        final ByteArray key = new ByteArray(ByteArrayCoder.of().decode(in));
+        final Table<String, String, byte[]> keyState =
+            state.computeIfAbsent(key, k -> HashBasedTable.create());
+        final int cells = VarInt.decodeInt(in);
+        for (int j = 0; j < cells; j++) {
+          final String namespace = StringUtf8Coder.of().decode(in);
+          final String tag = StringUtf8Coder.of().decode(in);
+          if (in.read() == 0) {
+            keyState.remove(namespace, tag);
+          } else {
+            keyState.put(namespace, tag, ByteArrayCoder.of().decode(in));
+          }
+        }
+        if (keyState.isEmpty()) {
+          state.remove(key);
+        }
+      }
+    }
+  }
+
+  private void writeSnapshot(Version version) throws IOException {
+    final Path temp = file(version.version, SNAPSHOT + TEMP);
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+      VarInt.encode(version.state.size(), out);
+      for (final Map.Entry<ByteArray, Table<String, String, byte[]>> entry :
+          version.state.entrySet()) {
+        ByteArrayCoder.of().encode(entry.getKey().getValue(), out);
+        VarInt.encode(entry.getValue().size(), out);
+        for (final Table.Cell<String, String, byte[]> cell : entry.getValue().cellSet()) {
+          StringUtf8Coder.of().encode(cell.getRowKey(), out);
+          StringUtf8Coder.of().encode(cell.getColumnKey(), out);
+          ByteArrayCoder.of().encode(cell.getValue(), out);
+        }
+      }
+    }
+    Files.move(temp, file(version.version, SNAPSHOT), StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static Map<ByteArray, Table<String, String, byte[]>> readSnapshot(Path snapshot)
+      throws IOException {
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(snapshot))) {
+      final int keys = VarInt.decodeInt(in);
+      final Map<ByteArray, Table<String, String, byte[]>> state = new HashMap<>(keys * 2);
+      for (int i = 0; i < keys; i++) {
+        final ByteArray key = new ByteArray(ByteArrayCoder.of().decode(in));
+        final Table<String, String, byte[]> keyState = HashBasedTable.create();
+        final int cells = VarInt.decodeInt(in);
+        for (int j = 0; j < cells; j++) {
+          keyState.put(
+              StringUtf8Coder.of().decode(in),
+              StringUtf8Coder.of().decode(in),
+              ByteArrayCoder.of().decode(in));
+        }
+        state.put(key, keyState);
+      }
+      return state;
+    }
+  }
+
+  /**
+   * Deletes the files before the last snapshot which is not newer than the oldest retained version,
+   * as the retained versions are read from that snapshot or from later ones.
+   */
+  private void compact(long version) throws IOException {
+    final long oldestRetained = version - retainedVersions + 1;
+    long oldestRead = NO_VERSION;
+    try (DirectoryStream<Path> snapshots = Files.newDirectoryStream(directory, "*" + SNAPSHOT)) {
+      for (final Path snapshot : snapshots) {
+        final long snapshotVersion = versionOf(snapshot);
+        if (snapshotVersion <= oldestRetained) {
+          oldestRead = Math.max(oldestRead, snapshotVersion);
+        }
+      }
+    }
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (final Path file : files) {
+        if (versionOf(file) < oldestRead) {
+          Files.deleteIfExists(file);
+        }
+      }
+    }
+  }
+
+  private Path file(long version, String suffix) {
+    return directory.resolve(version + suffix);
+  }
+
+  private static long versionOf(Path file) {
+    final String name = file.getFileName().toString();
+    return Long.parseLong(name.substring(0, name.indexOf('.')));
+  }
+
+  /** The state of the keys of a version of the store. */
+  private static class Version {
+    private final long version;
+    // The number of versions since the last snapshot.
+    private final int depth;
+    private final Map<ByteArray, Table<String, String, byte[]>> state;
+
+    private Version(long version, int depth, Map<ByteArray, Table<String, String, byte[]>> state) {
+      this.version = version;
+      this.depth = depth;
+      this.state = state;
+    }
+  }
+}
@@ -17,6 +17,8 @@
  */
 package org.apache.beam.runners.spark.structuredstreaming.translation;
 
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -28,10 +30,15 @@ import org.apache.beam.runners.core.construction.SerializablePipelineOptions;
 import org.apache.beam.runners.core.construction.TransformInputs;
 import org.apache.beam.runners.spark.structuredstreaming.SparkStructuredStreamingPipelineOptions;
 import org.apache.beam.runners.spark.structuredstreaming.translation.helpers.EncoderHelpers;
+import org.apache.beam.runners.spark.structuredstreaming.translation.helpers.RowHelpers;
+import org.apache.beam.runners.spark.structuredstreaming.translation.helpers.SchemaHelpers;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.VoidCoder;
 import org.apache.beam.sdk.runners.AppliedPTransform;
+import org.apache.beam.sdk.schemas.Schema;
 import org.apache.beam.sdk.transforms.PTransform;
+import org.apache.beam.sdk.transforms.windowing.GlobalWindow;
+import org.apache.beam.sdk.transforms.windowing.GlobalWindows;
 import org.apache.beam.sdk.util.WindowedValue;
 import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.PCollectionView;
@@ -42,6 +49,7 @@ import org.apache.spark.SparkConf;
 import org.apache.spark.api.java.function.ForeachFunction;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.ForeachWriter;
+import org.apache.spark.sql.Row;
 import org.apache.spark.sql.SparkSession;
 import org.apache.spark.sql.streaming.DataStreamWriter;
 import org.slf4j.Logger;
@@ -63,6 +71,11 @@ public abstract class AbstractTranslationContext {
   private final Map<PValue, Dataset<?>> datasets;
   /** datasets that are not used as input to other datasets (leaves of the DAG). */
   private final Set<Dataset<?>> leaves;
+  /**
+   * The columnar datasets of the schema'd PCollections produced by translators of schema
+   * transforms. See {@link #getRowDataset(PCollection)}.
+   */
+  private final Map<PValue, Dataset<Row>> rowDatasets;
 
   private final SerializablePipelineOptions serializablePipelineOptions;
 
@@ -101,6 +114,7 @@ public abstract class AbstractTranslationContext {
     this.serializablePipelineOptions = new SerializablePipelineOptions(options);
     this.datasets = new HashMap<>();
     this.leaves = new HashSet<>();
+    this.rowDatasets = new HashMap<>();
     this.broadcastDataSets = new HashMap<>();
   }
 
@@ -157,6 +171,61 @@ public abstract class AbstractTranslationContext {
     }
   }
 
+  /**
+   * Returns whether the provided PCollection can be represented as a columnar dataset of {@link Row
+   * Rows}. It must have a {@link SchemaHelpers#isSupported(Schema) supported} schema and be in the
+   * global window.
+   */
+  public boolean isRowDatasetSupported(PCollection<?> pCollection) {
+    return pCollection.hasSchema()
+        && pCollection.getWindowingStrategy().getWindowFn() instanceof GlobalWindows
+        && SchemaHelpers.isSupported(pCollection.getSchema());
+  }
+
+  /**
+   * Returns the provided PCollection as a dataset of {@link Row Rows} with a column for each field
+   * of its schema, as described by {@link SchemaHelpers#windowedRowSchema(Schema)}. If the
+   * PCollection was put as a dataset of {@link WindowedValue WindowedValues}, it is converted.
+   */
+  public <T> Dataset<Row> getRowDataset(PCollection<T> pCollection) {
+    checkArgument(
+        isRowDatasetSupported(pCollection),
+        "%s can not be represented as a dataset of rows",
+        pCollection);
+    Dataset<Row> rowDataset = rowDatasets.get(pCollection);
+    if (rowDataset != null) {
+      // the dataset of WindowedValues derived from the rows is not used as an input
+      leaves.remove(datasets.get(pCollection));
+      return rowDataset;
+    }
+    Schema schema = pCollection.getSchema();
+    Dataset<WindowedValue<T>> dataset = getDataset(pCollection);
+    return dataset.map(
+        RowHelpers.windowedValueToWindowedRowMapFunction(schema, pCollection.getToRowFunction()),
+        EncoderHelpers.fromBeamSchema(schema));
+  }
+
+  /**
+   * Puts the dataset of {@link Row Rows} as described by {@link
+   * SchemaHelpers#windowedRowSchema(Schema)} of the provided PCollection. Translators which consume
+   * the PCollection as a dataset of {@link WindowedValue WindowedValues} read it converted from the
+   * rows.
+   */
+  public <T> void putRowDataset(PCollection<T> pCollection, Dataset<Row> rowDataset) {
+    if (datasets.containsKey(pCollection)) {
+      return;
+    }
+    rowDatasets.put(pCollection, rowDataset);
+    Schema schema = pCollection.getSchema();
+    putDataset(
+        pCollection,
+        rowDataset.map(
+            RowHelpers.windowedRowToWindowedValueMapFunction(
+                schema, pCollection.getFromRowFunction()),
+            EncoderHelpers.fromBeamCoder(
+                WindowedValue.getFullCoder(pCollection.getCoder(), GlobalWindow.Coder.INSTANCE))));
+  }
+
   public <ViewT, ElemT> void setSideInputDataset(
       PCollectionView<ViewT> value, Dataset<WindowedValue<ElemT>> set) {
     if (!broadcastDataSets.containsKey(value)) {
@@ -141,6 +141,17 @@ public abstract class PipelineTranslator extends Pipeline.PipelineVisitor.Defaul
     typedTransformTranslator.translateTransform(typedTransform, translationContext);
   }
 
+  /** Returns whether the given TransformTranslator can translate the given node. */
+  private <T extends PTransform<?, ?>> boolean canTranslate(
+      TransformHierarchy.Node node, TransformTranslator<?> transformTranslator) {
+    translationContext.setCurrentTransform(node.toAppliedPTransform(getPipeline()));
+    @SuppressWarnings("unchecked")
+    T typedTransform = (T) node.getTransform();
+    @SuppressWarnings("unchecked")
+    TransformTranslator<T> typedTransformTranslator = (TransformTranslator<T>) transformTranslator;
+    return typedTransformTranslator.canTranslate(typedTransform, translationContext);
+  }
+
   // --------------------------------------------------------------------------------------------
   //  Pipeline visitor entry point
   // --------------------------------------------------------------------------------------------
@@ -166,7 +177,7 @@ public abstract class PipelineTranslator extends Pipeline.PipelineVisitor.Defaul
 
     TransformTranslator<?> transformTranslator = getTransformTranslator(node);
 
-    if (transformTranslator != null) {
+    if (transformTranslator != null && canTranslate(node, transformTranslator)) {
       applyTransformTranslator(node, transformTranslator);
       LOG.debug("{} translated- {}", genSpaces(depth), node.getFullName());
       return CompositeBehavior.DO_NOT_ENTER_TRANSFORM;
@@ -28,4 +28,12 @@ public interface TransformTranslator<TransformT extends PTransform> extends Seri
 
   /** Base class for translators of {@link PTransform}. */
   void translateTransform(TransformT transform, AbstractTranslationContext context);
+
+  /**
+   * Returns whether the transform, which is the current transform of the context, can be
+   * translated. A composite transform which can not be translated is translated by its parts.
+   */
+  default boolean canTranslate(TransformT transform, AbstractTranslationContext context) {
+    return true;
+  }
 }
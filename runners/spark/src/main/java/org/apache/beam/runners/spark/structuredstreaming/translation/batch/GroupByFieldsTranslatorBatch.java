@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.spark.structuredstreaming.translation.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.beam.runners.spark.structuredstreaming.translation.AbstractTranslationContext;
+import org.apache.beam.runners.spark.structuredstreaming.translation.TransformTranslator;
+import org.apache.beam.runners.spark.structuredstreaming.translation.helpers.SchemaHelpers;
+import org.apache.beam.sdk.schemas.FieldAccessDescriptor;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.schemas.transforms.Group;
+import org.apache.beam.sdk.schemas.utils.SelectHelpers;
+import org.apache.beam.sdk.transforms.windowing.DefaultTrigger;
+import org.apache.beam.sdk.transforms.windowing.GlobalWindow;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.WindowingStrategy;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.functions;
+
+/**
+ * Translates a {@link Group.ByFields} of top-level fields to an aggregation of a dataset of rows
+ * which collects the rows of each key, rather than to a GroupByKey of encoded elements, so that
+ * Catalyst can plan the grouping and only shuffle the columns of the rows.
+ */
+@SuppressWarnings({
+  "nullness" // TODO(https://github.com/apache/beam/issues/20497)
+})
+class GroupByFieldsTranslatorBatch<T> implements TransformTranslator<Group.ByFields<T>> {
+  private static final String VALUES_COLUMN = "__beam_values";
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public boolean canTranslate(Group.ByFields<T> transform, AbstractTranslationContext context) {
+    PCollection<T> input = (PCollection<T>) context.getInput();
+    PCollection<?> output = (PCollection<?>) context.getOutput();
+    if (!context.isRowDatasetSupported(input) || !context.isRowDatasetSupported(output)) {
+      return false;
+    }
+    WindowingStrategy<?, ?> windowingStrategy = input.getWindowingStrategy();
+    if (!(windowingStrategy.getTrigger() instanceof DefaultTrigger)) {
+      return false;
+    }
+    Schema schema = input.getSchema();
+    FieldAccessDescriptor resolved = transform.getFieldAccessDescriptor().resolve(schema);
+    return SchemaHelpers.isTopLevel(resolved)
+        && SchemaHelpers.isGroupable(SelectHelpers.getOutputSchema(schema, resolved));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void translateTransform(Group.ByFields<T> transform, AbstractTranslationContext context) {
+    PCollection<T> input = (PCollection<T>) context.getInput();
+    PCollection<?> output = (PCollection<?>) context.getOutput();
+    Schema schema = input.getSchema();
+    Schema keySchema =
+        SelectHelpers.getOutputSchema(schema, transform.getFieldAccessDescriptor().resolve(schema));
+
+    List<Column> keyColumns = new ArrayList<>();
+    for (String keyField : keySchema.getFieldNames()) {
+      keyColumns.add(SchemaHelpers.column(keyField));
+    }
+    List<Column> valueColumns = new ArrayList<>();
+    for (String field : schema.getFieldNames()) {
+      valueColumns.add(SchemaHelpers.column(field));
+    }
+    Column values = functions.collect_list(functions.struct(valueColumns.toArray(new Column[0])));
+    Column timestamp = SchemaHelpers.column(SchemaHelpers.TIMESTAMP_COLUMN);
+    // As GroupByKey, the output of the only firing of the global window is timestamped by the
+    // timestamp combiner
+    switch (input.getWindowingStrategy().getTimestampCombiner()) {
+      case EARLIEST:
+        timestamp = functions.min(timestamp);
+        break;
+      case LATEST:
+        timestamp = functions.max(timestamp);
+        break;
+      default:
+        timestamp = functions.lit(GlobalWindow.INSTANCE.maxTimestamp().getMillis());
+        break;
+    }
+
+    Dataset<Row> rows = context.getRowDataset(input);
+    Dataset<Row> grouped =
+        rows.groupBy(keyColumns.toArray(new Column[0]))
+            .agg(values.as(VALUES_COLUMN), timestamp.as(SchemaHelpers.TIMESTAMP_COLUMN));
+    context.putRowDataset(
+        output,
+        grouped.select(
+            functions.struct(keyColumns.toArray(new Column[0])).as(transform.getKeyField()),
+            SchemaHelpers.column(VALUES_COLUMN).as(transform.getValueField()),
+            SchemaHelpers.column(SchemaHelpers.TIMESTAMP_COLUMN),
+            SchemaHelpers.onTimeAndOnlyFiringPaneColumn()));
+  }
+}
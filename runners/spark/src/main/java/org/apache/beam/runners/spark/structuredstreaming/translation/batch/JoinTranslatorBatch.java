@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.spark.structuredstreaming.translation.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.beam.runners.spark.structuredstreaming.translation.AbstractTranslationContext;
+import org.apache.beam.runners.spark.structuredstreaming.translation.TransformTranslator;
+import org.apache.beam.runners.spark.structuredstreaming.translation.helpers.SchemaHelpers;
+import org.apache.beam.sdk.schemas.FieldAccessDescriptor;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.schemas.transforms.Join;
+import org.apache.beam.sdk.schemas.utils.SelectHelpers;
+import org.apache.beam.sdk.transforms.windowing.DefaultTrigger;
+import org.apache.beam.sdk.transforms.windowing.GlobalWindow;
+import org.apache.beam.sdk.transforms.windowing.TimestampCombiner;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.WindowingStrategy;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.functions;
+
+/**
+ * Translates a {@link Join} on top-level fields to a join of datasets of rows, rather than to a
+ * CoGroupByKey of encoded elements followed by a cross product, so that Catalyst can pick the join
+ * strategy and only shuffle the columns of the rows.
+ */
+@SuppressWarnings({
+  "nullness" // TODO(https://github.com/apache/beam/issues/20497)
+})
+class JoinTranslatorBatch<LhsT, RhsT> implements TransformTranslator<Join.Impl<LhsT, RhsT>> {
+  private static final String LHS_COLUMN = "__beam_lhs";
+  private static final String RHS_COLUMN = "__beam_rhs";
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public boolean canTranslate(Join.Impl<LhsT, RhsT> transform, AbstractTranslationContext context) {
+    PCollection<LhsT> lhs = (PCollection<LhsT>) context.getInput();
+    PCollection<RhsT> rhs = transform.getRhs();
+    PCollection<?> output = (PCollection<?>) context.getOutput();
+    Join.FieldsEqual.Impl predicate = transform.getPredicate();
+    if (predicate == null
+        || !context.isRowDatasetSupported(lhs)
+        || !context.isRowDatasetSupported(rhs)
+        || !context.isRowDatasetSupported(output)) {
+      return false;
+    }
+    // The broadcast joins are ParDos preserving the timestamps and panes of the left side, the
+    // others group both sides as a GroupByKey does
+    if (!isBroadcast(transform.getJoinType())
+        && (!isGroupedOnce(lhs.getWindowingStrategy())
+            || !isGroupedOnce(rhs.getWindowingStrategy()))) {
+      return false;
+    }
+    FieldAccessDescriptor lhsKey = predicate.getLhs().resolve(lhs.getSchema());
+    FieldAccessDescriptor rhsKey = predicate.getRhs().resolve(rhs.getSchema());
+    if (!SchemaHelpers.isTopLevel(lhsKey) || !SchemaHelpers.isTopLevel(rhsKey)) {
+      return false;
+    }
+    Schema lhsKeySchema = SelectHelpers.getOutputSchema(lhs.getSchema(), lhsKey);
+    Schema rhsKeySchema = SelectHelpers.getOutputSchema(rhs.getSchema(), rhsKey);
+    if (!SchemaHelpers.isGroupable(lhsKeySchema)
+        || !SchemaHelpers.isGroupable(rhsKeySchema)
+        || lhsKeySchema.getFieldCount() == 0
+        || lhsKeySchema.getFieldCount() != rhsKeySchema.getFieldCount()) {
+      return false;
+    }
+    // Beam compares the keys by their encoded values, which Spark only does for equal types
+    for (int i = 0; i < lhsKeySchema.getFieldCount(); i++) {
+      if (!lhsKeySchema
+          .getField(i)
+          .getType()
+          .withNullable(false)
+          .equals(rhsKeySchema.getField(i).getType().withNullable(false))) {
+        return false;
+      }
+    }
+    Schema outputSchema = output.getSchema();
+    return outputSchema.hasField(Join.LHS_TAG) && outputSchema.hasField(Join.RHS_TAG);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void translateTransform(
+      Join.Impl<LhsT, RhsT> transform, AbstractTranslationContext context) {
+    PCollection<LhsT> lhs = (PCollection<LhsT>) context.getInput();
+    PCollection<RhsT> rhs = transform.getRhs();
+    PCollection<?> output = (PCollection<?>) context.getOutput();
+    Join.FieldsEqual.Impl predicate = transform.getPredicate();
+    List<String> lhsKeyFields =
+        SelectHelpers.getOutputSchema(lhs.getSchema(), predicate.getLhs().resolve(lhs.getSchema()))
+            .getFieldNames();
+    List<String> rhsKeyFields =
+        SelectHelpers.getOutputSchema(rhs.getSchema(), predicate.getRhs().resolve(rhs.getSchema()))
+            .getFieldNames();
+
+    // Only the columns of the left side keep their names, so that a self join is not ambiguous
+    Dataset<Row> left =
+        keyed(context.getRowDataset(lhs), lhs.getSchema(), lhsKeyFields, LHS_COLUMN, true);
+    Dataset<Row> right =
+        keyed(context.getRowDataset(rhs), rhs.getSchema(), rhsKeyFields, RHS_COLUMN, false);
+    // Beam groups the null values of the keys together
+    Column condition = null;
+    for (int i = 0; i < lhsKeyFields.size(); i++) {
+      Column equal =
+          SchemaHelpers.column(keyColumn(LHS_COLUMN, i))
+              .eqNullSafe(SchemaHelpers.column(keyColumn(RHS_COLUMN, i)));
+      condition = condition == null ? equal : condition.and(equal);
+    }
+
+    Dataset<Row> joined;
+    Column timestamp;
+    Column pane;
+    switch (transform.getJoinType()) {
+      case INNER_BROADCAST:
+        joined = left.join(functions.broadcast(right), condition, "inner");
+        timestamp = SchemaHelpers.column(SchemaHelpers.TIMESTAMP_COLUMN);
+        pane = SchemaHelpers.column(SchemaHelpers.PANE_COLUMN);
+        break;
+      case LEFT_OUTER_BROADCAST:
+        joined = left.join(functions.broadcast(right), condition, "left_outer");
+        timestamp = SchemaHelpers.column(SchemaHelpers.TIMESTAMP_COLUMN);
+        pane = SchemaHelpers.column(SchemaHelpers.PANE_COLUMN);
+        break;
+      default:
+        joined = left.join(right, condition, sparkJoinType(transform.getJoinType()));
+        timestamp = functions.lit(GlobalWindow.INSTANCE.maxTimestamp().getMillis());
+        pane = SchemaHelpers.onTimeAndOnlyFiringPaneColumn();
+        break;
+    }
+
+    // The fields of the output schema are in the order of the tags of the underlying CoGroup
+    List<Column> columns = new ArrayList<>();
+    for (String field : output.getSchema().getFieldNames()) {
+      columns.add(
+          SchemaHelpers.column(Join.LHS_TAG.equals(field) ? LHS_COLUMN : RHS_COLUMN).as(field));
+    }
+    columns.add(timestamp.as(SchemaHelpers.TIMESTAMP_COLUMN));
+    columns.add(pane.as(SchemaHelpers.PANE_COLUMN));
+    context.putRowDataset(output, joined.select(columns.toArray(new Column[0])));
+  }
+
+  /**
+   * Returns the rows with a column for each field of the key, named after its position, a struct
+   * column with the fields of the element and, if requested, its timestamp and pane.
+   */
+  private static Dataset<Row> keyed(
+      Dataset<Row> rows,
+      Schema schema,
+      List<String> keyFields,
+      String elementColumn,
+      boolean withWindowing) {
+    List<Column> columns = new ArrayList<>();
+    for (int i = 0; i < keyFields.size(); i++) {
+      columns.add(SchemaHelpers.column(keyFields.get(i)).as(keyColumn(elementColumn, i)));
+    }
+    List<Column> fields = new ArrayList<>();
+    for (String field : schema.getFieldNames()) {
+      fields.add(SchemaHelpers.column(field));
+    }
+    columns.add(functions.struct(fields.toArray(new Column[0])).as(elementColumn));
+    if (withWindowing) {
+      columns.add(SchemaHelpers.column(SchemaHelpers.TIMESTAMP_COLUMN));
+      columns.add(SchemaHelpers.column(SchemaHelpers.PANE_COLUMN));
+    }
+    return rows.select(columns.toArray(new Column[0]));
+  }
+
+  private static String keyColumn(String elementColumn, int index) {
+    return elementColumn + "_key_" + index;
+  }
+
+  private static boolean isBroadcast(Join.JoinType joinType) {
+    return joinType == Join.JoinType.INNER_BROADCAST
+        || joinType == Join.JoinType.LEFT_OUTER_BROADCAST;
+  }
+
+  /** Whether a GroupByKey fires once per key, with the end of the global window as timestamp. */
+  private static boolean isGroupedOnce(WindowingStrategy<?, ?> windowingStrategy) {
+    return windowingStrategy.getTrigger() instanceof DefaultTrigger
+        && windowingStrategy.getTimestampCombiner() == TimestampCombiner.END_OF_WINDOW;
+  }
+
+  private static String sparkJoinType(Join.JoinType joinType) {
+    switch (joinType) {
+      case INNER:
+        return "inner";
+      case OUTER:
+        return "full_outer";
+      case LEFT_OUTER:
+        return "left_outer";
+      case RIGHT_OUTER:
+        return "right_outer";
+      default:
+        throw new IllegalArgumentException("Unexpected join type " + joinType);
+    }
+  }
+}
@@ -26,6 +26,9 @@ import org.apache.beam.runners.spark.structuredstreaming.translation.TransformTr
 import org.apache.beam.runners.spark.structuredstreaming.translation.TranslationContext;
 import org.apache.beam.sdk.Pipeline;
 import org.apache.beam.sdk.runners.TransformHierarchy;
+import org.apache.beam.sdk.schemas.transforms.Group;
+import org.apache.beam.sdk.schemas.transforms.Join;
+import org.apache.beam.sdk.schemas.transforms.Select;
 import org.apache.beam.sdk.transforms.Combine;
 import org.apache.beam.sdk.transforms.Flatten;
 import org.apache.beam.sdk.transforms.GroupByKey;
@@ -82,6 +85,11 @@ public class PipelineTranslatorBatch extends PipelineTranslator {
 
     TRANSFORM_TRANSLATORS.put(
         View.CreatePCollectionView.class, new CreatePCollectionViewTranslatorBatch());
+
+    // Translated natively only if the PCollections can be represented as datasets of rows
+    TRANSFORM_TRANSLATORS.put(Select.Fields.class, new SelectTranslatorBatch());
+    TRANSFORM_TRANSLATORS.put(Group.ByFields.class, new GroupByFieldsTranslatorBatch());
+    TRANSFORM_TRANSLATORS.put(Join.Impl.class, new JoinTranslatorBatch());
   }
 
   public PipelineTranslatorBatch(SparkStructuredStreamingPipelineOptions options) {
@@ -96,6 +104,13 @@ public class PipelineTranslatorBatch extends PipelineTranslator {
     if (transform == null) {
       return null;
     }
-    return TRANSFORM_TRANSLATORS.get(transform.getClass());
+    // AutoValue transforms are registered by the abstract class they are generated from
+    for (Class<?> clazz = transform.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+      TransformTranslator<?> translator = TRANSFORM_TRANSLATORS.get(clazz);
+      if (translator != null) {
+        return translator;
+      }
+    }
+    return null;
   }
 }
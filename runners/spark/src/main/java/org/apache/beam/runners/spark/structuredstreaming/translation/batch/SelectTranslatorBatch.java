@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.spark.structuredstreaming.translation.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.beam.runners.spark.structuredstreaming.translation.AbstractTranslationContext;
+import org.apache.beam.runners.spark.structuredstreaming.translation.TransformTranslator;
+import org.apache.beam.runners.spark.structuredstreaming.translation.helpers.SchemaHelpers;
+import org.apache.beam.sdk.schemas.FieldAccessDescriptor;
+import org.apache.beam.sdk.schemas.FieldAccessDescriptor.FieldDescriptor;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.schemas.transforms.Select;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+
+/**
+ * Translates a {@link Select.Fields} of top-level fields to a projection of the columns of a
+ * dataset of rows, rather than to a ParDo over encoded elements, so that Catalyst can prune the
+ * columns which are not selected and generate code for the projection.
+ */
+@SuppressWarnings({
+  "nullness" // TODO(https://github.com/apache/beam/issues/20497)
+})
+class SelectTranslatorBatch<T> implements TransformTranslator<Select.Fields<T>> {
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public boolean canTranslate(Select.Fields<T> transform, AbstractTranslationContext context) {
+    PCollection<T> input = (PCollection<T>) context.getInput();
+    PCollection<?> output = (PCollection<?>) context.getOutput();
+    if (!context.isRowDatasetSupported(input) || !context.isRowDatasetSupported(output)) {
+      return false;
+    }
+    return SchemaHelpers.isTopLevel(
+        transform.getFieldAccessDescriptor().resolve(input.getSchema()));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void translateTransform(Select.Fields<T> transform, AbstractTranslationContext context) {
+    PCollection<T> input = (PCollection<T>) context.getInput();
+    PCollection<?> output = (PCollection<?>) context.getOutput();
+    Schema inputSchema = input.getSchema();
+    Schema outputSchema = output.getSchema();
+    FieldAccessDescriptor resolved = transform.getFieldAccessDescriptor().resolve(inputSchema);
+
+    List<String> selectedFields = new ArrayList<>();
+    if (resolved.getAllFields()) {
+      selectedFields.addAll(inputSchema.getFieldNames());
+    } else {
+      for (FieldDescriptor field : resolved.getFieldsAccessed()) {
+        selectedFields.add(inputSchema.getField(field.getFieldId()).getName());
+      }
+    }
+    // The fields of the output schema are in the order of the selected fields, possibly renamed
+    List<Column> columns = new ArrayList<>();
+    for (int i = 0; i < selectedFields.size(); i++) {
+      columns.add(
+          SchemaHelpers.column(selectedFields.get(i)).as(outputSchema.getField(i).getName()));
+    }
+    columns.add(SchemaHelpers.column(SchemaHelpers.TIMESTAMP_COLUMN));
+    columns.add(SchemaHelpers.column(SchemaHelpers.PANE_COLUMN));
+
+    Dataset<Row> rows = context.getRowDataset(input);
+    context.putRowDataset(output, rows.select(columns.toArray(new Column[0])));
+  }
+}
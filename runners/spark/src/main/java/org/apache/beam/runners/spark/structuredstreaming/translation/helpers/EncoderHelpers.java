@@ -24,8 +24,11 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.schemas.Schema;
 import org.apache.spark.sql.Encoder;
 import org.apache.spark.sql.Encoders;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.catalyst.encoders.RowEncoder;
 import org.apache.spark.sql.catalyst.expressions.Expression;
 import org.apache.spark.sql.catalyst.expressions.NonSQLExpression;
 import org.apache.spark.sql.catalyst.expressions.UnaryExpression;
@@ -53,6 +56,15 @@ public class EncoderHelpers {
     return EncoderFactory.fromBeamCoder(coder);
   }
 
+  /**
+   * Returns a Spark Encoder of {@link Row Rows} with a column for each field of the provided Beam
+   * {@link Schema}, as described by {@link SchemaHelpers#windowedRowSchema(Schema)}. Unlike an
+   * Encoder from a Beam coder, Catalyst can access, prune and generate code for each column.
+   */
+  public static Encoder<Row> fromBeamSchema(Schema schema) {
+    return RowEncoder.apply(SchemaHelpers.windowedRowSchema(schema));
+  }
+
   /**
    * Catalyst Expression that serializes elements using Beam {@link Coder}.
    *
@@ -22,14 +22,27 @@ import static scala.collection.JavaConversions.asScalaBuffer;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.schemas.Schema.FieldType;
+import org.apache.beam.sdk.transforms.SerializableFunction;
 import org.apache.beam.sdk.transforms.windowing.GlobalWindow;
+import org.apache.beam.sdk.transforms.windowing.PaneInfo;
+import org.apache.beam.sdk.transforms.windowing.PaneInfo.PaneInfoCoder;
 import org.apache.beam.sdk.util.WindowedValue;
 import org.apache.spark.api.java.function.MapFunction;
 import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
 import org.apache.spark.sql.catalyst.InternalRow;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.joda.time.Instant;
+import org.joda.time.ReadableInstant;
+import scala.collection.JavaConversions;
 
 /** Helper functions for working with {@link Row}. */
 public final class RowHelpers {
@@ -72,4 +85,117 @@ public final class RowHelpers {
     }
     return InternalRow.apply(asScalaBuffer(list).toList());
   }
+
+  /**
+   * A Spark {@link MapFunction} which converts a {@link WindowedValue} in the {@link GlobalWindow}
+   * of an element with the provided Beam {@link Schema} to a {@link Row} with a column for each
+   * field, as described by {@link SchemaHelpers#windowedRowSchema(Schema)}.
+   */
+  public static <T> MapFunction<WindowedValue<T>, Row> windowedValueToWindowedRowMapFunction(
+      Schema schema, SerializableFunction<T, org.apache.beam.sdk.values.Row> toRowFunction) {
+    return (MapFunction<WindowedValue<T>, Row>)
+        windowedValue -> {
+          org.apache.beam.sdk.values.Row row = toRowFunction.apply(windowedValue.getValue());
+          Object[] values = new Object[schema.getFieldCount() + 2];
+          for (int i = 0; i < schema.getFieldCount(); i++) {
+            values[i] = toSparkValue(schema.getField(i).getType(), row.getValue(i));
+          }
+          values[schema.getFieldCount()] = windowedValue.getTimestamp().getMillis();
+          values[schema.getFieldCount() + 1] =
+              CoderHelpers.toByteArray(windowedValue.getPane(), PaneInfoCoder.INSTANCE);
+          return RowFactory.create(values);
+        };
+  }
+
+  /**
+   * A Spark {@link MapFunction} which converts a {@link Row} as described by {@link
+   * SchemaHelpers#windowedRowSchema(Schema)} back to a {@link WindowedValue} in the {@link
+   * GlobalWindow}.
+   */
+  public static <T> MapFunction<Row, WindowedValue<T>> windowedRowToWindowedValueMapFunction(
+      Schema schema, SerializableFunction<org.apache.beam.sdk.values.Row, T> fromRowFunction) {
+    return (MapFunction<Row, WindowedValue<T>>)
+        sparkRow -> {
+          org.apache.beam.sdk.values.Row row = toBeamRow(schema, sparkRow);
+          Instant timestamp = new Instant(sparkRow.getLong(schema.getFieldCount()));
+          PaneInfo pane =
+              CoderHelpers.fromByteArray(
+                  (byte[]) sparkRow.get(schema.getFieldCount() + 1), PaneInfoCoder.INSTANCE);
+          return WindowedValue.of(
+              fromRowFunction.apply(row), timestamp, GlobalWindow.INSTANCE, pane);
+        };
+  }
+
+  private static org.apache.beam.sdk.values.Row toBeamRow(Schema schema, Row sparkRow) {
+    List<Object> values = new ArrayList<>(schema.getFieldCount());
+    for (int i = 0; i < schema.getFieldCount(); i++) {
+      values.add(toBeamValue(schema.getField(i).getType(), sparkRow.get(i)));
+    }
+    return org.apache.beam.sdk.values.Row.withSchema(schema).addValues(values).build();
+  }
+
+  private static @Nullable Object toSparkValue(FieldType type, @Nullable Object value) {
+    if (value == null) {
+      return null;
+    }
+    switch (type.getTypeName()) {
+      case DATETIME:
+        return new Timestamp(((ReadableInstant) value).getMillis());
+      case ARRAY:
+      case ITERABLE:
+        List<Object> elements = new ArrayList<>();
+        for (Object element : (Iterable<?>) value) {
+          elements.add(toSparkValue(type.getCollectionElementType(), element));
+        }
+        return JavaConversions.asScalaBuffer(elements).toSeq();
+      case MAP:
+        Map<Object, Object> entries = new HashMap<>();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+          entries.put(
+              toSparkValue(type.getMapKeyType(), entry.getKey()),
+              toSparkValue(type.getMapValueType(), entry.getValue()));
+        }
+        return JavaConversions.mapAsScalaMap(entries);
+      case ROW:
+        Schema schema = type.getRowSchema();
+        org.apache.beam.sdk.values.Row row = (org.apache.beam.sdk.values.Row) value;
+        Object[] values = new Object[schema.getFieldCount()];
+        for (int i = 0; i < schema.getFieldCount(); i++) {
+          values[i] = toSparkValue(schema.getField(i).getType(), row.getValue(i));
+        }
+        return RowFactory.create(values);
+      default:
+        return value;
+    }
+  }
+
+  private static @Nullable Object toBeamValue(FieldType type, @Nullable Object value) {
+    if (value == null) {
+      return null;
+    }
+    switch (type.getTypeName()) {
+      case DATETIME:
+        return new Instant(((Timestamp) value).getTime());
+      case ARRAY:
+      case ITERABLE:
+        List<Object> elements = new ArrayList<>();
+        for (Object element : JavaConversions.seqAsJavaList((scala.collection.Seq<?>) value)) {
+          elements.add(toBeamValue(type.getCollectionElementType(), element));
+        }
+        return elements;
+      case MAP:
+        Map<Object, Object> entries = new HashMap<>();
+        for (Map.Entry<?, ?> entry :
+            JavaConversions.mapAsJavaMap((scala.collection.Map<?, ?>) value).entrySet()) {
+          entries.put(
+              toBeamValue(type.getMapKeyType(), entry.getKey()),
+              toBeamValue(type.getMapValueType(), entry.getValue()));
+        }
+        return entries;
+      case ROW:
+        return toBeamRow(type.getRowSchema(), (Row) value);
+      default:
+        return value;
+    }
+  }
 }
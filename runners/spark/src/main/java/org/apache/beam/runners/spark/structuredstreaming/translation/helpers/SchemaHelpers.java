@@ -17,6 +17,18 @@
  */
 package org.apache.beam.runners.spark.structuredstreaming.translation.helpers;
 
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.beam.sdk.schemas.FieldAccessDescriptor;
+import org.apache.beam.sdk.schemas.FieldAccessDescriptor.FieldDescriptor;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.schemas.Schema.Field;
+import org.apache.beam.sdk.schemas.Schema.FieldType;
+import org.apache.beam.sdk.transforms.windowing.PaneInfo;
+import org.apache.beam.sdk.transforms.windowing.PaneInfo.PaneInfoCoder;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.functions;
+import org.apache.spark.sql.types.DataType;
 import org.apache.spark.sql.types.DataTypes;
 import org.apache.spark.sql.types.Metadata;
 import org.apache.spark.sql.types.StructField;
@@ -24,6 +36,11 @@ import org.apache.spark.sql.types.StructType;
 
 /** A {@link SchemaHelpers} for the Spark Batch Runner. */
 public class SchemaHelpers {
+  /** The column of a windowed row holding the timestamp of the element in milliseconds. */
+  public static final String TIMESTAMP_COLUMN = "__beam_timestamp";
+  /** The column of a windowed row holding the encoded pane of the element. */
+  public static final String PANE_COLUMN = "__beam_pane";
+
   private static final StructType BINARY_SCHEMA =
       new StructType(
           new StructField[] {
@@ -36,4 +53,168 @@ public class SchemaHelpers {
     // using a NullType schema stores null in the elements
     return BINARY_SCHEMA;
   }
+
+  /**
+   * Returns whether every field of the provided Beam {@link Schema} can be mapped to a Spark {@link
+   * DataType} without loss. Logical types and decimals, whose precision Spark bounds, are not.
+   */
+  public static boolean isSupported(Schema schema) {
+    for (Field field : schema.getFields()) {
+      if (!isSupported(field.getType())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isSupported(FieldType type) {
+    switch (type.getTypeName()) {
+      case BYTE:
+      case INT16:
+      case INT32:
+      case INT64:
+      case FLOAT:
+      case DOUBLE:
+      case STRING:
+      case BOOLEAN:
+      case BYTES:
+      case DATETIME:
+        return true;
+      case ARRAY:
+      case ITERABLE:
+        return isSupported(type.getCollectionElementType());
+      case MAP:
+        return isSupported(type.getMapKeyType()) && isSupported(type.getMapValueType());
+      case ROW:
+        return isSupported(type.getRowSchema());
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Returns whether Spark groups and joins on the fields of the provided Beam {@link Schema} as
+   * Beam does, by their encoded values. Spark can not group by maps, and normalizes the signed
+   * zeros and NaNs of floating point values, which Beam tells apart.
+   */
+  public static boolean isGroupable(Schema schema) {
+    for (Field field : schema.getFields()) {
+      if (!isGroupable(field.getType())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isGroupable(FieldType type) {
+    switch (type.getTypeName()) {
+      case FLOAT:
+      case DOUBLE:
+      case MAP:
+        return false;
+      case ARRAY:
+      case ITERABLE:
+        return isGroupable(type.getCollectionElementType());
+      case ROW:
+        return isGroupable(type.getRowSchema());
+      default:
+        return true;
+    }
+  }
+
+  /**
+   * Returns whether the provided resolved {@link FieldAccessDescriptor} accesses only top-level
+   * fields, which map to columns, without qualifiers.
+   */
+  public static boolean isTopLevel(FieldAccessDescriptor resolved) {
+    if (!resolved.getNestedFieldsAccessed().isEmpty()) {
+      return false;
+    }
+    for (FieldDescriptor field : resolved.getFieldsAccessed()) {
+      if (!field.getQualifiers().isEmpty()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the Spark {@link StructType} with a column for each field of the provided Beam {@link
+   * Schema}, followed by the {@link #TIMESTAMP_COLUMN} and {@link #PANE_COLUMN} of the windowed
+   * element. Only schemas which are {@link #isSupported(Schema) supported} can be mapped.
+   */
+  public static StructType windowedRowSchema(Schema schema) {
+    List<StructField> fields = new ArrayList<>(toStructFields(schema));
+    fields.add(StructField.apply(TIMESTAMP_COLUMN, DataTypes.LongType, false, Metadata.empty()));
+    fields.add(StructField.apply(PANE_COLUMN, DataTypes.BinaryType, false, Metadata.empty()));
+    return DataTypes.createStructType(fields);
+  }
+
+  /**
+   * Returns the {@link #PANE_COLUMN} of the elements output by the only firing of a window, such as
+   * the outputs of a grouping in the global window with the default trigger in batch.
+   */
+  public static Column onTimeAndOnlyFiringPaneColumn() {
+    return functions
+        .lit(CoderHelpers.toByteArray(PaneInfo.ON_TIME_AND_ONLY_FIRING, PaneInfoCoder.INSTANCE))
+        .as(PANE_COLUMN);
+  }
+
+  /**
+   * Returns the {@link Column} with the provided name, which is quoted so that names containing
+   * dots are not resolved as nested fields.
+   */
+  public static Column column(String name) {
+    return functions.col("`" + name.replace("`", "``") + "`");
+  }
+
+  private static List<StructField> toStructFields(Schema schema) {
+    List<StructField> fields = new ArrayList<>(schema.getFieldCount());
+    for (Field field : schema.getFields()) {
+      fields.add(
+          StructField.apply(
+              field.getName(),
+              toDataType(field.getType()),
+              field.getType().getNullable(),
+              Metadata.empty()));
+    }
+    return fields;
+  }
+
+  private static DataType toDataType(FieldType type) {
+    switch (type.getTypeName()) {
+      case BYTE:
+        return DataTypes.ByteType;
+      case INT16:
+        return DataTypes.ShortType;
+      case INT32:
+        return DataTypes.IntegerType;
+      case INT64:
+        return DataTypes.LongType;
+      case FLOAT:
+        return DataTypes.FloatType;
+      case DOUBLE:
+        return DataTypes.DoubleType;
+      case STRING:
+        return DataTypes.StringType;
+      case BOOLEAN:
+        return DataTypes.BooleanType;
+      case BYTES:
+        return DataTypes.BinaryType;
+      case DATETIME:
+        return DataTypes.TimestampType;
+      case ARRAY:
+      case ITERABLE:
+        FieldType elementType = type.getCollectionElementType();
+        return DataTypes.createArrayType(toDataType(elementType), elementType.getNullable());
+      case MAP:
+        FieldType valueType = type.getMapValueType();
+        return DataTypes.createMapType(
+            toDataType(type.getMapKeyType()), toDataType(valueType), valueType.getNullable());
+      case ROW:
+        return DataTypes.createStructType(toStructFields(type.getRowSchema()));
+      default:
+        throw new IllegalArgumentException("Unsupported field type " + type);
+    }
+  }
 }
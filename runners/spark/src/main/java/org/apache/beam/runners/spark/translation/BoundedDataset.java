@@ -30,6 +30,7 @@ import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterable
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaRDDLike;
 import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.storage.RDDInfo;
 import org.apache.spark.storage.StorageLevel;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -50,6 +51,8 @@ public class BoundedDataset<T> implements Dataset {
   private Coder<T> coder;
   private JavaRDD<WindowedValue<T>> rdd;
   private List<byte[]> clientBytes;
+  // the persisted RDD, only set once this dataset is cached
+  private @Nullable JavaRDD<?> cachedRDD;
 
   BoundedDataset(JavaRDD<WindowedValue<T>> rdd) {
     this.rdd = rdd;
@@ -109,18 +112,41 @@ public class BoundedDataset<T> implements Dataset {
     if (TranslationUtils.canAvoidRddSerialization(level)) {
       // if it is memory only reduce the overhead of moving to bytes
       this.rdd = getRDD().persist(level);
+      this.cachedRDD = rdd;
     } else {
       // Caching can cause Serialization, we need to code to bytes
       // more details in https://issues.apache.org/jira/browse/BEAM-2669
       Coder<WindowedValue<T>> windowedValueCoder = (Coder<WindowedValue<T>>) coder;
-      this.rdd =
-          getRDD()
-              .map(v -> ValueAndCoderLazySerializable.of(v, windowedValueCoder))
-              .persist(level)
-              .map(v -> v.getOrDecode(windowedValueCoder));
+      JavaRDD<ValueAndCoderLazySerializable<WindowedValue<T>>> serialized =
+          getRDD().map(v -> ValueAndCoderLazySerializable.of(v, windowedValueCoder)).persist(level);
+      this.rdd = serialized.map(v -> v.getOrDecode(windowedValueCoder));
+      this.cachedRDD = serialized;
     }
   }
 
+  @Override
+  public void unpersist() {
+    if (cachedRDD != null) {
+      cachedRDD.unpersist(false);
+      cachedRDD = null;
+    }
+  }
+
+  /** Returns the number of bytes of this dataset which are cached in memory or on disk. */
+  long getCachedBytes() {
+    return cachedRDD == null ? 0L : getCachedBytes(cachedRDD);
+  }
+
+  /** Returns the number of bytes of the provided RDD which are cached in memory or on disk. */
+  static long getCachedBytes(JavaRDDLike<?, ?> rdd) {
+    for (RDDInfo info : rdd.context().getRDDStorageInfo()) {
+      if (info.id() == rdd.id()) {
+        return info.memSize() + info.diskSize();
+      }
+    }
+    return 0L;
+  }
+
   @Override
   public void action() {
     // Empty function to force computation of RDD.
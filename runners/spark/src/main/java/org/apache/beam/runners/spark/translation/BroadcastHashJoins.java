@@ -0,0 +1,327 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.spark.translation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.apache.beam.runners.core.construction.TransformInputs;
+import org.apache.beam.runners.spark.SparkPipelineOptions;
+import org.apache.beam.runners.spark.coders.CoderHelpers;
+import org.apache.beam.runners.spark.util.ByteArray;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.extensions.joinlibrary.Join;
+import org.apache.beam.sdk.runners.AppliedPTransform;
+import org.apache.beam.sdk.transforms.PTransform;
+import org.apache.beam.sdk.transforms.windowing.DefaultTrigger;
+import org.apache.beam.sdk.transforms.windowing.GlobalWindow;
+import org.apache.beam.sdk.transforms.windowing.GlobalWindows;
+import org.apache.beam.sdk.transforms.windowing.PaneInfo;
+import org.apache.beam.sdk.transforms.windowing.TimestampCombiner;
+import org.apache.beam.sdk.util.WindowedValue;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.WindowingStrategy;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.api.java.function.Function2;
+import org.apache.spark.broadcast.Broadcast;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import scala.Tuple2;
+
+/**
+ * Translates the {@link Join joins} of the join library to broadcast hash joins in batch pipelines,
+ * when one side of the join is estimated to be small.
+ *
+ * <p>The small side is collected to the driver when the join is translated, and broadcast as a hash
+ * table from encoded keys to encoded values, which is deserialized once per executor. If the
+ * collected side turns out to be larger than the threshold, as it may be if its size was
+ * underestimated, both sides are shuffled by encoded key instead. The other side is joined by
+ * looking up the encoded key of each of its elements in the table, without shuffling either side.
+ * The values of the table are decoded for every match, so that every output holds its own values.
+ *
+ * <p>Only globally windowed joins with the default trigger and timestamp combiner are broadcast,
+ * whose outputs are in the global window at its end, as they are when joined by the {@link
+ * org.apache.beam.sdk.transforms.join.CoGroupByKey} of the join. A side of an outer join is
+ * broadcast only if the outer side is the other one, since the values of the broadcast side which
+ * match no value of the other side are never seen.
+ */
+public class BroadcastHashJoins {
+  private static final Logger LOG = LoggerFactory.getLogger(BroadcastHashJoins.class);
+
+  /** The side of a join which is broadcast. */
+  enum Side {
+    LEFT,
+    RIGHT
+  }
+
+  private BroadcastHashJoins() {}
+
+  /** Returns whether the provided transform is a join which may be broadcast. */
+  public static boolean isJoin(PTransform<?, ?> transform) {
+    return transform instanceof Join.InnerJoin
+        || transform instanceof Join.LeftOuterJoin
+        || transform instanceof Join.RightOuterJoin;
+  }
+
+  /**
+   * Returns whether the provided join can be translated to a broadcast hash join with the sizes
+   * estimated by the provided context.
+   */
+  public static boolean canBroadcast(AppliedPTransform<?, ?, ?> join, EvaluationContext context) {
+    PCollection<?> left =
+        (PCollection<?>) Iterables.getOnlyElement(TransformInputs.nonAdditionalInputs(join));
+    return broadcastSide(join.getTransform(), left, context) != null;
+  }
+
+  /**
+   * Returns the side of the provided join with the provided left input to broadcast, or null if
+   * neither side can be broadcast.
+   */
+  static @Nullable Side broadcastSide(
+      PTransform<?, ?> join, PCollection<?> left, EvaluationContext context) {
+    long threshold =
+        context.getOptions().as(SparkPipelineOptions.class).getBroadcastJoinThresholdBytes();
+    PCollection<?> right = getRightCollection(join);
+    if (threshold < 0
+        || !isGloballyWindowed(left.getWindowingStrategy())
+        || !isGloballyWindowed(right.getWindowingStrategy())) {
+      return null;
+    }
+    @Nullable
+    Long leftSize = join instanceof Join.LeftOuterJoin ? null : context.getEstimatedSizeBytes(left);
+    @Nullable
+    Long rightSize =
+        join instanceof Join.RightOuterJoin ? null : context.getEstimatedSizeBytes(right);
+    if (rightSize != null
+        && rightSize <= threshold
+        && (leftSize == null || rightSize <= leftSize)) {
+      return Side.RIGHT;
+    } else if (leftSize != null && leftSize <= threshold) {
+      return Side.LEFT;
+    }
+    return null;
+  }
+
+  /** Returns the right input of the provided join. */
+  @SuppressWarnings("unchecked")
+  static <K, V2> PCollection<KV<K, V2>> getRightCollection(PTransform<?, ?> join) {
+    if (join instanceof Join.InnerJoin) {
+      return ((Join.InnerJoin<K, ?, V2>) join).getRightCollection();
+    } else if (join instanceof Join.LeftOuterJoin) {
+      return ((Join.LeftOuterJoin<K, ?, V2>) join).getRightCollection();
+    } else if (join instanceof Join.RightOuterJoin) {
+      return ((Join.RightOuterJoin<K, ?, V2>) join).getRightCollection();
+    }
+    throw new IllegalArgumentException("Not a join: " + join);
+  }
+
+  /**
+   * Joins the provided inputs of the provided join by broadcasting the provided side, or by
+   * shuffling both sides if the broadcast side turns out to be larger than the provided threshold.
+   */
+  @SuppressWarnings("unchecked")
+  static <K, V1, V2> JavaRDD<WindowedValue<KV<K, KV<V1, V2>>>> join(
+      JavaSparkContext jsc,
+      PTransform<?, ?> join,
+      Side broadcastSide,
+      long thresholdBytes,
+      JavaRDD<WindowedValue<KV<K, V1>>> left,
+      JavaRDD<WindowedValue<KV<K, V2>>> right,
+      Coder<K> keyCoder,
+      Coder<V1> leftCoder,
+      Coder<V2> rightCoder) {
+    JavaPairRDD<ByteArray, byte[]> leftPairs = encode(left, keyCoder, leftCoder);
+    JavaPairRDD<ByteArray, byte[]> rightPairs = encode(right, keyCoder, rightCoder);
+    @Nullable
+    Broadcast<HashMap<ByteArray, byte[][]>> table =
+        build(jsc, broadcastSide == Side.RIGHT ? rightPairs : leftPairs, thresholdBytes);
+    if (table == null) {
+      LOG.warn(
+          "The {} side of {} is larger than {} bytes, joining it without broadcasting it",
+          broadcastSide,
+          join,
+          thresholdBytes);
+      return shuffle(join, leftPairs, rightPairs, keyCoder, leftCoder, rightCoder);
+    }
+    if (broadcastSide == Side.RIGHT) {
+      byte @Nullable [] nullValue =
+          join instanceof Join.LeftOuterJoin
+              ? CoderHelpers.toByteArray(
+                  ((Join.LeftOuterJoin<K, V1, V2>) join).getNullValue(), rightCoder)
+              : null;
+      return probe(left, table, keyCoder, rightCoder, nullValue, KV::of);
+    } else {
+      byte @Nullable [] nullValue =
+          join instanceof Join.RightOuterJoin
+              ? CoderHelpers.toByteArray(
+                  ((Join.RightOuterJoin<K, V1, V2>) join).getNullValue(), leftCoder)
+              : null;
+      return probe(
+          right,
+          table,
+          keyCoder,
+          leftCoder,
+          nullValue,
+          (rightValue, leftValue) -> KV.of(leftValue, rightValue));
+    }
+  }
+
+  private static boolean isGloballyWindowed(WindowingStrategy<?, ?> windowingStrategy) {
+    return windowingStrategy.getWindowFn() instanceof GlobalWindows
+        && windowingStrategy.getTrigger() instanceof DefaultTrigger
+        && windowingStrategy.getTimestampCombiner() == TimestampCombiner.END_OF_WINDOW;
+  }
+
+  /** Returns the provided side as pairs of encoded keys and encoded values. */
+  private static <K, V> JavaPairRDD<ByteArray, byte[]> encode(
+      JavaRDD<WindowedValue<KV<K, V>>> side, Coder<K> keyCoder, Coder<V> valueCoder) {
+    return side.mapToPair(
+        element ->
+            new Tuple2<>(
+                new ByteArray(CoderHelpers.toByteArray(element.getValue().getKey(), keyCoder)),
+                CoderHelpers.toByteArray(element.getValue().getValue(), valueCoder)));
+  }
+
+  /**
+   * Collects the provided side to the driver and broadcasts it by encoded key, or returns null if
+   * it is larger than the provided threshold.
+   *
+   * <p>The size of the side is computed by a first job, in which each partition stops measuring its
+   * elements as soon as they exceed the threshold, and the side is only collected to the driver if
+   * its total size is within the threshold. A side whose size was underestimated is therefore never
+   * collected to the driver, at the cost of computing the side twice.
+   */
+  @VisibleForTesting
+  static @Nullable Broadcast<HashMap<ByteArray, byte[][]>> build(
+      JavaSparkContext jsc, JavaPairRDD<ByteArray, byte[]> side, long thresholdBytes) {
+    long measuredBytes =
+        side.mapPartitions(
+                (Iterator<Tuple2<ByteArray, byte[]>> elements) -> {
+                  long partitionBytes = 0L;
+                  while (partitionBytes <= thresholdBytes && elements.hasNext()) {
+                    Tuple2<ByteArray, byte[]> element = elements.next();
+                    partitionBytes += element._1.getValue().length + element._2.length;
+                  }
+                  return Collections.singletonList(partitionBytes).iterator();
+                })
+            .fold(0L, Long::sum);
+    if (measuredBytes > thresholdBytes) {
+      return null;
+    }
+    List<Tuple2<ByteArray, byte[]>> encoded = side.collect();
+    Map<ByteArray, List<byte[]>> grouped = new HashMap<>();
+    for (Tuple2<ByteArray, byte[]> entry : encoded) {
+      grouped.computeIfAbsent(entry._1, key -> new ArrayList<>()).add(entry._2);
+    }
+    HashMap<ByteArray, byte[][]> table = new HashMap<>(grouped.size() * 4 / 3 + 1);
+    for (Map.Entry<ByteArray, List<byte[]>> entry : grouped.entrySet()) {
+      table.put(entry.getKey(), entry.getValue().toArray(new byte[0][]));
+    }
+    LOG.info(
+        "Broadcasting a join table of {} keys and {} values of {} encoded bytes",
+        table.size(),
+        encoded.size(),
+        measuredBytes);
+    return jsc.broadcast(table);
+  }
+
+  /** Joins the provided encoded sides of the provided join by shuffling both of them by key. */
+  @SuppressWarnings("unchecked")
+  private static <K, V1, V2> JavaRDD<WindowedValue<KV<K, KV<V1, V2>>>> shuffle(
+      PTransform<?, ?> join,
+      JavaPairRDD<ByteArray, byte[]> left,
+      JavaPairRDD<ByteArray, byte[]> right,
+      Coder<K> keyCoder,
+      Coder<V1> leftCoder,
+      Coder<V2> rightCoder) {
+    JavaPairRDD<ByteArray, Tuple2<byte[], byte[]>> joined;
+    if (join instanceof Join.LeftOuterJoin) {
+      byte[] nullValue =
+          CoderHelpers.toByteArray(
+              ((Join.LeftOuterJoin<K, V1, V2>) join).getNullValue(), rightCoder);
+      joined =
+          left.leftOuterJoin(right)
+              .mapValues(values -> new Tuple2<>(values._1, values._2.orElse(nullValue)));
+    } else if (join instanceof Join.RightOuterJoin) {
+      byte[] nullValue =
+          CoderHelpers.toByteArray(
+              ((Join.RightOuterJoin<K, V1, V2>) join).getNullValue(), leftCoder);
+      joined =
+          left.rightOuterJoin(right)
+              .mapValues(values -> new Tuple2<>(values._1.orElse(nullValue), values._2));
+    } else {
+      joined = left.join(right);
+    }
+    return joined.map(
+        entry ->
+            WindowedValue.of(
+                KV.of(
+                    CoderHelpers.fromByteArray(entry._1.getValue(), keyCoder),
+                    KV.of(
+                        CoderHelpers.fromByteArray(entry._2._1, leftCoder),
+                        CoderHelpers.fromByteArray(entry._2._2, rightCoder))),
+                GlobalWindow.INSTANCE.maxTimestamp(),
+                GlobalWindow.INSTANCE,
+                PaneInfo.ON_TIME_AND_ONLY_FIRING));
+  }
+
+  /**
+   * Joins every element of the provided side with the values of its key in the provided table, or
+   * with the provided encoded null value if there are none and it is not null.
+   */
+  private static <K, ProbeT, BuildT, V1, V2> JavaRDD<WindowedValue<KV<K, KV<V1, V2>>>> probe(
+      JavaRDD<WindowedValue<KV<K, ProbeT>>> side,
+      Broadcast<HashMap<ByteArray, byte[][]>> table,
+      Coder<K> keyCoder,
+      Coder<BuildT> buildCoder,
+      byte @Nullable [] nullValue,
+      Function2<ProbeT, BuildT, KV<V1, V2>> toValues) {
+    return side.flatMap(
+        element -> {
+          K key = element.getValue().getKey();
+          ProbeT value = element.getValue().getValue();
+          byte @Nullable [][] matches =
+              table.value().get(new ByteArray(CoderHelpers.toByteArray(key, keyCoder)));
+          if (matches == null) {
+            if (nullValue == null) {
+              return Collections.emptyIterator();
+            }
+            matches = new byte[][] {nullValue};
+          }
+          List<WindowedValue<KV<K, KV<V1, V2>>>> joined = new ArrayList<>(matches.length);
+          for (byte[] match : matches) {
+            joined.add(
+                WindowedValue.of(
+                    KV.of(key, toValues.call(value, CoderHelpers.fromByteArray(match, buildCoder))),
+                    GlobalWindow.INSTANCE.maxTimestamp(),
+                    GlobalWindow.INSTANCE,
+                    PaneInfo.ON_TIME_AND_ONLY_FIRING));
+          }
+          return joined.iterator();
+        });
+  }
+}
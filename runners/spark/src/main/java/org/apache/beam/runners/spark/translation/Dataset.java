@@ -27,5 +27,7 @@ public interface Dataset extends Serializable {
 
   void action();
 
+  void unpersist();
+
   void setName(String name);
 }
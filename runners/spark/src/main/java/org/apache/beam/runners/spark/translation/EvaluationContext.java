@@ -19,9 +19,16 @@ package org.apache.beam.runners.spark.translation;
 
 import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -32,19 +39,34 @@ import org.apache.beam.sdk.Pipeline;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.runners.AppliedPTransform;
+import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.Filter;
+import org.apache.beam.sdk.transforms.FlatMapElements;
+import org.apache.beam.sdk.transforms.Flatten;
 import org.apache.beam.sdk.transforms.GroupByKey;
+import org.apache.beam.sdk.transforms.MapElements;
 import org.apache.beam.sdk.transforms.PTransform;
+import org.apache.beam.sdk.transforms.ParDo;
 import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.apache.beam.sdk.transforms.windowing.Window;
 import org.apache.beam.sdk.util.WindowedValue;
 import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.PCollectionView;
 import org.apache.beam.sdk.values.PValue;
 import org.apache.beam.sdk.values.TupleTag;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Supplier;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Suppliers;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableSet;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
+import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaRDDLike;
 import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.storage.StorageLevel;
 import org.apache.spark.streaming.api.java.JavaStreamingContext;
 import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * The EvaluationContext allows us to define pipeline instructions and translate between {@code
@@ -55,6 +77,12 @@ import org.checkerframework.checker.nullness.qual.Nullable;
   "nullness" // TODO(https://github.com/apache/beam/issues/20497)
 })
 public class EvaluationContext {
+  private static final Logger LOG = LoggerFactory.getLogger(EvaluationContext.class);
+
+  // SDK transforms whose DoFns only transform each element, and are cheap to recompute.
+  private static final Set<Class<?>> ELEMENT_WISE_TRANSFORMS =
+      ImmutableSet.of(MapElements.class, FlatMapElements.class, Filter.class);
+
   private final JavaSparkContext jsc;
   private JavaStreamingContext jssc;
   private final Pipeline pipeline;
@@ -65,6 +93,12 @@ public class EvaluationContext {
   private AppliedPTransform<?, ?, ?> currentTransform;
   private final SparkPCollectionView pviews = new SparkPCollectionView();
   private final Map<PCollection, Long> cacheCandidates = new HashMap<>();
+  private final Map<PValue, Supplier<Long>> estimatedSizes = new HashMap<>();
+  private final Map<Dataset, PValue> cachedDatasets = new LinkedHashMap<>();
+  private final Set<Dataset> cheapDatasets = new HashSet<>();
+  private final Map<Dataset, List<Dataset>> datasetInputs = new HashMap<>();
+  private final List<Dataset> currentInputs = new ArrayList<>();
+  private final Map<PValue, Long> cachedBytes = new LinkedHashMap<>();
   private final PipelineOptions options;
   private final SerializablePipelineOptions serializableOptions;
 
@@ -103,6 +137,7 @@ public class EvaluationContext {
 
   public void setCurrentTransform(AppliedPTransform<?, ?, ?> transform) {
     this.currentTransform = transform;
+    this.currentInputs.clear();
   }
 
   public AppliedPTransform<?, ?, ?> getCurrentTransform() {
@@ -144,11 +179,16 @@ public class EvaluationContext {
 
   /**
    * Cache PCollection if SparkPipelineOptions.isCacheDisabled is false or transform isn't
-   * GroupByKey transformation and PCollection is used more then once in Pipeline.
+   * GroupByKey transformation and PCollection is used more then once in Pipeline, unless it is
+   * cheap to recompute for every use.
    *
    * <p>PCollection is not cached in GroupByKey transformation, because Spark automatically persists
    * some intermediate data in shuffle operations, even without users calling persist.
    *
+   * <p>PCollection is cheap to recompute if it is the output of an element-wise transform, such as
+   * {@link MapElements}, {@link Flatten} or {@link Window}, whose inputs are cached or cheap to
+   * recompute themselves.
+   *
    * @param pvalue output of transform
    * @param transform the transform to check
    * @return if PCollection will be cached
@@ -158,7 +198,74 @@ public class EvaluationContext {
         || transform instanceof GroupByKey) {
       return false;
     }
-    return pvalue instanceof PCollection && cacheCandidates.getOrDefault(pvalue, 0L) > 1;
+    return pvalue instanceof PCollection
+        && cacheCandidates.getOrDefault(pvalue, 0L) > 1
+        && !isCheapToRecompute(transform);
+  }
+
+  /**
+   * Returns whether the outputs of the provided transform, or of the current transform if it is
+   * null, are cheap to recompute from the inputs borrowed by the current transform.
+   */
+  private boolean isCheapToRecompute(@Nullable PTransform<?, ?> transform) {
+    if (transform == null && currentTransform != null) {
+      transform = currentTransform.getTransform();
+    }
+    if (!isElementWise(transform)) {
+      return false;
+    }
+    for (Dataset input : currentInputs) {
+      if (!cachedDatasets.containsKey(input) && !cheapDatasets.contains(input)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isElementWise(@Nullable PTransform<?, ?> transform) {
+    if (transform instanceof Flatten.PCollections || transform instanceof Window.Assign) {
+      return true;
+    } else if (transform instanceof ParDo.MultiOutput) {
+      if (currentTransform != null && currentTransform.getOutputs().size() > 1) {
+        // the outputs are filtered from the persisted outputs of all tags
+        return true;
+      }
+      return isElementWiseFn(((ParDo.MultiOutput<?, ?>) transform).getFn());
+    }
+    return false;
+  }
+
+  private static boolean isElementWiseFn(DoFn<?, ?> fn) {
+    return ELEMENT_WISE_TRANSFORMS.contains(fn.getClass().getEnclosingClass());
+  }
+
+  /**
+   * Returns the storage level to cache the provided value with: the configured storage level, or a
+   * serialized storage level if the value is estimated to be larger than {@link
+   * SparkPipelineOptions#getSerializedCacheThresholdBytes()} and would be cached deserialized.
+   */
+  private String storageLevel(PValue pvalue) {
+    String storageLevel = storageLevel();
+    long threshold =
+        serializableOptions.get().as(SparkPipelineOptions.class).getSerializedCacheThresholdBytes();
+    if (threshold < 0
+        || !TranslationUtils.canAvoidRddSerialization(StorageLevel.fromString(storageLevel))) {
+      return storageLevel;
+    }
+    Long estimatedSizeBytes = getEstimatedSizeBytes(pvalue);
+    if (estimatedSizeBytes == null || estimatedSizeBytes <= threshold) {
+      return storageLevel;
+    }
+    String serializedStorageLevel =
+        jsc.getConf().getBoolean("spark.memory.offHeap.enabled", false)
+            ? "OFF_HEAP"
+            : "MEMORY_AND_DISK_SER";
+    LOG.info(
+        "Caching {} estimated to be {} bytes with storage level {}",
+        pvalue.getName(),
+        estimatedSizeBytes,
+        serializedStorageLevel);
+    return serializedStorageLevel;
   }
 
   /**
@@ -203,12 +310,50 @@ public class EvaluationContext {
       Coder<?> coder = ((PCollection<?>) pvalue).getCoder();
       Coder<? extends BoundedWindow> wCoder =
           ((PCollection<?>) pvalue).getWindowingStrategy().getWindowFn().windowCoder();
-      dataset.cache(storageLevel(), WindowedValue.getFullCoder(coder, wCoder));
+      dataset.cache(storageLevel(pvalue), WindowedValue.getFullCoder(coder, wCoder));
+      cachedDatasets.put(dataset, pvalue);
+    } else if (transform instanceof GroupByKey || isCheapToRecompute(transform)) {
+      cheapDatasets.add(dataset);
     }
     datasets.put(pvalue, dataset);
+    datasetInputs.put(dataset, new ArrayList<>(currentInputs));
     leaves.add(dataset);
   }
 
+  /**
+   * Persists the outputs of all the tags of the current multi-output transform, from which each of
+   * its outputs is filtered, with the storage level of its provided main output.
+   *
+   * <p>The persisted outputs are tracked as a cached dataset borrowed by the current transform, so
+   * that they are unpersisted as soon as all the leaves which depend on them are computed.
+   */
+  public JavaPairRDD<TupleTag<?>, WindowedValue<?>> cacheAllOutputs(
+      JavaPairRDD<TupleTag<?>, WindowedValue<?>> all,
+      Map<TupleTag<?>, PCollection<?>> outputs,
+      PValue mainOutput) {
+    StorageLevel level = StorageLevel.fromString(storageLevel(mainOutput));
+    AllOutputsDataset dataset;
+    if (TranslationUtils.canAvoidRddSerialization(level)) {
+      // if it is memory only reduce the overhead of moving to bytes
+      all = all.persist(level);
+      dataset = new AllOutputsDataset(all);
+    } else {
+      // Caching can cause Serialization, we need to code to bytes
+      // more details in https://issues.apache.org/jira/browse/BEAM-2669
+      Map<TupleTag<?>, Coder<WindowedValue<?>>> coderMap =
+          TranslationUtils.getTupleTagCoders(outputs);
+      JavaPairRDD<TupleTag<?>, ValueAndCoderLazySerializable<WindowedValue<?>>> serialized =
+          all.mapToPair(TranslationUtils.getTupleTagEncodeFunction(coderMap)).persist(level);
+      all = serialized.mapToPair(TranslationUtils.getTupleTagDecodeFunction(coderMap));
+      dataset = new AllOutputsDataset(serialized);
+    }
+    dataset.setName(mainOutput.getName());
+    cachedDatasets.put(dataset, mainOutput);
+    datasetInputs.put(dataset, new ArrayList<>(currentInputs));
+    currentInputs.add(dataset);
+    return all;
+  }
+
   public Dataset borrowDataset(PTransform<? extends PValue, ?> transform) {
     return borrowDataset(getInput(transform));
   }
@@ -216,19 +361,115 @@ public class EvaluationContext {
   public Dataset borrowDataset(PValue pvalue) {
     Dataset dataset = datasets.get(pvalue);
     leaves.remove(dataset);
+    if (dataset != null) {
+      currentInputs.add(dataset);
+    }
     return dataset;
   }
 
+  /**
+   * Sets the estimated size in bytes of the provided value. The size is estimated by the provided
+   * supplier when it is first needed, which may return null if the size is unknown.
+   */
+  public void putEstimatedSizeBytes(PValue pvalue, Supplier<Long> estimatedSizeBytes) {
+    estimatedSizes.put(pvalue, Suppliers.memoize(estimatedSizeBytes));
+  }
+
+  /**
+   * Estimates the size of the provided output of the provided ParDo as the size of the provided
+   * input, if its DoFn is one of the element-wise SDK transforms which are expected to preserve the
+   * size of their input. The size of the outputs of other DoFns, which may output any number of
+   * elements for each input, is left unknown.
+   */
+  public void propagateEstimatedSizeBytes(
+      ParDo.MultiOutput<?, ?> transform, PValue input, PValue output) {
+    if (!isElementWiseFn(transform.getFn())) {
+      return;
+    }
+    Supplier<Long> estimatedSizeBytes = estimatedSizes.get(input);
+    if (estimatedSizeBytes != null) {
+      estimatedSizes.put(output, estimatedSizeBytes);
+    }
+  }
+
+  /** Returns the estimated size in bytes of the provided value, or null if it is unknown. */
+  public @Nullable Long getEstimatedSizeBytes(PValue pvalue) {
+    Supplier<Long> estimatedSizeBytes = estimatedSizes.get(pvalue);
+    return estimatedSizeBytes == null ? null : estimatedSizeBytes.get();
+  }
+
   /**
    * Computes the outputs for all RDDs that are leaves in the DAG and do not have any actions (like
    * saving to a file) registered on them (i.e. they are performed for side effects).
+   *
+   * <p>In batch pipelines, every cached dataset is unpersisted as soon as all the leaves which
+   * depend on it are computed, after reporting the number of bytes it cached.
    */
   public void computeOutputs() {
+    Map<Dataset, Set<Dataset>> pendingLeaves =
+        jssc == null ? getPendingLeaves() : Collections.emptyMap();
+    unpersistComputed(pendingLeaves);
     for (Dataset dataset : leaves) {
       dataset.action(); // force computation.
+      for (Set<Dataset> pending : pendingLeaves.values()) {
+        pending.remove(dataset);
+      }
+      unpersistComputed(pendingLeaves);
+    }
+  }
+
+  /** Returns the leaves which depend on each cached dataset. */
+  private Map<Dataset, Set<Dataset>> getPendingLeaves() {
+    Map<Dataset, Set<Dataset>> pendingLeaves = new LinkedHashMap<>();
+    for (Dataset cached : cachedDatasets.keySet()) {
+      pendingLeaves.put(cached, new HashSet<>());
+    }
+    for (Dataset leaf : leaves) {
+      Set<Dataset> visited = new HashSet<>();
+      Deque<Dataset> toVisit = new ArrayDeque<>();
+      toVisit.push(leaf);
+      while (!toVisit.isEmpty()) {
+        Dataset dataset = toVisit.pop();
+        if (visited.add(dataset)) {
+          Set<Dataset> pending = pendingLeaves.get(dataset);
+          if (pending != null) {
+            pending.add(leaf);
+          }
+          toVisit.addAll(datasetInputs.getOrDefault(dataset, Collections.emptyList()));
+        }
+      }
+    }
+    return pendingLeaves;
+  }
+
+  /** Unpersists the cached datasets which no leaf left to compute depends on. */
+  private void unpersistComputed(Map<Dataset, Set<Dataset>> pendingLeaves) {
+    Iterator<Map.Entry<Dataset, Set<Dataset>>> iterator = pendingLeaves.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Dataset, Set<Dataset>> entry = iterator.next();
+      if (entry.getValue().isEmpty()) {
+        Dataset dataset = entry.getKey();
+        PValue pvalue = cachedDatasets.get(dataset);
+        long bytes =
+            dataset instanceof AllOutputsDataset
+                ? ((AllOutputsDataset) dataset).getCachedBytes()
+                : ((BoundedDataset<?>) dataset).getCachedBytes();
+        LOG.info("Unpersisting {} which cached {} bytes", pvalue.getName(), bytes);
+        cachedBytes.put(pvalue, bytes);
+        dataset.unpersist();
+        iterator.remove();
+      }
     }
   }
 
+  /**
+   * Returns the number of bytes cached by every PCollection which was cached and unpersisted, as
+   * reported when it was unpersisted.
+   */
+  public Map<PValue, Long> getCachedBytes() {
+    return Collections.unmodifiableMap(cachedBytes);
+  }
+
   /**
    * Retrieve an object of Type T associated with the PValue passed in.
    *
@@ -292,4 +533,38 @@ public class EvaluationContext {
   public String storageLevel() {
     return serializableOptions.get().as(SparkPipelineOptions.class).getStorageLevel();
   }
+
+  /** The persisted outputs of all the tags of a multi-output transform. */
+  private static class AllOutputsDataset implements Dataset {
+    private final JavaRDDLike<?, ?> persisted;
+
+    private AllOutputsDataset(JavaRDDLike<?, ?> persisted) {
+      this.persisted = persisted;
+    }
+
+    @Override
+    public void cache(String storageLevel, Coder<?> coder) {
+      throw new UnsupportedOperationException("The outputs of all tags are already persisted");
+    }
+
+    @Override
+    public void action() {
+      persisted.count();
+    }
+
+    @Override
+    public void unpersist() {
+      persisted.rdd().unpersist(false);
+    }
+
+    @Override
+    public void setName(String name) {
+      persisted.rdd().setName(name);
+    }
+
+    /** Returns the number of bytes of the outputs which are cached in memory or on disk. */
+    long getCachedBytes() {
+      return BoundedDataset.getCachedBytes(persisted);
+    }
+  }
 }
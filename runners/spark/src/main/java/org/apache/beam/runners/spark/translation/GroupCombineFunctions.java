@@ -27,6 +27,7 @@ import org.apache.beam.sdk.util.WindowedValue.WindowedValueCoder;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.WindowingStrategy;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterators;
 import org.apache.spark.Partitioner;
 import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaRDD;
@@ -138,7 +139,6 @@ public class GroupCombineFunctions {
           final Coder<AccumT> aCoder,
           final WindowingStrategy<?, ?> windowingStrategy) {
 
-    boolean mustBringWindowToKey = sparkCombineFn.mustBringWindowToKey();
     @SuppressWarnings("unchecked")
     Coder<BoundedWindow> windowCoder = (Coder) windowingStrategy.getWindowFn().windowCoder();
     final SparkCombineFn.WindowedAccumulatorCoder<KV<K, V>, V, AccumT> waCoder =
@@ -150,14 +150,8 @@ public class GroupCombineFunctions {
     // require the key in addition to the InputT's and AccumT's being merged/accumulated.
     // Once Spark provides a way to include keys in the arguments of combine/merge functions,
     // we won't need to duplicate the keys anymore.
-    // Key has to bw windowed in order to group by window as well.
-    final JavaPairRDD<ByteArray, WindowedValue<KV<K, V>>> inRddDuplicatedKeyPair;
-    if (!mustBringWindowToKey) {
-      inRddDuplicatedKeyPair = rdd.mapToPair(TranslationUtils.toPairByKeyInWindowedValue(keyCoder));
-    } else {
-      inRddDuplicatedKeyPair =
-          GroupNonMergingWindowsFunctions.bringWindowToKey(rdd, keyCoder, windowCoder);
-    }
+    final JavaPairRDD<ByteArray, WindowedValue<KV<K, V>>> inRddDuplicatedKeyPair =
+        toPairByEncodedKey(rdd, sparkCombineFn, keyCoder, windowCoder);
 
     JavaPairRDD<
             ByteArray,
@@ -182,6 +176,79 @@ public class GroupCombineFunctions {
                 CoderHelpers.fromByteArray(i._1.getValue(), keyCoder), i._2.getOrDecode(waCoder)));
   }
 
+  /**
+   * Apply a composite {@link org.apache.beam.sdk.transforms.Combine.PerKey} transformation with a
+   * {@link SpillableCombiner} on each side of the shuffle, rather than with Spark's {@link
+   * JavaPairRDD#combineByKey(Function, Function2, Function2)}.
+   *
+   * <p>The accumulators are shuffled encoded with the accumulator coder, once per key and
+   * partition, and the accumulators of a partition which do not fit in the execution memory of the
+   * task are spilled to local disk on either side of the shuffle.
+   */
+  public static <K, V, AccumT>
+      JavaPairRDD<K, SparkCombineFn.WindowedAccumulator<KV<K, V>, V, AccumT, ?>>
+          combinePerKeySpillable(
+              JavaRDD<WindowedValue<KV<K, V>>> rdd,
+              final SparkCombineFn<KV<K, V>, V, AccumT, ?> sparkCombineFn,
+              final Coder<K> keyCoder,
+              final Coder<AccumT> aCoder,
+              final WindowingStrategy<?, ?> windowingStrategy,
+              Partitioner partitioner) {
+
+    @SuppressWarnings("unchecked")
+    Coder<BoundedWindow> windowCoder = (Coder) windowingStrategy.getWindowFn().windowCoder();
+    final SparkCombineFn.WindowedAccumulatorCoder<KV<K, V>, V, AccumT> waCoder =
+        sparkCombineFn.accumulatorCoder(windowCoder, aCoder, windowingStrategy);
+
+    JavaPairRDD<ByteArray, byte[]> combined =
+        toPairByEncodedKey(rdd, sparkCombineFn, keyCoder, windowCoder)
+            .mapPartitionsToPair(
+                values -> {
+                  SpillableCombiner<KV<K, V>, V, AccumT> combiner =
+                      SpillableCombiner.create(sparkCombineFn, waCoder);
+                  while (values.hasNext()) {
+                    Tuple2<ByteArray, WindowedValue<KV<K, V>>> value = values.next();
+                    combiner.insertValue(value._1, value._2);
+                  }
+                  return Iterators.transform(
+                      combiner.iterator(),
+                      acc -> new Tuple2<>(acc._1, CoderHelpers.toByteArray(acc._2, waCoder)));
+                });
+
+    return combined
+        .partitionBy(partitioner)
+        .mapPartitionsToPair(
+            accumulators -> {
+              SpillableCombiner<KV<K, V>, V, AccumT> combiner =
+                  SpillableCombiner.create(sparkCombineFn, waCoder);
+              while (accumulators.hasNext()) {
+                Tuple2<ByteArray, byte[]> accumulator = accumulators.next();
+                combiner.insertAccumulator(
+                    accumulator._1, CoderHelpers.fromByteArray(accumulator._2, waCoder));
+              }
+              return Iterators.transform(
+                  combiner.iterator(),
+                  acc ->
+                      new Tuple2<>(
+                          CoderHelpers.fromByteArray(acc._1.getValue(), keyCoder), acc._2));
+            });
+  }
+
+  /**
+   * Pairs the values with their encoded key, which is windowed if the accumulators of the {@link
+   * SparkCombineFn} hold a single window, so that values are combined by window as well.
+   */
+  private static <K, V> JavaPairRDD<ByteArray, WindowedValue<KV<K, V>>> toPairByEncodedKey(
+      JavaRDD<WindowedValue<KV<K, V>>> rdd,
+      SparkCombineFn<KV<K, V>, V, ?, ?> sparkCombineFn,
+      Coder<K> keyCoder,
+      Coder<BoundedWindow> windowCoder) {
+    if (!sparkCombineFn.mustBringWindowToKey()) {
+      return rdd.mapToPair(TranslationUtils.toPairByKeyInWindowedValue(keyCoder));
+    }
+    return GroupNonMergingWindowsFunctions.bringWindowToKey(rdd, keyCoder, windowCoder);
+  }
+
   /** An implementation of {@link Reshuffle} for the Spark runner. */
   public static <T> JavaRDD<WindowedValue<T>> reshuffle(
       JavaRDD<WindowedValue<T>> rdd, WindowedValueCoder<T> wvCoder) {
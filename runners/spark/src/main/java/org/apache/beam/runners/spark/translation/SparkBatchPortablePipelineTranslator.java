@@ -294,6 +294,11 @@ public class SparkBatchPortablePipelineTranslator
             staged.foreach(TranslationUtils.emptyVoidFunction());
           }
 
+          @Override
+          public void unpersist() {
+            staged.unpersist(false);
+          }
+
           @Override
           public void setName(String name) {
             staged.setName(name);
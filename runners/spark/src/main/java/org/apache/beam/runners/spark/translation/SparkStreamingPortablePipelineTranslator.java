@@ -273,6 +273,11 @@ public class SparkStreamingPortablePipelineTranslator
             staged.foreachRDD(TranslationUtils.emptyVoidFunction());
           }
 
+          @Override
+          public void unpersist() {
+            // cached streams are cleared by Spark once their batches are processed
+          }
+
           @Override
           public void setName(String name) {
             // ignore
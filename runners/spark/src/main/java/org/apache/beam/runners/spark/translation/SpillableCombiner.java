@@ -0,0 +1,397 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.spark.translation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import org.apache.beam.runners.spark.coders.CoderHelpers;
+import org.apache.beam.runners.spark.translation.SparkCombineFn.WindowedAccumulator;
+import org.apache.beam.runners.spark.util.ByteArray;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.util.WindowedValue;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
+import org.apache.spark.SparkConf;
+import org.apache.spark.SparkEnv;
+import org.apache.spark.TaskContext;
+import org.apache.spark.memory.MemoryConsumer;
+import org.apache.spark.memory.MemoryMode;
+import org.apache.spark.util.SizeEstimator;
+import org.apache.spark.util.TaskCompletionListener;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import scala.Tuple2;
+
+/**
+ * Combines the values or accumulators of a partition by their encoded key, for {@link
+ * GroupCombineFunctions#combinePerKeySpillable}.
+ *
+ * <p>The accumulators are kept in memory while the task can acquire execution memory from Spark for
+ * them. Otherwise they are encoded with the accumulator coder, sorted by key, and spilled to a file
+ * in the local directories of the executor. The spilled accumulators are merged with those in
+ * memory when the result is iterated, so the accumulators of a partition never need to fit in
+ * memory. As in Spark's own spillable collections, the size of the accumulators in memory is
+ * estimated by sampling, and the spilled bytes and peak execution memory are reported to the
+ * metrics of the task.
+ *
+ * <p>The combiner spills when it runs out of memory while it is being filled, or when another
+ * consumer of the memory of the task forces it to. Its memory is released once the accumulators in
+ * memory are handed off to be iterated. It must be used by the thread of the task which created it.
+ */
+class SpillableCombiner<InputT, ValueT, AccumT> extends MemoryConsumer {
+  private static final Logger LOG = LoggerFactory.getLogger(SpillableCombiner.class);
+
+  private static final String INITIAL_MEMORY_THRESHOLD =
+      "spark.shuffle.spill.initialMemoryThreshold";
+  private static final String NUM_ELEMENTS_FORCE_SPILL_THRESHOLD =
+      "spark.shuffle.spill.numElementsForceSpillThreshold";
+  private static final long DEFAULT_INITIAL_MEMORY_THRESHOLD = 5 * 1024 * 1024;
+  private static final int MEMORY_CHECK_PERIOD = 32;
+  private static final double SAMPLE_GROWTH_RATE = 1.1;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** Creates a combiner which acquires memory from and reports metrics to the current task. */
+  static <InputT, ValueT, AccumT> SpillableCombiner<InputT, ValueT, AccumT> create(
+      SparkCombineFn<InputT, ValueT, AccumT, ?> combineFn,
+      Coder<WindowedAccumulator<InputT, ValueT, AccumT, ?>> accumulatorCoder) {
+    SparkConf conf = SparkEnv.get().conf();
+    return create(
+        combineFn,
+        accumulatorCoder,
+        conf.getLong(INITIAL_MEMORY_THRESHOLD, DEFAULT_INITIAL_MEMORY_THRESHOLD),
+        conf.getLong(NUM_ELEMENTS_FORCE_SPILL_THRESHOLD, Integer.MAX_VALUE));
+  }
+
+  @VisibleForTesting
+  static <InputT, ValueT, AccumT> SpillableCombiner<InputT, ValueT, AccumT> create(
+      SparkCombineFn<InputT, ValueT, AccumT, ?> combineFn,
+      Coder<WindowedAccumulator<InputT, ValueT, AccumT, ?>> accumulatorCoder,
+      long initialMemoryThreshold,
+      long numElementsForceSpillThreshold) {
+    TaskContext task = TaskContext.get();
+    SpillableCombiner<InputT, ValueT, AccumT> combiner =
+        new SpillableCombiner<>(
+            task,
+            combineFn,
+            accumulatorCoder,
+            initialMemoryThreshold,
+            numElementsForceSpillThreshold);
+    task.addTaskCompletionListener((TaskCompletionListener) context -> combiner.cleanup());
+    return combiner;
+  }
+
+  private final TaskContext task;
+  private final SparkCombineFn<InputT, ValueT, AccumT, ?> combineFn;
+  private final Coder<WindowedAccumulator<InputT, ValueT, AccumT, ?>> accumulatorCoder;
+  private final long initialMemoryThreshold;
+  private final long numElementsForceSpillThreshold;
+
+  private Map<ByteArray, WindowedAccumulator<InputT, ValueT, AccumT, ?>> accumulators =
+      new HashMap<>();
+  private final List<File> spills = new ArrayList<>();
+  private long memoryThreshold;
+  private long peakMemory = 0L;
+
+  private long updates = 0L;
+  private long nextSampleUpdates = 1L;
+  private long sampledUpdates = 0L;
+  private long sampledSize = 0L;
+  private double bytesPerUpdate = 0.0;
+
+  private SpillableCombiner(
+      TaskContext task,
+      SparkCombineFn<InputT, ValueT, AccumT, ?> combineFn,
+      Coder<WindowedAccumulator<InputT, ValueT, AccumT, ?>> accumulatorCoder,
+      long initialMemoryThreshold,
+      long numElementsForceSpillThreshold) {
+    super(task.taskMemoryManager(), task.taskMemoryManager().pageSizeBytes(), MemoryMode.ON_HEAP);
+    this.task = task;
+    this.combineFn = combineFn;
+    this.accumulatorCoder = accumulatorCoder;
+    this.initialMemoryThreshold = initialMemoryThreshold;
+    this.numElementsForceSpillThreshold = numElementsForceSpillThreshold;
+    this.memoryThreshold = initialMemoryThreshold;
+  }
+
+  /** Adds the value to the accumulator of its key. */
+  void insertValue(ByteArray key, WindowedValue<InputT> value) {
+    WindowedAccumulator<InputT, ValueT, AccumT, ?> accumulator = accumulators.get(key);
+    if (accumulator == null) {
+      accumulators.put(key, combineFn.createCombiner(value));
+    } else {
+      combineFn.mergeValue(accumulator, value);
+    }
+    afterUpdate();
+  }
+
+  /** Merges the accumulator into the accumulator of its key. */
+  void insertAccumulator(ByteArray key, WindowedAccumulator<InputT, ValueT, AccumT, ?> other) {
+    WindowedAccumulator<InputT, ValueT, AccumT, ?> accumulator = accumulators.get(key);
+    if (accumulator == null) {
+      accumulators.put(key, other);
+    } else {
+      combineFn.mergeCombiners(accumulator, other);
+    }
+    afterUpdate();
+  }
+
+  /**
+   * Returns the accumulator of every inserted key. The combiner must not be used after the result
+   * is iterated.
+   */
+  Iterator<Tuple2<ByteArray, WindowedAccumulator<InputT, ValueT, AccumT, ?>>> iterator() {
+    task.taskMetrics().incPeakExecutionMemory(Math.max(peakMemory, currentSize()));
+    if (spills.isEmpty()) {
+      Map<ByteArray, WindowedAccumulator<InputT, ValueT, AccumT, ?>> inMemory = accumulators;
+      // The consumer of the result, such as a shuffle writer, needs the memory more than the
+      // accumulators it drains.
+      releaseAccumulators();
+      return new Iterator<Tuple2<ByteArray, WindowedAccumulator<InputT, ValueT, AccumT, ?>>>() {
+        private final Iterator<Map.Entry<ByteArray, WindowedAccumulator<InputT, ValueT, AccumT, ?>>>
+            entries = inMemory.entrySet().iterator();
+
+        @Override
+        public boolean hasNext() {
+          return entries.hasNext();
+        }
+
+        @Override
+        public Tuple2<ByteArray, WindowedAccumulator<InputT, ValueT, AccumT, ?>> next() {
+          Map.Entry<ByteArray, WindowedAccumulator<InputT, ValueT, AccumT, ?>> entry =
+              entries.next();
+          entries.remove();
+          return new Tuple2<>(entry.getKey(), entry.getValue());
+        }
+      };
+    }
+    if (!accumulators.isEmpty()) {
+      spillAccumulators();
+    }
+    return new MergingIterator();
+  }
+
+  /**
+   * Spills the accumulators in memory when another consumer of the memory of the task needs it, and
+   * returns the memory freed. The combiner spills by itself when it needs memory.
+   */
+  @Override
+  public long spill(long size, MemoryConsumer trigger) {
+    if (trigger == this || accumulators.isEmpty()) {
+      return 0L;
+    }
+    long freed = memoryThreshold - initialMemoryThreshold;
+    spillAccumulators();
+    return freed;
+  }
+
+  private void afterUpdate() {
+    updates++;
+    if (updates >= nextSampleUpdates) {
+      sampleSize();
+    }
+    if (accumulators.size() >= numElementsForceSpillThreshold) {
+      spillAccumulators();
+    } else if (updates % MEMORY_CHECK_PERIOD == 0) {
+      long size = currentSize();
+      if (size >= memoryThreshold) {
+        // Ask for twice the current size, so that the threshold grows geometrically.
+        memoryThreshold += acquireMemory(2 * size - memoryThreshold);
+        if (size >= memoryThreshold) {
+          spillAccumulators();
+        }
+      }
+    }
+  }
+
+  /**
+   * Estimates the size of the accumulators in memory, at intervals which grow with the number of
+   * updates. The size between samples is extrapolated from the growth between the last two.
+   */
+  private void sampleSize() {
+    long size = SizeEstimator.estimate(accumulators);
+    if (updates > sampledUpdates && sampledUpdates > 0) {
+      bytesPerUpdate = Math.max(0.0, (double) (size - sampledSize) / (updates - sampledUpdates));
+    }
+    sampledSize = size;
+    sampledUpdates = updates;
+    nextSampleUpdates = (long) Math.ceil(updates * SAMPLE_GROWTH_RATE);
+  }
+
+  private long currentSize() {
+    return sampledSize + (long) ((updates - sampledUpdates) * bytesPerUpdate);
+  }
+
+  private void resetSize() {
+    updates = 0L;
+    nextSampleUpdates = 1L;
+    sampledUpdates = 0L;
+    sampledSize = 0L;
+    bytesPerUpdate = 0.0;
+  }
+
+  /** Writes the accumulators in memory to a new spill file, ordered by key, and frees them. */
+  private void spillAccumulators() {
+    long size = currentSize();
+    peakMemory = Math.max(peakMemory, size);
+    List<ByteArray> keys = new ArrayList<>(accumulators.keySet());
+    keys.sort(null);
+    File file = SparkEnv.get().blockManager().diskBlockManager().createTempLocalBlock()._2();
+    spills.add(file);
+    try (DataOutputStream output =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE))) {
+      for (ByteArray key : keys) {
+        writeBytes(output, key.getValue());
+        writeBytes(output, CoderHelpers.toByteArray(accumulators.get(key), accumulatorCoder));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to spill accumulators to " + file, e);
+    }
+    LOG.info(
+        "Task {} spilled {} accumulators of about {} bytes to {}",
+        task.taskAttemptId(),
+        keys.size(),
+        size,
+        file);
+    task.taskMetrics().incMemoryBytesSpilled(size);
+    task.taskMetrics().incDiskBytesSpilled(file.length());
+
+    releaseAccumulators();
+  }
+
+  /** Drops the accumulators in memory and frees the memory acquired for them. */
+  private void releaseAccumulators() {
+    accumulators = new HashMap<>();
+    freeMemory(memoryThreshold - initialMemoryThreshold);
+    memoryThreshold = initialMemoryThreshold;
+    resetSize();
+  }
+
+  private void cleanup() {
+    releaseAccumulators();
+    for (File spill : spills) {
+      if (!spill.delete() && spill.exists()) {
+        LOG.warn("Unable to delete spilled accumulators {}", spill);
+      }
+    }
+    spills.clear();
+  }
+
+  private static void writeBytes(DataOutputStream output, byte[] bytes) throws IOException {
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  /** Merges the accumulators of each key across the spill files, which are ordered by key. */
+  private class MergingIterator
+      implements Iterator<Tuple2<ByteArray, WindowedAccumulator<InputT, ValueT, AccumT, ?>>> {
+    private final PriorityQueue<SpillReader> readers = new PriorityQueue<>();
+
+    private MergingIterator() {
+      for (File spill : spills) {
+        SpillReader reader = new SpillReader(spill);
+        if (reader.advance()) {
+          readers.add(reader);
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !readers.isEmpty();
+    }
+
+    @Override
+    public Tuple2<ByteArray, WindowedAccumulator<InputT, ValueT, AccumT, ?>> next() {
+      if (readers.isEmpty()) {
+        throw new NoSuchElementException();
+      }
+      ByteArray key = readers.peek().key;
+      WindowedAccumulator<InputT, ValueT, AccumT, ?> accumulator = null;
+      while (!readers.isEmpty() && readers.peek().key.equals(key)) {
+        SpillReader reader = readers.poll();
+        WindowedAccumulator<InputT, ValueT, AccumT, ?> spilled =
+            CoderHelpers.fromByteArray(reader.accumulator, accumulatorCoder);
+        accumulator =
+            accumulator == null ? spilled : combineFn.mergeCombiners(accumulator, spilled);
+        if (reader.advance()) {
+          readers.add(reader);
+        }
+      }
+      return new Tuple2<>(key, accumulator);
+    }
+  }
+
+  /** Reads the encoded accumulators of a spill file in order. */
+  private static class SpillReader implements Comparable<SpillReader> {
+    private final File file;
+    private final DataInputStream input;
+    private @Nullable ByteArray key;
+    private byte @Nullable [] accumulator;
+
+    private SpillReader(File file) {
+      this.file = file;
+      try {
+        this.input =
+            new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+      } catch (IOException e) {
+        throw new UncheckedIOException("Unable to read spilled accumulators from " + file, e);
+      }
+    }
+
+    /** Reads the next accumulator, returning false and closing the file at its end. */
+    private boolean advance() {
+      try {
+        int keyLength;
+        try {
+          keyLength = input.readInt();
+        } catch (EOFException e) {
+          input.close();
+          return false;
+        }
+        byte[] keyBytes = new byte[keyLength];
+        input.readFully(keyBytes);
+        key = new ByteArray(keyBytes);
+        accumulator = new byte[input.readInt()];
+        input.readFully(accumulator);
+        return true;
+      } catch (IOException e) {
+        throw new UncheckedIOException("Unable to read spilled accumulators from " + file, e);
+      }
+    }
+
+    @Override
+    public int compareTo(SpillReader other) {
+      return key.compareTo(other.key);
+    }
+  }
+}
@@ -17,7 +17,6 @@
  */
 package org.apache.beam.runners.spark.translation;
 
-import static org.apache.beam.runners.spark.translation.TranslationUtils.canAvoidRddSerialization;
 import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkState;
 
 import java.util.Arrays;
@@ -29,6 +28,7 @@ import java.util.Map;
 import org.apache.beam.runners.core.SystemReduceFn;
 import org.apache.beam.runners.core.construction.PTransformTranslation;
 import org.apache.beam.runners.core.construction.ParDoTranslation;
+import org.apache.beam.runners.core.construction.SerializablePipelineOptions;
 import org.apache.beam.runners.core.construction.SplittableParDo;
 import org.apache.beam.runners.spark.SparkPipelineOptions;
 import org.apache.beam.runners.spark.coders.CoderHelpers;
@@ -43,6 +43,7 @@ import org.apache.beam.sdk.coders.CannotProvideCoderException;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.IterableCoder;
 import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.io.BoundedSource;
 import org.apache.beam.sdk.transforms.Combine;
 import org.apache.beam.sdk.transforms.CombineWithContext;
 import org.apache.beam.sdk.transforms.DoFn;
@@ -79,7 +80,6 @@ import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.api.java.function.PairFlatMapFunction;
-import org.apache.spark.storage.StorageLevel;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import scala.Tuple2;
 
@@ -330,14 +330,28 @@ public final class TransformTranslator {
 
         JavaPairRDD<K, SparkCombineFn.WindowedAccumulator<KV<K, InputT>, InputT, AccumT, ?>>
             accumulatePerKey;
-        accumulatePerKey =
-            GroupCombineFunctions.combinePerKey(
-                inRdd,
-                sparkCombineFn,
-                inputCoder.getKeyCoder(),
-                inputCoder.getValueCoder(),
-                vaCoder,
-                windowingStrategy);
+        if (context.getOptions().as(SparkPipelineOptions.class).isSpillableCombine()) {
+          Partitioner partitioner = getPartitioner(context);
+          accumulatePerKey =
+              GroupCombineFunctions.combinePerKeySpillable(
+                  inRdd,
+                  sparkCombineFn,
+                  inputCoder.getKeyCoder(),
+                  vaCoder,
+                  windowingStrategy,
+                  partitioner != null
+                      ? partitioner
+                      : new HashPartitioner(inRdd.getNumPartitions()));
+        } else {
+          accumulatePerKey =
+              GroupCombineFunctions.combinePerKey(
+                  inRdd,
+                  sparkCombineFn,
+                  inputCoder.getKeyCoder(),
+                  inputCoder.getValueCoder(),
+                  vaCoder,
+                  windowingStrategy);
+        }
 
         JavaPairRDD<K, WindowedValue<OutputT>> kwvs =
             SparkCompat.extractOutput(accumulatePerKey, sparkCombineFn);
@@ -419,21 +433,10 @@ public final class TransformTranslator {
         }
 
         Map<TupleTag<?>, PCollection<?>> outputs = context.getOutputs(transform);
+        PCollection<?> mainOutput = outputs.get(transform.getMainOutputTag());
+        context.propagateEstimatedSizeBytes(transform, context.getInput(transform), mainOutput);
         if (outputs.size() > 1) {
-          StorageLevel level = StorageLevel.fromString(context.storageLevel());
-          if (canAvoidRddSerialization(level)) {
-            // if it is memory only reduce the overhead of moving to bytes
-            all = all.persist(level);
-          } else {
-            // Caching can cause Serialization, we need to code to bytes
-            // more details in https://issues.apache.org/jira/browse/BEAM-2669
-            Map<TupleTag<?>, Coder<WindowedValue<?>>> coderMap =
-                TranslationUtils.getTupleTagCoders(outputs);
-            all =
-                all.mapToPair(TranslationUtils.getTupleTagEncodeFunction(coderMap))
-                    .persist(level)
-                    .mapToPair(TranslationUtils.getTupleTagDecodeFunction(coderMap));
-          }
+          all = context.cacheAllOutputs(all, outputs, mainOutput);
         }
         for (Map.Entry<TupleTag<?>, PCollection<?>> output : outputs.entrySet()) {
           JavaPairRDD<TupleTag<?>, WindowedValue<?>> filtered =
@@ -645,6 +648,18 @@ public final class TransformTranslator {
                 .toJavaRDD();
 
         context.putDataset(transform, new BoundedDataset<>(input));
+        BoundedSource<T> source = transform.getSource();
+        SerializablePipelineOptions options = context.getSerializableOptions();
+        context.putEstimatedSizeBytes(
+            context.getOutput(transform),
+            () -> {
+              try {
+                return source.getEstimatedSizeBytes(options.get());
+              } catch (Exception e) {
+                // the size is unknown.
+                return null;
+              }
+            });
       }
 
       @Override
@@ -737,6 +752,53 @@ public final class TransformTranslator {
     };
   }
 
+  private static <K, V1, V2>
+      TransformEvaluator<PTransform<PCollection<KV<K, V1>>, PCollection<KV<K, KV<V1, V2>>>>>
+          broadcastHashJoin() {
+    return new TransformEvaluator<
+        PTransform<PCollection<KV<K, V1>>, PCollection<KV<K, KV<V1, V2>>>>>() {
+      @Override
+      public void evaluate(
+          PTransform<PCollection<KV<K, V1>>, PCollection<KV<K, KV<V1, V2>>>> transform,
+          EvaluationContext context) {
+        PCollection<KV<K, V1>> left = context.getInput(transform);
+        PCollection<KV<K, V2>> right = BroadcastHashJoins.getRightCollection(transform);
+        BroadcastHashJoins.Side broadcastSide =
+            BroadcastHashJoins.broadcastSide(transform, left, context);
+        checkState(broadcastSide != null, "Neither side of %s can be broadcast", transform);
+        KvCoder<K, V1> leftCoder = (KvCoder<K, V1>) left.getCoder();
+        KvCoder<K, V2> rightCoder = (KvCoder<K, V2>) right.getCoder();
+        @SuppressWarnings("unchecked")
+        JavaRDD<WindowedValue<KV<K, V1>>> leftRdd =
+            ((BoundedDataset<KV<K, V1>>) context.borrowDataset(left)).getRDD();
+        @SuppressWarnings("unchecked")
+        JavaRDD<WindowedValue<KV<K, V2>>> rightRdd =
+            ((BoundedDataset<KV<K, V2>>) context.borrowDataset(right)).getRDD();
+
+        JavaRDD<WindowedValue<KV<K, KV<V1, V2>>>> joined =
+            BroadcastHashJoins.join(
+                context.getSparkContext(),
+                transform,
+                broadcastSide,
+                context
+                    .getOptions()
+                    .as(SparkPipelineOptions.class)
+                    .getBroadcastJoinThresholdBytes(),
+                leftRdd,
+                rightRdd,
+                leftCoder.getKeyCoder(),
+                leftCoder.getValueCoder(),
+                rightCoder.getValueCoder());
+        context.putDataset(transform, new BoundedDataset<>(joined));
+      }
+
+      @Override
+      public String toNativeString() {
+        return "flatMap(<lookup in broadcast(<hash table>)>)";
+      }
+    };
+  }
+
   private static @Nullable Partitioner getPartitioner(EvaluationContext context) {
     Long bundleSize =
         context.getSerializableOptions().get().as(SparkPipelineOptions.class).getBundleSize();
@@ -762,6 +824,9 @@ public final class TransformTranslator {
   }
 
   private static @Nullable TransformEvaluator<?> getTranslator(PTransform<?, ?> transform) {
+    if (BroadcastHashJoins.isJoin(transform)) {
+      return broadcastHashJoin();
+    }
     @Nullable String urn = PTransformTranslation.urnForTransformOrNull(transform);
     return urn == null ? null : EVALUATORS.get(urn);
   }
@@ -771,7 +836,8 @@ public final class TransformTranslator {
 
     @Override
     public boolean hasTranslation(PTransform<?, ?> transform) {
-      return EVALUATORS.containsKey(PTransformTranslation.urnForTransformOrNull(transform));
+      return BroadcastHashJoins.isJoin(transform)
+          || EVALUATORS.containsKey(PTransformTranslation.urnForTransformOrNull(transform));
     }
 
     @Override
@@ -79,6 +79,11 @@ public class UnboundedDataset<T> implements Dataset {
     dStream.foreachRDD(rdd -> rdd.foreach(TranslationUtils.<WindowedValue<T>>emptyVoidFunction()));
   }
 
+  @Override
+  public void unpersist() {
+    // cached streams are cleared by Spark once their batches are processed
+  }
+
   @Override
   public void setName(String name) {
     // ignore
@@ -23,6 +23,7 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.beam.runners.spark.translation.Dataset;
 import org.apache.beam.runners.spark.translation.EvaluationContext;
 import org.apache.beam.runners.spark.translation.TransformTranslator;
@@ -33,10 +34,16 @@ import org.apache.beam.sdk.transforms.Create;
 import org.apache.beam.sdk.transforms.Create.Values;
 import org.apache.beam.sdk.transforms.DoFn;
 import org.apache.beam.sdk.transforms.GroupByKey;
+import org.apache.beam.sdk.transforms.MapElements;
 import org.apache.beam.sdk.transforms.ParDo;
 import org.apache.beam.sdk.transforms.View;
 import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.PCollectionTuple;
 import org.apache.beam.sdk.values.PCollectionView;
+import org.apache.beam.sdk.values.TupleTag;
+import org.apache.beam.sdk.values.TupleTagList;
+import org.apache.beam.sdk.values.TypeDescriptors;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.junit.ClassRule;
 import org.junit.Test;
 
@@ -45,6 +52,10 @@ import org.junit.Test;
   "rawtypes", // TODO(https://github.com/apache/beam/issues/20447)
 })
 public class CacheTest {
+  private static final AtomicInteger EXPENSIVE_CALLS = new AtomicInteger();
+  private static final AtomicInteger CHEAP_CALLS = new AtomicInteger();
+  private static final TupleTag<String> MAIN_TAG = new TupleTag<String>() {};
+  private static final TupleTag<String> SIDE_TAG = new TupleTag<String>() {};
 
   @ClassRule public static SparkContextRule contextRule = new SparkContextRule();
 
@@ -110,4 +121,85 @@ public class CacheTest {
     GroupByKey<String, String> gbkTransform = GroupByKey.create();
     assertFalse(ctxt.shouldCache(gbkTransform, pCollection));
   }
+
+  @Test
+  public void cachesExpensiveCollectionsUntilTheirLastUse() {
+    EXPENSIVE_CALLS.set(0);
+    CHEAP_CALLS.set(0);
+    SparkPipelineOptions options = contextRule.createPipelineOptions();
+    options.setRunner(SparkRunner.class);
+    Pipeline pipeline = Pipeline.create(options);
+
+    PCollection<String> expensive =
+        pipeline
+            .apply(Create.of("foo", "bar", "baz"))
+            .apply("Expensive", ParDo.of(new ExpensiveDoFn()));
+    // The cheap fan-out of the cached collection is recomputed for each of its uses.
+    PCollection<Integer> cheap =
+        expensive.apply(
+            "Cheap",
+            MapElements.into(TypeDescriptors.integers())
+                .via(
+                    element -> {
+                      CHEAP_CALLS.incrementAndGet();
+                      return element.length();
+                    }));
+    expensive.apply("ExpensiveUse", ParDo.of(new NoOpDoFn<>()));
+    cheap.apply("FirstCheapUse", ParDo.of(new NoOpDoFn<>()));
+    cheap.apply("SecondCheapUse", ParDo.of(new NoOpDoFn<>()));
+
+    pipeline.run().waitUntilFinish();
+    assertEquals(3, EXPENSIVE_CALLS.get());
+    assertEquals(6, CHEAP_CALLS.get());
+    assertTrue(contextRule.getSparkContext().getPersistentRDDs().isEmpty());
+  }
+
+  @Test
+  public void unpersistsAllOutputsOfMultiOutputParDo() {
+    EXPENSIVE_CALLS.set(0);
+    SparkPipelineOptions options = contextRule.createPipelineOptions();
+    options.setRunner(SparkRunner.class);
+    Pipeline pipeline = Pipeline.create(options);
+
+    PCollectionTuple outputs =
+        pipeline
+            .apply(Create.of("foo", "bar", "baz"))
+            .apply(
+                "Expensive",
+                ParDo.of(new ExpensiveDoFn(SIDE_TAG))
+                    .withOutputTags(MAIN_TAG, TupleTagList.of(SIDE_TAG)));
+    outputs.get(MAIN_TAG).apply("MainUse", ParDo.of(new NoOpDoFn<>()));
+    outputs.get(SIDE_TAG).apply("SideUse", ParDo.of(new NoOpDoFn<>()));
+
+    pipeline.run().waitUntilFinish();
+    // Both outputs are read from the persisted RDD of the ParDo, which is released afterwards.
+    assertEquals(3, EXPENSIVE_CALLS.get());
+    assertTrue(contextRule.getSparkContext().getPersistentRDDs().isEmpty());
+  }
+
+  private static class ExpensiveDoFn extends DoFn<String, String> {
+    private final @Nullable TupleTag<String> sideTag;
+
+    ExpensiveDoFn() {
+      this(null);
+    }
+
+    ExpensiveDoFn(@Nullable TupleTag<String> sideTag) {
+      this.sideTag = sideTag;
+    }
+
+    @ProcessElement
+    public void processElement(ProcessContext c) {
+      EXPENSIVE_CALLS.incrementAndGet();
+      c.output(c.element());
+      if (sideTag != null) {
+        c.output(sideTag, c.element());
+      }
+    }
+  }
+
+  private static class NoOpDoFn<T> extends DoFn<T, Void> {
+    @ProcessElement
+    public void processElement() {}
+  }
 }
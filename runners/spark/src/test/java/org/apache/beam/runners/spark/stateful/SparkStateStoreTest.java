@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.spark.stateful;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.beam.runners.spark.util.ByteArray;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.HashBasedTable;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableTable;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Table;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link SparkStateStore}. */
+@RunWith(JUnit4.class)
+public class SparkStateStoreTest {
+  private static final ByteArray KEY = new ByteArray(new byte[] {1});
+  private static final ByteArray OTHER_KEY = new ByteArray(new byte[] {2});
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void changedCellsAreRecovered() throws Exception {
+    Path directory = temporaryFolder.getRoot().toPath();
+    SparkStateStore store = new SparkStateStore(directory, 10, 100);
+    long first = write(store, SparkStateStore.NO_VERSION, KEY, "cell", new byte[64]);
+    long second = write(store, first, OTHER_KEY, "cell", new byte[] {2});
+
+    SparkStateStore.Update update = store.update();
+    update.derive(second);
+    Table<String, String, byte[]> state = update.read(KEY);
+    state.put("namespace", "other", new byte[] {3});
+    update.write(KEY, state, ImmutableTable.of("namespace", "other", true));
+    update.commit();
+    long last = update.version();
+
+    // only the changed cell of the key is written, not its whole state.
+    assertTrue(
+        Files.size(directory.resolve(last + ".delta"))
+            < Files.size(directory.resolve(first + ".delta")));
+
+    SparkStateStore recovered = new SparkStateStore(directory, 10, 100);
+    SparkStateStore.Update recovery = recovered.update();
+    recovery.derive(last);
+    assertArrayEquals(new byte[64], recovery.read(KEY).get("namespace", "cell"));
+    assertArrayEquals(new byte[] {3}, recovery.read(KEY).get("namespace", "other"));
+    assertArrayEquals(new byte[] {2}, recovery.read(OTHER_KEY).get("namespace", "cell"));
+  }
+
+  @Test
+  public void clearedCellsAreRecovered() throws Exception {
+    Path directory = temporaryFolder.getRoot().toPath();
+    SparkStateStore store = new SparkStateStore(directory, 10, 100);
+    long first = write(store, SparkStateStore.NO_VERSION, KEY, "cell", new byte[] {1});
+
+    SparkStateStore.Update update = store.update();
+    update.derive(first);
+    Table<String, String, byte[]> state = update.read(KEY);
+    state.remove("namespace", "cell");
+    update.write(KEY, state, ImmutableTable.of("namespace", "cell", true));
+    update.commit();
+
+    SparkStateStore.Update recovery = new SparkStateStore(directory, 10, 100).update();
+    recovery.derive(update.version());
+    assertTrue(recovery.read(KEY).isEmpty());
+  }
+
+  @Test
+  public void olderVersionIsUpdated() throws Exception {
+    Path directory = temporaryFolder.getRoot().toPath();
+    SparkStateStore store = new SparkStateStore(directory, 10, 100);
+    long first = write(store, SparkStateStore.NO_VERSION, KEY, "cell", new byte[] {1});
+    long second = write(store, first, KEY, "cell", new byte[] {2});
+    // as when recovering from a checkpoint of the first version.
+    long third = write(store, first, KEY, "other", new byte[] {3});
+
+    SparkStateStore.Update update = new SparkStateStore(directory, 10, 100).update();
+    update.derive(third);
+    assertArrayEquals(new byte[] {1}, update.read(KEY).get("namespace", "cell"));
+    assertArrayEquals(new byte[] {3}, update.read(KEY).get("namespace", "other"));
+
+    update = store.update();
+    update.derive(second);
+    assertArrayEquals(new byte[] {2}, update.read(KEY).get("namespace", "cell"));
+    assertFalse(update.read(KEY).contains("namespace", "other"));
+  }
+
+  @Test
+  public void versionsBeforeSnapshotsAreCompacted() throws Exception {
+    Path directory = temporaryFolder.getRoot().toPath();
+    SparkStateStore store = new SparkStateStore(directory, 2, 2);
+    long first = write(store, SparkStateStore.NO_VERSION, KEY, "cell", new byte[] {0});
+    long version = first;
+    for (byte i = 1; i < 6; i++) {
+      version = write(store, version, KEY, "cell", new byte[] {i});
+    }
+
+    assertTrue(Files.exists(directory.resolve(version + ".snapshot")));
+    assertFalse(Files.exists(directory.resolve(first + ".delta")));
+    SparkStateStore.Update update = new SparkStateStore(directory, 2, 2).update();
+    update.derive(version);
+    assertArrayEquals(new byte[] {5}, update.read(KEY).get("namespace", "cell"));
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("is older than the last 2 versions which are retained");
+    update = new SparkStateStore(directory, 2, 2).update();
+    update.derive(first);
+    update.read(KEY);
+  }
+
+  private static long write(
+      SparkStateStore store, long parent, ByteArray key, String tag, byte[] value) {
+    SparkStateStore.Update update = store.update();
+    if (parent != SparkStateStore.NO_VERSION) {
+      update.derive(parent);
+    }
+    Table<String, String, byte[]> state = HashBasedTable.create(update.read(key));
+    state.put("namespace", tag, value);
+    update.write(key, state, ImmutableTable.of("namespace", tag, true));
+    update.commit();
+    return update.version();
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.spark.stateful;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import org.apache.beam.runners.core.StateNamespaces;
+import org.apache.beam.runners.core.StateTag;
+import org.apache.beam.runners.core.StateTags;
+import org.apache.beam.runners.spark.stateful.SparkGroupAlsoByWindowViaWindowSet.StateAndTimers;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.state.ValueState;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.HashBasedTable;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Table;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link StateAndTimers} and {@link StateAndTimersKryoSerializer}. */
+@RunWith(JUnit4.class)
+public class StateAndTimersTest {
+  private static final StateTag<ValueState<String>> TAG =
+      StateTags.value("tag", StringUtf8Coder.of());
+
+  @Test
+  public void javaSerializationTest() throws Exception {
+    ByteArrayOutputStream inMemOut = new ByteArrayOutputStream();
+    ObjectOutputStream oos = new ObjectOutputStream(inMemOut);
+    oos.writeObject(createStateAndTimers());
+    oos.close();
+
+    ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(inMemOut.toByteArray()));
+    assertStateAndTimers((StateAndTimers) ois.readObject());
+  }
+
+  @Test
+  public void kryoSerializationTest() {
+    Kryo kryo = new Kryo();
+    kryo.register(StateAndTimers.class, new StateAndTimersKryoSerializer());
+
+    ByteArrayOutputStream inMemOut = new ByteArrayOutputStream();
+    Output out = new Output(inMemOut);
+    kryo.writeObject(out, createStateAndTimers());
+    out.close();
+
+    Input input = new Input(new ByteArrayInputStream(inMemOut.toByteArray()));
+    StateAndTimers materialized = kryo.readObject(input, StateAndTimers.class);
+    input.close();
+    assertStateAndTimers(materialized);
+  }
+
+  @Test
+  public void storeVersionSerializationTest() throws Exception {
+    ByteArrayOutputStream inMemOut = new ByteArrayOutputStream();
+    ObjectOutputStream oos = new ObjectOutputStream(inMemOut);
+    oos.writeObject(StateAndTimers.inStore(7L, false, Collections.singletonList(new byte[] {1})));
+    oos.close();
+
+    ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(inMemOut.toByteArray()));
+    StateAndTimers materialized = (StateAndTimers) ois.readObject();
+    assertTrue(materialized.isInStore());
+    assertEquals(7L, materialized.getStoreVersion());
+    assertFalse(materialized.isStateEmpty());
+    assertArrayEquals(new byte[] {1}, materialized.getTimers().iterator().next());
+    assertFalse(createStateAndTimers().isInStore());
+  }
+
+  @Test
+  public void stateInternalsTrackChangesTest() {
+    StateAndTimers stateAndTimers = createStateAndTimers();
+    SparkStateInternals<String> stateInternals =
+        SparkStateInternals.forKeyAndState("key", stateAndTimers::getState);
+
+    ValueState<String> value = stateInternals.state(StateNamespaces.global(), TAG);
+    assertEquals("value", value.read());
+    value.clear();
+    assertTrue(stateInternals.isChanged());
+    assertTrue(
+        stateInternals.getChangedCells().contains(StateNamespaces.global().stringKey(), "tag"));
+    assertTrue(stateInternals.getState().isEmpty());
+
+    SparkStateInternals<String> emptyStateInternals = SparkStateInternals.forKey("key");
+    emptyStateInternals.state(StateNamespaces.global(), TAG).clear();
+    assertFalse(emptyStateInternals.isChanged());
+  }
+
+  private static StateAndTimers createStateAndTimers() {
+    SparkStateInternals<String> stateInternals = SparkStateInternals.forKey("key");
+    stateInternals.state(StateNamespaces.global(), TAG).write("value");
+    return new StateAndTimers(
+        stateInternals.getState(), Arrays.asList(new byte[] {1, 2}, new byte[] {3}));
+  }
+
+  private static void assertStateAndTimers(StateAndTimers stateAndTimers) {
+    assertFalse(stateAndTimers.isStateEmpty());
+    // the unchanged state is kept encoded with the new timers.
+    StateAndTimers updated = stateAndTimers.withTimers(Collections.emptyList());
+    assertFalse(updated.isStateEmpty());
+    assertTrue(updated.getTimers().isEmpty());
+
+    Table<String, String, byte[]> expected = createStateAndTimers().getState();
+    Table<String, String, byte[]> state = updated.getState();
+    assertEquals(expected.size(), state.size());
+    for (Table.Cell<String, String, byte[]> cell : expected.cellSet()) {
+      assertArrayEquals(cell.getValue(), state.get(cell.getRowKey(), cell.getColumnKey()));
+    }
+    assertEquals(2, stateAndTimers.getTimers().size());
+    assertArrayEquals(new byte[] {3}, stateAndTimers.getTimers().toArray(new byte[0][])[1]);
+    assertTrue(new StateAndTimers(HashBasedTable.create(), Collections.emptyList()).isStateEmpty());
+  }
+}
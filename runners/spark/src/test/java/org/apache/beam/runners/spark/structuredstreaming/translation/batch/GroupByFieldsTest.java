@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.spark.structuredstreaming.translation.batch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import org.apache.beam.runners.spark.structuredstreaming.SparkStructuredStreamingPipelineOptions;
+import org.apache.beam.runners.spark.structuredstreaming.SparkStructuredStreamingRunner;
+import org.apache.beam.sdk.Pipeline;
+import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.schemas.SchemaCoder;
+import org.apache.beam.sdk.schemas.transforms.Group;
+import org.apache.beam.sdk.testing.PAssert;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.SerializableFunction;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.Row;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
+import org.apache.spark.sql.catalyst.plans.logical.Aggregate;
+import org.hamcrest.Matchers;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Test class for beam to spark {@link Group.ByFields} translation. */
+@RunWith(JUnit4.class)
+public class GroupByFieldsTest implements Serializable {
+  private static final Schema SCHEMA =
+      Schema.builder()
+          .addStringField("user")
+          .addNullableField("country", Schema.FieldType.STRING)
+          .addInt64Field("clicks")
+          .build();
+
+  private static SparkStructuredStreamingPipelineOptions options;
+  private static Pipeline pipeline;
+
+  @BeforeClass
+  public static void beforeClass() {
+    options = PipelineOptionsFactory.create().as(SparkStructuredStreamingPipelineOptions.class);
+    options.setRunner(SparkStructuredStreamingRunner.class);
+    options.setTestMode(true);
+    pipeline = Pipeline.create(options);
+  }
+
+  @Test
+  public void testGroupByFields() {
+    PCollection<Row> grouped =
+        pipeline
+            .apply(
+                Create.of(
+                        row("a", "fr", 1L),
+                        row("a", "fr", 2L),
+                        row("b", null, 3L),
+                        row("b", null, 4L),
+                        row("b", "de", 5L))
+                    .withRowSchema(SCHEMA))
+            .apply(Group.<Row>byFieldNames("user", "country").withKeyField("k"));
+
+    PAssert.that(grouped)
+        .satisfies(
+            (SerializableFunction<Iterable<Row>, Void>)
+                groups -> {
+                  assertThat(Iterables.size(groups), Matchers.equalTo(3));
+                  for (Row group : groups) {
+                    Row key = group.getRow("k");
+                    Iterable<Row> values = group.getIterable("value");
+                    long sum = 0;
+                    for (Row value : values) {
+                      assertThat(value.getString("user"), Matchers.equalTo(key.getString("user")));
+                      assertThat(
+                          value.getString("country"), Matchers.equalTo(key.getString("country")));
+                      sum += value.getInt64("clicks");
+                    }
+                    if ("a".equals(key.getString("user"))) {
+                      assertThat(sum, Matchers.equalTo(3L));
+                    } else if (key.getString("country") == null) {
+                      assertThat(sum, Matchers.equalTo(7L));
+                    } else {
+                      assertThat(sum, Matchers.equalTo(5L));
+                    }
+                  }
+                  return null;
+                });
+    pipeline.run();
+  }
+
+  @Test
+  public void testGroupByFieldsIsTranslatedToAggregate() {
+    Pipeline translated = Pipeline.create(options);
+    PCollection<Row> grouped =
+        translated
+            .apply(Create.empty(SchemaCoder.of(SCHEMA)))
+            .apply(Group.<Row>byFieldNames("user"));
+
+    assertTrue(
+        TranslatedPlans.contains(TranslatedPlans.translate(translated, grouped), Aggregate.class));
+  }
+
+  @Test
+  public void testGroupByFloatingPointFieldIsNotTranslatedToAggregate() {
+    Schema schema = Schema.builder().addDoubleField("score").build();
+    Pipeline translated = Pipeline.create(options);
+    PCollection<Row> grouped =
+        translated
+            .apply(Create.empty(SchemaCoder.of(schema)))
+            .apply(Group.<Row>byFieldNames("score"));
+
+    assertFalse(
+        TranslatedPlans.contains(TranslatedPlans.translate(translated, grouped), Aggregate.class));
+  }
+
+  private static Row row(String user, String country, long clicks) {
+    return Row.withSchema(SCHEMA).addValues(user, country, clicks).build();
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.spark.structuredstreaming.translation.batch;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import org.apache.beam.runners.spark.structuredstreaming.SparkStructuredStreamingPipelineOptions;
+import org.apache.beam.runners.spark.structuredstreaming.SparkStructuredStreamingRunner;
+import org.apache.beam.sdk.Pipeline;
+import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.schemas.SchemaCoder;
+import org.apache.beam.sdk.schemas.transforms.Join;
+import org.apache.beam.sdk.testing.PAssert;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.Row;
+import org.apache.spark.sql.catalyst.plans.logical.LogicalPlan;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Test class for beam to spark {@link Join} translation. */
+@RunWith(JUnit4.class)
+public class JoinTest implements Serializable {
+  private static final Schema USER_SCHEMA =
+      Schema.builder().addInt64Field("id").addStringField("name").build();
+  private static final Schema ORDER_SCHEMA =
+      Schema.builder().addInt64Field("user").addInt32Field("amount").build();
+
+  private static SparkStructuredStreamingPipelineOptions options;
+  private static Pipeline pipeline;
+
+  @BeforeClass
+  public static void beforeClass() {
+    options = PipelineOptionsFactory.create().as(SparkStructuredStreamingPipelineOptions.class);
+    options.setRunner(SparkStructuredStreamingRunner.class);
+    options.setTestMode(true);
+    pipeline = Pipeline.create(options);
+  }
+
+  @Test
+  public void testJoins() {
+    PCollection<Row> users =
+        pipeline.apply(
+            "users", Create.of(user(1L, "alice"), user(2L, "bob")).withRowSchema(USER_SCHEMA));
+    PCollection<Row> orders =
+        pipeline.apply(
+            "orders",
+            Create.of(order(1L, 10), order(1L, 20), order(3L, 30)).withRowSchema(ORDER_SCHEMA));
+
+    PCollection<Row> inner =
+        users.apply(
+            "inner",
+            Join.<Row, Row>innerJoin(orders).on(Join.FieldsEqual.left("id").right("user")));
+    PAssert.that(inner)
+        .containsInAnyOrder(
+            joined(inner, user(1L, "alice"), order(1L, 10)),
+            joined(inner, user(1L, "alice"), order(1L, 20)));
+
+    PCollection<Row> outer =
+        users.apply(
+            "outer",
+            Join.<Row, Row>fullOuterJoin(orders).on(Join.FieldsEqual.left("id").right("user")));
+    PAssert.that(outer)
+        .containsInAnyOrder(
+            joined(outer, user(1L, "alice"), order(1L, 10)),
+            joined(outer, user(1L, "alice"), order(1L, 20)),
+            joined(outer, user(2L, "bob"), null),
+            joined(outer, null, order(3L, 30)));
+
+    PCollection<Row> broadcast =
+        orders.apply(
+            "broadcast",
+            Join.<Row, Row>leftOuterBroadcastJoin(users)
+                .on(Join.FieldsEqual.left("user").right("id")));
+    PAssert.that(broadcast)
+        .containsInAnyOrder(
+            joined(broadcast, order(1L, 10), user(1L, "alice")),
+            joined(broadcast, order(1L, 20), user(1L, "alice")),
+            joined(broadcast, order(3L, 30), null));
+    pipeline.run();
+  }
+
+  @Test
+  public void testJoinIsTranslatedToJoin() {
+    Pipeline translated = Pipeline.create(options);
+    PCollection<Row> users = translated.apply("users", Create.empty(SchemaCoder.of(USER_SCHEMA)));
+    PCollection<Row> orders =
+        translated.apply("orders", Create.empty(SchemaCoder.of(ORDER_SCHEMA)));
+    PCollection<Row> joined =
+        users.apply(Join.<Row, Row>innerJoin(orders).on(Join.FieldsEqual.left("id").right("user")));
+
+    assertTrue(
+        TranslatedPlans.contains(
+            TranslatedPlans.translate(translated, joined),
+            org.apache.spark.sql.catalyst.plans.logical.Join.class));
+  }
+
+  @Test
+  public void testJoinOnFloatingPointFieldIsNotTranslatedToJoin() {
+    Schema schema = Schema.builder().addDoubleField("score").build();
+    Pipeline translated = Pipeline.create(options);
+    PCollection<Row> lhs = translated.apply("lhs", Create.empty(SchemaCoder.of(schema)));
+    PCollection<Row> rhs = translated.apply("rhs", Create.empty(SchemaCoder.of(schema)));
+    PCollection<Row> joined = lhs.apply(Join.<Row, Row>innerJoin(rhs).using("score"));
+
+    LogicalPlan plan = TranslatedPlans.translate(translated, joined);
+    assertFalse(
+        TranslatedPlans.contains(plan, org.apache.spark.sql.catalyst.plans.logical.Join.class));
+  }
+
+  private static Row user(long id, String name) {
+    return Row.withSchema(USER_SCHEMA).addValues(id, name).build();
+  }
+
+  private static Row order(long user, int amount) {
+    return Row.withSchema(ORDER_SCHEMA).addValues(user, amount).build();
+  }
+
+  private static Row joined(PCollection<Row> output, Row lhs, Row rhs) {
+    return Row.withSchema(output.getSchema())
+        .withFieldValue(Join.LHS_TAG, lhs)
+        .withFieldValue(Join.RHS_TAG, rhs)
+        .build();
+  }
+}
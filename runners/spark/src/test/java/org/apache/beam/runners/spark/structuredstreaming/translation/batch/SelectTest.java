@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.spark.structuredstreaming.translation.batch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import org.apache.beam.runners.spark.structuredstreaming.SparkStructuredStreamingPipelineOptions;
+import org.apache.beam.runners.spark.structuredstreaming.SparkStructuredStreamingRunner;
+import org.apache.beam.sdk.Pipeline;
+import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.schemas.Schema.FieldType;
+import org.apache.beam.sdk.schemas.SchemaCoder;
+import org.apache.beam.sdk.schemas.transforms.Select;
+import org.apache.beam.sdk.testing.PAssert;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.Row;
+import org.apache.spark.sql.catalyst.plans.logical.LogicalPlan;
+import org.apache.spark.sql.catalyst.plans.logical.Project;
+import org.joda.time.Instant;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Test class for beam to spark {@link Select} translation. */
+@RunWith(JUnit4.class)
+public class SelectTest implements Serializable {
+  private static final Schema NESTED_SCHEMA =
+      Schema.builder().addStringField("city").addInt32Field("zip").build();
+  private static final Schema SCHEMA =
+      Schema.builder()
+          .addStringField("name")
+          .addInt64Field("id")
+          .addNullableField("score", FieldType.DOUBLE)
+          .addArrayField("tags", FieldType.STRING)
+          .addRowField("address", NESTED_SCHEMA)
+          .addDateTimeField("created")
+          .build();
+
+  private static SparkStructuredStreamingPipelineOptions options;
+  private static Pipeline pipeline;
+
+  @BeforeClass
+  public static void beforeClass() {
+    options = PipelineOptionsFactory.create().as(SparkStructuredStreamingPipelineOptions.class);
+    options.setRunner(SparkStructuredStreamingRunner.class);
+    options.setTestMode(true);
+    pipeline = Pipeline.create(options);
+  }
+
+  @Test
+  public void testSelect() {
+    Row address = Row.withSchema(NESTED_SCHEMA).addValues("Paris", 75001).build();
+    PCollection<Row> input =
+        pipeline.apply(
+            Create.of(
+                    row("a", 1L, 0.5, address, new Instant(1000L)),
+                    row("b", 2L, null, address, new Instant(2000L)))
+                .withRowSchema(SCHEMA));
+
+    // Selects are chained to exercise rows which are never converted to encoded elements
+    PCollection<Row> selected =
+        input
+            .apply(Select.<Row>fieldNames("id", "score", "address", "tags", "created"))
+            .apply(Select.<Row>fieldNames("address", "id").withFieldNameAs("score", "points"));
+
+    Schema outputSchema = selected.getSchema();
+    PAssert.that(selected)
+        .containsInAnyOrder(
+            Row.withSchema(outputSchema)
+                .withFieldValue("id", 1L)
+                .withFieldValue("address", address)
+                .withFieldValue("points", 0.5)
+                .build(),
+            Row.withSchema(outputSchema)
+                .withFieldValue("id", 2L)
+                .withFieldValue("address", address)
+                .withFieldValue("points", null)
+                .build());
+    pipeline.run();
+  }
+
+  @Test
+  public void testSelectIsTranslatedToProjection() {
+    Pipeline translated = Pipeline.create(options);
+    PCollection<Row> selected =
+        translated
+            .apply(Create.empty(SchemaCoder.of(SCHEMA)))
+            .apply(Select.<Row>fieldNames("id", "score", "address"))
+            .apply(Select.<Row>fieldNames("address", "id"));
+
+    // Each select is a projection of the rows, rather than a conversion of encoded elements
+    LogicalPlan plan = TranslatedPlans.translate(translated, selected);
+    assertThat(plan, instanceOf(Project.class));
+    assertThat(plan.children().head(), instanceOf(Project.class));
+  }
+
+  @Test
+  public void testSelectOfNestedFieldIsNotTranslatedToProjection() {
+    Pipeline translated = Pipeline.create(options);
+    PCollection<Row> selected =
+        translated
+            .apply(Create.empty(SchemaCoder.of(SCHEMA)))
+            .apply(Select.<Row>fieldNames("id", "address.city"));
+
+    LogicalPlan plan = TranslatedPlans.translate(translated, selected);
+    assertThat(plan, not(instanceOf(Project.class)));
+  }
+
+  private static Row row(String name, long id, Double score, Row address, Instant created) {
+    return Row.withSchema(SCHEMA)
+        .addValues(name, id, score, Arrays.asList(name, "tag"), address, created)
+        .build();
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.spark.structuredstreaming.translation.batch;
+
+import org.apache.beam.runners.core.construction.SplittableParDo;
+import org.apache.beam.runners.spark.structuredstreaming.SparkStructuredStreamingPipelineOptions;
+import org.apache.beam.runners.spark.structuredstreaming.translation.PipelineTranslator;
+import org.apache.beam.sdk.Pipeline;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.spark.sql.catalyst.plans.logical.LogicalPlan;
+import scala.collection.JavaConversions;
+
+/**
+ * Translates pipelines as the runner does, without running them, to tell from the logical plans of
+ * the translated datasets whether a transform was translated natively.
+ */
+class TranslatedPlans {
+
+  /**
+   * Translates the pipeline and returns the logical plan of the provided PCollection as a dataset
+   * of rows.
+   */
+  static LogicalPlan translate(Pipeline pipeline, PCollection<?> pCollection) {
+    SparkStructuredStreamingPipelineOptions options =
+        pipeline.getOptions().as(SparkStructuredStreamingPipelineOptions.class);
+    SplittableParDo.convertReadBasedSplittableDoFnsToPrimitiveReadsIfNecessary(pipeline);
+    PipelineTranslator.replaceTransforms(pipeline, options);
+    PipelineTranslator translator = new PipelineTranslatorBatch(options);
+    translator.translate(pipeline);
+    return translator.getTranslationContext().getRowDataset(pCollection).queryExecution().logical();
+  }
+
+  /** Returns whether the plan has a node of the provided class. */
+  static boolean contains(LogicalPlan plan, Class<? extends LogicalPlan> nodeClass) {
+    if (nodeClass.isInstance(plan)) {
+      return true;
+    }
+    for (LogicalPlan child : JavaConversions.seqAsJavaList(plan.children())) {
+      if (contains(child, nodeClass)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
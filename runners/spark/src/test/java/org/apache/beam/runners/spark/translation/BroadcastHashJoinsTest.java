@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.spark.translation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.beam.runners.core.construction.SplittableParDo;
+import org.apache.beam.runners.spark.SparkContextRule;
+import org.apache.beam.runners.spark.SparkPipelineOptions;
+import org.apache.beam.runners.spark.SparkRunner;
+import org.apache.beam.runners.spark.util.ByteArray;
+import org.apache.beam.sdk.Pipeline;
+import org.apache.beam.sdk.extensions.joinlibrary.Join;
+import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.apache.beam.sdk.testing.PAssert;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.MapElements;
+import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.TypeDescriptors;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Strings;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import scala.Tuple2;
+
+/** Tests for {@link BroadcastHashJoins}. */
+@RunWith(JUnit4.class)
+public class BroadcastHashJoinsTest {
+  @ClassRule public static SparkContextRule contextRule = new SparkContextRule("local[2]");
+
+  @Test
+  public void innerJoinBroadcastsSmallerSide() {
+    for (long threshold : new long[] {Long.MAX_VALUE, -1L}) {
+      Pipeline pipeline = createPipeline(threshold);
+      PCollection<KV<String, Long>> left =
+          pipeline.apply(
+              "Left", Create.of(KV.of("a", 1L), KV.of("a", 2L), KV.of("b", 3L), KV.of("c", 4L)));
+      PCollection<KV<String, String>> right =
+          pipeline.apply("Right", Create.of(KV.of("a", "x"), KV.of("b", "y"), KV.of("b", "z")));
+
+      PAssert.that(Join.innerJoin("LeftToRight", left, right))
+          .containsInAnyOrder(
+              KV.of("a", KV.of(1L, "x")),
+              KV.of("a", KV.of(2L, "x")),
+              KV.of("b", KV.of(3L, "y")),
+              KV.of("b", KV.of(3L, "z")));
+      PAssert.that(Join.innerJoin("RightToLeft", right, left))
+          .containsInAnyOrder(
+              KV.of("a", KV.of("x", 1L)),
+              KV.of("a", KV.of("x", 2L)),
+              KV.of("b", KV.of("y", 3L)),
+              KV.of("b", KV.of("z", 3L)));
+      pipeline.run().waitUntilFinish();
+    }
+  }
+
+  @Test
+  public void outerJoinsBroadcastInnerSide() {
+    for (long threshold : new long[] {Long.MAX_VALUE, -1L}) {
+      Pipeline pipeline = createPipeline(threshold);
+      PCollection<KV<String, Long>> left =
+          pipeline.apply("Left", Create.of(KV.of("a", 1L), KV.of("b", 2L)));
+      PCollection<KV<String, String>> right =
+          pipeline.apply("Right", Create.of(KV.of("a", "x"), KV.of("c", "y")));
+
+      PAssert.that(Join.leftOuterJoin("LeftOuter", left, right, "none"))
+          .containsInAnyOrder(KV.of("a", KV.of(1L, "x")), KV.of("b", KV.of(2L, "none")));
+      PAssert.that(Join.rightOuterJoin("RightOuter", left, right, -1L))
+          .containsInAnyOrder(KV.of("a", KV.of(1L, "x")), KV.of("c", KV.of(-1L, "y")));
+      pipeline.run().waitUntilFinish();
+    }
+  }
+
+  @Test
+  public void explodingParDoIsNotBroadcast() {
+    Pipeline pipeline = createPipeline(Long.MAX_VALUE);
+    PCollection<KV<String, Long>> left = pipeline.apply("Left", Create.of(KV.of("a", 1L)));
+    PCollection<KV<String, String>> right = pipeline.apply("Right", Create.of(KV.of("a", "x")));
+    PCollection<KV<String, String>> mapped =
+        right.apply(
+            "Map",
+            MapElements.into(
+                    TypeDescriptors.kvs(TypeDescriptors.strings(), TypeDescriptors.strings()))
+                .via(kv -> KV.of(kv.getKey(), kv.getValue() + "y")));
+    PCollection<KV<String, String>> exploded = right.apply("Explode", ParDo.of(new ExplodeFn()));
+
+    SplittableParDo.convertReadBasedSplittableDoFnsToPrimitiveReadsIfNecessary(pipeline);
+    EvaluationContext context =
+        new EvaluationContext(contextRule.getSparkContext(), pipeline, pipeline.getOptions());
+    pipeline.traverseTopologically(
+        new SparkRunner.Evaluator(new TransformTranslator.Translator(), context));
+
+    // The size of an element-wise transform is estimated as the size of its input
+    assertEquals(
+        BroadcastHashJoins.Side.RIGHT,
+        BroadcastHashJoins.broadcastSide(Join.LeftOuterJoin.with(mapped, "none"), left, context));
+    // The size of the output of any other ParDo is unknown
+    assertNull(
+        BroadcastHashJoins.broadcastSide(Join.LeftOuterJoin.with(exploded, "none"), left, context));
+  }
+
+  @Test
+  public void joinShufflesBroadcastSideLargerThanThreshold() {
+    Pipeline pipeline = createPipeline(1024L);
+    PCollection<KV<String, Long>> left =
+        pipeline.apply("Left", Create.of(KV.of("a", 1L), KV.of("b", 2L)));
+    // The size of the mapped side is estimated as the size of the small value it is mapped from,
+    // which is smaller than the left side
+    String large = Strings.repeat("x", 4096);
+    PCollection<KV<String, String>> right =
+        pipeline
+            .apply("Right", Create.of(KV.of("a", "x")))
+            .apply(
+                MapElements.into(
+                        TypeDescriptors.kvs(TypeDescriptors.strings(), TypeDescriptors.strings()))
+                    .via(kv -> KV.of(kv.getKey(), large)));
+
+    PAssert.that(Join.innerJoin(left, right)).containsInAnyOrder(KV.of("a", KV.of(1L, large)));
+    PAssert.that(Join.leftOuterJoin(left, right, "none"))
+        .containsInAnyOrder(KV.of("a", KV.of(1L, large)), KV.of("b", KV.of(2L, "none")));
+    pipeline.run().waitUntilFinish();
+  }
+
+  @Test
+  public void buildRejectsSideLargerThanThreshold() {
+    JavaSparkContext jsc = contextRule.getSparkContext();
+    JavaPairRDD<ByteArray, byte[]> side =
+        jsc.parallelizePairs(
+            Arrays.asList(
+                new Tuple2<>(new ByteArray(new byte[] {1}), new byte[8]),
+                new Tuple2<>(new ByteArray(new byte[] {2}), new byte[8])),
+            2);
+
+    assertNotNull(BroadcastHashJoins.build(jsc, side, 18L));
+    assertNull(BroadcastHashJoins.build(jsc, side, 17L));
+    assertNull(BroadcastHashJoins.build(jsc, side, 8L));
+  }
+
+  @Test
+  public void buildDoesNotCollectSideLargerThanThreshold() {
+    JavaSparkContext jsc = contextRule.getSparkContext();
+    List<Tuple2<ByteArray, byte[]>> elements = new ArrayList<>();
+    for (byte i = 0; i < 100; i++) {
+      elements.add(new Tuple2<>(new ByteArray(new byte[] {i}), new byte[8]));
+    }
+    // Each partition is within the threshold, but all of them together are not.
+    JavaPairRDD<ByteArray, byte[]> side = jsc.parallelizePairs(elements, 10);
+
+    jsc.setJobGroup("buildDoesNotCollectSideLargerThanThreshold", "build");
+    try {
+      assertNull(BroadcastHashJoins.build(jsc, side, 100L));
+    } finally {
+      jsc.clearJobGroup();
+    }
+    // Only the size of the side was computed, it was not collected.
+    assertEquals(
+        1,
+        jsc.statusTracker().getJobIdsForGroup("buildDoesNotCollectSideLargerThanThreshold").length);
+  }
+
+  /** Outputs many copies of each element. */
+  private static class ExplodeFn extends DoFn<KV<String, String>, KV<String, String>> {
+    @ProcessElement
+    public void processElement(ProcessContext c) {
+      for (int i = 0; i < 1000; i++) {
+        c.output(c.element());
+      }
+    }
+  }
+
+  private static Pipeline createPipeline(long broadcastJoinThresholdBytes) {
+    SparkPipelineOptions options =
+        contextRule.configure(PipelineOptionsFactory.create()).as(SparkPipelineOptions.class);
+    options.setRunner(SparkRunner.class);
+    options.setBroadcastJoinThresholdBytes(broadcastJoinThresholdBytes);
+    return Pipeline.create(options);
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.spark.translation;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import org.apache.beam.runners.core.construction.SerializablePipelineOptions;
+import org.apache.beam.runners.spark.SparkContextRule;
+import org.apache.beam.runners.spark.SparkPipelineOptions;
+import org.apache.beam.runners.spark.SparkRunner;
+import org.apache.beam.runners.spark.translation.SparkCombineFn.WindowedAccumulator;
+import org.apache.beam.runners.spark.util.ByteArray;
+import org.apache.beam.sdk.Pipeline;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.CoderException;
+import org.apache.beam.sdk.coders.CoderRegistry;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.coders.VarLongCoder;
+import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.apache.beam.sdk.testing.PAssert;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.Sum;
+import org.apache.beam.sdk.transforms.windowing.GlobalWindow;
+import org.apache.beam.sdk.transforms.windowing.SlidingWindows;
+import org.apache.beam.sdk.transforms.windowing.Window;
+import org.apache.beam.sdk.util.CoderUtils;
+import org.apache.beam.sdk.util.CombineFnUtil;
+import org.apache.beam.sdk.util.WindowedValue;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.TimestampedValue;
+import org.apache.beam.sdk.values.WindowingStrategy;
+import org.joda.time.Duration;
+import org.joda.time.Instant;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import scala.Tuple2;
+
+/** Tests for {@link SpillableCombiner} and the spillable combine per key of the Spark runner. */
+@RunWith(JUnit4.class)
+@SuppressWarnings({
+  "rawtypes", // TODO(https://github.com/apache/beam/issues/20447)
+  "unchecked"
+})
+public class SpillableCombinerTest {
+  private static final int KEYS = 20;
+  private static final int VALUES_PER_KEY = 10;
+
+  // Spill every few keys, so that most accumulators are merged from spill files.
+  @ClassRule
+  public static SparkContextRule contextRule =
+      new SparkContextRule(
+          "local[2]", KV.of("spark.shuffle.spill.numElementsForceSpillThreshold", "3"));
+
+  @Test
+  public void combinesPerKeyAcrossSpills() {
+    Pipeline pipeline = createPipeline();
+    List<KV<String, Long>> input = new ArrayList<>();
+    List<KV<String, Long>> expected = new ArrayList<>();
+    for (int key = 0; key < KEYS; key++) {
+      long sum = 0L;
+      for (long value = 0L; value < VALUES_PER_KEY; value++) {
+        input.add(KV.of("key" + key, value));
+        sum += value;
+      }
+      expected.add(KV.of("key" + key, sum));
+    }
+
+    PCollection<KV<String, Long>> sums = pipeline.apply(Create.of(input)).apply(Sum.longsPerKey());
+    PAssert.that(sums).containsInAnyOrder(expected);
+    pipeline.run().waitUntilFinish();
+  }
+
+  @Test
+  public void combinesPerKeyAndWindowAcrossSpills() {
+    Pipeline pipeline = createPipeline();
+    List<TimestampedValue<KV<String, Long>>> input = new ArrayList<>();
+    for (int key = 0; key < KEYS; key++) {
+      input.add(TimestampedValue.of(KV.of("key" + key, 1L), new Instant(0L)));
+      input.add(TimestampedValue.of(KV.of("key" + key, 2L), new Instant(15L)));
+    }
+
+    PCollection<KV<String, Long>> sums =
+        pipeline
+            .apply(Create.timestamped(input))
+            .apply(Window.into(SlidingWindows.of(Duration.millis(20)).every(Duration.millis(10))))
+            .apply(Sum.longsPerKey());
+    List<KV<String, Long>> expected = new ArrayList<>();
+    for (int key = 0; key < KEYS; key++) {
+      // The windows [-10, 10), [0, 20) and [10, 30).
+      expected.add(KV.of("key" + key, 1L));
+      expected.add(KV.of("key" + key, 3L));
+      expected.add(KV.of("key" + key, 2L));
+    }
+    PAssert.that(sums).containsInAnyOrder(expected);
+    pipeline.run().waitUntilFinish();
+  }
+
+  @Test
+  public void releasesMemoryWhenForcedToSpillAndWhenIterated() {
+    SparkCombineFn<KV<String, Long>, Long, long[], Long> combineFn =
+        SparkCombineFn.keyed(
+            CombineFnUtil.toFnWithContext(Sum.ofLongs()),
+            new SerializablePipelineOptions(PipelineOptionsFactory.create()),
+            Collections.emptyMap(),
+            WindowingStrategy.globalDefault());
+    Coder<WindowedAccumulator<KV<String, Long>, Long, long[], ?>> accumulatorCoder =
+        (Coder)
+            combineFn.accumulatorCoder(
+                (Coder) GlobalWindow.Coder.INSTANCE,
+                Sum.ofLongs().getAccumulatorCoder(CoderRegistry.createDefault(), VarLongCoder.of()),
+                WindowingStrategy.globalDefault());
+
+    List<Long> results =
+        contextRule
+            .getSparkContext()
+            .parallelize(Collections.singletonList(0), 1)
+            .flatMap(
+                unused -> {
+                  // Acquire memory as soon as possible, and never spill because of the number of
+                  // accumulators.
+                  SpillableCombiner<KV<String, Long>, Long, long[]> spilled =
+                      SpillableCombiner.create(combineFn, accumulatorCoder, 1L, Long.MAX_VALUE);
+                  SpillableCombiner<KV<String, Long>, Long, long[]> inMemory =
+                      SpillableCombiner.create(combineFn, accumulatorCoder, 1L, Long.MAX_VALUE);
+                  for (int i = 0; i < 10000; i++) {
+                    spilled.insertValue(encodedKey(i % KEYS), value(i % KEYS, 1L));
+                    inMemory.insertValue(encodedKey(i % KEYS), value(i % KEYS, 2L));
+                  }
+                  long spilledUsed = spilled.getUsed();
+                  long freed = spilled.spill(Long.MAX_VALUE, inMemory);
+                  long spilledUsedAfterSpill = spilled.getUsed();
+                  long inMemoryUsed = inMemory.getUsed();
+                  long spilledSum = sum(combineFn, spilled);
+                  long inMemorySum = sum(combineFn, inMemory);
+                  return Arrays.asList(
+                          spilledUsed,
+                          freed,
+                          spilledUsedAfterSpill,
+                          inMemoryUsed,
+                          inMemory.getUsed(),
+                          spilledSum,
+                          inMemorySum)
+                      .iterator();
+                })
+            .collect();
+
+    assertThat(results.get(0), greaterThan(0L));
+    assertEquals(results.get(0), results.get(1));
+    assertEquals(0L, (long) results.get(2));
+    assertThat(results.get(3), greaterThan(0L));
+    assertEquals(0L, (long) results.get(4));
+    assertEquals(10000L, (long) results.get(5));
+    assertEquals(20000L, (long) results.get(6));
+  }
+
+  private static ByteArray encodedKey(int key) throws CoderException {
+    return new ByteArray(CoderUtils.encodeToByteArray(StringUtf8Coder.of(), "key" + key));
+  }
+
+  private static WindowedValue<KV<String, Long>> value(int key, long value) {
+    return WindowedValue.valueInGlobalWindow(KV.of("key" + key, value));
+  }
+
+  /** Returns the sum of the outputs of all the accumulators of the provided combiner. */
+  private static long sum(
+      SparkCombineFn<KV<String, Long>, Long, long[], Long> combineFn,
+      SpillableCombiner<KV<String, Long>, Long, long[]> combiner) {
+    long sum = 0L;
+    Iterator<Tuple2<ByteArray, WindowedAccumulator<KV<String, Long>, Long, long[], ?>>>
+        accumulators = combiner.iterator();
+    while (accumulators.hasNext()) {
+      for (WindowedValue<Long> output : combineFn.extractOutput(accumulators.next()._2)) {
+        sum += output.getValue();
+      }
+    }
+    return sum;
+  }
+
+  private static Pipeline createPipeline() {
+    SparkPipelineOptions options =
+        contextRule.configure(PipelineOptionsFactory.create()).as(SparkPipelineOptions.class);
+    options.setRunner(SparkRunner.class);
+    options.setSpillableCombine(true);
+    return Pipeline.create(options);
+  }
+}
@@ -28,6 +28,7 @@ import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.file.Files;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.beam.runners.spark.SparkPipelineOptions;
 import org.apache.beam.runners.spark.StreamingTest;
@@ -73,6 +74,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 
 /**
  * A test suite to test Spark runner implementation of triggers and panes.
@@ -88,6 +90,7 @@ public class CreateStreamTest implements Serializable {
 
   @Rule public final transient TestPipeline p = TestPipeline.fromOptions(streamingOptions());
   @Rule public final transient ExpectedException thrown = ExpectedException.none();
+  @Rule public final transient TemporaryFolder temporaryFolder = new TemporaryFolder();
 
   @Test
   public void testLateDataAccumulating() throws IOException {
@@ -205,6 +208,49 @@ public class CreateStreamTest implements Serializable {
     p.run();
   }
 
+  @Test
+  public void testStateInStateStore() throws IOException {
+    SparkPipelineOptions options = p.getOptions().as(SparkPipelineOptions.class);
+    options.setStateStoreDirectory(temporaryFolder.getRoot().getPath());
+    options.setStateStoreSnapshotInterval(2);
+    CreateStream<KV<String, Integer>> source =
+        CreateStream.of(KvCoder.of(StringUtf8Coder.of(), VarIntCoder.of()), batchDuration())
+            .nextBatch(
+                TimestampedValue.of(KV.of("a", 1), new Instant(100)),
+                TimestampedValue.of(KV.of("b", 2), new Instant(100)))
+            .advanceWatermarkForNextBatch(new Instant(500L))
+            .nextBatch(TimestampedValue.of(KV.of("a", 3), new Instant(200)))
+            .advanceWatermarkForNextBatch(new Instant(1001L))
+            .nextBatch(TimestampedValue.of(KV.of("b", 4), new Instant(1100)))
+            .advanceNextBatchWatermarkToInfinity()
+            .emptyBatch();
+
+    PCollection<KV<String, Integer>> sums =
+        p.apply(source)
+            .apply(Window.into(FixedWindows.of(Duration.millis(1000L))))
+            .apply(GroupByKey.create())
+            .apply(
+                ParDo.of(
+                    new DoFn<KV<String, Iterable<Integer>>, KV<String, Integer>>() {
+                      @ProcessElement
+                      public void process(ProcessContext context) {
+                        int sum = 0;
+                        for (Integer value : context.element().getValue()) {
+                          sum += value;
+                        }
+                        context.output(KV.of(context.element().getKey(), sum));
+                      }
+                    }));
+
+    PAssert.that(sums).containsInAnyOrder(KV.of("a", 4), KV.of("b", 2), KV.of("b", 4));
+
+    p.run();
+    assertThat(
+        Files.walk(temporaryFolder.getRoot().toPath())
+            .anyMatch(file -> file.toString().endsWith(".snapshot")),
+        is(true));
+  }
+
   @Test
   public void testFirstElementLate() throws IOException {
     Instant lateElementTimestamp = new Instant(-1_000_000);
@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.jmh.coders;
+
+import com.google.auto.value.AutoValue;
+import java.util.List;
+import org.apache.beam.sdk.schemas.AutoValueSchema;
+import org.apache.beam.sdk.schemas.annotations.DefaultSchema;
+
+/** An {@link AutoValue} used as benchmark element for schema coders. */
+@DefaultSchema(AutoValueSchema.class)
+@AutoValue
+public abstract class BenchmarkAutoValue {
+  public abstract String getName();
+
+  public abstract long getId();
+
+  public abstract double getScore();
+
+  public abstract List<String> getTags();
+
+  public static BenchmarkAutoValue create(String name, long id, double score, List<String> tags) {
+    return new AutoValue_BenchmarkAutoValue(name, id, score, tags);
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.jmh.coders;
+
+import java.io.Serializable;
+import java.util.List;
+import org.apache.beam.sdk.schemas.JavaFieldSchema;
+import org.apache.beam.sdk.schemas.annotations.DefaultSchema;
+
+/** A plain Java object used as benchmark element for schema, Avro and Java serialization coders. */
+@DefaultSchema(JavaFieldSchema.class)
+public class BenchmarkPojo implements Serializable {
+  public String name;
+  public long id;
+  public double score;
+  public List<String> tags;
+
+  public BenchmarkPojo() {}
+
+  public BenchmarkPojo(String name, long id, double score, List<String> tags) {
+    this.name = name;
+    this.id = id;
+    this.score = score;
+    this.tags = tags;
+  }
+}
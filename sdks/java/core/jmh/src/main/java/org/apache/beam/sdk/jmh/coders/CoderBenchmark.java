@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.jmh.coders;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkState;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.util.CoderUtils;
+import org.apache.beam.sdk.util.ExposedByteArrayOutputStream;
+import org.apache.beam.sdk.util.common.ElementByteSizeObserver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for encoding, decoding, byte size observation and structural values of the built-in
+ * coders, reported in nanoseconds per element.
+ *
+ * <p>Each invocation processes {@link #ELEMENTS_PER_INVOCATION} elements generated from a fixed
+ * seed, so results are comparable across runs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CoderBenchmark {
+  static final int ELEMENTS_PER_INVOCATION = 1024;
+
+  @State(Scope.Thread)
+  public static class CoderState {
+    @Param public CoderCase coderCase;
+
+    @Param public SizeDistribution sizeDistribution;
+
+    Coder<Object> coder;
+    List<Object> elements;
+    /** Each element encoded in the outer context, as produced by {@link CoderUtils}. */
+    List<byte[]> encodedElements;
+    /** All elements encoded in the nested context back to back, as on the data plane. */
+    ByteBuffer nestedEncodedElements;
+
+    ExposedByteArrayOutputStream outputStream;
+    ByteBuffer outputBuffer;
+    CountingObserver observer;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+      coder = (Coder<Object>) coderCase.coder();
+      Random random = new Random(ELEMENTS_PER_INVOCATION);
+      elements = new ArrayList<>(ELEMENTS_PER_INVOCATION);
+      encodedElements = new ArrayList<>(ELEMENTS_PER_INVOCATION);
+      outputStream = new ExposedByteArrayOutputStream();
+      for (int i = 0; i < ELEMENTS_PER_INVOCATION; i++) {
+        Object element = coderCase.createElement(random, sizeDistribution);
+        elements.add(element);
+        encodedElements.add(CoderUtils.encodeToByteArray(coder, element));
+        coder.encode(element, outputStream);
+      }
+      nestedEncodedElements = ByteBuffer.wrap(outputStream.toByteArray()).asReadOnlyBuffer();
+      outputStream.reset();
+      outputBuffer = ByteBuffer.allocate(nestedEncodedElements.capacity());
+      observer = new CountingObserver();
+    }
+  }
+
+  /** An {@link ElementByteSizeObserver} that sums up all reported sizes. */
+  static class CountingObserver extends ElementByteSizeObserver {
+    long totalBytes;
+
+    @Override
+    protected void reportElementSize(long elementByteSize) {
+      totalBytes += elementByteSize;
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ELEMENTS_PER_INVOCATION)
+  public void encodeToByteArray(CoderState state, Blackhole blackhole) throws Exception {
+    for (Object element : state.elements) {
+      blackhole.consume(CoderUtils.encodeToByteArray(state.coder, element));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ELEMENTS_PER_INVOCATION)
+  public void decodeFromByteArray(CoderState state, Blackhole blackhole) throws Exception {
+    for (byte[] encoded : state.encodedElements) {
+      blackhole.consume(CoderUtils.decodeFromByteArray(state.coder, encoded));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ELEMENTS_PER_INVOCATION)
+  public void encodeNestedToStream(CoderState state) throws Exception {
+    state.outputStream.reset();
+    for (Object element : state.elements) {
+      state.coder.encode(element, state.outputStream);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ELEMENTS_PER_INVOCATION)
+  public void encodeNestedToBuffer(CoderState state) throws Exception {
+    state.outputBuffer.clear();
+    for (Object element : state.elements) {
+      state.coder.encodeToBuffer(element, state.outputBuffer);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ELEMENTS_PER_INVOCATION)
+  public void decodeNestedFromBuffer(CoderState state, Blackhole blackhole) throws Exception {
+    ByteBuffer buffer = state.nestedEncodedElements.duplicate();
+    while (buffer.hasRemaining()) {
+      blackhole.consume(state.coder.decodeFromBuffer(buffer));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ELEMENTS_PER_INVOCATION)
+  public void registerByteSizeObserver(CoderState state) throws Exception {
+    for (Object element : state.elements) {
+      state.coder.registerByteSizeObserver(element, state.observer);
+      state.observer.advance();
+    }
+    checkState(state.observer.totalBytes > 0);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ELEMENTS_PER_INVOCATION)
+  public void structuralValue(CoderState state, Blackhole blackhole) throws Exception {
+    for (Object element : state.elements) {
+      blackhole.consume(state.coder.structuralValue(element));
+    }
+  }
+}
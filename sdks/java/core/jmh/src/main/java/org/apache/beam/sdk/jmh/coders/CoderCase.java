@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.jmh.coders;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.beam.sdk.coders.AvroCoder;
+import org.apache.beam.sdk.coders.ByteArrayCoder;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.IterableCoder;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.coders.NullableCoder;
+import org.apache.beam.sdk.coders.RowCoder;
+import org.apache.beam.sdk.coders.SerializableCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.coders.VarLongCoder;
+import org.apache.beam.sdk.schemas.NoSuchSchemaException;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.schemas.Schema.FieldType;
+import org.apache.beam.sdk.schemas.SchemaRegistry;
+import org.apache.beam.sdk.transforms.windowing.IntervalWindow;
+import org.apache.beam.sdk.transforms.windowing.PaneInfo;
+import org.apache.beam.sdk.util.WindowedValue;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.Row;
+import org.joda.time.Duration;
+import org.joda.time.Instant;
+
+/** The coders covered by {@link CoderBenchmark} together with a generator of their elements. */
+public enum CoderCase {
+  VAR_INT {
+    @Override
+    Coder<?> coder() {
+      return VarIntCoder.of();
+    }
+
+    @Override
+    Object createElement(Random random, SizeDistribution sizes) {
+      return random.nextInt(1 << Math.min(30, sizes.nextSize(random)));
+    }
+  },
+  VAR_LONG {
+    @Override
+    Coder<?> coder() {
+      return VarLongCoder.of();
+    }
+
+    @Override
+    Object createElement(Random random, SizeDistribution sizes) {
+      return random.nextLong() >>> Math.max(0, 63 - sizes.nextSize(random));
+    }
+  },
+  STRING_UTF8 {
+    @Override
+    Coder<?> coder() {
+      return StringUtf8Coder.of();
+    }
+
+    @Override
+    Object createElement(Random random, SizeDistribution sizes) {
+      return randomString(random, sizes.nextSize(random));
+    }
+  },
+  BYTE_ARRAY {
+    @Override
+    Coder<?> coder() {
+      return ByteArrayCoder.of();
+    }
+
+    @Override
+    Object createElement(Random random, SizeDistribution sizes) {
+      byte[] bytes = new byte[sizes.nextSize(random)];
+      random.nextBytes(bytes);
+      return bytes;
+    }
+  },
+  KV_STRING_LONG {
+    @Override
+    Coder<?> coder() {
+      return KvCoder.of(StringUtf8Coder.of(), VarLongCoder.of());
+    }
+
+    @Override
+    Object createElement(Random random, SizeDistribution sizes) {
+      return KV.of(randomString(random, sizes.nextSize(random)), random.nextLong());
+    }
+  },
+  ITERABLE_LONG {
+    @Override
+    Coder<?> coder() {
+      return IterableCoder.of(VarLongCoder.of());
+    }
+
+    @Override
+    Object createElement(Random random, SizeDistribution sizes) {
+      int size = sizes.nextSize(random);
+      List<Long> values = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        values.add(random.nextLong());
+      }
+      return values;
+    }
+  },
+  NULLABLE_STRING {
+    @Override
+    Coder<?> coder() {
+      return NullableCoder.of(StringUtf8Coder.of());
+    }
+
+    @Override
+    Object createElement(Random random, SizeDistribution sizes) {
+      return random.nextInt(10) == 0 ? null : randomString(random, sizes.nextSize(random));
+    }
+  },
+  ROW {
+    @Override
+    Coder<?> coder() {
+      return RowCoder.of(ROW_SCHEMA);
+    }
+
+    @Override
+    Object createElement(Random random, SizeDistribution sizes) {
+      return Row.withSchema(ROW_SCHEMA)
+          .addValues(
+              randomString(random, sizes.nextSize(random)),
+              random.nextLong(),
+              random.nextDouble(),
+              randomTags(random, sizes),
+              random.nextBoolean() ? null : randomString(random, sizes.nextSize(random)))
+          .build();
+    }
+  },
+  SCHEMA_POJO {
+    @Override
+    Coder<?> coder() {
+      return schemaCoder(BenchmarkPojo.class);
+    }
+
+    @Override
+    Object createElement(Random random, SizeDistribution sizes) {
+      return randomPojo(random, sizes);
+    }
+  },
+  SCHEMA_AUTO_VALUE {
+    @Override
+    Coder<?> coder() {
+      return schemaCoder(BenchmarkAutoValue.class);
+    }
+
+    @Override
+    Object createElement(Random random, SizeDistribution sizes) {
+      return BenchmarkAutoValue.create(
+          randomString(random, sizes.nextSize(random)),
+          random.nextLong(),
+          random.nextDouble(),
+          randomTags(random, sizes));
+    }
+  },
+  AVRO {
+    @Override
+    Coder<?> coder() {
+      return AvroCoder.of(BenchmarkPojo.class);
+    }
+
+    @Override
+    Object createElement(Random random, SizeDistribution sizes) {
+      return randomPojo(random, sizes);
+    }
+  },
+  SERIALIZABLE {
+    @Override
+    Coder<?> coder() {
+      return SerializableCoder.of(BenchmarkPojo.class);
+    }
+
+    @Override
+    Object createElement(Random random, SizeDistribution sizes) {
+      return randomPojo(random, sizes);
+    }
+  },
+  FULL_WINDOWED_VALUE {
+    @Override
+    Coder<?> coder() {
+      return WindowedValue.getFullCoder(
+          KvCoder.of(StringUtf8Coder.of(), VarLongCoder.of()), IntervalWindow.getCoder());
+    }
+
+    @Override
+    Object createElement(Random random, SizeDistribution sizes) {
+      Instant timestamp = new Instant(random.nextInt(Integer.MAX_VALUE));
+      return WindowedValue.of(
+          KV.of(randomString(random, sizes.nextSize(random)), random.nextLong()),
+          timestamp,
+          new IntervalWindow(timestamp, WINDOW_SIZE),
+          PaneInfo.NO_FIRING);
+    }
+  },
+  VALUE_ONLY_WINDOWED_VALUE {
+    @Override
+    Coder<?> coder() {
+      return WindowedValue.getValueOnlyCoder(KvCoder.of(StringUtf8Coder.of(), VarLongCoder.of()));
+    }
+
+    @Override
+    Object createElement(Random random, SizeDistribution sizes) {
+      return WindowedValue.valueInGlobalWindow(
+          KV.of(randomString(random, sizes.nextSize(random)), random.nextLong()));
+    }
+  };
+
+  private static final Duration WINDOW_SIZE = Duration.standardMinutes(1);
+
+  private static final Schema ROW_SCHEMA =
+      Schema.builder()
+          .addStringField("name")
+          .addInt64Field("id")
+          .addDoubleField("score")
+          .addArrayField("tags", FieldType.STRING)
+          .addNullableField("comment", FieldType.STRING)
+          .build();
+
+  /** Returns the coder under benchmark. */
+  abstract Coder<?> coder();
+
+  /** Returns a new element of the coder's type whose variable parts follow {@code sizes}. */
+  abstract Object createElement(Random random, SizeDistribution sizes);
+
+  private static <T> Coder<T> schemaCoder(Class<T> clazz) {
+    try {
+      return SchemaRegistry.createDefault().getSchemaCoder(clazz);
+    } catch (NoSuchSchemaException e) {
+      throw new IllegalStateException("Unable to infer a schema for " + clazz, e);
+    }
+  }
+
+  private static BenchmarkPojo randomPojo(Random random, SizeDistribution sizes) {
+    return new BenchmarkPojo(
+        randomString(random, sizes.nextSize(random)),
+        random.nextLong(),
+        random.nextDouble(),
+        randomTags(random, sizes));
+  }
+
+  private static List<String> randomTags(Random random, SizeDistribution sizes) {
+    // Tags are short, so only their count follows the size distribution.
+    int count = sizes.nextSize(random) / 8;
+    List<String> tags = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      tags.add(randomString(random, 8));
+    }
+    return tags;
+  }
+
+  private static String randomString(Random random, int length) {
+    StringBuilder builder = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      // Mostly ASCII with the occasional multi-byte character.
+      builder.append(
+          random.nextInt(32) == 0
+              ? (char) (0x400 + random.nextInt(0x100))
+              : (char) ('a' + random.nextInt(26)));
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.jmh.coders;
+
+import java.util.Random;
+
+/**
+ * Distributions of the variable sized parts of benchmarked elements, such as string lengths and
+ * iterable sizes.
+ */
+public enum SizeDistribution {
+  /** Sizes close to a handful of bytes, e.g. identifiers and small counters. */
+  SMALL(8, 0.0),
+  /** Sizes of typical records, a few hundred bytes. */
+  MEDIUM(256, 0.0),
+  /** Mostly small sizes with a long tail of large outliers, as seen with real keys and payloads. */
+  SKEWED(32, 0.05);
+
+  private static final int OUTLIER_FACTOR = 128;
+
+  private final int meanSize;
+  private final double outlierProbability;
+
+  SizeDistribution(int meanSize, double outlierProbability) {
+    this.meanSize = meanSize;
+    this.outlierProbability = outlierProbability;
+  }
+
+  /** Returns the next size, drawn from an exponential distribution around the mean size. */
+  public int nextSize(Random random) {
+    int mean = meanSize;
+    if (random.nextDouble() < outlierProbability) {
+      mean *= OUTLIER_FACTOR;
+    }
+    return (int) Math.round(-mean * Math.log(1.0 - random.nextDouble()));
+  }
+}
@@ -0,0 +1,26 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Benchmarks for the built-in {@link org.apache.beam.sdk.coders.Coder coders}.
+ *
+ * <p>All benchmarks process a batch of elements per invocation and report their score per element.
+ * Run them with {@code ./gradlew :sdks:java:core:jmh:jmh -Pbenchmark=CoderBenchmark}; the {@code
+ * gc.alloc.rate.norm} row of the output is the number of bytes allocated per element.
+ */
+package org.apache.beam.sdk.jmh.coders;
@@ -92,6 +92,9 @@ public @interface Experimental {
     /** Experimental feature related to making the encoded element type available from a Coder. */
     CODER_TYPE_ENCODING,
 
+    /** Experimental feature related to encoding and decoding with {@link java.nio.ByteBuffer}. */
+    CODER_BUFFER,
+
     /**
      * Experimental APIs related to <a href="https://s.apache.org/context-fn">contextful
      * closures</a>.
@@ -21,6 +21,7 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.io.ByteStreams;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.primitives.Longs;
 
@@ -47,6 +48,18 @@ class BitConverters {
     return (b1 & 255) << 24 | (b2 & 255) << 16 | (b3 & 255) << 8 | (b4 & 255);
   }
 
+  static int readBigEndianInt(ByteBuffer in) throws IOException {
+    if (in.remaining() < 4) {
+      throw new EOFException();
+    }
+    // Read byte-wise so that the result does not depend on the byte order of the buffer.
+    int b1 = in.get();
+    int b2 = in.get();
+    int b3 = in.get();
+    int b4 = in.get();
+    return (b1 & 255) << 24 | (b2 & 255) << 16 | (b3 & 255) << 8 | (b4 & 255);
+  }
+
   static short readBigEndianShort(InputStream in) throws IOException {
     int b1 = in.read();
     int b2 = in.read();
@@ -70,6 +83,13 @@ class BitConverters {
     out.write((byte) value);
   }
 
+  static void writeBigEndianInt(int value, ByteBuffer out) {
+    out.put((byte) (value >>> 24));
+    out.put((byte) (value >>> 16));
+    out.put((byte) (value >>> 8));
+    out.put((byte) value);
+  }
+
   static void writeBigEndianShort(short value, OutputStream out) throws IOException {
     out.write((byte) (value >> 8));
     out.write((byte) value);
@@ -24,11 +24,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
 import org.apache.beam.sdk.PipelineRunner;
 import org.apache.beam.sdk.annotations.Experimental;
 import org.apache.beam.sdk.annotations.Experimental.Kind;
+import org.apache.beam.sdk.util.ByteBufferInputStream;
+import org.apache.beam.sdk.util.ByteBufferOutputStream;
 import org.apache.beam.sdk.util.common.ElementByteSizeObserver;
 import org.apache.beam.sdk.values.TypeDescriptor;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Joiner;
@@ -159,6 +162,42 @@ public abstract class Coder<T> implements Serializable {
     return decode(inStream);
   }
 
+  /**
+   * Encodes the given value of type {@code T} into the given {@link ByteBuffer}, starting at its
+   * current position. The encoding is identical to the one produced by {@link #encode(Object,
+   * OutputStream)}. On success, the position of the buffer is advanced past the encoded value.
+   *
+   * <p>By default, wraps the buffer in an {@link OutputStream} and delegates to {@link
+   * #encode(Object, OutputStream)}. Coders may override this method to write into the buffer
+   * directly; a coder which overrides this method must keep it consistent with {@link
+   * #encode(Object, OutputStream)}.
+   *
+   * @throws java.nio.BufferOverflowException if the buffer does not have enough space remaining, in
+   *     which case the position of the buffer is undefined
+   * @throws IOException if writing to the buffer fails for some reason
+   * @throws CoderException if the value could not be encoded for some reason
+   */
+  @Experimental(Kind.CODER_BUFFER)
+  public void encodeToBuffer(T value, ByteBuffer buffer) throws CoderException, IOException {
+    encode(value, new ByteBufferOutputStream(buffer));
+  }
+
+  /**
+   * Decodes a value of type {@code T} from the given {@link ByteBuffer}, starting at its current
+   * position. On success, the position of the buffer is advanced past the decoded value.
+   *
+   * <p>By default, wraps the buffer in an {@link InputStream} and delegates to {@link
+   * #decode(InputStream)}. Coders may override this method to read from the buffer directly; a
+   * coder which overrides this method must keep it consistent with {@link #decode(InputStream)}.
+   *
+   * @throws IOException if reading from the buffer fails for some reason
+   * @throws CoderException if the value could not be decoded for some reason
+   */
+  @Experimental(Kind.CODER_BUFFER)
+  public T decodeFromBuffer(ByteBuffer buffer) throws CoderException, IOException {
+    return decode(new ByteBufferInputStream(buffer));
+  }
+
   /**
    * If this is a {@link Coder} for a parameterized type, returns the list of {@link Coder}s being
    * used for each of the parameters in the same order they appear within the parameterized type's
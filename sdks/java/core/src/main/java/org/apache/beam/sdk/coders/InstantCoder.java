@@ -22,6 +22,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UTFDataFormatException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import org.apache.beam.sdk.values.TypeDescriptor;
 import org.joda.time.Instant;
 
@@ -77,6 +80,30 @@ public class InstantCoder extends AtomicCoder<Instant> {
     return new Instant(shiftedMillis + Long.MIN_VALUE);
   }
 
+  @Override
+  public void encodeToBuffer(Instant value, ByteBuffer buffer) throws CoderException {
+    if (value == null) {
+      throw new CoderException("cannot encode a null Instant");
+    }
+    long shiftedMillis = value.getMillis() - Long.MIN_VALUE;
+    buffer.putLong(
+        buffer.order() == ByteOrder.BIG_ENDIAN ? shiftedMillis : Long.reverseBytes(shiftedMillis));
+  }
+
+  @Override
+  public Instant decodeFromBuffer(ByteBuffer buffer) throws CoderException {
+    long shiftedMillis;
+    try {
+      shiftedMillis = buffer.getLong();
+    } catch (BufferUnderflowException exn) {
+      throw new CoderException(exn);
+    }
+    if (buffer.order() != ByteOrder.BIG_ENDIAN) {
+      shiftedMillis = Long.reverseBytes(shiftedMillis);
+    }
+    return new Instant(shiftedMillis + Long.MIN_VALUE);
+  }
+
   @Override
   public void verifyDeterministic() {}
 
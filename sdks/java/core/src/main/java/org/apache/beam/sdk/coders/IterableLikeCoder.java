@@ -23,6 +23,7 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -30,6 +31,8 @@ import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
 import org.apache.beam.sdk.util.BufferedElementCountingOutputStream;
+import org.apache.beam.sdk.util.ByteBufferInputStream;
+import org.apache.beam.sdk.util.ByteBufferOutputStream;
 import org.apache.beam.sdk.util.VarInt;
 import org.apache.beam.sdk.util.common.ElementByteSizeObservableIterable;
 import org.apache.beam.sdk.util.common.ElementByteSizeObserver;
@@ -157,6 +160,47 @@ public abstract class IterableLikeCoder<T, IterableT extends Iterable<T>>
     }
   }
 
+  @Override
+  public void encodeToBuffer(IterableT iterable, ByteBuffer buffer)
+      throws IOException, CoderException {
+    if (!(iterable instanceof Collection)) {
+      // Unknown sizes are encoded in blocks which are staged by the counting stream.
+      encode(iterable, new ByteBufferOutputStream(buffer));
+      return;
+    }
+    Collection<T> collection = (Collection<T>) iterable;
+    BitConverters.writeBigEndianInt(collection.size(), buffer);
+    for (T elem : collection) {
+      elementCoder.encodeToBuffer(elem, buffer);
+    }
+  }
+
+  @Override
+  public IterableT decodeFromBuffer(ByteBuffer buffer) throws IOException, CoderException {
+    int size = BitConverters.readBigEndianInt(buffer);
+    if (size >= 0) {
+      List<T> elements = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        elements.add(elementCoder.decodeFromBuffer(buffer));
+      }
+      return decodeToIterable(elements);
+    }
+    List<T> elements = new ArrayList<>();
+    long count = VarInt.decodeLong(buffer);
+    while (count > 0L) {
+      elements.add(elementCoder.decodeFromBuffer(buffer));
+      --count;
+      if (count == 0L) {
+        count = VarInt.decodeLong(buffer);
+      }
+    }
+    if (count == 0) {
+      return decodeToIterable(elements);
+    } else {
+      return decodeToIterable(elements, count, new ByteBufferInputStream(buffer));
+    }
+  }
+
   @Override
   public List<? extends Coder<?>> getCoderArguments() {
     return Arrays.asList(elementCoder);
@@ -23,7 +23,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
+import org.apache.beam.sdk.util.ByteBufferInputStream;
+import org.apache.beam.sdk.util.ByteBufferOutputStream;
 import org.apache.beam.sdk.util.VarInt;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.io.ByteStreams;
@@ -64,6 +67,41 @@ public class LengthPrefixCoder<T> extends StructuredCoder<T> {
     return valueCoder.decode(ByteStreams.limit(inStream, size), Context.OUTER);
   }
 
+  @Override
+  public void encodeToBuffer(T value, ByteBuffer buffer) throws CoderException, IOException {
+    // The length prefix precedes the value, so the value still needs to be staged before it can
+    // be written into the buffer.
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    valueCoder.encode(value, bos, Context.OUTER);
+    VarInt.encode(bos.size(), buffer);
+    bos.writeTo(new ByteBufferOutputStream(buffer));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T decodeFromBuffer(ByteBuffer buffer) throws CoderException, IOException {
+    long size = VarInt.decodeLong(buffer);
+    if (size > buffer.remaining()) {
+      throw new CoderException(
+          String.format("Length prefix %d exceeds remaining %d bytes", size, buffer.remaining()));
+    }
+    // The common portable value coders encode their outer context as the raw bytes, so they can
+    // be read straight out of the buffer.
+    if (valueCoder instanceof StringUtf8Coder) {
+      return (T) StringUtf8Coder.readString(buffer, (int) size);
+    } else if (valueCoder instanceof ByteArrayCoder) {
+      byte[] bytes = new byte[(int) size];
+      buffer.get(bytes);
+      return (T) bytes;
+    }
+    // Otherwise hand the value coder a view of exactly the prefixed bytes instead of copying them.
+    ByteBuffer slice = buffer.slice();
+    slice.limit((int) size);
+    T value = valueCoder.decode(new ByteBufferInputStream(slice), Context.OUTER);
+    buffer.position(buffer.position() + (int) size);
+    return value;
+  }
+
   @Override
   public List<? extends Coder<?>> getCoderArguments() {
     return ImmutableList.of(valueCoder);
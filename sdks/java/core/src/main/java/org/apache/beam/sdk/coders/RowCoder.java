@@ -41,6 +41,15 @@ public class RowCoder extends SchemaCoder<Row> {
     SchemaCoder.overrideEncodingPositions(uuid, encodingPositions);
   }
 
+  /**
+   * Enables lazy decoding for the given schema. Rows decoded by a {@link RowCoder} for that schema
+   * decode primitive, string and byte-array fields only when they are first accessed, and are
+   * re-encoded by copying their original bytes. Must be called before the coder is first used.
+   */
+  public static void overrideLazyDecoding(UUID uuid, boolean lazyDecoding) {
+    RowCoderGenerator.overrideLazyDecoding(uuid, lazyDecoding);
+  }
+
   private RowCoder(Schema schema) {
     super(
         schema,
@@ -19,6 +19,7 @@ package org.apache.beam.sdk.coders;
 
 import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkState;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -27,6 +28,7 @@ import java.lang.reflect.Modifier;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import javax.annotation.Nullable;
 import org.apache.beam.sdk.annotations.Experimental;
@@ -34,8 +36,11 @@ import org.apache.beam.sdk.annotations.Experimental.Kind;
 import org.apache.beam.sdk.schemas.Schema;
 import org.apache.beam.sdk.schemas.Schema.Field;
 import org.apache.beam.sdk.schemas.Schema.FieldType;
+import org.apache.beam.sdk.schemas.Schema.TypeName;
 import org.apache.beam.sdk.schemas.SchemaCoder;
+import org.apache.beam.sdk.util.VarInt;
 import org.apache.beam.sdk.values.Row;
+import org.apache.beam.sdk.values.RowWithEncodedValues;
 import org.apache.beam.vendor.bytebuddy.v1_11_0.net.bytebuddy.ByteBuddy;
 import org.apache.beam.vendor.bytebuddy.v1_11_0.net.bytebuddy.description.modifier.FieldManifestation;
 import org.apache.beam.vendor.bytebuddy.v1_11_0.net.bytebuddy.description.modifier.Ownership;
@@ -58,6 +63,8 @@ import org.apache.beam.vendor.bytebuddy.v1_11_0.net.bytebuddy.implementation.byt
 import org.apache.beam.vendor.bytebuddy.v1_11_0.net.bytebuddy.matcher.ElementMatchers;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Maps;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Sets;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.io.ByteStreams;
 
 /**
  * A utility for automatically generating a {@link Coder} for {@link Row} objects corresponding to a
@@ -94,6 +101,12 @@ import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Maps;
  *   }
  * }
  * </code></pre>
+ *
+ * <p>If lazy decoding has been enabled for a schema with {@link #overrideLazyDecoding},
+ * fixed-width, varint and length-prefixed fields are not decoded by {@code decode}. Instead the
+ * generated coder returns a {@link RowWithEncodedValues} that remembers where each such field
+ * starts and decodes it on first access. Such a row is written back verbatim when it is re-encoded
+ * by the same coder.
  */
 @Experimental(Kind.SCHEMAS)
 @SuppressWarnings({
@@ -115,11 +128,25 @@ public abstract class RowCoderGenerator {
   private static final Map<UUID, Coder<Row>> GENERATED_CODERS = Maps.newConcurrentMap();
   private static final Map<UUID, Map<String, Integer>> ENCODING_POSITION_OVERRIDES =
       Maps.newConcurrentMap();
+  private static final Set<UUID> LAZY_DECODING_SCHEMAS = Sets.newConcurrentHashSet();
 
   public static void overrideEncodingPositions(UUID uuid, Map<String, Integer> encodingPositions) {
     ENCODING_POSITION_OVERRIDES.put(uuid, encodingPositions);
   }
 
+  /**
+   * Enables or disables lazy decoding of rows for the schema with the given id. Like {@link
+   * #overrideEncodingPositions}, this must be called before the coder for the schema is first
+   * generated.
+   */
+  public static void overrideLazyDecoding(UUID uuid, boolean lazyDecoding) {
+    if (lazyDecoding) {
+      LAZY_DECODING_SCHEMAS.add(uuid);
+    } else {
+      LAZY_DECODING_SCHEMAS.remove(uuid);
+    }
+  }
+
   @SuppressWarnings("unchecked")
   public static Coder<Row> generate(Schema schema) {
     // Using ConcurrentHashMap::computeIfAbsent here would deadlock in case of nested
@@ -235,11 +262,15 @@ public abstract class RowCoderGenerator {
       Schema schema, DynamicType.Builder<Coder> builder) {
     boolean hasNullableFields =
         schema.getFields().stream().map(Field::getType).anyMatch(FieldType::getNullable);
+    boolean lazyDecoding =
+        schema.getUUID() != null && LAZY_DECODING_SCHEMAS.contains(schema.getUUID());
     return builder
         .defineMethod("getSchema", Schema.class, Visibility.PRIVATE, Ownership.STATIC)
         .intercept(FixedValue.reference(schema))
         .defineMethod("hasNullableFields", boolean.class, Visibility.PRIVATE, Ownership.STATIC)
         .intercept(FixedValue.reference(hasNullableFields))
+        .defineMethod("lazyDecoding", boolean.class, Visibility.PRIVATE, Ownership.STATIC)
+        .intercept(FixedValue.reference(lazyDecoding))
         .method(ElementMatchers.named("encode"))
         .intercept(new EncodeInstruction())
         .method(ElementMatchers.named("decode"))
@@ -313,6 +344,12 @@ public abstract class RowCoderGenerator {
       checkState(value.getFieldCount() == value.getSchema().getFieldCount());
       checkState(encodingPosToIndex.length == value.getFieldCount());
 
+      // A lazily-decoded row produced by this coder still holds its original encoding.
+      if (value instanceof RowWithEncodedValues
+          && ((RowWithEncodedValues) value).tryWriteEncoded(coders, outputStream)) {
+        return;
+      }
+
       // Encode the field count. This allows us to handle compatible schema changes.
       VAR_INT_CODER.encode(value.getFieldCount(), outputStream);
 
@@ -394,6 +431,13 @@ public abstract class RowCoderGenerator {
                     .read(),
                 // read the InputStream. (offset 1, as offset 0 is always "this").
                 MethodVariableAccess.REFERENCE.loadFrom(1),
+                // lazyDecoding
+                MethodInvocation.invoke(
+                    implementationContext
+                        .getInstrumentedType()
+                        .getDeclaredMethods()
+                        .filter(ElementMatchers.named("lazyDecoding"))
+                        .getOnly()),
                 MethodInvocation.invoke(
                     LOADED_TYPE
                         .getDeclaredMethods()
@@ -414,8 +458,15 @@ public abstract class RowCoderGenerator {
     // The decode method of the generated Coder delegates to this method to evaluate all of the
     // per-field Coders.
     static Row decodeDelegate(
-        Schema schema, Coder[] coders, int[] encodingPosToIndex, InputStream inputStream)
+        Schema schema,
+        Coder[] coders,
+        int[] encodingPosToIndex,
+        InputStream inputStream,
+        boolean lazyDecoding)
         throws IOException {
+      if (lazyDecoding) {
+        return decodeLazily(schema, coders, encodingPosToIndex, inputStream);
+      }
       int fieldCount = VAR_INT_CODER.decode(inputStream);
 
       BitSet nullFields = NULL_LIST_CODER.decode(inputStream);
@@ -445,5 +496,145 @@ public abstract class RowCoderGenerator {
       // some processing by simply transferring ownership of the list to the Row.
       return Row.withSchema(schema).attachValues(fieldValues);
     }
+
+    // Reads the row through a RecordingInputStream so that the complete encoding is retained.
+    // Fields whose encoded length can be determined cheaply are copied without being decoded, and
+    // their offsets are handed to the RowWithEncodedValues so they can be decoded on access. All
+    // other fields are decoded eagerly.
+    private static Row decodeLazily(
+        Schema schema, Coder[] coders, int[] encodingPosToIndex, InputStream inputStream)
+        throws IOException {
+      RecordingInputStream recording = new RecordingInputStream(inputStream);
+      int fieldCount = VAR_INT_CODER.decode(recording);
+
+      BitSet nullFields = NULL_LIST_CODER.decode(recording);
+      Object[] fieldValues = new Object[coders.length];
+      Coder[] lazyCoders = new Coder[coders.length];
+      int[] lazyOffsets = new int[coders.length];
+      for (int encodingPos = 0;
+          encodingPos < fieldCount && encodingPos < coders.length;
+          ++encodingPos) {
+        int rowIndex = encodingPosToIndex[encodingPos];
+        if (nullFields.get(rowIndex)) {
+          continue;
+        }
+        int offset = recording.size();
+        if (skipField(schema.getField(rowIndex).getType().getTypeName(), recording)) {
+          lazyCoders[rowIndex] = coders[encodingPos];
+          lazyOffsets[rowIndex] = offset;
+        } else {
+          fieldValues[rowIndex] = coders[encodingPos].decode(recording);
+        }
+      }
+      // The recorded bytes can only be reused if they are a complete encoding under this coder.
+      // After a schema change the field count differs and the row must be re-encoded.
+      return new RowWithEncodedValues(
+          schema,
+          fieldValues,
+          lazyCoders,
+          lazyOffsets,
+          recording.buffer(),
+          recording.size(),
+          fieldCount == coders.length ? coders : null);
+    }
+
+    // Consumes the encoding of a field of the given type without decoding it. Returns false,
+    // consuming nothing, if the type has no cheaply skippable encoding.
+    private static boolean skipField(TypeName typeName, RecordingInputStream in)
+        throws IOException {
+      switch (typeName) {
+        case BYTE:
+        case BOOLEAN:
+          in.record(1);
+          return true;
+        case INT16:
+          in.record(2);
+          return true;
+        case FLOAT:
+          in.record(4);
+          return true;
+        case DOUBLE:
+        case DATETIME:
+          in.record(8);
+          return true;
+        case INT32:
+        case INT64:
+          in.recordVarInt();
+          return true;
+        case STRING:
+        case BYTES:
+          in.record(VarInt.decodeInt(in));
+          return true;
+        default:
+          return false;
+      }
+    }
+  }
+
+  // An InputStream that keeps a copy of every byte read from the underlying stream.
+  private static class RecordingInputStream extends InputStream {
+    private final InputStream in;
+    private byte[] buffer = new byte[64];
+    private int size = 0;
+
+    RecordingInputStream(InputStream in) {
+      this.in = in;
+    }
+
+    byte[] buffer() {
+      return buffer;
+    }
+
+    int size() {
+      return size;
+    }
+
+    private void ensureCapacity(int additional) {
+      if (size + additional > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + additional));
+      }
+    }
+
+    // Reads exactly length bytes into the recording.
+    void record(int length) throws IOException {
+      if (length < 0) {
+        throw new CoderException("Invalid encoded field length " + length);
+      }
+      ensureCapacity(length);
+      ByteStreams.readFully(in, buffer, size, length);
+      size += length;
+    }
+
+    // Reads a single varint into the recording.
+    void recordVarInt() throws IOException {
+      int b;
+      do {
+        b = read();
+        if (b < 0) {
+          throw new EOFException("End of stream reached while reading a varint");
+        }
+      } while ((b & 0x80) != 0);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = in.read();
+      if (b >= 0) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) b;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = in.read(b, off, len);
+      if (read > 0) {
+        ensureCapacity(read);
+        System.arraycopy(b, off, buffer, size, read);
+        size += read;
+      }
+      return read;
+    }
   }
 }
@@ -22,6 +22,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UTFDataFormatException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import org.apache.beam.sdk.util.ExposedByteArrayOutputStream;
 import org.apache.beam.sdk.util.StreamUtils;
@@ -61,6 +63,42 @@ public class StringUtf8Coder extends AtomicCoder<String> {
     return new String(bytes, StandardCharsets.UTF_8);
   }
 
+  private static String readString(ByteBuffer buffer) throws IOException {
+    int len = VarInt.decodeInt(buffer);
+    if (len < 0) {
+      throw new CoderException("Invalid encoded string length: " + len);
+    }
+    return readString(buffer, len);
+  }
+
+  /**
+   * Reads {@code len} bytes of UTF-8 from the buffer, which is how a string encoded in the outer
+   * context is laid out once its length is known (e.g. inside a {@link LengthPrefixCoder}).
+   */
+  static String readString(ByteBuffer buffer, int len) throws IOException {
+    if (len > buffer.remaining()) {
+      throw new EOFException(
+          String.format(
+              "Encoded string length %d exceeds remaining %d bytes", len, buffer.remaining()));
+    }
+    String value;
+    if (buffer.hasArray()) {
+      // Decode straight out of the backing array, avoiding an intermediate copy.
+      value =
+          new String(
+              buffer.array(),
+              buffer.arrayOffset() + buffer.position(),
+              len,
+              StandardCharsets.UTF_8);
+      buffer.position(buffer.position() + len);
+    } else {
+      byte[] bytes = new byte[len];
+      buffer.get(bytes);
+      value = new String(bytes, StandardCharsets.UTF_8);
+    }
+    return value;
+  }
+
   private StringUtf8Coder() {}
 
   @Override
@@ -106,6 +144,27 @@ public class StringUtf8Coder extends AtomicCoder<String> {
     }
   }
 
+  @Override
+  public void encodeToBuffer(String value, ByteBuffer buffer) throws CoderException {
+    if (value == null) {
+      throw new CoderException("cannot encode a null String");
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    VarInt.encode(bytes.length, buffer);
+    buffer.put(bytes);
+  }
+
+  @Override
+  public String decodeFromBuffer(ByteBuffer buffer) throws IOException {
+    try {
+      return readString(buffer);
+    } catch (EOFException | BufferUnderflowException exn) {
+      // These exceptions correspond to decoding problems, so change
+      // what kind of exception they're branded as.
+      throw new CoderException(exn);
+    }
+  }
+
   @Override
   public void verifyDeterministic() {}
 
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.List;
 import org.apache.beam.sdk.util.VarInt;
@@ -68,6 +69,23 @@ public class VarLongCoder extends StructuredCoder<Long> {
     return Collections.emptyList();
   }
 
+  @Override
+  public void encodeToBuffer(Long value, ByteBuffer buffer) throws CoderException {
+    if (value == null) {
+      throw new CoderException("cannot encode a null Long");
+    }
+    VarInt.encode(value, buffer);
+  }
+
+  @Override
+  public Long decodeFromBuffer(ByteBuffer buffer) throws IOException, CoderException {
+    try {
+      return VarInt.decodeLong(buffer);
+    } catch (EOFException exn) {
+      throw new CoderException(exn);
+    }
+  }
+
   @Override
   public void verifyDeterministic() {}
 
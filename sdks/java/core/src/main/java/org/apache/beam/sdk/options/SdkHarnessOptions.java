@@ -29,6 +29,7 @@ import org.apache.beam.sdk.annotations.Experimental.Kind;
 import org.apache.beam.sdk.util.InstanceBuilder;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
 import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /** Options that are used to control configuration of the SDK harness. */
 @Experimental(Kind.PORTABILITY)
@@ -151,6 +152,52 @@ public interface SdkHarnessOptions extends PipelineOptions {
 
   void setMaxCacheMemoryUsagePercent(@NonNegative float value);
 
+  /**
+   * Size (in MB) of an optional off-heap tier of the process wide cache within the SDK harness. The
+   * off-heap tier stores encoded pages of side inputs outside of the Java heap so that they can be
+   * decoded again without fetching them from the runner once the decoded values have been evicted
+   * from the on-heap cache. If unset or 0, the off-heap tier is disabled.
+   *
+   * <p>CAUTION: Direct memory used by this tier counts towards {@code -XX:MaxDirectMemorySize}.
+   */
+  @Description(
+      "The size (in MB) of the off-heap tier of the process wide cache within the SDK harness. The "
+          + "off-heap tier stores encoded side input pages outside of the Java heap. If unset or 0, "
+          + "the off-heap tier is disabled.")
+  @Default.Integer(0)
+  @NonNegative
+  int getMaxOffHeapCacheMemoryUsageMb();
+
+  void setMaxOffHeapCacheMemoryUsageMb(@NonNegative int value);
+
+  /**
+   * A directory in which the off-heap tier of the process wide cache memory-maps its segments. If
+   * unset, segments are allocated as direct buffers instead.
+   *
+   * <p>See {@link #getMaxOffHeapCacheMemoryUsageMb() maxOffHeapCacheMemoryUsageMb}.
+   */
+  @Description(
+      "A directory in which the off-heap tier of the process wide cache memory-maps its segments. "
+          + "If unset, segments are allocated as direct buffers instead.")
+  @Nullable
+  String getOffHeapCacheDirectory();
+
+  void setOffHeapCacheDirectory(@Nullable String value);
+
+  /**
+   * The maximum number of pages of a state stream, such as the values of a bag state or of a large
+   * grouped key, which are requested from the runner ahead of the page being consumed. Each
+   * iterator has at most this many outstanding {@code StateRequest}s. Values larger than 1 help
+   * when the round-trip latency to the runner's state backend dominates.
+   */
+  @Description(
+      "The maximum number of pages of a state stream which are requested from the runner ahead of "
+          + "the page being consumed. Must be positive, defaults to 1.")
+  @Default.Integer(1)
+  int getStateReadAheadPages();
+
+  void setStateReadAheadPages(int value);
+
   /**
    * An instance of this class will be used to specify the maximum amount of memory to allocate to a
    * cache within an SDK harness instance.
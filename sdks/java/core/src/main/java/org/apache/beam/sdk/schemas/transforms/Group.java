@@ -634,11 +634,14 @@ public class Group {
    */
   @AutoValue
   public abstract static class ByFields<InputT> extends AggregateCombiner<InputT> {
-    abstract FieldAccessDescriptor getFieldAccessDescriptor();
+    /** Returns the fields to group by, which have not been resolved against the input schema. */
+    public abstract FieldAccessDescriptor getFieldAccessDescriptor();
 
-    abstract String getKeyField();
+    /** Returns the name of the output field holding the key. */
+    public abstract String getKeyField();
 
-    abstract String getValueField();
+    /** Returns the name of the output field holding the grouped values. */
+    public abstract String getValueField();
 
     abstract Builder<InputT> toBuilder();
 
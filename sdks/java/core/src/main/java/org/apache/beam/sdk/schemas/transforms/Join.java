@@ -125,6 +125,16 @@ public class Join {
         return new FieldsEqual.Impl(lhs, fieldAccessDescriptor);
       }
 
+      /** Returns the fields of the left side to compare. */
+      public FieldAccessDescriptor getLhs() {
+        return lhs;
+      }
+
+      /** Returns the fields of the right side to compare. */
+      public FieldAccessDescriptor getRhs() {
+        return rhs;
+      }
+
       private Impl resolve(Schema lhsSchema, Schema rhsSchema) {
         return new FieldsEqual.Impl(lhs.resolve(lhsSchema), rhs.resolve(rhsSchema));
       }
@@ -161,7 +171,8 @@ public class Join {
     return new Impl<>(JoinType.LEFT_OUTER_BROADCAST, rhs);
   }
 
-  private enum JoinType {
+  /** The kinds of join performed by a {@link Join.Impl}. */
+  public enum JoinType {
     INNER,
     OUTER,
     LEFT_OUTER,
@@ -216,6 +227,21 @@ public class Join {
       return new Join.Impl<>(joinType, rhs, predicate);
     }
 
+    /** Returns the kind of join to perform. */
+    public JoinType getJoinType() {
+      return joinType;
+    }
+
+    /** Returns the right side of the join. */
+    public PCollection<RhsT> getRhs() {
+      return rhs;
+    }
+
+    /** Returns the fields to join on, which have not been resolved against the input schemas. */
+    public FieldsEqual.@Nullable Impl getPredicate() {
+      return predicate;
+    }
+
     @Override
     public PCollection<Row> expand(PCollection lhs) {
       FieldsEqual.Impl resolvedPredicate = predicate.resolve(lhs.getSchema(), rhs.getSchema());
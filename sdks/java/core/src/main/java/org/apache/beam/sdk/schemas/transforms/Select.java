@@ -150,9 +150,11 @@ public class Select {
 
   @AutoValue
   public abstract static class Fields<T> extends PTransform<PCollection<T>, PCollection<Row>> {
-    abstract FieldAccessDescriptor getFieldAccessDescriptor();
+    /** Returns the fields to select, which have not been resolved against the input schema. */
+    public abstract FieldAccessDescriptor getFieldAccessDescriptor();
 
-    abstract @Nullable Schema getOutputSchema();
+    /** Returns the schema the selected fields are renamed to, if one was provided. */
+    public abstract @Nullable Schema getOutputSchema();
 
     @AutoValue.Builder
     abstract static class Builder<T> {
@@ -27,6 +27,7 @@ import static org.junit.Assert.assertEquals;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -107,6 +108,30 @@ public class CoderProperties {
     assertThat(decodeEncode(coder, context, value), equalTo(value));
   }
 
+  /**
+   * Verifies that for the given {@code Coder<T>}, and value of type {@code T}, {@link
+   * Coder#encodeToBuffer} produces the same bytes as {@link Coder#encode} and that {@link
+   * Coder#decodeFromBuffer} yields an equal value while consuming exactly the encoded bytes.
+   */
+  public static <T> void coderBufferEncodingConsistent(Coder<T> coder, T value) throws Exception {
+    Coder<T> deserializedCoder = SerializableUtils.clone(coder);
+    byte[] streamBytes = encode(coder, Coder.Context.NESTED, value);
+
+    ByteBuffer buffer = ByteBuffer.allocate(streamBytes.length + 8);
+    deserializedCoder.encodeToBuffer(value, buffer);
+    assertThat(
+        "bytes written to buffer equal to encoded bytes",
+        Arrays.copyOf(buffer.array(), buffer.position()),
+        equalTo(streamBytes));
+
+    ByteBuffer readBuffer = ByteBuffer.wrap(streamBytes).asReadOnlyBuffer();
+    assertThat(deserializedCoder.decodeFromBuffer(readBuffer), equalTo(value));
+    assertThat(
+        "consumed bytes equal to encoded bytes",
+        readBuffer.position(),
+        equalTo(streamBytes.length));
+  }
+
   /**
    * Verifies that for the given {@code Coder<T>}, {@code Coder.Context}, and value of type {@code
    * T}, encoding followed by decoding yields a value of type {@code T} and tests that the matcher
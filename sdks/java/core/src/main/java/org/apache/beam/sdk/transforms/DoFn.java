@@ -845,6 +845,33 @@ public abstract class DoFn<InputT extends @Nullable Object, OutputT extends @Nul
   @Target(ElementType.METHOD)
   public @interface RequiresTimeSortedInput {}
 
+  /**
+   * <b><i>Experimental - no backwards compatibility guarantees. The exact name or usage of this
+   * feature may change.</i></b>
+   *
+   * <p>Annotation on a {@link DoFn} indicating that its {@link ProcessElement} method is safe to be
+   * invoked concurrently for different elements of the same bundle. Runners that support it may
+   * process up to {@link #maxParallelism} elements of a bundle at a time, which helps {@link DoFn
+   * DoFns} that block on I/O for each element.
+   *
+   * <p>{@link StartBundle} and {@link FinishBundle} are still invoked once per bundle and are never
+   * invoked concurrently with {@link ProcessElement}. {@link FinishBundle} is only invoked once all
+   * elements of the bundle have been processed. Output may be emitted in a different order than the
+   * input elements were received in.
+   *
+   * <p>The annotation only applies to {@link DoFn DoFns} which do not use state, timers, side
+   * inputs or a {@link BundleFinalizer}, and are not splittable. Runners process other {@link DoFn
+   * DoFns} one element at a time.
+   */
+  @Documented
+  @Experimental
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target(ElementType.TYPE)
+  public @interface ParallelProcessElement {
+    /** The maximum number of elements of a bundle that may be processed at the same time. */
+    int maxParallelism() default 16;
+  }
+
   /**
    * Annotation for the method to use to finish processing a batch of elements. The method annotated
    * with this must satisfy the following constraints:
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.util;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import org.apache.beam.sdk.annotations.Internal;
+
+/**
+ * An {@link InputStream} that reads directly from a {@link ByteBuffer} without copying it.
+ *
+ * <p>Bytes are consumed from the current position of the buffer, so once reading stops the position
+ * of the buffer reflects exactly the bytes that have been read through this stream.
+ */
+@Internal
+public class ByteBufferInputStream extends InputStream {
+  private final ByteBuffer buffer;
+
+  public ByteBufferInputStream(ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  /** Returns the underlying buffer. */
+  public ByteBuffer getBuffer() {
+    return buffer;
+  }
+
+  @Override
+  public int read() {
+    if (!buffer.hasRemaining()) {
+      return -1;
+    }
+    return buffer.get() & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) {
+    if (len == 0) {
+      return 0;
+    }
+    if (!buffer.hasRemaining()) {
+      return -1;
+    }
+    int toRead = Math.min(len, buffer.remaining());
+    buffer.get(b, off, toRead);
+    return toRead;
+  }
+
+  @Override
+  public long skip(long n) {
+    if (n <= 0) {
+      return 0;
+    }
+    int toSkip = (int) Math.min(n, buffer.remaining());
+    buffer.position(buffer.position() + toSkip);
+    return toSkip;
+  }
+
+  @Override
+  public int available() {
+    return buffer.remaining();
+  }
+}
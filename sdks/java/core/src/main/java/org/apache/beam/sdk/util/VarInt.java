@@ -21,6 +21,7 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Variable-length encoding for integers.
@@ -51,6 +52,30 @@ public class VarInt {
     } while (v != 0);
   }
 
+  /**
+   * Encodes the given value into the buffer, advancing its position.
+   *
+   * @throws java.nio.BufferOverflowException if the buffer does not have enough space remaining
+   */
+  public static void encode(int v, ByteBuffer buffer) {
+    encode(convertIntToLongNoSignExtend(v), buffer);
+  }
+
+  /**
+   * Encodes the given value into the buffer, advancing its position.
+   *
+   * @throws java.nio.BufferOverflowException if the buffer does not have enough space remaining
+   */
+  public static void encode(long v, ByteBuffer buffer) {
+    do {
+      // Encode next 7 bits + terminator bit
+      long bits = v & 0x7F;
+      v >>>= 7;
+      byte b = (byte) (bits | ((v != 0) ? 0x80 : 0));
+      buffer.put(b);
+    } while (v != 0);
+  }
+
   /** Decodes an integer value from the given stream. */
   public static int decodeInt(InputStream stream) throws IOException {
     long r = decodeLong(stream);
@@ -86,6 +111,41 @@ public class VarInt {
     return result;
   }
 
+  /** Decodes an integer value from the given buffer, advancing its position. */
+  public static int decodeInt(ByteBuffer buffer) throws IOException {
+    long r = decodeLong(buffer);
+    if (r < 0 || r >= 1L << 32) {
+      throw new IOException("varint overflow " + r);
+    }
+    return (int) r;
+  }
+
+  /** Decodes a long value from the given buffer, advancing its position. */
+  public static long decodeLong(ByteBuffer buffer) throws IOException {
+    long result = 0;
+    int shift = 0;
+    int b;
+    do {
+      // Get 7 bits from next byte
+      if (!buffer.hasRemaining()) {
+        if (shift == 0) {
+          throw new EOFException();
+        } else {
+          throw new IOException("varint not terminated");
+        }
+      }
+      b = buffer.get() & 0xFF;
+      long bits = b & 0x7F;
+      if (shift >= 64 || (shift == 63 && bits > 1)) {
+        // Out of range
+        throw new IOException("varint too long");
+      }
+      result |= bits << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return result;
+  }
+
   /** Returns the length of the encoding of the given value (in bytes). */
   public static int getLength(int v) {
     return getLength(convertIntToLongNoSignExtend(v));
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.values;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.beam.sdk.annotations.Experimental;
+import org.apache.beam.sdk.annotations.Experimental.Kind;
+import org.apache.beam.sdk.annotations.Internal;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.schemas.Schema;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A concrete subclass of {@link Row} that keeps the encoded form of some of its fields and only
+ * decodes them the first time they are accessed.
+ *
+ * <p>Instances are produced by the generated {@link org.apache.beam.sdk.coders.RowCoder} when lazy
+ * decoding has been enabled for a schema. Pipelines that only inspect or filter on a few fields of
+ * a wide row avoid paying for decoding the rest. If the row is re-encoded by the same coder that
+ * produced it, the original bytes are copied verbatim instead of re-encoding every field.
+ *
+ * <p>Like {@link RowWithGetters}, decoded values are cached without synchronization, so an instance
+ * should not be shared between threads before all of its fields have been read.
+ */
+@Internal
+@Experimental(Kind.SCHEMAS)
+@SuppressWarnings({
+  "nullness", // TODO(https://github.com/apache/beam/issues/20497)
+  "rawtypes"
+})
+public class RowWithEncodedValues extends Row {
+  private static final Object NOT_DECODED = new Object();
+
+  private final Object[] values;
+  private final Coder[] fieldCoders;
+  private final int[] fieldOffsets;
+  private final byte[] encoded;
+  private final int encodedLength;
+  private final @Nullable Object encodingToken;
+
+  /**
+   * Creates a row over an encoded buffer.
+   *
+   * @param values the already-decoded field values, indexed by row index. Entries for fields that
+   *     are still encoded are ignored.
+   * @param fieldCoders the coder for each still-encoded field, indexed by row index; {@code null}
+   *     for fields whose value is already present in {@code values}.
+   * @param fieldOffsets the offset in {@code encoded} at which each still-encoded field starts.
+   * @param encoded the buffer holding the encoded fields.
+   * @param encodedLength the number of valid bytes in {@code encoded}.
+   * @param encodingToken identifies the coder that produced {@code encoded}, or {@code null} if the
+   *     buffer is not a complete encoding of this row and must not be copied on re-encode.
+   */
+  public RowWithEncodedValues(
+      Schema schema,
+      Object[] values,
+      Coder[] fieldCoders,
+      int[] fieldOffsets,
+      byte[] encoded,
+      int encodedLength,
+      @Nullable Object encodingToken) {
+    super(schema);
+    this.values = values;
+    this.fieldCoders = fieldCoders;
+    this.fieldOffsets = fieldOffsets;
+    this.encoded = encoded;
+    this.encodedLength = encodedLength;
+    this.encodingToken = encodingToken;
+    for (int i = 0; i < fieldCoders.length; ++i) {
+      if (fieldCoders[i] != null) {
+        values[i] = NOT_DECODED;
+      }
+    }
+  }
+
+  @Override
+  @SuppressWarnings({"TypeParameterUnusedInFormals", "unchecked"})
+  public <T> @Nullable T getValue(int fieldIdx) {
+    if (fieldIdx < 0 || fieldIdx >= values.length) {
+      throw new IllegalArgumentException("No field at index " + fieldIdx);
+    }
+    Object value = values[fieldIdx];
+    if (value == NOT_DECODED) {
+      value = decodeField(fieldIdx);
+      values[fieldIdx] = value;
+    }
+    return (T) value;
+  }
+
+  private Object decodeField(int fieldIdx) {
+    int offset = fieldOffsets[fieldIdx];
+    try {
+      return fieldCoders[fieldIdx].decode(
+          new ByteArrayInputStream(encoded, offset, encodedLength - offset));
+    } catch (IOException e) {
+      throw new IllegalStateException(
+          "Unable to decode field " + getSchema().getField(fieldIdx).getName(), e);
+    }
+  }
+
+  @Override
+  public List<Object> getValues() {
+    for (int i = 0; i < values.length; ++i) {
+      getValue(i);
+    }
+    return Collections.unmodifiableList(Arrays.asList(values));
+  }
+
+  @Override
+  public int getFieldCount() {
+    return values.length;
+  }
+
+  /**
+   * Writes the original encoding of this row to {@code outputStream} if it was produced by the
+   * coder identified by {@code encodingToken}.
+   *
+   * @return {@code true} if the bytes were written, {@code false} if the caller must encode the row
+   *     field by field.
+   */
+  public boolean tryWriteEncoded(Object encodingToken, OutputStream outputStream)
+      throws IOException {
+    if (this.encodingToken == null || this.encodingToken != encodingToken) {
+      return false;
+    }
+    outputStream.write(encoded, 0, encodedLength);
+    return true;
+  }
+}
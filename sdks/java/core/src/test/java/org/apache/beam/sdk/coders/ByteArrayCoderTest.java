@@ -51,6 +51,13 @@ public class ByteArrayCoderTest {
     }
   }
 
+  @Test
+  public void testBufferEncodingConsistent() throws Exception {
+    for (byte[] value : TEST_VALUES) {
+      CoderProperties.coderBufferEncodingConsistent(TEST_CODER, value);
+    }
+  }
+
   @Test
   public void testRegisterByteSizeObserver() throws Exception {
     CoderProperties.testByteCount(
@@ -62,6 +62,13 @@ public class InstantCoderTest {
     }
   }
 
+  @Test
+  public void testBufferEncodingConsistent() throws Exception {
+    for (Instant value : TEST_VALUES) {
+      CoderProperties.coderBufferEncodingConsistent(TEST_CODER, value);
+    }
+  }
+
   @Test
   public void testOrderedEncoding() throws Exception {
     List<Long> sortedTimestamps = new ArrayList<>(TEST_TIMESTAMPS);
@@ -59,6 +59,13 @@ public class IterableCoderTest {
     }
   }
 
+  @Test
+  public void testBufferEncodingConsistent() throws Exception {
+    for (Iterable<Integer> value : TEST_VALUES) {
+      CoderProperties.coderBufferEncodingConsistent(TEST_CODER, value);
+    }
+  }
+
   @Test
   public void testCoderSerializable() throws Exception {
     CoderProperties.coderSerializable(TEST_CODER);
@@ -84,6 +84,21 @@ public class LengthPrefixCoderTest {
     }
   }
 
+  @Test
+  public void testBufferEncodingConsistent() throws Exception {
+    for (byte[] value : TEST_VALUES) {
+      CoderProperties.coderBufferEncodingConsistent(TEST_CODER, value);
+    }
+    for (String value : Arrays.asList("", "a", "\u00e9t\u00e9")) {
+      CoderProperties.coderBufferEncodingConsistent(
+          LengthPrefixCoder.of(StringUtf8Coder.of()), value);
+    }
+    for (Long value : Arrays.asList(0L, -1L, Long.MAX_VALUE)) {
+      CoderProperties.coderBufferEncodingConsistent(
+          LengthPrefixCoder.of(BigEndianLongCoder.of()), value);
+    }
+  }
+
   @Test
   public void testRegisterByteSizeObserver() throws Exception {
     CoderProperties.testByteCount(
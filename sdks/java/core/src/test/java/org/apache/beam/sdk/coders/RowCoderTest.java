@@ -17,7 +17,9 @@
  */
 package org.apache.beam.sdk.coders;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -26,6 +28,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import org.apache.beam.sdk.coders.Coder.NonDeterministicException;
 import org.apache.beam.sdk.schemas.Schema;
 import org.apache.beam.sdk.schemas.Schema.FieldType;
@@ -33,7 +36,9 @@ import org.apache.beam.sdk.schemas.Schema.LogicalType;
 import org.apache.beam.sdk.schemas.logicaltypes.EnumerationType;
 import org.apache.beam.sdk.schemas.logicaltypes.EnumerationType.Value;
 import org.apache.beam.sdk.testing.CoderProperties;
+import org.apache.beam.sdk.util.CoderUtils;
 import org.apache.beam.sdk.values.Row;
+import org.apache.beam.sdk.values.RowWithEncodedValues;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableMap;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Lists;
@@ -502,4 +507,152 @@ public class RowCoderTest {
     Row decoded = RowCoder.of(schema2).decode(new ByteArrayInputStream(os.toByteArray()));
     assertEquals(expected, decoded);
   }
+
+  @Test
+  public void testLazyDecodingPrimitiveTypes() throws Exception {
+    Schema schema =
+        Schema.builder()
+            .addByteField("f_byte")
+            .addInt16Field("f_int16")
+            .addInt32Field("f_int32")
+            .addInt64Field("f_int64")
+            .addDecimalField("f_decimal")
+            .addFloatField("f_float")
+            .addDoubleField("f_double")
+            .addStringField("f_string")
+            .addDateTimeField("f_datetime")
+            .addBooleanField("f_boolean")
+            .addByteArrayField("f_bytes")
+            .addNullableField("f_nullable", FieldType.STRING)
+            .build();
+    schema.setUUID(UUID.randomUUID());
+    RowCoder.overrideLazyDecoding(schema.getUUID(), true);
+
+    DateTime dateTime =
+        new DateTime().withDate(1979, 03, 14).withTime(1, 2, 3, 4).withZone(DateTimeZone.UTC);
+    Row row =
+        Row.withSchema(schema)
+            .addValues(
+                (byte) 0,
+                (short) 1,
+                -2,
+                Long.MAX_VALUE,
+                new BigDecimal("2.3"),
+                1.2f,
+                3.0d,
+                "str",
+                dateTime,
+                false,
+                new byte[] {1, 2, 3},
+                null)
+            .build();
+
+    RowCoder coder = RowCoder.of(schema);
+    CoderProperties.coderDecodeEncodeEqual(coder, row);
+
+    byte[] encoded = CoderUtils.encodeToByteArray(coder, row);
+    Row decoded = CoderUtils.decodeFromByteArray(coder, encoded);
+    assertTrue(decoded instanceof RowWithEncodedValues);
+    assertEquals("str", decoded.getString("f_string"));
+    assertEquals(Long.MAX_VALUE, (long) decoded.getInt64("f_int64"));
+    assertEquals(row, decoded);
+    assertArrayEquals(encoded, CoderUtils.encodeToByteArray(coder, decoded));
+  }
+
+  @Test
+  public void testLazyDecodingNestedTypes() throws Exception {
+    Schema nestedSchema = Schema.builder().addInt32Field("f1_int").addStringField("f1_str").build();
+    Schema schema =
+        Schema.builder()
+            .addInt32Field("f_int")
+            .addRowField("nested", nestedSchema)
+            .addArrayField("f_array", FieldType.STRING)
+            .addStringField("f_str")
+            .build();
+    schema.setUUID(UUID.randomUUID());
+    RowCoder.overrideLazyDecoding(schema.getUUID(), true);
+
+    Row nestedRow = Row.withSchema(nestedSchema).addValues(18, "foobar").build();
+    Row row =
+        Row.withSchema(schema)
+            .addValues(42, nestedRow, Arrays.asList("one", "two"), "last")
+            .build();
+
+    RowCoder coder = RowCoder.of(schema);
+    CoderProperties.coderDecodeEncodeEqual(coder, row);
+    Row decoded = CoderUtils.clone(coder, row);
+    assertEquals("last", decoded.getString("f_str"));
+    assertEquals(nestedRow, decoded.getRow("nested"));
+  }
+
+  @Test
+  public void testLazyDecodingEncodingPositionReorderFields() throws Exception {
+    Schema schema1 =
+        Schema.builder()
+            .addNullableField("f_int32", FieldType.INT32)
+            .addNullableField("f_string", FieldType.STRING)
+            .build();
+    Schema schema2 =
+        Schema.builder()
+            .addNullableField("f_string", FieldType.STRING)
+            .addNullableField("f_int32", FieldType.INT32)
+            .build();
+    schema2.setEncodingPositions(ImmutableMap.of("f_int32", 0, "f_string", 1));
+    schema2.setUUID(UUID.randomUUID());
+    RowCoder.overrideLazyDecoding(schema2.getUUID(), true);
+    Row row =
+        Row.withSchema(schema1)
+            .withFieldValue("f_int32", 42)
+            .withFieldValue("f_string", "hello world!")
+            .build();
+
+    Row expected =
+        Row.withSchema(schema2)
+            .withFieldValue("f_int32", 42)
+            .withFieldValue("f_string", "hello world!")
+            .build();
+
+    byte[] encoded = CoderUtils.encodeToByteArray(RowCoder.of(schema1), row);
+    Row decoded = CoderUtils.decodeFromByteArray(RowCoder.of(schema2), encoded);
+    assertEquals(expected, decoded);
+    assertArrayEquals(encoded, CoderUtils.encodeToByteArray(RowCoder.of(schema2), decoded));
+  }
+
+  @Test
+  public void testLazyDecodingEncodingPositionAddNewFields() throws Exception {
+    Schema schema1 =
+        Schema.builder()
+            .addNullableField("f_int32", FieldType.INT32)
+            .addNullableField("f_string", FieldType.STRING)
+            .build();
+    Schema schema2 =
+        Schema.builder()
+            .addNullableField("f_int32", FieldType.INT32)
+            .addNullableField("f_string", FieldType.STRING)
+            .addNullableField("f_boolean", FieldType.BOOLEAN)
+            .build();
+    schema2.setUUID(UUID.randomUUID());
+    RowCoder.overrideLazyDecoding(schema2.getUUID(), true);
+    Row row =
+        Row.withSchema(schema1)
+            .withFieldValue("f_int32", 42)
+            .withFieldValue("f_string", "hello world!")
+            .build();
+
+    Row expected =
+        Row.withSchema(schema2)
+            .withFieldValue("f_int32", 42)
+            .withFieldValue("f_string", "hello world!")
+            .withFieldValue("f_boolean", null)
+            .build();
+
+    byte[] encoded = CoderUtils.encodeToByteArray(RowCoder.of(schema1), row);
+    Row decoded = CoderUtils.decodeFromByteArray(RowCoder.of(schema2), encoded);
+    assertEquals(expected, decoded);
+    // The decoded row has more fields than were encoded, so it is re-encoded field by field.
+    assertEquals(
+        expected,
+        CoderUtils.decodeFromByteArray(
+            RowCoder.of(schema2), CoderUtils.encodeToByteArray(RowCoder.of(schema2), decoded)));
+  }
 }
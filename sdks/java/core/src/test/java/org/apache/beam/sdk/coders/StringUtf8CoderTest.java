@@ -68,6 +68,13 @@ public class StringUtf8CoderTest {
           "YSBzdHJpbmcgd2l0aCBhIAogbmV3bGluZQ",
           "44K544K_44Oq44Oz44Kw");
 
+  @Test
+  public void testBufferEncodingConsistent() throws Exception {
+    for (String value : TEST_VALUES) {
+      CoderProperties.coderBufferEncodingConsistent(TEST_CODER, value);
+    }
+  }
+
   @Test
   public void testWireFormatEncode() throws Exception {
     CoderProperties.coderEncodesBase64(TEST_CODER, TEST_VALUES, TEST_ENCODINGS);
@@ -55,6 +55,13 @@ public class VarIntCoderTest {
       Arrays.asList(
           "9f___w8", "_f___w8", "_____w8", "AA", "AQ", "BQ", "DQ", "HQ", "_____wc", "gICAgAg");
 
+  @Test
+  public void testBufferEncodingConsistent() throws Exception {
+    for (Integer value : TEST_VALUES) {
+      CoderProperties.coderBufferEncodingConsistent(TEST_CODER, value);
+    }
+  }
+
   @Test
   public void testWireFormatEncode() throws Exception {
     CoderProperties.coderEncodesBase64(TEST_CODER, TEST_VALUES, TEST_ENCODINGS);
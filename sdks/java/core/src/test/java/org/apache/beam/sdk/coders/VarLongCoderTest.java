@@ -78,6 +78,13 @@ public class VarLongCoderTest {
           "__________9_",
           "gICAgICAgICAAQ");
 
+  @Test
+  public void testBufferEncodingConsistent() throws Exception {
+    for (Long value : TEST_VALUES) {
+      CoderProperties.coderBufferEncodingConsistent(TEST_CODER, value);
+    }
+  }
+
   @Test
   public void testWireFormatEncode() throws Exception {
     CoderProperties.coderEncodesBase64(TEST_CODER, TEST_VALUES, TEST_ENCODINGS);
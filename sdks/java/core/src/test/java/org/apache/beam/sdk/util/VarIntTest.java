@@ -25,6 +25,8 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -226,6 +228,35 @@ public class VarIntTest {
     }
   }
 
+  @Test
+  public void encodeAndDecodeValuesWithBuffer() throws IOException {
+    for (int i = 0; i < LONG_VALUES.length; ++i) {
+      ByteBuffer buffer = ByteBuffer.allocate(16);
+      VarInt.encode(LONG_VALUES[i], buffer);
+      assertThat(Arrays.copyOf(buffer.array(), buffer.position()), equalTo(LONG_ENCODED[i]));
+
+      buffer = ByteBuffer.wrap(LONG_ENCODED[i]);
+      assertEquals(LONG_VALUES[i], VarInt.decodeLong(buffer));
+      assertEquals(0, buffer.remaining());
+    }
+
+    for (int i = 0; i < INT_VALUES.length; ++i) {
+      ByteBuffer buffer = ByteBuffer.allocate(16);
+      VarInt.encode(INT_VALUES[i], buffer);
+      assertThat(Arrays.copyOf(buffer.array(), buffer.position()), equalTo(INT_ENCODED[i]));
+
+      buffer = ByteBuffer.wrap(INT_ENCODED[i]);
+      assertEquals(INT_VALUES[i], VarInt.decodeInt(buffer));
+      assertEquals(0, buffer.remaining());
+    }
+  }
+
+  @Test
+  public void endOfBufferThrowsException() throws Exception {
+    thrown.expect(EOFException.class);
+    VarInt.decodeInt(ByteBuffer.allocate(0));
+  }
+
   @Test
   public void decodeThrowsExceptionForOverflow() throws IOException {
     final byte[] tooLargeNumber = {
@@ -73,6 +73,29 @@ public class WindowedValueTest {
     Assert.assertArrayEquals(value.getWindows().toArray(), decodedValue.getWindows().toArray());
   }
 
+  @Test
+  public void testWindowedValueCoderBufferEncodingConsistent() throws Exception {
+    Instant timestamp = new Instant(1234);
+    WindowedValue<String> value =
+        WindowedValue.of(
+            "abc",
+            timestamp,
+            Arrays.asList(
+                new IntervalWindow(timestamp, timestamp.plus(Duration.millis(1000))),
+                new IntervalWindow(
+                    timestamp.plus(Duration.millis(1000)), timestamp.plus(Duration.millis(2000)))),
+            PaneInfo.createPane(false, false, Timing.ON_TIME, 1, 0));
+
+    CoderProperties.coderBufferEncodingConsistent(
+        WindowedValue.getFullCoder(StringUtf8Coder.of(), IntervalWindow.getCoder()), value);
+    CoderProperties.coderBufferEncodingConsistent(
+        WindowedValue.getValueOnlyCoder(StringUtf8Coder.of()),
+        WindowedValue.valueInGlobalWindow("abc"));
+    CoderProperties.coderBufferEncodingConsistent(
+        WindowedValue.getParamWindowedValueCoder(StringUtf8Coder.of()),
+        WindowedValue.valueInGlobalWindow("abc"));
+  }
+
   @Test
   public void testFullWindowedValueCoderIsSerializableWithWellKnownCoderType() {
     CoderProperties.coderSerializable(
@@ -56,6 +56,11 @@ public class Join {
       return new InnerJoin<>(rightCollection);
     }
 
+    /** Returns the collection joined with the input of this transform. */
+    public PCollection<KV<K, V2>> getRightCollection() {
+      return rightCollection;
+    }
+
     @Override
     public PCollection<KV<K, KV<V1, V2>>> expand(PCollection<KV<K, V1>> leftCollection) {
       checkNotNull(leftCollection);
@@ -120,6 +125,16 @@ public class Join {
       return new LeftOuterJoin<>(rightCollection, nullValue);
     }
 
+    /** Returns the collection joined with the input of this transform. */
+    public PCollection<KV<K, V2>> getRightCollection() {
+      return rightCollection;
+    }
+
+    /** Returns the value joined with the input values which have no matching right value. */
+    public V2 getNullValue() {
+      return nullValue;
+    }
+
     @Override
     public PCollection<KV<K, KV<V1, V2>>> expand(PCollection<KV<K, V1>> leftCollection) {
       checkNotNull(leftCollection);
@@ -188,6 +203,16 @@ public class Join {
       return new RightOuterJoin<>(rightCollection, nullValue);
     }
 
+    /** Returns the collection joined with the input of this transform. */
+    public PCollection<KV<K, V2>> getRightCollection() {
+      return rightCollection;
+    }
+
+    /** Returns the value joined with the right values which have no matching input value. */
+    public V1 getNullValue() {
+      return nullValue;
+    }
+
     @Override
     public PCollection<KV<K, KV<V1, V2>>> expand(PCollection<KV<K, V1>> leftCollection) {
       checkNotNull(leftCollection);
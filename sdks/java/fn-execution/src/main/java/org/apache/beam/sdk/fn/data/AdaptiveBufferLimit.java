@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.fn.data;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Computes the outbound buffer size at which {@link BeamFnDataOutboundAggregator} flushes from the
+ * observed rate at which bytes are buffered.
+ *
+ * <p>The limit is the number of bytes expected to arrive within the target latency, bounded by a
+ * minimum and maximum limit. Slow streams therefore flush small batches on the latency bound
+ * instead of waiting for a large buffer to fill, while fast streams grow the batch size up to the
+ * maximum to reduce the number of messages.
+ *
+ * <p>All times are in nanoseconds as returned by {@link System#nanoTime}.
+ */
+@NotThreadSafe
+class AdaptiveBufferLimit {
+  // The weight given to the most recent throughput sample.
+  private static final double SMOOTHING_FACTOR = 0.25;
+
+  private final long minLimitBytes;
+  private final long maxLimitBytes;
+  private final long targetLatencyNanos;
+  private double bytesPerNano;
+  private long limitBytes;
+  private long oldestBufferedNanos;
+
+  AdaptiveBufferLimit(long minLimitBytes, long maxLimitBytes, long targetLatencyMs) {
+    checkArgument(
+        0 < minLimitBytes && minLimitBytes <= maxLimitBytes,
+        "Expected 0 < minLimitBytes <= maxLimitBytes but got %s and %s",
+        minLimitBytes,
+        maxLimitBytes);
+    checkArgument(targetLatencyMs > 0, "targetLatencyMs must be positive: %s", targetLatencyMs);
+    this.minLimitBytes = minLimitBytes;
+    this.maxLimitBytes = maxLimitBytes;
+    this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMs);
+    this.limitBytes = minLimitBytes;
+    this.oldestBufferedNanos = -1L;
+  }
+
+  /** Returns the number of buffered bytes above which the buffer should be flushed. */
+  long getLimitBytes() {
+    return limitBytes;
+  }
+
+  /** Records that bytes were added to an empty buffer. */
+  void onFirstBuffered(long nowNanos) {
+    if (oldestBufferedNanos < 0) {
+      oldestBufferedNanos = nowNanos;
+    }
+  }
+
+  /** Returns whether the oldest buffered bytes have been waiting for the target latency. */
+  boolean isOverdue(long nowNanos) {
+    return oldestBufferedNanos >= 0 && nowNanos - oldestBufferedNanos >= targetLatencyNanos;
+  }
+
+  /**
+   * Updates the limit after the buffer was flushed and returns how long the oldest flushed bytes
+   * were buffered for.
+   */
+  long onFlush(long flushedBytes, long nowNanos) {
+    if (oldestBufferedNanos < 0) {
+      return 0L;
+    }
+    long bufferedNanos = Math.max(1L, nowNanos - oldestBufferedNanos);
+    oldestBufferedNanos = -1L;
+
+    double sample = (double) flushedBytes / bufferedNanos;
+    bytesPerNano =
+        bytesPerNano == 0
+            ? sample
+            : SMOOTHING_FACTOR * sample + (1 - SMOOTHING_FACTOR) * bytesPerNano;
+    limitBytes =
+        Math.max(
+            minLimitBytes,
+            (long) Math.min((double) maxLimitBytes, bytesPerNano * targetLatencyNanos));
+    return bufferedNanos;
+  }
+}
@@ -151,12 +151,10 @@ public class BeamFnDataInboundObserver2 implements CloseableFnDataReceiver<BeamF
                 "Received data after inbound data receiver is done for instruction %s and transform %s.",
                 data.getInstructionId(), data.getTransformId()));
       }
-      InputStream inputStream = data.getData().newInput();
-      Coder<Object> coder = (Coder<Object>) endpoint.endpoint.getCoder();
-      FnDataReceiver<Object> receiver = (FnDataReceiver<Object>) endpoint.endpoint.getReceiver();
-      while (inputStream.available() > 0) {
-        receiver.accept(coder.decode(inputStream));
-      }
+      DecodingFnDataReceiver.decodeAll(
+          (Coder<Object>) endpoint.endpoint.getCoder(),
+          data.getData(),
+          (FnDataReceiver<Object>) endpoint.endpoint.getReceiver());
       if (data.getIsLast()) {
         endpoint.isDone = true;
         numEndpointsThatAreIncomplete -= 1;
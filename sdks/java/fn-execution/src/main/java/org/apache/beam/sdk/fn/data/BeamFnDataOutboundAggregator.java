@@ -19,8 +19,10 @@ package org.apache.beam.sdk.fn.data;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CancellationException;
@@ -28,14 +30,23 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 import java.util.function.Supplier;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.Elements;
 import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.fn.stream.DirectStreamObserver;
+import org.apache.beam.sdk.metrics.Counter;
+import org.apache.beam.sdk.metrics.DelegatingCounter;
+import org.apache.beam.sdk.metrics.DelegatingDistribution;
+import org.apache.beam.sdk.metrics.Distribution;
+import org.apache.beam.sdk.metrics.MetricName;
 import org.apache.beam.sdk.options.ExperimentalOptions;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.vendor.grpc.v1p43p2.com.google.protobuf.ByteString;
+import org.apache.beam.vendor.grpc.v1p43p2.io.grpc.stub.CallStreamObserver;
 import org.apache.beam.vendor.grpc.v1p43p2.io.grpc.stub.StreamObserver;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ThreadFactoryBuilder;
@@ -51,6 +62,17 @@ import org.slf4j.LoggerFactory;
  *
  * <p>The default time-based buffer threshold can be overridden by specifying the experiment {@code
  * data_buffer_time_limit_ms=<milliseconds>}
+ *
+ * <p>Adaptive buffering can be enabled by specifying the experiment {@code
+ * data_buffer_adaptive_target_latency_ms=<milliseconds>}. The size at which the buffer is flushed
+ * is then derived from the observed throughput so that it would fill within the target latency, up
+ * to the size-based buffer threshold. Flushes below the size-based threshold are deferred while the
+ * outbound stream is not ready, and buffered data is flushed once it has waited for the target
+ * latency. The time-based buffer threshold is ignored in this mode.
+ *
+ * <p>The number of flushes by {@link FlushReason}, the number of bytes sent by each flush and, in
+ * adaptive mode, how long the oldest flushed data was buffered for are reported as process-wide
+ * metrics within the namespace of this class.
  */
 @SuppressWarnings({
   "nullness" // TODO(https://github.com/apache/beam/issues/20497)
@@ -67,10 +89,50 @@ public class BeamFnDataOutboundAggregator {
   public static final int DEFAULT_BUFFER_LIMIT_BYTES = 1_000_000;
   public static final String DATA_BUFFER_TIME_LIMIT_MS = "data_buffer_time_limit_ms=";
   public static final long DEFAULT_BUFFER_LIMIT_TIME_MS = -1L;
+  public static final String DATA_BUFFER_ADAPTIVE_TARGET_LATENCY_MS =
+      "data_buffer_adaptive_target_latency_ms=";
+  public static final int ADAPTIVE_MIN_BUFFER_LIMIT_BYTES = 4096;
+
+  /** The reason the outbound buffer was flushed. */
+  public enum FlushReason {
+    /** The buffer exceeded the size-based buffer threshold. */
+    SIZE_LIMIT,
+    /** The buffer exceeded the adaptive buffer limit while the outbound stream was ready. */
+    ADAPTIVE_LIMIT,
+    /** The time-based buffer threshold elapsed. */
+    TIME_LIMIT,
+    /** The oldest buffered data waited for the adaptive target latency. */
+    LATENCY_TARGET,
+    /** The bundle finished. */
+    BUNDLE_END
+  }
 
   private static final Logger LOG = LoggerFactory.getLogger(BeamFnDataOutboundAggregator.class);
+  private static final Map<FlushReason, Counter> FLUSH_COUNTERS = new EnumMap<>(FlushReason.class);
+
+  static {
+    for (FlushReason reason : FlushReason.values()) {
+      FLUSH_COUNTERS.put(
+          reason,
+          new DelegatingCounter(
+              MetricName.named(
+                  BeamFnDataOutboundAggregator.class,
+                  "flushes_" + reason.name().toLowerCase(Locale.ROOT)),
+              true));
+    }
+  }
+
+  private static final Distribution FLUSHED_BYTES =
+      new DelegatingDistribution(
+          MetricName.named(BeamFnDataOutboundAggregator.class, "flushed_bytes"), true);
+  private static final Distribution FLUSH_LATENCY_MS =
+      new DelegatingDistribution(
+          MetricName.named(BeamFnDataOutboundAggregator.class, "flush_latency_ms"), true);
+
   private final int sizeLimit;
-  private final long timeLimit;
+  private final @Nullable AdaptiveBufferLimit adaptiveLimit;
+  private final long flushPeriodMs;
+  private final BooleanSupplier outboundReady;
   private final Supplier<String> processBundleRequestIdSupplier;
   @VisibleForTesting final Map<String, Receiver<?>> outputDataReceivers;
   @VisibleForTesting final Map<TimerEndpoint, Receiver<?>> outputTimersReceivers;
@@ -80,6 +142,7 @@ public class BeamFnDataOutboundAggregator {
   private final Object flushLock;
   private final boolean collectElementsIfNoFlushes;
   private boolean hasFlushedForBundle;
+  private final AtomicLong sendNanos;
 
   public BeamFnDataOutboundAggregator(
       PipelineOptions options,
@@ -87,7 +150,18 @@ public class BeamFnDataOutboundAggregator {
       StreamObserver<Elements> outboundObserver,
       boolean collectElementsIfNoFlushes) {
     this.sizeLimit = getSizeLimit(options);
-    this.timeLimit = getTimeLimit(options);
+    long targetLatency = getAdaptiveTargetLatency(options);
+    if (targetLatency > 0) {
+      this.adaptiveLimit =
+          new AdaptiveBufferLimit(
+              Math.min(ADAPTIVE_MIN_BUFFER_LIMIT_BYTES, sizeLimit), sizeLimit, targetLatency);
+      // Check often enough that data is flushed shortly after reaching the target latency.
+      this.flushPeriodMs = Math.max(1L, targetLatency / 4);
+    } else {
+      this.adaptiveLimit = null;
+      this.flushPeriodMs = getTimeLimit(options);
+    }
+    this.outboundReady = readinessOf(outboundObserver);
     this.collectElementsIfNoFlushes = collectElementsIfNoFlushes;
     this.outputDataReceivers = new HashMap<>();
     this.outputTimersReceivers = new HashMap<>();
@@ -96,18 +170,26 @@ public class BeamFnDataOutboundAggregator {
     this.bytesWrittenSinceFlush = 0L;
     this.flushLock = new Object();
     this.hasFlushedForBundle = false;
+    this.sendNanos = new AtomicLong();
   }
 
-  /** Starts the flushing daemon thread if data_buffer_time_limit_ms is set. */
+  /**
+   * Starts the flushing daemon thread if data_buffer_time_limit_ms or
+   * data_buffer_adaptive_target_latency_ms is set.
+   */
   public void start() {
-    if (timeLimit > 0 && this.flushFuture == null) {
+    if (flushPeriodMs > 0 && this.flushFuture == null) {
       this.flushFuture =
           Executors.newSingleThreadScheduledExecutor(
                   new ThreadFactoryBuilder()
                       .setDaemon(true)
                       .setNameFormat("DataBufferOutboundFlusher-thread")
                       .build())
-              .scheduleAtFixedRate(this::flush, timeLimit, timeLimit, TimeUnit.MILLISECONDS);
+              .scheduleAtFixedRate(
+                  adaptiveLimit == null ? this::flush : this::flushIfOverdue,
+                  flushPeriodMs,
+                  flushPeriodMs,
+                  TimeUnit.MILLISECONDS);
     }
   }
 
@@ -121,7 +203,7 @@ public class BeamFnDataOutboundAggregator {
           "Outbound data endpoint already registered for " + pTransformId);
     }
     Receiver<T> receiver = new Receiver<>(coder);
-    if (timeLimit > 0) {
+    if (flushPeriodMs > 0) {
       outputDataReceivers.put(pTransformId, receiver);
       return data -> {
         checkFlushThreadException();
@@ -146,7 +228,7 @@ public class BeamFnDataOutboundAggregator {
           "Outbound timers endpoint already registered for " + timerKey);
     }
     Receiver<T> receiver = new Receiver<>(coder);
-    if (timeLimit > 0) {
+    if (flushPeriodMs > 0) {
       outputTimersReceivers.put(timerKey, receiver);
       return timers -> {
         checkFlushThreadException();
@@ -159,15 +241,26 @@ public class BeamFnDataOutboundAggregator {
     return receiver;
   }
 
-  private void flushInternal() {
+  private void flushInternal(FlushReason reason) {
     if (bytesWrittenSinceFlush == 0) {
       return;
     }
+    long flushedBytes = bytesWrittenSinceFlush;
     Elements.Builder elements = convertBufferForTransmission();
     if (elements.getDataCount() > 0 || elements.getTimersCount() > 0) {
-      outboundObserver.onNext(elements.build());
+      send(elements.build());
     }
     hasFlushedForBundle = true;
+    recordFlush(reason, flushedBytes);
+  }
+
+  private void recordFlush(FlushReason reason, long flushedBytes) {
+    FLUSH_COUNTERS.get(reason).inc();
+    FLUSHED_BYTES.update(flushedBytes);
+    if (adaptiveLimit != null) {
+      FLUSH_LATENCY_MS.update(
+          TimeUnit.NANOSECONDS.toMillis(adaptiveLimit.onFlush(flushedBytes, System.nanoTime())));
+    }
   }
 
   /**
@@ -181,12 +274,12 @@ public class BeamFnDataOutboundAggregator {
       return null;
     }
     Elements.Builder bufferedElements;
-    if (timeLimit > 0) {
+    if (flushPeriodMs > 0) {
       synchronized (flushLock) {
-        bufferedElements = convertBufferForTransmission();
+        bufferedElements = convertBufferForBundleEnd();
       }
     } else {
-      bufferedElements = convertBufferForTransmission();
+      bufferedElements = convertBufferForBundleEnd();
     }
     LOG.debug(
         "Closing streams for instruction {} and outbound data {} and timers {}.",
@@ -215,7 +308,7 @@ public class BeamFnDataOutboundAggregator {
     if (collectElementsIfNoFlushes && !hasFlushedForBundle) {
       return bufferedElements.build();
     }
-    outboundObserver.onNext(bufferedElements.build());
+    send(bufferedElements.build());
     // This is now at the end of a bundle, so we reset hasFlushedForBundle to prepare for new
     // bundles.
     hasFlushedForBundle = false;
@@ -224,7 +317,24 @@ public class BeamFnDataOutboundAggregator {
 
   // Send the elements to the StreamObserver associated with this aggregator.
   public void sendElements(Elements elements) {
-    outboundObserver.onNext(elements);
+    send(elements);
+  }
+
+  /**
+   * Returns the nanoseconds spent sending {@link Elements} to the outbound observer since the last
+   * call, including any time blocked waiting for the outbound stream to become ready.
+   */
+  public long getAndResetSendNanos() {
+    return sendNanos.getAndSet(0L);
+  }
+
+  private void send(Elements elements) {
+    long startNanos = System.nanoTime();
+    try {
+      outboundObserver.onNext(elements);
+    } finally {
+      sendNanos.addAndGet(System.nanoTime() - startNanos);
+    }
   }
 
   public void discard() {
@@ -233,6 +343,15 @@ public class BeamFnDataOutboundAggregator {
     }
   }
 
+  private Elements.Builder convertBufferForBundleEnd() {
+    long flushedBytes = bytesWrittenSinceFlush;
+    Elements.Builder bufferedElements = convertBufferForTransmission();
+    if (flushedBytes > 0) {
+      recordFlush(FlushReason.BUNDLE_END, flushedBytes);
+    }
+    return bufferedElements;
+  }
+
   private Elements.Builder convertBufferForTransmission() {
     Elements.Builder bufferedElements = Elements.newBuilder();
     for (Map.Entry<String, Receiver<?>> entry : outputDataReceivers.entrySet()) {
@@ -267,7 +386,19 @@ public class BeamFnDataOutboundAggregator {
   void flush() {
     try {
       synchronized (flushLock) {
-        flushInternal();
+        flushInternal(FlushReason.TIME_LIMIT);
+      }
+    } catch (Throwable t) {
+      throw new RuntimeException(t);
+    }
+  }
+
+  void flushIfOverdue() {
+    try {
+      synchronized (flushLock) {
+        if (adaptiveLimit.isOverdue(System.nanoTime())) {
+          flushInternal(FlushReason.LATENCY_TARGET);
+        }
       }
     } catch (Throwable t) {
       throw new RuntimeException(t);
@@ -276,7 +407,7 @@ public class BeamFnDataOutboundAggregator {
 
   /** Check if the flush thread failed with an exception. */
   private void checkFlushThreadException() throws IOException {
-    if (timeLimit > 0 && flushFuture.isDone()) {
+    if (flushPeriodMs > 0 && flushFuture.isDone()) {
       try {
         flushFuture.get();
         throw new IOException("Periodic flushing thread finished unexpectedly.");
@@ -311,6 +442,27 @@ public class BeamFnDataOutboundAggregator {
     return DEFAULT_BUFFER_LIMIT_BYTES;
   }
 
+  private static long getAdaptiveTargetLatency(PipelineOptions options) {
+    List<String> experiments = options.as(ExperimentalOptions.class).getExperiments();
+    for (String experiment : experiments == null ? Collections.<String>emptyList() : experiments) {
+      if (experiment.startsWith(DATA_BUFFER_ADAPTIVE_TARGET_LATENCY_MS)) {
+        return Long.parseLong(
+            experiment.substring(DATA_BUFFER_ADAPTIVE_TARGET_LATENCY_MS.length()));
+      }
+    }
+    return -1L;
+  }
+
+  private static BooleanSupplier readinessOf(StreamObserver<?> outboundObserver) {
+    if (outboundObserver instanceof CallStreamObserver) {
+      return ((CallStreamObserver<?>) outboundObserver)::isReady;
+    }
+    if (outboundObserver instanceof DirectStreamObserver) {
+      return ((DirectStreamObserver<?>) outboundObserver)::isReady;
+    }
+    return () -> true;
+  }
+
   private static long getTimeLimit(PipelineOptions options) {
     List<String> experiments = options.as(ExperimentalOptions.class).getExperiments();
     for (String experiment : experiments == null ? Collections.<String>emptyList() : experiments) {
@@ -343,11 +495,18 @@ public class BeamFnDataOutboundAggregator {
         output.write(0);
       }
       final long delta = (long) output.size() - size;
+      if (adaptiveLimit != null && bytesWrittenSinceFlush == 0) {
+        adaptiveLimit.onFirstBuffered(System.nanoTime());
+      }
       bytesWrittenSinceFlush += delta;
       perBundleByteCount += delta;
       perBundleElementCount += 1;
       if (bytesWrittenSinceFlush > sizeLimit) {
-        flushInternal();
+        flushInternal(FlushReason.SIZE_LIMIT);
+      } else if (adaptiveLimit != null
+          && bytesWrittenSinceFlush > adaptiveLimit.getLimitBytes()
+          && outboundReady.getAsBoolean()) {
+        flushInternal(FlushReason.ADAPTIVE_LIMIT);
       }
     }
 
@@ -18,6 +18,8 @@
 package org.apache.beam.sdk.fn.data;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.vendor.grpc.v1p43p2.com.google.protobuf.ByteString;
 
@@ -38,9 +40,29 @@ public class DecodingFnDataReceiver<T> implements FnDataReceiver<ByteString> {
 
   @Override
   public void accept(ByteString input) throws Exception {
-    InputStream inputStream = input.newInput();
-    while (inputStream.available() > 0) {
-      consumer.accept(coder.decode(inputStream));
+    decodeAll(coder, input, consumer);
+  }
+
+  /**
+   * Decodes every element in {@code input}, passing each to {@code consumer}.
+   *
+   * <p>A flat {@link ByteString} is decoded through {@link Coder#decodeFromBuffer} on a view of its
+   * bytes. A rope would have to be copied into a single buffer first, so it is decoded from {@link
+   * ByteString#newInput()} instead.
+   */
+  static <T> void decodeAll(Coder<T> coder, ByteString input, FnDataReceiver<T> consumer)
+      throws Exception {
+    List<ByteBuffer> buffers = input.asReadOnlyByteBufferList();
+    if (buffers.size() == 1) {
+      ByteBuffer buffer = buffers.get(0);
+      while (buffer.hasRemaining()) {
+        consumer.accept(coder.decodeFromBuffer(buffer));
+      }
+    } else {
+      InputStream inputStream = input.newInput();
+      while (inputStream.available() > 0) {
+        consumer.accept(coder.decode(inputStream));
+      }
     }
   }
 }
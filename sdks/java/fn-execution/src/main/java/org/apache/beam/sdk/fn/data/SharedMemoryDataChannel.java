@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.fn.data;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.UUID;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.Elements;
+import org.apache.beam.model.pipeline.v1.Endpoints.ApiServiceDescriptor;
+import org.apache.beam.sdk.fn.stream.OutboundObserverFactory;
+import org.apache.beam.vendor.grpc.v1p43p2.io.grpc.stub.CallStreamObserver;
+import org.apache.beam.vendor.grpc.v1p43p2.io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bidirectional stream of {@link Elements} between two processes on the same host over a pair of
+ * {@link SharedMemoryRingBuffer}s, used instead of the gRPC Beam Fn Data API when the runner offers
+ * an {@link ApiServiceDescriptor} whose URL starts with {@link #URL_PREFIX}.
+ *
+ * <p>The rest of the URL is a directory shared by both processes. A client connects by creating a
+ * ring for each direction within the directory followed by a marker file, the server accepts the
+ * connection once it finds the marker and then removes all three files. {@link Elements} are
+ * written with the same length delimited framing used by gRPC. Flow control is provided by the
+ * capacity of the rings, writing blocks while the reader falls behind.
+ */
+public class SharedMemoryDataChannel implements AutoCloseable {
+  private static final Logger LOG = LoggerFactory.getLogger(SharedMemoryDataChannel.class);
+
+  public static final String URL_PREFIX = "shm://";
+  public static final int DEFAULT_CAPACITY = 8 << 20;
+
+  static final String CLIENT_TO_SERVER_SUFFIX = ".c2s";
+  static final String SERVER_TO_CLIENT_SUFFIX = ".s2c";
+  public static final String READY_SUFFIX = ".ready";
+
+  public static boolean isSharedMemory(ApiServiceDescriptor apiServiceDescriptor) {
+    return apiServiceDescriptor.getUrl().startsWith(URL_PREFIX);
+  }
+
+  public static ApiServiceDescriptor descriptorFor(Path directory) {
+    return ApiServiceDescriptor.newBuilder()
+        .setUrl(URL_PREFIX + directory.toAbsolutePath())
+        .build();
+  }
+
+  /**
+   * Returns a factory which connects to the server at the descriptor for each call, suitable for
+   * creating a {@link BeamFnDataGrpcMultiplexer2}.
+   */
+  public static OutboundObserverFactory.BasicFactory<Elements, Elements> clientFactory(
+      ApiServiceDescriptor apiServiceDescriptor) {
+    return inboundObserver -> {
+      try {
+        SharedMemoryDataChannel channel = connect(apiServiceDescriptor, DEFAULT_CAPACITY);
+        channel.start(inboundObserver);
+        return channel.getOutboundObserver();
+      } catch (IOException e) {
+        throw new IllegalStateException(
+            String.format("Unable to connect to %s", apiServiceDescriptor.getUrl()), e);
+      }
+    };
+  }
+
+  /** Connects to the server at the descriptor using rings of the given capacity. */
+  public static SharedMemoryDataChannel connect(
+      ApiServiceDescriptor apiServiceDescriptor, int capacity) throws IOException {
+    checkArgument(
+        isSharedMemory(apiServiceDescriptor),
+        "Expected a %s URL but received %s",
+        URL_PREFIX,
+        apiServiceDescriptor.getUrl());
+    Path directory = Paths.get(apiServiceDescriptor.getUrl().substring(URL_PREFIX.length()));
+    String connectionId = UUID.randomUUID().toString();
+    SharedMemoryRingBuffer outbound =
+        SharedMemoryRingBuffer.create(
+            directory.resolve(connectionId + CLIENT_TO_SERVER_SUFFIX), capacity);
+    SharedMemoryRingBuffer inbound =
+        SharedMemoryRingBuffer.create(
+            directory.resolve(connectionId + SERVER_TO_CLIENT_SUFFIX), capacity);
+    Files.createFile(directory.resolve(connectionId + READY_SUFFIX));
+    return new SharedMemoryDataChannel(connectionId, outbound, inbound);
+  }
+
+  /** Accepts the connection whose ready marker was found in the directory. */
+  public static SharedMemoryDataChannel accept(Path readyMarker) throws IOException {
+    String fileName = readyMarker.getFileName().toString();
+    checkArgument(
+        fileName.endsWith(READY_SUFFIX),
+        "Expected a %s file but received %s",
+        READY_SUFFIX,
+        fileName);
+    String connectionId = fileName.substring(0, fileName.length() - READY_SUFFIX.length());
+    Path directory = readyMarker.getParent();
+    Path clientToServer = directory.resolve(connectionId + CLIENT_TO_SERVER_SUFFIX);
+    Path serverToClient = directory.resolve(connectionId + SERVER_TO_CLIENT_SUFFIX);
+    try {
+      return new SharedMemoryDataChannel(
+          connectionId,
+          SharedMemoryRingBuffer.open(serverToClient),
+          SharedMemoryRingBuffer.open(clientToServer));
+    } finally {
+      // The mappings remain valid after the files have been unlinked.
+      Files.deleteIfExists(readyMarker);
+      Files.deleteIfExists(clientToServer);
+      Files.deleteIfExists(serverToClient);
+    }
+  }
+
+  private final String connectionId;
+  private final SharedMemoryRingBuffer outbound;
+  private final SharedMemoryRingBuffer inbound;
+  private final OutboundObserver outboundObserver;
+  private volatile boolean closed;
+
+  private SharedMemoryDataChannel(
+      String connectionId, SharedMemoryRingBuffer outbound, SharedMemoryRingBuffer inbound) {
+    this.connectionId = connectionId;
+    this.outbound = outbound;
+    this.inbound = inbound;
+    this.outboundObserver = new OutboundObserver();
+  }
+
+  /** Returns the thread safe observer for sending {@link Elements} to the other process. */
+  public CallStreamObserver<Elements> getOutboundObserver() {
+    return outboundObserver;
+  }
+
+  /**
+   * Starts a daemon thread which passes the {@link Elements} received from the other process to the
+   * inbound observer.
+   */
+  public void start(StreamObserver<Elements> inboundObserver) {
+    Thread reader =
+        new Thread(
+            () -> {
+              try (InputStream input = inbound.getInputStream()) {
+                Elements elements;
+                while ((elements = Elements.parseDelimitedFrom(input)) != null) {
+                  inboundObserver.onNext(elements);
+                }
+                inboundObserver.onCompleted();
+              } catch (IOException | RuntimeException e) {
+                if (!closed) {
+                  inboundObserver.onError(e);
+                }
+              } finally {
+                inbound.closeReader();
+              }
+            },
+            "SharedMemoryDataChannel-" + connectionId);
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    // Unblocks any threads waiting for the other process, without acquiring the observer's lock.
+    outbound.closeWriter();
+    outbound.close();
+    inbound.closeReader();
+    inbound.close();
+  }
+
+  private class OutboundObserver extends CallStreamObserver<Elements> {
+    private final OutputStream output = outbound.getOutputStream();
+    private boolean completed;
+
+    @Override
+    public synchronized void onNext(Elements value) {
+      try {
+        value.writeDelimitedTo(output);
+      } catch (IOException e) {
+        throw new IllegalStateException(
+            String.format("Unable to send data over shared memory connection %s", connectionId), e);
+      }
+    }
+
+    @Override
+    public synchronized void onError(Throwable t) {
+      // The error itself cannot be transmitted, the other process observes the end of the stream.
+      LOG.warn("Closing shared memory connection {} due to error.", connectionId, t);
+      onCompleted();
+    }
+
+    @Override
+    public synchronized void onCompleted() {
+      if (!completed) {
+        completed = true;
+        outbound.closeWriter();
+      }
+    }
+
+    /** Always ready since {@link #onNext} blocks while the ring is full. */
+    @Override
+    public boolean isReady() {
+      return true;
+    }
+
+    @Override
+    public void setOnReadyHandler(Runnable onReadyHandler) {}
+
+    @Override
+    public void disableAutoInboundFlowControl() {}
+
+    @Override
+    public void request(int count) {}
+
+    @Override
+    public void setMessageCompression(boolean enable) {}
+  }
+}
@@ -0,0 +1,362 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.fn.data;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A single producer, single consumer pipe of bytes backed by a memory-mapped file, allowing two
+ * processes on the same host to exchange data without a network stack.
+ *
+ * <p>The file consists of a header followed by a power of two sized ring of data. The header holds
+ * the total number of bytes written and read so far, each on its own cache line, and whether the
+ * writer or the reader has closed its end. Writes block while the ring is full and reads block
+ * while it is empty, first spinning briefly and then parking with an increasing back-off.
+ *
+ * <p>The header fields are accessed with {@code sun.misc.Unsafe} at the address of the mapping. A
+ * position or closed flag is published with a release store after the bytes it covers have been
+ * written and is read with an acquire load before those bytes are read. These are ordinary hardware
+ * memory accesses to the shared mapping, so the ordering also holds for the process on the other
+ * end.
+ *
+ * <p>Only one thread may write and only one thread may read at a time.
+ */
+public class SharedMemoryRingBuffer {
+  static final int HEADER_SIZE = 256;
+  private static final int MAGIC = 0x6265616d;
+  private static final int MAGIC_OFFSET = 0;
+  private static final int CAPACITY_OFFSET = 4;
+  private static final int WRITE_POSITION_OFFSET = 64;
+  private static final int WRITER_CLOSED_OFFSET = 72;
+  private static final int READ_POSITION_OFFSET = 128;
+  private static final int READER_CLOSED_OFFSET = 136;
+
+  private static final int SPIN_ITERATIONS = 1000;
+  private static final int YIELD_ITERATIONS = 1100;
+  private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  /** Creates the file with a ring of the given capacity, which must be a power of two. */
+  public static SharedMemoryRingBuffer create(Path file, int capacity) throws IOException {
+    checkArgument(
+        capacity > 0 && Integer.bitCount(capacity) == 1,
+        "Capacity must be a positive power of two but was %s",
+        capacity);
+    checkUnsafeAvailable();
+    SharedMemoryRingBuffer ring =
+        new SharedMemoryRingBuffer(map(file, HEADER_SIZE + capacity), capacity);
+    putIntVolatile(ring.address + CAPACITY_OFFSET, capacity);
+    putIntVolatile(ring.address + MAGIC_OFFSET, MAGIC);
+    return ring;
+  }
+
+  /** Opens a ring which was previously created with {@link #create}. */
+  public static SharedMemoryRingBuffer open(Path file) throws IOException {
+    checkUnsafeAvailable();
+    // The creator announces the ring only after writing the header, so plain reads suffice here.
+    // The header is accessed in native byte order.
+    ByteBuffer header = map(file, HEADER_SIZE).order(ByteOrder.nativeOrder());
+    if (header.getInt(MAGIC_OFFSET) != MAGIC) {
+      throw new IOException(String.format("%s is not an initialized ring buffer.", file));
+    }
+    int capacity = header.getInt(CAPACITY_OFFSET);
+    return new SharedMemoryRingBuffer(map(file, HEADER_SIZE + capacity), capacity);
+  }
+
+  private static ByteBuffer map(Path file, int size) throws IOException {
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file.toFile(), "rw");
+        FileChannel channel = randomAccessFile.getChannel()) {
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+  }
+
+  // sun.misc.Unsafe is looked up reflectively so that compiling against it raises no warnings. The
+  // handles are constants, so the JIT compiles each call down to the plain memory access.
+  private static final MethodHandle GET_INT_VOLATILE;
+  private static final MethodHandle PUT_INT_VOLATILE;
+  private static final MethodHandle GET_LONG_VOLATILE;
+  private static final MethodHandle PUT_ORDERED_LONG;
+  private static final MethodHandle GET_LONG_FIELD;
+  private static final long BUFFER_ADDRESS_OFFSET;
+  private static final Throwable UNSAFE_UNAVAILABLE;
+
+  static {
+    MethodHandle getIntVolatile = null;
+    MethodHandle putIntVolatile = null;
+    MethodHandle getLongVolatile = null;
+    MethodHandle putOrderedLong = null;
+    MethodHandle getLongField = null;
+    long bufferAddressOffset = -1;
+    Throwable unavailable = null;
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      Object unsafe = theUnsafe.get(null);
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      MethodType getInt = MethodType.methodType(int.class, Object.class, long.class);
+      MethodType putInt = MethodType.methodType(void.class, Object.class, long.class, int.class);
+      MethodType getLong = MethodType.methodType(long.class, Object.class, long.class);
+      MethodType putLong = MethodType.methodType(void.class, Object.class, long.class, long.class);
+      getIntVolatile = lookup.findVirtual(unsafeClass, "getIntVolatile", getInt).bindTo(unsafe);
+      putIntVolatile = lookup.findVirtual(unsafeClass, "putIntVolatile", putInt).bindTo(unsafe);
+      getLongVolatile = lookup.findVirtual(unsafeClass, "getLongVolatile", getLong).bindTo(unsafe);
+      putOrderedLong = lookup.findVirtual(unsafeClass, "putOrderedLong", putLong).bindTo(unsafe);
+      getLongField = lookup.findVirtual(unsafeClass, "getLong", getLong).bindTo(unsafe);
+      bufferAddressOffset =
+          (long)
+              lookup
+                  .findVirtual(
+                      unsafeClass,
+                      "objectFieldOffset",
+                      MethodType.methodType(long.class, Field.class))
+                  .invoke(unsafe, Buffer.class.getDeclaredField("address"));
+    } catch (Throwable t) {
+      unavailable = t;
+    }
+    GET_INT_VOLATILE = getIntVolatile;
+    PUT_INT_VOLATILE = putIntVolatile;
+    GET_LONG_VOLATILE = getLongVolatile;
+    PUT_ORDERED_LONG = putOrderedLong;
+    GET_LONG_FIELD = getLongField;
+    BUFFER_ADDRESS_OFFSET = bufferAddressOffset;
+    UNSAFE_UNAVAILABLE = unavailable;
+  }
+
+  private static void checkUnsafeAvailable() throws IOException {
+    if (UNSAFE_UNAVAILABLE != null) {
+      throw new IOException(
+          "Shared memory ring buffers require sun.misc.Unsafe, which is not available.",
+          UNSAFE_UNAVAILABLE);
+    }
+  }
+
+  private static long addressOf(ByteBuffer mappedBuffer) {
+    try {
+      return (long) GET_LONG_FIELD.invokeExact((Object) mappedBuffer, BUFFER_ADDRESS_OFFSET);
+    } catch (Throwable t) {
+      throw new IllegalStateException(t);
+    }
+  }
+
+  /** Loads the int at the address with acquire semantics. */
+  private static int getIntVolatile(long address) {
+    try {
+      return (int) GET_INT_VOLATILE.invokeExact((Object) null, address);
+    } catch (Throwable t) {
+      throw new IllegalStateException(t);
+    }
+  }
+
+  /** Stores the int at the address with release semantics. */
+  private static void putIntVolatile(long address, int value) {
+    try {
+      PUT_INT_VOLATILE.invokeExact((Object) null, address, value);
+    } catch (Throwable t) {
+      throw new IllegalStateException(t);
+    }
+  }
+
+  /** Loads the long at the address with acquire semantics. */
+  private static long getLongVolatile(long address) {
+    try {
+      return (long) GET_LONG_VOLATILE.invokeExact((Object) null, address);
+    } catch (Throwable t) {
+      throw new IllegalStateException(t);
+    }
+  }
+
+  /** Stores the long at the address with release semantics. */
+  private static void putLongRelease(long address, long value) {
+    try {
+      PUT_ORDERED_LONG.invokeExact((Object) null, address, value);
+    } catch (Throwable t) {
+      throw new IllegalStateException(t);
+    }
+  }
+
+  // Keeps the mapping alive, it is unmapped once the buffer is garbage collected.
+  private final ByteBuffer buffer;
+  private final long address;
+  private final ByteBuffer writeView;
+  private final ByteBuffer readView;
+  private final int capacity;
+  private final int mask;
+  private volatile boolean closedLocally;
+
+  private SharedMemoryRingBuffer(ByteBuffer buffer, int capacity) {
+    this.buffer = buffer;
+    this.address = addressOf(buffer);
+    this.capacity = capacity;
+    this.mask = capacity - 1;
+    this.writeView = buffer.duplicate();
+    this.readView = buffer.duplicate();
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /** Writes all bytes, blocking while the ring is full. */
+  public void write(byte[] bytes, int offset, int length) throws IOException {
+    int iteration = 0;
+    long writePosition = getLongVolatile(address + WRITE_POSITION_OFFSET);
+    while (length > 0) {
+      if (closedLocally || getIntVolatile(address + READER_CLOSED_OFFSET) != 0) {
+        throw new IOException("The reader of the ring buffer has been closed.");
+      }
+      // Acquire, the reader is done with the bytes before the read position.
+      long readPosition = getLongVolatile(address + READ_POSITION_OFFSET);
+      int free = capacity - (int) (writePosition - readPosition);
+      if (free == 0) {
+        await(iteration++);
+        continue;
+      }
+      iteration = 0;
+      int count = Math.min(length, free);
+      int index = (int) (writePosition & mask);
+      int first = Math.min(count, capacity - index);
+      writeView.position(HEADER_SIZE + index);
+      writeView.put(bytes, offset, first);
+      if (first < count) {
+        writeView.position(HEADER_SIZE);
+        writeView.put(bytes, offset + first, count - first);
+      }
+      writePosition += count;
+      offset += count;
+      length -= count;
+      // Release, the bytes are visible before the position which publishes them.
+      putLongRelease(address + WRITE_POSITION_OFFSET, writePosition);
+    }
+  }
+
+  /**
+   * Reads at least one and up to {@code length} bytes, blocking while the ring is empty. Returns -1
+   * once the writer has closed the ring and all bytes have been read.
+   */
+  public int read(byte[] bytes, int offset, int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    int iteration = 0;
+    long readPosition = getLongVolatile(address + READ_POSITION_OFFSET);
+    for (; ; ) {
+      if (closedLocally) {
+        throw new IOException("The ring buffer has been closed.");
+      }
+      // Read the closed flag before the position so that no bytes written before closing are lost.
+      boolean writerClosed = getIntVolatile(address + WRITER_CLOSED_OFFSET) != 0;
+      // Acquire, the bytes before the write position are visible once it has been read.
+      long writePosition = getLongVolatile(address + WRITE_POSITION_OFFSET);
+      int available = (int) (writePosition - readPosition);
+      if (available > 0) {
+        int count = Math.min(length, available);
+        int index = (int) (readPosition & mask);
+        int first = Math.min(count, capacity - index);
+        readView.position(HEADER_SIZE + index);
+        readView.get(bytes, offset, first);
+        if (first < count) {
+          readView.position(HEADER_SIZE);
+          readView.get(bytes, offset + first, count - first);
+        }
+        // Release, the bytes have been copied out before the writer may overwrite them.
+        putLongRelease(address + READ_POSITION_OFFSET, readPosition + count);
+        return count;
+      }
+      if (writerClosed) {
+        return -1;
+      }
+      await(iteration++);
+    }
+  }
+
+  /** Marks the end of the data, the reader observes the end once it has read all bytes. */
+  public void closeWriter() {
+    putIntVolatile(address + WRITER_CLOSED_OFFSET, 1);
+  }
+
+  /** Marks that no more data will be read, failing any further writes. */
+  public void closeReader() {
+    putIntVolatile(address + READER_CLOSED_OFFSET, 1);
+  }
+
+  /** Fails any reads and writes within this process which are blocked or issued later. */
+  public void close() {
+    closedLocally = true;
+  }
+
+  public OutputStream getOutputStream() {
+    return new OutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        SharedMemoryRingBuffer.this.write(b, off, len);
+      }
+    };
+  }
+
+  public InputStream getInputStream() {
+    return new InputStream() {
+      @Override
+      public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        return SharedMemoryRingBuffer.this.read(b, off, len);
+      }
+    };
+  }
+
+  private static void await(int iteration) throws InterruptedIOException {
+    if (iteration < SPIN_ITERATIONS) {
+      return;
+    }
+    if (iteration < YIELD_ITERATIONS) {
+      Thread.yield();
+      return;
+    }
+    LockSupport.parkNanos(
+        Math.min(MAX_PARK_NANOS, 1000L << Math.min(iteration - YIELD_ITERATIONS, 10)));
+    if (Thread.currentThread().isInterrupted()) {
+      throw new InterruptedIOException();
+    }
+  }
+}
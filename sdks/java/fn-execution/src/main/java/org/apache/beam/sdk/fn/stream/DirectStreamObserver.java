@@ -109,6 +109,14 @@ public final class DirectStreamObserver<T> implements StreamObserver<T> {
     }
   }
 
+  /**
+   * Returns whether the underlying {@link CallStreamObserver} is ready to accept more messages
+   * without buffering.
+   */
+  public boolean isReady() {
+    return outboundObserver.isReady();
+  }
+
   @Override
   public void onError(Throwable t) {
     synchronized (lock) {
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.fn.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link AdaptiveBufferLimit}. */
+@RunWith(JUnit4.class)
+public class AdaptiveBufferLimitTest {
+  private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @Test
+  public void testLimitFollowsThroughput() {
+    AdaptiveBufferLimit limit = new AdaptiveBufferLimit(100, 10000, 10);
+    assertEquals(100, limit.getLimitBytes());
+
+    // 500 bytes per ms fills 5000 bytes within the 10ms target.
+    for (int i = 0; i < 20; ++i) {
+      limit.onFirstBuffered(i * MS);
+      assertEquals(MS, limit.onFlush(500, (i + 1) * MS));
+    }
+    assertEquals(5000, limit.getLimitBytes(), 10);
+
+    // A burst grows the limit up to the maximum.
+    for (int i = 0; i < 20; ++i) {
+      limit.onFirstBuffered(100 * MS);
+      limit.onFlush(100000, 101 * MS);
+    }
+    assertEquals(10000, limit.getLimitBytes());
+
+    // A trickle shrinks the limit down to the minimum.
+    for (int i = 0; i < 40; ++i) {
+      limit.onFirstBuffered(1000 * MS);
+      limit.onFlush(1, 1010 * MS);
+    }
+    assertEquals(100, limit.getLimitBytes());
+  }
+
+  @Test
+  public void testIsOverdue() {
+    AdaptiveBufferLimit limit = new AdaptiveBufferLimit(100, 10000, 10);
+    assertFalse(limit.isOverdue(100 * MS));
+
+    limit.onFirstBuffered(100 * MS);
+    // Only the first buffered bytes determine how long the buffer has been waiting.
+    limit.onFirstBuffered(105 * MS);
+    assertFalse(limit.isOverdue(109 * MS));
+    assertTrue(limit.isOverdue(110 * MS));
+
+    assertEquals(10 * MS, limit.onFlush(10, 110 * MS));
+    assertFalse(limit.isOverdue(200 * MS));
+  }
+}
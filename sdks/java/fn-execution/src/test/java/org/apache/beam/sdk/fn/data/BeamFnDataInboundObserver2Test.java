@@ -22,6 +22,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -37,6 +38,7 @@ import org.apache.beam.sdk.fn.test.TestExecutors.TestExecutorService;
 import org.apache.beam.sdk.transforms.windowing.GlobalWindow;
 import org.apache.beam.sdk.util.WindowedValue;
 import org.apache.beam.vendor.grpc.v1p43p2.com.google.protobuf.ByteString;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Strings;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -99,6 +101,38 @@ public class BeamFnDataInboundObserver2Test {
     future.get();
   }
 
+  @Test
+  public void testDecodesFlatAndRopeData() throws Exception {
+    Collection<WindowedValue<String>> values = new ArrayList<>();
+    BeamFnDataInboundObserver2 observer =
+        BeamFnDataInboundObserver2.forConsumers(
+            Arrays.asList(DataEndpoint.create(TRANSFORM_ID, CODER, values::add)),
+            Collections.emptyList());
+
+    String first = Strings.repeat("A", 100);
+    String second = Strings.repeat("B", 100);
+    ByteString encoded = dataWith(first, second).getData(0).getData();
+    // Split in the middle of the first element so the decoder has to read across the two halves.
+    ByteString rope = encoded.substring(0, 50).concat(encoded.substring(50));
+    assertTrue(rope.asReadOnlyByteBufferList().size() > 1);
+
+    observer.accept(dataWith(first));
+    observer.accept(
+        BeamFnApi.Elements.newBuilder()
+            .addData(
+                BeamFnApi.Elements.Data.newBuilder()
+                    .setTransformId(TRANSFORM_ID)
+                    .setData(rope)
+                    .setIsLast(true))
+            .build());
+    observer.awaitCompletion();
+
+    assertThat(
+        values,
+        contains(
+            valueInGlobalWindow(first), valueInGlobalWindow(first), valueInGlobalWindow(second)));
+  }
+
   @Test
   public void testAwaitCompletionFailureVisibleToAwaitCompletionCallerAndProducer()
       throws Exception {
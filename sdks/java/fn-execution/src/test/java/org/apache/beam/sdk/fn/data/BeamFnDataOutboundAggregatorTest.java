@@ -28,6 +28,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi;
@@ -42,6 +43,7 @@ import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.options.PipelineOptionsFactory;
 import org.apache.beam.vendor.grpc.v1p43p2.com.google.protobuf.ByteString;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.Uninterruptibles;
 import org.hamcrest.Matchers;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -114,6 +116,28 @@ public class BeamFnDataOutboundAggregatorTest {
     assertEquals(endMessage(), values.get(2));
   }
 
+  @Test
+  public void testSendNanos() throws Exception {
+    BeamFnDataOutboundAggregator aggregator =
+        new BeamFnDataOutboundAggregator(
+            PipelineOptionsFactory.create(),
+            endpoint::getInstructionId,
+            TestStreams.<Elements>withOnNext(
+                    elements -> Uninterruptibles.sleepUninterruptibly(10, TimeUnit.MILLISECONDS))
+                .build(),
+            false);
+    FnDataReceiver<byte[]> dataReceiver = registerOutputLocation(aggregator, endpoint, CODER);
+    dataReceiver.accept(new byte[50]);
+    assertEquals(0L, aggregator.getAndResetSendNanos());
+
+    // Only the time spent sending the elements at the end of the bundle is measured.
+    aggregator.sendOrCollectBufferedDataAndFinishOutboundStreams();
+    assertThat(
+        aggregator.getAndResetSendNanos(),
+        Matchers.greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(10)));
+    assertEquals(0L, aggregator.getAndResetSendNanos());
+  }
+
   @Test
   public void testConfiguredBufferLimit() throws Exception {
     List<BeamFnApi.Elements> values = new ArrayList<>();
@@ -269,6 +293,74 @@ public class BeamFnDataOutboundAggregatorTest {
     }
   }
 
+  @Test
+  public void testAdaptiveBufferLimitDeferredWhileNotReady() throws Exception {
+    List<Elements> values = new ArrayList<>();
+    AtomicBoolean isReady = new AtomicBoolean();
+    PipelineOptions options = PipelineOptionsFactory.create();
+    options
+        .as(ExperimentalOptions.class)
+        .setExperiments(
+            Arrays.asList(
+                "data_buffer_size_limit=100000", "data_buffer_adaptive_target_latency_ms=100000"));
+    BeamFnDataOutboundAggregator aggregator =
+        new BeamFnDataOutboundAggregator(
+            options,
+            endpoint::getInstructionId,
+            TestStreams.<Elements>withOnNext(values::add).withIsReady(isReady::get).build(),
+            false);
+    FnDataReceiver<byte[]> dataReceiver = registerOutputLocation(aggregator, endpoint, CODER);
+    aggregator.start();
+
+    // Test that nothing is emitted past the initial adaptive limit while the stream is not ready.
+    dataReceiver.accept(new byte[BeamFnDataOutboundAggregator.ADAPTIVE_MIN_BUFFER_LIMIT_BYTES]);
+    assertThat(values, empty());
+
+    // Test that we emit once the stream becomes ready.
+    isReady.set(true);
+    dataReceiver.accept(new byte[1]);
+    assertEquals(
+        messageWithData(
+            new byte[BeamFnDataOutboundAggregator.ADAPTIVE_MIN_BUFFER_LIMIT_BYTES], new byte[1]),
+        values.get(0));
+
+    // Test that the size-based threshold still applies while the stream is not ready.
+    isReady.set(false);
+    dataReceiver.accept(new byte[100000]);
+    assertEquals(messageWithData(new byte[100000]), values.get(1));
+    aggregator.discard();
+  }
+
+  @Test
+  public void testAdaptiveBufferLatencyTarget() throws Exception {
+    List<Elements> values = new ArrayList<>();
+    PipelineOptions options = PipelineOptionsFactory.create();
+    options
+        .as(ExperimentalOptions.class)
+        .setExperiments(Arrays.asList("data_buffer_adaptive_target_latency_ms=1"));
+    final CountDownLatch waitForFlush = new CountDownLatch(1);
+    BeamFnDataOutboundAggregator aggregator =
+        new BeamFnDataOutboundAggregator(
+            options,
+            endpoint::getInstructionId,
+            TestStreams.withOnNext(
+                    (Consumer<Elements>)
+                        e -> {
+                          values.add(e);
+                          waitForFlush.countDown();
+                        })
+                .build(),
+            false);
+
+    // Test that it emits once the buffered data waited for the target latency
+    FnDataReceiver<byte[]> dataReceiver = registerOutputLocation(aggregator, endpoint, CODER);
+    aggregator.start();
+    dataReceiver.accept(new byte[1]);
+    waitForFlush.await(); // wait the flush thread to flush the buffer
+    assertEquals(messageWithData(new byte[1]), values.get(0));
+    aggregator.discard();
+  }
+
   @Test
   public void testConfiguredBufferLimitMultipleEndpoints() throws Exception {
     List<BeamFnApi.Elements> values = new ArrayList<>();
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.fn.data;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.emptyIterable;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.Elements;
+import org.apache.beam.model.pipeline.v1.Endpoints.ApiServiceDescriptor;
+import org.apache.beam.sdk.fn.test.TestStreams;
+import org.apache.beam.vendor.grpc.v1p43p2.com.google.protobuf.ByteString;
+import org.apache.beam.vendor.grpc.v1p43p2.io.grpc.stub.StreamObserver;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link SharedMemoryDataChannel}. */
+@RunWith(JUnit4.class)
+public class SharedMemoryDataChannelTest {
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static Elements elements(String instructionId, int size) {
+    return Elements.newBuilder()
+        .addData(
+            Elements.Data.newBuilder()
+                .setInstructionId(instructionId)
+                .setTransformId("transform")
+                .setData(ByteString.copyFrom(new byte[size])))
+        .build();
+  }
+
+  @Test
+  public void testDescriptor() {
+    Path directory = tempFolder.getRoot().toPath();
+    ApiServiceDescriptor descriptor = SharedMemoryDataChannel.descriptorFor(directory);
+    assertTrue(SharedMemoryDataChannel.isSharedMemory(descriptor));
+    assertFalse(
+        SharedMemoryDataChannel.isSharedMemory(
+            ApiServiceDescriptor.newBuilder().setUrl("localhost:1234").build()));
+  }
+
+  @Test
+  public void testConnectAndExchangeElements() throws Exception {
+    Path directory = tempFolder.getRoot().toPath();
+    // Rings smaller than the messages exercise flow control between the two sides.
+    SharedMemoryDataChannel client =
+        SharedMemoryDataChannel.connect(SharedMemoryDataChannel.descriptorFor(directory), 1024);
+    Path readyMarker;
+    try (DirectoryStream<Path> markers =
+        Files.newDirectoryStream(directory, "*" + SharedMemoryDataChannel.READY_SUFFIX)) {
+      readyMarker = markers.iterator().next();
+    }
+    SharedMemoryDataChannel server = SharedMemoryDataChannel.accept(readyMarker);
+    // The files are removed once the connection has been accepted.
+    try (DirectoryStream<Path> remaining = Files.newDirectoryStream(directory)) {
+      assertThat(remaining, emptyIterable());
+    }
+
+    List<Elements> receivedByServer = new ArrayList<>();
+    CountDownLatch serverCompleted = new CountDownLatch(1);
+    server.start(
+        TestStreams.<Elements>withOnNext(receivedByServer::add)
+            .withOnCompleted(serverCompleted::countDown)
+            .build());
+    List<Elements> receivedByClient = new ArrayList<>();
+    CountDownLatch clientCompleted = new CountDownLatch(1);
+    client.start(
+        TestStreams.<Elements>withOnNext(receivedByClient::add)
+            .withOnCompleted(clientCompleted::countDown)
+            .build());
+
+    StreamObserver<Elements> clientOutbound = client.getOutboundObserver();
+    clientOutbound.onNext(elements("A", 10));
+    clientOutbound.onNext(elements("B", 5000));
+    clientOutbound.onCompleted();
+    StreamObserver<Elements> serverOutbound = server.getOutboundObserver();
+    serverOutbound.onNext(elements("C", 3000));
+    serverOutbound.onCompleted();
+
+    assertTrue(serverCompleted.await(10, TimeUnit.SECONDS));
+    assertThat(receivedByServer, contains(elements("A", 10), elements("B", 5000)));
+    assertTrue(clientCompleted.await(10, TimeUnit.SECONDS));
+    assertEquals(1, receivedByClient.size());
+    assertEquals(elements("C", 3000), receivedByClient.get(0));
+    client.close();
+    server.close();
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.fn.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link SharedMemoryRingBuffer}. */
+@RunWith(JUnit4.class)
+public class SharedMemoryRingBufferTest {
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testCapacityMustBePowerOfTwo() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> SharedMemoryRingBuffer.create(tempFolder.getRoot().toPath().resolve("ring"), 1000));
+  }
+
+  @Test
+  public void testTransferLargerThanCapacity() throws Exception {
+    Path file = tempFolder.getRoot().toPath().resolve("ring");
+    SharedMemoryRingBuffer writer = SharedMemoryRingBuffer.create(file, 64);
+    // A separate mapping of the same file, as used by another process.
+    SharedMemoryRingBuffer reader = SharedMemoryRingBuffer.open(file);
+    assertEquals(64, reader.getCapacity());
+
+    byte[] expected = new byte[10000];
+    new Random(42).nextBytes(expected);
+    Future<byte[]> received =
+        executor.submit(
+            () -> {
+              ByteArrayOutputStream output = new ByteArrayOutputStream();
+              try (InputStream input = reader.getInputStream()) {
+                byte[] buffer = new byte[37];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                  output.write(buffer, 0, read);
+                }
+              }
+              return output.toByteArray();
+            });
+
+    // Uneven writes wrap around the end of the ring at different offsets.
+    for (int offset = 0; offset < expected.length; offset += 99) {
+      writer.write(expected, offset, Math.min(99, expected.length - offset));
+    }
+    writer.closeWriter();
+    assertArrayEquals(expected, received.get());
+  }
+
+  @Test
+  public void testWriteFailsOnceReaderIsClosed() throws Exception {
+    Path file = tempFolder.getRoot().toPath().resolve("ring");
+    SharedMemoryRingBuffer writer = SharedMemoryRingBuffer.create(file, 16);
+    SharedMemoryRingBuffer reader = SharedMemoryRingBuffer.open(file);
+
+    // Fill the ring so that the next write blocks until the reader is closed.
+    writer.write(new byte[16], 0, 16);
+    Future<?> blockedWrite =
+        executor.submit(
+            () -> {
+              writer.write(new byte[1], 0, 1);
+              return null;
+            });
+    reader.closeReader();
+    assertThrows(Exception.class, blockedWrite::get);
+    assertThrows(IOException.class, () -> writer.write(new byte[1], 0, 1));
+  }
+
+  @Test
+  public void testReadFailsOnceClosedLocally() throws Exception {
+    SharedMemoryRingBuffer ring =
+        SharedMemoryRingBuffer.create(tempFolder.getRoot().toPath().resolve("ring"), 16);
+    Future<Integer> blockedRead = executor.submit(() -> ring.read(new byte[1], 0, 1));
+    ring.close();
+    assertThrows(Exception.class, blockedRead::get);
+  }
+}
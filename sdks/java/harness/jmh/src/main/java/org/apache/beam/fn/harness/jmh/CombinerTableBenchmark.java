@@ -22,7 +22,9 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 import java.util.ArrayList;
 import java.util.List;
 import org.apache.beam.fn.harness.Caches;
+import org.apache.beam.fn.harness.GroupingTable;
 import org.apache.beam.fn.harness.PrecombineGroupingTable;
+import org.apache.beam.fn.harness.PrimitivePrecombineGroupingTable;
 import org.apache.beam.sdk.coders.StringUtf8Coder;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.options.PipelineOptionsFactory;
@@ -47,22 +49,31 @@ public class CombinerTableBenchmark {
     final int numPerKey = 1000;
     final Combine.BinaryCombineIntegerFn sumInts = Sum.ofIntegers();
     final PipelineOptions options = PipelineOptionsFactory.create();
-    PrecombineGroupingTable<String, Integer, int[]> groupingTable;
+    GroupingTable<String, Integer, int[]> groupingTable;
     List<WindowedValue<KV<String, Integer>>> elements;
 
     @Param({"true", "false"})
     public String globallyWindowed;
 
+    @Param({"true", "false"})
+    public String primitive;
+
     @Setup(Level.Invocation)
     public void setUp() {
-      groupingTable =
-          PrecombineGroupingTable.combiningAndSampling(
-              options,
-              Caches.eternal(),
-              sumInts,
-              StringUtf8Coder.of(),
-              .001,
-              Boolean.valueOf(globallyWindowed));
+      if (Boolean.valueOf(primitive)) {
+        groupingTable =
+            PrimitivePrecombineGroupingTable.combining(
+                Caches.eternal(), sumInts, StringUtf8Coder.of(), Boolean.valueOf(globallyWindowed));
+      } else {
+        groupingTable =
+            PrecombineGroupingTable.combiningAndSampling(
+                options,
+                Caches.eternal(),
+                sumInts,
+                StringUtf8Coder.of(),
+                .001,
+                Boolean.valueOf(globallyWindowed));
+      }
       elements = new ArrayList<>();
       for (int i = 0; i < numKeys; i++) {
         elements.add(WindowedValue.valueInGlobalWindow(KV.of(Integer.toString(i), i)));
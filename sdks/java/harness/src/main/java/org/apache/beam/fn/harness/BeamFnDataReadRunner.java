@@ -32,6 +32,7 @@ import org.apache.beam.fn.harness.HandlesSplits.SplitResult;
 import org.apache.beam.fn.harness.control.BundleProgressReporter;
 import org.apache.beam.fn.harness.state.BeamFnStateClient;
 import org.apache.beam.fn.harness.state.StateBackedIterable.StateBackedIterableTranslationContext;
+import org.apache.beam.fn.harness.state.StateFetchingIterators;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.ProcessBundleSplitRequest;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.ProcessBundleSplitRequest.DesiredSplit;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.ProcessBundleSplitResponse;
@@ -97,6 +98,7 @@ public class BeamFnDataReadRunner<OutputT> {
               context.getProcessBundleInstructionIdSupplier(),
               context.getCoders(),
               context.getBeamFnStateClient(),
+              StateFetchingIterators.getReadAheadPages(context.getPipelineOptions()),
               context::addBundleProgressReporter,
               consumer);
       context.addIncomingDataEndpoint(
@@ -129,6 +131,7 @@ public class BeamFnDataReadRunner<OutputT> {
       Supplier<String> processBundleInstructionIdSupplier,
       Map<String, RunnerApi.Coder> coders,
       BeamFnStateClient beamFnStateClient,
+      int stateReadAheadPages,
       Consumer<BundleProgressReporter> addBundleProgressReporter,
       FnDataReceiver<WindowedValue<OutputT>> consumer)
       throws IOException {
@@ -160,6 +163,11 @@ public class BeamFnDataReadRunner<OutputT> {
                   public Supplier<String> getCurrentInstructionId() {
                     return processBundleInstructionIdSupplier;
                   }
+
+                  @Override
+                  public int getStateReadAheadPages() {
+                    return stateReadAheadPages;
+                  }
                 });
 
     dataChannelReadIndexShortId =
@@ -26,6 +26,7 @@ import java.util.function.Supplier;
 import org.apache.beam.fn.harness.PTransformRunnerFactory.Context;
 import org.apache.beam.fn.harness.state.BeamFnStateClient;
 import org.apache.beam.fn.harness.state.StateBackedIterable.StateBackedIterableTranslationContext;
+import org.apache.beam.fn.harness.state.StateFetchingIterators;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.RemoteGrpcPort;
 import org.apache.beam.model.pipeline.v1.RunnerApi.Components;
@@ -88,6 +89,11 @@ public class BeamFnDataWriteRunner<InputT> {
                     public Supplier<String> getCurrentInstructionId() {
                       return context.getProcessBundleInstructionIdSupplier();
                     }
+
+                    @Override
+                    public int getStateReadAheadPages() {
+                      return StateFetchingIterators.getReadAheadPages(context.getPipelineOptions());
+                    }
                   });
       context.addPCollectionConsumer(
           getOnlyElement(context.getPTransform().getInputsMap().values()),
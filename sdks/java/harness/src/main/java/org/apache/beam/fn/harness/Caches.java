@@ -25,11 +25,13 @@ import java.util.WeakHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
+import javax.annotation.Nullable;
 import org.apache.beam.fn.harness.Cache.Shrinkable;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.options.SdkHarnessOptions;
 import org.apache.beam.sdk.util.Weighted;
 import org.apache.beam.sdk.util.WeightedValue;
+import org.apache.beam.vendor.grpc.v1p43p2.com.google.protobuf.ByteString;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.CacheBuilder;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.CacheStats;
@@ -128,8 +130,25 @@ public final class Caches {
    * parameters within {@link SdkHarnessOptions}.
    */
   public static <K, V> Cache<K, V> fromOptions(PipelineOptions options) {
+    SdkHarnessOptions sdkHarnessOptions = options.as(SdkHarnessOptions.class);
     return forMaximumBytes(
-        ((long) options.as(SdkHarnessOptions.class).getMaxCacheMemoryUsageMb()) << 20);
+        ((long) sdkHarnessOptions.getMaxCacheMemoryUsageMb()) << 20,
+        OffHeapCache.fromOptions(sdkHarnessOptions));
+  }
+
+  /**
+   * Returns a view of the off-heap tier of the specified cache which uses the same key prefix as
+   * the specified cache, or {@code null} if the cache has no off-heap tier.
+   *
+   * <p>Values stored in the off-heap tier are encoded bytes which are copied on every lookup.
+   * Callers are responsible for invalidating entries when the data they represent changes.
+   */
+  public static <K> @Nullable Cache<K, ByteString> offHeapTier(Cache<?, ?> cache) {
+    if (cache instanceof SubCache && ((SubCache<?, ?>) cache).offHeapCache != null) {
+      return new OffHeapSubCache<>(
+          ((SubCache<?, ?>) cache).offHeapCache, ((SubCache<?, ?>) cache).keyPrefix);
+    }
+    return null;
   }
 
   /**
@@ -145,7 +164,8 @@ public final class Caches {
           ((SubCache<?, ?>) cache).cache,
           ((SubCache<?, ?>) cache).keyPrefix.subKey(keyPrefix, additionalKeyPrefix),
           ((SubCache<?, ?>) cache).maxWeightInBytes,
-          ((SubCache<?, ?>) cache).weightInBytes);
+          ((SubCache<?, ?>) cache).weightInBytes,
+          ((SubCache<?, ?>) cache).offHeapCache);
     }
     throw new IllegalArgumentException(
         String.format(
@@ -155,6 +175,12 @@ public final class Caches {
 
   @VisibleForTesting
   static <K, V> Cache<K, V> forMaximumBytes(long maximumBytes) {
+    return forMaximumBytes(maximumBytes, null);
+  }
+
+  @VisibleForTesting
+  static <K, V> Cache<K, V> forMaximumBytes(
+      long maximumBytes, @Nullable OffHeapCache offHeapCache) {
     // We specifically use Guava cache since it allows for recursive computeIfAbsent calls
     // preventing deadlock from occurring when a loading function mutates the underlying cache
     LongAdder weightInBytes = new LongAdder();
@@ -192,7 +218,8 @@ public final class Caches {
             .getCache(),
         CompositeKeyPrefix.ROOT,
         maximumBytes,
-        weightInBytes);
+        weightInBytes,
+        offHeapCache);
   }
 
   private static long findWeight(Object o) {
@@ -232,6 +259,7 @@ public final class Caches {
     private final CompositeKeyPrefix keyPrefix;
     private final long maxWeightInBytes;
     private final LongAdder weightInBytes;
+    private final @Nullable OffHeapCache offHeapCache;
 
     SubCache(
         org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.Cache<
@@ -239,11 +267,13 @@ public final class Caches {
             cache,
         CompositeKeyPrefix keyPrefix,
         long maxWeightInBytes,
-        LongAdder weightInBytes) {
+        LongAdder weightInBytes,
+        @Nullable OffHeapCache offHeapCache) {
       this.cache = cache;
       this.keyPrefix = keyPrefix;
       this.maxWeightInBytes = maxWeightInBytes;
       this.weightInBytes = weightInBytes;
+      this.offHeapCache = offHeapCache;
     }
 
     @Override
@@ -284,15 +314,67 @@ public final class Caches {
     @Override
     public String describeStats() {
       CacheStats stats = cache.stats();
-      return String.format(
-          "used/max %d/%d MB, hit %.2f%%, lookups %d, avg load time %.0f ns, loads %d, evictions %d",
-          weightInBytes.longValue() >> 20,
-          maxWeightInBytes >> 20,
-          stats.hitRate() * 100.,
-          stats.requestCount(),
-          stats.averageLoadPenalty(),
-          stats.loadCount(),
-          stats.evictionCount());
+      String onHeapStats =
+          String.format(
+              "used/max %d/%d MB, hit %.2f%%, lookups %d, avg load time %.0f ns, loads %d, evictions %d",
+              weightInBytes.longValue() >> 20,
+              maxWeightInBytes >> 20,
+              stats.hitRate() * 100.,
+              stats.requestCount(),
+              stats.averageLoadPenalty(),
+              stats.loadCount(),
+              stats.evictionCount());
+      if (offHeapCache == null) {
+        return onHeapStats;
+      }
+      return onHeapStats + "; " + offHeapCache.describeStats();
+    }
+  }
+
+  /**
+   * A view of an {@link OffHeapCache} that operates on keys with a specified key prefix.
+   *
+   * <p>Loading functions passed to {@link #computeIfAbsent} are invoked without holding any lock so
+   * concurrent callers may load the same value more than once.
+   */
+  private static class OffHeapSubCache<K> implements Cache<K, ByteString> {
+    private final OffHeapCache offHeapCache;
+    private final CompositeKeyPrefix keyPrefix;
+
+    OffHeapSubCache(OffHeapCache offHeapCache, CompositeKeyPrefix keyPrefix) {
+      this.offHeapCache = offHeapCache;
+      this.keyPrefix = keyPrefix;
+    }
+
+    @Override
+    public ByteString peek(K key) {
+      return offHeapCache.get(keyPrefix.offHeapKey(key));
+    }
+
+    @Override
+    public ByteString computeIfAbsent(K key, Function<K, ByteString> loadingFunction) {
+      OffHeapKey offHeapKey = keyPrefix.offHeapKey(key);
+      ByteString value = offHeapCache.get(offHeapKey);
+      if (value == null) {
+        value = loadingFunction.apply(key);
+        offHeapCache.put(offHeapKey, value);
+      }
+      return value;
+    }
+
+    @Override
+    public void put(K key, ByteString value) {
+      offHeapCache.put(keyPrefix.offHeapKey(key), value);
+    }
+
+    @Override
+    public void remove(K key) {
+      offHeapCache.remove(keyPrefix.offHeapKey(key));
+    }
+
+    @Override
+    public String describeStats() {
+      return offHeapCache.describeStats();
     }
   }
 
@@ -325,6 +407,10 @@ public final class Caches {
       return new CompositeKey(namespace, weight, k);
     }
 
+    <K> OffHeapKey offHeapKey(K k) {
+      return new OffHeapKey(namespace, k);
+    }
+
     boolean isProperPrefixOf(CompositeKey otherKey) {
       if (namespace.length > otherKey.namespace.length) {
         return false;
@@ -393,6 +479,42 @@ public final class Caches {
     }
   }
 
+  /**
+   * A key within an {@link OffHeapCache}. Unlike {@link CompositeKey} it does not need a weight and
+   * its hash code includes the key so that many keys within one namespace do not collide.
+   */
+  static class OffHeapKey {
+    private final Object[] namespace;
+    private final Object key;
+
+    private OffHeapKey(Object[] namespace, Object key) {
+      this.namespace = namespace;
+      this.key = key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof OffHeapKey)) {
+        return false;
+      }
+      OffHeapKey that = (OffHeapKey) o;
+      return Objects.equals(key, that.key) && Arrays.equals(namespace, that.namespace);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * Arrays.hashCode(namespace) + Objects.hashCode(key);
+    }
+
+    @Override
+    public String toString() {
+      return "OffHeapKey{namespace=" + Arrays.toString(namespace) + ", key=" + key + "}";
+    }
+  }
+
   /**
    * A cache that tracks keys that have been inserted into the cache and supports clearing them.
    *
@@ -407,7 +529,8 @@ public final class Caches {
           ((SubCache<K, V>) cache).cache,
           ((SubCache<CompositeKey, V>) cache).keyPrefix,
           ((SubCache<CompositeKey, V>) cache).maxWeightInBytes,
-          ((SubCache<CompositeKey, V>) cache).weightInBytes);
+          ((SubCache<CompositeKey, V>) cache).weightInBytes,
+          ((SubCache<CompositeKey, V>) cache).offHeapCache);
       // We specifically use a weak hash map so that once the key is no longer referenced we don't
       // have to keep track of it anymore and the weak hash map will garbage collect it for us.
       this.weakHashSet = Collections.newSetFromMap(new WeakHashMap<>());
@@ -76,7 +76,8 @@ public class CombineRunners {
     private final CombineFn<InputT, AccumT, ?> combineFn;
     private final FnDataReceiver<WindowedValue<KV<KeyT, AccumT>>> output;
     private final Coder<KeyT> keyCoder;
-    private PrecombineGroupingTable<KeyT, InputT, AccumT> groupingTable;
+    private final boolean isPrimitiveCombine;
+    private GroupingTable<KeyT, InputT, AccumT> groupingTable;
     private boolean isGloballyWindowed;
 
     PrecombineRunner(
@@ -104,17 +105,27 @@ public class CombineRunners {
       this.output = output;
       this.keyCoder = keyCoder;
       this.isGloballyWindowed = isGloballyWindowed;
+      this.isPrimitiveCombine = PrimitivePrecombineGroupingTable.isSupported(combineFn, keyCoder);
     }
 
     void startBundle() {
-      groupingTable =
-          PrecombineGroupingTable.combiningAndSampling(
-              options,
-              Caches.subCache(bundleCache.get(), ptransformId),
-              combineFn,
-              keyCoder,
-              0.001 /*sizeEstimatorSampleRate*/,
-              isGloballyWindowed);
+      if (isPrimitiveCombine) {
+        groupingTable =
+            PrimitivePrecombineGroupingTable.combining(
+                Caches.subCache(bundleCache.get(), ptransformId),
+                combineFn,
+                keyCoder,
+                isGloballyWindowed);
+      } else {
+        groupingTable =
+            PrecombineGroupingTable.combiningAndSampling(
+                options,
+                Caches.subCache(bundleCache.get(), ptransformId),
+                combineFn,
+                keyCoder,
+                0.001 /*sizeEstimatorSampleRate*/,
+                isGloballyWindowed);
+      }
     }
 
     void processElement(WindowedValue<KV<KeyT, InputT>> elem) throws Exception {
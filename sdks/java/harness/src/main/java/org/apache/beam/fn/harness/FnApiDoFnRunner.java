@@ -85,6 +85,7 @@ import org.apache.beam.sdk.transforms.DoFn;
 import org.apache.beam.sdk.transforms.DoFn.BundleFinalizer;
 import org.apache.beam.sdk.transforms.DoFn.MultiOutputReceiver;
 import org.apache.beam.sdk.transforms.DoFn.OutputReceiver;
+import org.apache.beam.sdk.transforms.DoFn.ParallelProcessElement;
 import org.apache.beam.sdk.transforms.DoFnOutputReceivers;
 import org.apache.beam.sdk.transforms.DoFnSchemaInformation;
 import org.apache.beam.sdk.transforms.SerializableFunction;
@@ -93,6 +94,7 @@ import org.apache.beam.sdk.transforms.reflect.DoFnInvoker.BaseArgumentProvider;
 import org.apache.beam.sdk.transforms.reflect.DoFnInvoker.DelegatingArgumentProvider;
 import org.apache.beam.sdk.transforms.reflect.DoFnInvokers;
 import org.apache.beam.sdk.transforms.reflect.DoFnSignature;
+import org.apache.beam.sdk.transforms.reflect.DoFnSignature.Parameter.BundleFinalizerParameter;
 import org.apache.beam.sdk.transforms.reflect.DoFnSignature.StateDeclaration;
 import org.apache.beam.sdk.transforms.reflect.DoFnSignature.TimerFamilyDeclaration;
 import org.apache.beam.sdk.transforms.reflect.DoFnSignatures;
@@ -130,6 +132,8 @@ import org.joda.time.DateTimeUtils;
 import org.joda.time.Duration;
 import org.joda.time.Instant;
 import org.joda.time.format.PeriodFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A {@link DoFnRunner} specific to integrating with the Fn Api. This is to remove the layers of
@@ -142,6 +146,8 @@ import org.joda.time.format.PeriodFormat;
   "keyfor"
 })
 public class FnApiDoFnRunner<InputT, RestrictionT, PositionT, WatermarkEstimatorStateT, OutputT> {
+  private static final Logger LOG = LoggerFactory.getLogger(FnApiDoFnRunner.class);
+
   /** A registrar which provides a factory to handle Java {@link DoFn}s. */
   @AutoService(PTransformRunnerFactory.Registrar.class)
   public static class Registrar implements PTransformRunnerFactory.Registrar {
@@ -239,6 +245,7 @@ public class FnApiDoFnRunner<InputT, RestrictionT, PositionT, WatermarkEstimator
   private final Map<String, FnDataReceiver<?>> outboundTimerReceivers;
   private final @Nullable FnApiTimerBundleTracker timerBundleTracker;
   private final DoFnInvoker<InputT, OutputT> doFnInvoker;
+  private final @Nullable ParallelElementProcessor parallelElementProcessor;
   private final StartBundleArgumentProvider startBundleArgumentProvider;
   private final ProcessBundleContextBase processContext;
   private final OnTimerContext<?> onTimerContext;
@@ -490,6 +497,10 @@ public class FnApiDoFnRunner<InputT, RestrictionT, PositionT, WatermarkEstimator
     this.doFnSchemaInformation = ParDoTranslation.getSchemaInformation(parDoPayload);
     this.sideInputMapping = ParDoTranslation.getSideInputMapping(parDoPayload);
     this.doFnInvoker = DoFnInvokers.tryInvokeSetupFor(doFn, pipelineOptions);
+    this.parallelElementProcessor = createParallelElementProcessor();
+    if (parallelElementProcessor != null) {
+      addResetFunction.accept(parallelElementProcessor::reset);
+    }
 
     this.startBundleArgumentProvider = new StartBundleArgumentProvider();
     // Register the appropriate handlers.
@@ -517,7 +528,10 @@ public class FnApiDoFnRunner<InputT, RestrictionT, PositionT, WatermarkEstimator
     final FnDataReceiver<WindowedValue> mainInputConsumer;
     switch (pTransform.getSpec().getUrn()) {
       case PTransformTranslation.PAR_DO_TRANSFORM_URN:
-        if (doFnSignature.processElement().observesWindow() || !sideInputMapping.isEmpty()) {
+        if (parallelElementProcessor != null) {
+          mainInputConsumer = this::processElementForParallelParDo;
+          this.processContext = new NonWindowObservingProcessBundleContext();
+        } else if (doFnSignature.processElement().observesWindow() || !sideInputMapping.isEmpty()) {
           mainInputConsumer = this::processElementForWindowObservingParDo;
           this.processContext = new WindowObservingProcessBundleContext();
         } else {
@@ -790,10 +804,56 @@ public class FnApiDoFnRunner<InputT, RestrictionT, PositionT, WatermarkEstimator
     return null;
   }
 
+  /**
+   * Returns a {@link ParallelElementProcessor} if the {@link DoFn} is annotated with {@link
+   * ParallelProcessElement} and may be invoked concurrently, null otherwise.
+   */
+  private @Nullable ParallelElementProcessor createParallelElementProcessor() {
+    ParallelProcessElement annotation = doFn.getClass().getAnnotation(ParallelProcessElement.class);
+    if (annotation == null
+        || !PTransformTranslation.PAR_DO_TRANSFORM_URN.equals(pTransform.getSpec().getUrn())) {
+      return null;
+    }
+    if (doFnSignature.usesState()
+        || doFnSignature.usesTimers()
+        || doFnSignature.processElement().isSplittable()
+        || !tagToSideInputSpecMap.isEmpty()
+        || doFnSignature.processElement().extraParameters().stream()
+            .anyMatch(parameter -> parameter instanceof BundleFinalizerParameter)) {
+      LOG.warn(
+          "Ignoring @{} on {} of transform {} which uses state, timers, side inputs, a bundle "
+              + "finalizer or is splittable. Elements will be processed one at a time.",
+          ParallelProcessElement.class.getSimpleName(),
+          doFn.getClass().getName(),
+          pTransformId);
+      return null;
+    }
+    return new ParallelElementProcessor(
+        ParallelElementProcessor.createExecutor(
+            "ParallelProcessElement-" + pTransformId, annotation.maxParallelism()),
+        annotation.maxParallelism());
+  }
+
   private void startBundle() {
     doFnInvoker.invokeStartBundle(startBundleArgumentProvider);
   }
 
+  private void processElementForParallelParDo(WindowedValue<InputT> elem) throws Exception {
+    parallelElementProcessor.submit(
+        () -> {
+          List<ThrowingRunnable> outputs = new ArrayList<>();
+          if (doFnSignature.processElement().observesWindow()) {
+            for (BoundedWindow window : elem.getWindows()) {
+              doFnInvoker.invokeProcessElement(
+                  new ParallelProcessBundleContext(elem, window, outputs));
+            }
+          } else {
+            doFnInvoker.invokeProcessElement(new ParallelProcessBundleContext(elem, null, outputs));
+          }
+          return outputs;
+        });
+  }
+
   private void processElementForParDo(WindowedValue<InputT> elem) {
     currentElement = elem;
     try {
@@ -1765,6 +1825,9 @@ public class FnApiDoFnRunner<InputT, RestrictionT, PositionT, WatermarkEstimator
   }
 
   private void finishBundle() throws Exception {
+    if (parallelElementProcessor != null) {
+      parallelElementProcessor.finish();
+    }
     if (timerBundleTracker != null) {
       timerBundleTracker.outputTimers(outboundTimerReceivers::get);
     }
@@ -1775,6 +1838,9 @@ public class FnApiDoFnRunner<InputT, RestrictionT, PositionT, WatermarkEstimator
   }
 
   private void tearDown() {
+    if (parallelElementProcessor != null) {
+      parallelElementProcessor.shutdown();
+    }
     doFnInvoker.invokeTeardown();
   }
 
@@ -2055,9 +2121,13 @@ public class FnApiDoFnRunner<InputT, RestrictionT, PositionT, WatermarkEstimator
 
   @SuppressWarnings("deprecation") // Allowed Skew is deprecated for users, but must be respected
   private void checkTimestamp(Instant timestamp) {
+    checkTimestamp(currentElement.getTimestamp(), timestamp);
+  }
+
+  private void checkTimestamp(Instant elementTimestamp, Instant timestamp) {
     Instant lowerBound;
     try {
-      lowerBound = currentElement.getTimestamp().minus(doFn.getAllowedTimestampSkew());
+      lowerBound = elementTimestamp.minus(doFn.getAllowedTimestampSkew());
     } catch (ArithmeticException e) {
       lowerBound = BoundedWindow.TIMESTAMP_MIN_VALUE;
     }
@@ -2070,7 +2140,7 @@ public class FnApiDoFnRunner<InputT, RestrictionT, PositionT, WatermarkEstimator
                   + "than %s. See the DoFn#getAllowedTimestampSkew() Javadoc for details on "
                   + "changing the allowed skew.",
               timestamp,
-              currentElement.getTimestamp(),
+              elementTimestamp,
               doFn.getAllowedTimestampSkew().getMillis() >= Integer.MAX_VALUE
                   ? doFn.getAllowedTimestampSkew()
                   : PeriodFormat.getDefault().print(doFn.getAllowedTimestampSkew().toPeriod()),
@@ -2413,6 +2483,124 @@ public class FnApiDoFnRunner<InputT, RestrictionT, PositionT, WatermarkEstimator
     }
   }
 
+  /**
+   * Provides arguments for a {@link DoFnInvoker} processing a single element concurrently with
+   * other elements of the bundle.
+   *
+   * <p>The element is held by this context instead of by the runner, and outputs are deferred to
+   * the supplied list which is run on the bundle processing thread.
+   */
+  private class ParallelProcessBundleContext extends ProcessBundleContextBase {
+    private final WindowedValue<InputT> element;
+    private final @Nullable BoundedWindow window;
+    private final List<ThrowingRunnable> outputs;
+
+    ParallelProcessBundleContext(
+        WindowedValue<InputT> element,
+        @Nullable BoundedWindow window,
+        List<ThrowingRunnable> outputs) {
+      this.element = element;
+      this.window = window;
+      this.outputs = outputs;
+    }
+
+    @Override
+    public InputT element() {
+      return element.getValue();
+    }
+
+    @Override
+    public Instant timestamp() {
+      return element.getTimestamp();
+    }
+
+    @Override
+    public PaneInfo pane() {
+      return element.getPane();
+    }
+
+    @Override
+    public BoundedWindow window() {
+      if (window == null) {
+        throw new UnsupportedOperationException(
+            "Cannot access window in non-window observing context.");
+      }
+      return window;
+    }
+
+    @Override
+    public void output(OutputT output) {
+      outputWithTimestamp(output, element.getTimestamp());
+    }
+
+    @Override
+    public <T> void output(TupleTag<T> tag, T output) {
+      outputWithTimestamp(tag, output, element.getTimestamp());
+    }
+
+    @Override
+    public void outputWithTimestamp(OutputT output, Instant timestamp) {
+      checkTimestamp(element.getTimestamp(), timestamp);
+      WindowedValue<OutputT> windowedOutput = windowedOutput(output, timestamp);
+      outputs.add(() -> outputTo(mainOutputConsumers, windowedOutput));
+    }
+
+    @Override
+    public <T> void outputWithTimestamp(TupleTag<T> tag, T output, Instant timestamp) {
+      checkTimestamp(element.getTimestamp(), timestamp);
+      Collection<FnDataReceiver<WindowedValue<T>>> consumers =
+          (Collection) localNameToConsumer.get(tag.getId());
+      if (consumers == null) {
+        throw new IllegalArgumentException(String.format("Unknown output tag %s", tag));
+      }
+      WindowedValue<T> windowedOutput = windowedOutput(output, timestamp);
+      outputs.add(() -> outputTo(consumers, windowedOutput));
+    }
+
+    private <T> WindowedValue<T> windowedOutput(T output, Instant timestamp) {
+      if (window == null) {
+        return WindowedValue.of(output, timestamp, element.getWindows(), element.getPane());
+      }
+      return WindowedValue.of(output, timestamp, window, element.getPane());
+    }
+
+    @Override
+    public BundleFinalizer bundleFinalizer() {
+      throw new UnsupportedOperationException(
+          "Cannot access BundleFinalizer when processing elements in parallel.");
+    }
+
+    @Override
+    public Object sideInput(String tagId) {
+      throw new UnsupportedOperationException(
+          "Cannot access sideInput when processing elements in parallel.");
+    }
+
+    @Override
+    public <T> T sideInput(PCollectionView<T> view) {
+      throw new UnsupportedOperationException(
+          "Cannot access sideInput when processing elements in parallel.");
+    }
+
+    @Override
+    public State state(String stateId, boolean alwaysFetched) {
+      throw new UnsupportedOperationException(
+          "Cannot access state when processing elements in parallel.");
+    }
+
+    @Override
+    public org.apache.beam.sdk.state.Timer timer(String timerId) {
+      throw new UnsupportedOperationException(
+          "Cannot access timer when processing elements in parallel.");
+    }
+
+    @Override
+    public TimerMap timerFamily(String timerFamilyId) {
+      throw new UnsupportedOperationException(
+          "Cannot access timerFamily when processing elements in parallel.");
+    }
+  }
+
   /** Base implementation that does not override methods which need to be window aware. */
   private abstract class ProcessBundleContextBase extends DoFn<InputT, OutputT>.ProcessContext
       implements DoFnInvoker.ArgumentProvider<InputT, OutputT> {
@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.beam.sdk.options.SdkHarnessOptions;
+import org.apache.beam.vendor.grpc.v1p43p2.com.google.protobuf.ByteString;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A size-bounded store of encoded bytes kept outside of the Java heap, used as an additional tier
+ * of the process wide {@link Cache}.
+ *
+ * <p>Values are appended to fixed-size segments that are either direct {@link ByteBuffer}s or
+ * memory-mapped temporary files. When all segments are full the oldest segment is recycled. Values
+ * within it that were read since they were written are given a second chance and copied into the
+ * recycled segment, all other values are evicted. Values larger than a segment are not stored.
+ *
+ * <p>Only the index of keys and offsets lives on the heap, so large cached values such as side
+ * input pages do not contribute to old-gen occupancy and garbage collection pauses.
+ */
+@ThreadSafe
+final class OffHeapCache {
+  private static final Logger LOG = LoggerFactory.getLogger(OffHeapCache.class);
+
+  /** The default size of each segment. */
+  @VisibleForTesting static final int DEFAULT_SEGMENT_SIZE = 4 << 20;
+
+  /** Allocates the memory backing a segment. */
+  @FunctionalInterface
+  interface SegmentAllocator {
+    ByteBuffer allocate(int size) throws IOException;
+  }
+
+  /** Allocates segments using {@link ByteBuffer#allocateDirect}. */
+  static final SegmentAllocator DIRECT = ByteBuffer::allocateDirect;
+
+  /** Allocates segments by memory-mapping temporary files within the given directory. */
+  static SegmentAllocator mapped(Path directory) {
+    return size -> {
+      Path file = Files.createTempFile(directory, "beam-offheap-cache", ".segment");
+      try (RandomAccessFile randomAccessFile = new RandomAccessFile(file.toFile(), "rw");
+          FileChannel channel = randomAccessFile.getChannel()) {
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      } finally {
+        // The mapping remains valid after the file has been unlinked.
+        try {
+          Files.delete(file);
+        } catch (IOException e) {
+          file.toFile().deleteOnExit();
+        }
+      }
+    };
+  }
+
+  /**
+   * Returns an off-heap cache configured by {@link SdkHarnessOptions}, or {@code null} if the
+   * off-heap tier is disabled.
+   */
+  static @Nullable OffHeapCache fromOptions(SdkHarnessOptions options) {
+    long maximumBytes = ((long) options.getMaxOffHeapCacheMemoryUsageMb()) << 20;
+    if (maximumBytes <= 0) {
+      return null;
+    }
+    String directory = options.getOffHeapCacheDirectory();
+    return new OffHeapCache(
+        maximumBytes,
+        DEFAULT_SEGMENT_SIZE,
+        directory == null ? DIRECT : mapped(Paths.get(directory)));
+  }
+
+  private static class Entry {
+    private final Object key;
+    private final int segment;
+    private final int offset;
+    private final int length;
+    private boolean accessed;
+    private boolean live = true;
+
+    private Entry(Object key, int segment, int offset, int length) {
+      this.key = key;
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  private final int segmentSize;
+  private final SegmentAllocator allocator;
+  private final ByteBuffer[] segments;
+  private final List<List<Entry>> segmentEntries;
+  private final Map<Object, Entry> index;
+  private final long maximumBytes;
+  private int head;
+  private int headOffset;
+  private long usedBytes;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+  private long rejectionCount;
+
+  OffHeapCache(long maximumBytes, int segmentSize, SegmentAllocator allocator) {
+    checkArgument(maximumBytes > 0, "maximumBytes must be positive but was %s", maximumBytes);
+    checkArgument(segmentSize > 0, "segmentSize must be positive but was %s", segmentSize);
+    this.maximumBytes = maximumBytes;
+    this.segmentSize = (int) Math.min(segmentSize, maximumBytes);
+    this.allocator = allocator;
+    int numSegments = (int) Math.min(Integer.MAX_VALUE, maximumBytes / this.segmentSize);
+    this.segments = new ByteBuffer[numSegments];
+    this.segmentEntries = new ArrayList<>(numSegments);
+    for (int i = 0; i < numSegments; ++i) {
+      segmentEntries.add(new ArrayList<>());
+    }
+    this.index = new HashMap<>();
+  }
+
+  /** Returns a copy of the value stored for the key, or {@code null} if it is not present. */
+  synchronized @Nullable ByteString get(Object key) {
+    Entry entry = index.get(key);
+    if (entry == null) {
+      missCount += 1;
+      return null;
+    }
+    hitCount += 1;
+    entry.accessed = true;
+    return read(entry);
+  }
+
+  /** Stores the value for the key, replacing any existing value. */
+  synchronized void put(Object key, ByteString value) {
+    remove(key);
+    if (value.size() > segmentSize) {
+      rejectionCount += 1;
+      return;
+    }
+    try {
+      write(key, value);
+    } catch (IOException e) {
+      LOG.warn("Unable to allocate off-heap cache segment, value will not be cached.", e);
+      rejectionCount += 1;
+    }
+  }
+
+  /** Removes the value for the key if it is present. */
+  synchronized void remove(Object key) {
+    Entry entry = index.remove(key);
+    if (entry != null) {
+      entry.live = false;
+      usedBytes -= entry.length;
+    }
+  }
+
+  synchronized long getUsedBytes() {
+    return usedBytes;
+  }
+
+  synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  synchronized long getMissCount() {
+    return missCount;
+  }
+
+  synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+
+  synchronized String describeStats() {
+    long lookups = hitCount + missCount;
+    return String.format(
+        "off-heap used/max %d/%d MB, hit %.2f%%, lookups %d, evictions %d, rejections %d",
+        usedBytes >> 20,
+        maximumBytes >> 20,
+        lookups == 0 ? 0. : hitCount * 100. / lookups,
+        lookups,
+        evictionCount,
+        rejectionCount);
+  }
+
+  private ByteString read(Entry entry) {
+    ByteBuffer buffer = segments[entry.segment].duplicate();
+    buffer.limit(entry.offset + entry.length);
+    buffer.position(entry.offset);
+    return ByteString.copyFrom(buffer);
+  }
+
+  private void write(Object key, ByteString value) throws IOException {
+    if (segments[head] == null) {
+      segments[head] = allocator.allocate(segmentSize);
+    }
+    while (headOffset + value.size() > segmentSize) {
+      advance();
+    }
+    ByteBuffer buffer = segments[head].duplicate();
+    buffer.position(headOffset);
+    value.copyTo(buffer);
+    Entry entry = new Entry(key, head, headOffset, value.size());
+    segmentEntries.get(head).add(entry);
+    index.put(key, entry);
+    headOffset += value.size();
+    usedBytes += value.size();
+  }
+
+  /** Moves the head to the next segment, recycling it if it is already in use. */
+  private void advance() throws IOException {
+    head = (head + 1) % segments.length;
+    headOffset = 0;
+    if (segments[head] == null) {
+      segments[head] = allocator.allocate(segmentSize);
+      return;
+    }
+
+    List<Entry> recycled = segmentEntries.get(head);
+    List<Entry> secondChance = new ArrayList<>();
+    List<ByteString> secondChanceValues = new ArrayList<>();
+    for (Entry entry : recycled) {
+      if (!entry.live) {
+        continue;
+      }
+      index.remove(entry.key);
+      usedBytes -= entry.length;
+      if (entry.accessed) {
+        secondChance.add(entry);
+        secondChanceValues.add(read(entry));
+      } else {
+        evictionCount += 1;
+      }
+    }
+    segmentEntries.set(head, new ArrayList<>());
+    // The values came from this segment so they are guaranteed to fit. They are written without
+    // the accessed bit so they are evicted on the next pass unless they are read again.
+    for (int i = 0; i < secondChance.size(); ++i) {
+      write(secondChance.get(i).key, secondChanceValues.get(i));
+    }
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.concurrent.NotThreadSafe;
+import org.apache.beam.sdk.function.ThrowingRunnable;
+import org.apache.beam.sdk.metrics.MetricsContainer;
+import org.apache.beam.sdk.metrics.MetricsEnvironment;
+import org.apache.beam.sdk.util.UserCodeException;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Processes the elements of a bundle on a bounded pool of threads while keeping everything else on
+ * the bundle processing thread.
+ *
+ * <p>Each submitted task processes one element and returns the outputs it produced as a list of
+ * deferred actions. The actions are run on the bundle processing thread, so downstream consumers
+ * are never invoked concurrently. The bundle processing thread blocks in {@link #submit} while the
+ * maximum number of elements are in flight and in {@link #finish} until all elements are done. The
+ * time spent waiting is therefore attributed to the owning transform by the execution state
+ * tracker. Tasks run with the metrics container that was current when they were submitted.
+ */
+@NotThreadSafe
+class ParallelElementProcessor {
+  private final ExecutorService executor;
+  private final int maxParallelism;
+  private final Set<Future<List<ThrowingRunnable>>> inFlight;
+  private CompletionService<List<ThrowingRunnable>> completionService;
+
+  ParallelElementProcessor(ExecutorService executor, int maxParallelism) {
+    checkArgument(maxParallelism > 0, "maxParallelism must be positive: %s", maxParallelism);
+    this.executor = executor;
+    this.maxParallelism = maxParallelism;
+    this.inFlight = new HashSet<>();
+    this.completionService = new ExecutorCompletionService<>(executor);
+  }
+
+  /**
+   * Returns an executor that uses a virtual thread per task if the JVM supports them and a fixed
+   * pool of daemon threads otherwise.
+   */
+  static ExecutorService createExecutor(String name, int maxParallelism) {
+    try {
+      Method newVirtualThreadPerTaskExecutor =
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) newVirtualThreadPerTaskExecutor.invoke(null);
+    } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+      // Virtual threads are unavailable or disabled in this JVM.
+    }
+    return Executors.newFixedThreadPool(
+        maxParallelism,
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat(name + "-%d").build());
+  }
+
+  /**
+   * Submits a task processing a single element, then runs the outputs of all completed tasks.
+   * Blocks while the maximum number of tasks are in flight.
+   */
+  void submit(Callable<List<ThrowingRunnable>> task) throws Exception {
+    MetricsContainer metricsContainer = MetricsEnvironment.getCurrentContainer();
+    inFlight.add(
+        completionService.submit(
+            () -> {
+              try (Closeable closeable =
+                  MetricsEnvironment.scopedMetricsContainer(metricsContainer)) {
+                return task.call();
+              }
+            }));
+
+    Future<List<ThrowingRunnable>> completed;
+    while ((completed = completionService.poll()) != null) {
+      output(completed);
+    }
+    while (inFlight.size() >= maxParallelism) {
+      output(completionService.take());
+    }
+  }
+
+  /** Waits for all tasks in flight and runs their outputs. */
+  void finish() throws Exception {
+    while (!inFlight.isEmpty()) {
+      output(completionService.take());
+    }
+  }
+
+  /** Cancels all tasks in flight, discarding their outputs. */
+  void reset() {
+    for (Future<?> future : inFlight) {
+      future.cancel(true);
+    }
+    inFlight.clear();
+    // Cancelled tasks may still be added to the previous completion queue.
+    completionService = new ExecutorCompletionService<>(executor);
+  }
+
+  void shutdown() {
+    reset();
+    executor.shutdownNow();
+  }
+
+  @VisibleForTesting
+  int getInFlightCount() {
+    return inFlight.size();
+  }
+
+  private void output(Future<List<ThrowingRunnable>> completed) throws Exception {
+    inFlight.remove(completed);
+    List<ThrowingRunnable> outputs;
+    try {
+      outputs = completed.get();
+    } catch (ExecutionException e) {
+      throw UserCodeException.wrap(e.getCause());
+    }
+    for (ThrowingRunnable output : outputs) {
+      output.run();
+    }
+  }
+}
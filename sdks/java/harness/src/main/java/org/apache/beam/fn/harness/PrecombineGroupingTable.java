@@ -54,7 +54,9 @@ import org.joda.time.Instant;
 })
 @NotThreadSafe
 public class PrecombineGroupingTable<K, InputT, AccumT>
-    implements Shrinkable<PrecombineGroupingTable<K, InputT, AccumT>>, Weighted {
+    implements GroupingTable<K, InputT, AccumT>,
+        Shrinkable<PrecombineGroupingTable<K, InputT, AccumT>>,
+        Weighted {
 
   /**
    * Returns a grouping table that combines inputs into an accumulator. The grouping table uses the
@@ -390,7 +392,7 @@ public class PrecombineGroupingTable<K, InputT, AccumT>
    * Adds the key and value to this table, possibly flushing some entries to output if the table is
    * full.
    */
-  @VisibleForTesting
+  @Override
   public void put(
       WindowedValue<KV<K, InputT>> value, FnDataReceiver<WindowedValue<KV<K, AccumT>>> receiver)
       throws Exception {
@@ -488,6 +490,7 @@ public class PrecombineGroupingTable<K, InputT, AccumT>
   }
 
   /** Flushes all entries in this table to output. */
+  @Override
   public void flush(FnDataReceiver<WindowedValue<KV<K, AccumT>>> receiver) throws Exception {
     cache.remove(Key.INSTANCE);
     for (GroupingTableEntry valueToFlush : lruMap.values()) {
@@ -540,8 +543,7 @@ public class PrecombineGroupingTable<K, InputT, AccumT>
 
     private long nextSample = 0;
 
-    private SamplingSizeEstimator(
-        SizeEstimator<T> underlying, double minSampleRate, double maxSampleRate) {
+    SamplingSizeEstimator(SizeEstimator<T> underlying, double minSampleRate, double maxSampleRate) {
       this(underlying, minSampleRate, maxSampleRate, DEFAULT_MIN_SAMPLED, new Random());
     }
 
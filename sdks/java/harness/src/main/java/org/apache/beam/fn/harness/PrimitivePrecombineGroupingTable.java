@@ -0,0 +1,523 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import org.apache.beam.fn.harness.Cache.Shrinkable;
+import org.apache.beam.fn.harness.PrecombineGroupingTable.SamplingSizeEstimator;
+import org.apache.beam.fn.harness.PrecombineGroupingTable.SizeEstimator;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.fn.data.FnDataReceiver;
+import org.apache.beam.sdk.transforms.Combine.BinaryCombineDoubleFn;
+import org.apache.beam.sdk.transforms.Combine.BinaryCombineIntegerFn;
+import org.apache.beam.sdk.transforms.Combine.BinaryCombineLongFn;
+import org.apache.beam.sdk.transforms.Combine.CombineFn;
+import org.apache.beam.sdk.transforms.Count;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.apache.beam.sdk.transforms.windowing.PaneInfo;
+import org.apache.beam.sdk.util.Weighted;
+import org.apache.beam.sdk.util.WindowedValue;
+import org.apache.beam.sdk.values.KV;
+import org.joda.time.Instant;
+
+/**
+ * A {@link GroupingTable} specialized for combine functions whose accumulator is a single
+ * primitive, such as {@code Sum}, {@code Min} and {@code Max} over integers, longs and doubles, and
+ * {@code Count}.
+ *
+ * <p>Unlike {@link PrecombineGroupingTable}, which keeps a boxed key, accumulator and bookkeeping
+ * objects per entry, this table stores the encoded keys in a single byte array and the accumulators
+ * in a {@code long[]}, indexed by an open-addressing hash table. Keys are only decoded and
+ * accumulators only boxed when entries are output. The weight of the keys and accumulators is
+ * therefore exact, and only the weight of the windows of each entry is sampled.
+ *
+ * <p>Use {@link #isSupported} to check whether a combine function and key coder can be handled.
+ *
+ * <p>{@link NotThreadSafe} because the caller must use the bundle processing thread when invoking
+ * {@link #put} and {@link #flush}. {@link #shrink} may be called from any thread.
+ */
+@SuppressWarnings({
+  "nullness" // TODO(https://github.com/apache/beam/issues/20497)
+})
+@NotThreadSafe
+public class PrimitivePrecombineGroupingTable<K, InputT, AccumT>
+    implements GroupingTable<K, InputT, AccumT>,
+        Shrinkable<PrimitivePrecombineGroupingTable<K, InputT, AccumT>>,
+        Weighted {
+
+  private static final int INITIAL_CAPACITY = 64;
+  private static final int INITIAL_KEY_BYTES = 1024;
+  // Per slot: the key offset, key length and hash, the accumulator, the output timestamp and a
+  // reference to the windows.
+  private static final long BYTES_PER_SLOT = 4 + 4 + 4 + 8 + 8 + Caches.REFERENCE_SIZE;
+  // The same rate as the size estimators of the PrecombineGroupingTable created by CombineRunners.
+  private static final double WINDOWS_SIZE_SAMPLE_RATE = 0.001;
+
+  /**
+   * Returns whether a {@link PrimitivePrecombineGroupingTable} can be used for the given combine
+   * function and key coder.
+   *
+   * <p>The combine function must be {@code Count.combineFn()} or a {@link BinaryCombineIntegerFn},
+   * {@link BinaryCombineLongFn} or {@link BinaryCombineDoubleFn} that does not override {@code
+   * createAccumulator} or {@code addInput}. The key coder must be deterministic so that equal keys
+   * have equal encodings.
+   */
+  public static boolean isSupported(CombineFn<?, ?, ?> combineFn, Coder<?> keyCoder) {
+    if (PrimitiveCombiner.of(combineFn) == null) {
+      return false;
+    }
+    try {
+      keyCoder.verifyDeterministic();
+      return true;
+    } catch (Coder.NonDeterministicException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns a grouping table that combines inputs into a primitive accumulator. The grouping table
+   * uses the cache to defer flushing output until the cache evicts the table.
+   */
+  public static <K, InputT, AccumT> PrimitivePrecombineGroupingTable<K, InputT, AccumT> combining(
+      Cache<?, ?> cache,
+      CombineFn<InputT, AccumT, ?> combineFn,
+      Coder<K> keyCoder,
+      boolean isGloballyWindowed) {
+    checkArgument(
+        isSupported(combineFn, keyCoder),
+        "%s with key coder %s is not supported by %s",
+        combineFn,
+        keyCoder,
+        PrimitivePrecombineGroupingTable.class.getSimpleName());
+    return new PrimitivePrecombineGroupingTable<>(
+        cache, PrimitiveCombiner.of(combineFn), keyCoder, isGloballyWindowed);
+  }
+
+  private final Cache<Key, PrimitivePrecombineGroupingTable<K, InputT, AccumT>> cache;
+  private final PrimitiveCombiner combiner;
+  private final Coder<K> keyCoder;
+  private final boolean isGloballyWindowed;
+  private final AtomicLong maxWeight;
+  private final KeyOutputStream keyOutputStream;
+  private final SizeEstimator<Collection<? extends BoundedWindow>> windowsSizer;
+  private long checkFlushCounter;
+  private long checkFlushLimit = -5;
+
+  // Encoded keys, appended one after another.
+  private byte[] keyBytes;
+  private int keyBytesSize;
+  // Open-addressing table with linear probing. A slot is occupied iff keyLengths[slot] >= 0.
+  private int[] keyOffsets;
+  private int[] keyLengths;
+  private int[] keyHashes;
+  private long[] accumulators;
+  private long[] outputTimestamps;
+  private Collection<? extends BoundedWindow>[] windows;
+  private int size;
+  private long windowsWeight;
+
+  private static final class Key implements Weighted {
+    private static final Key INSTANCE = new Key();
+
+    @Override
+    public long getWeight() {
+      // Ignore the actual size of this singleton because it is trivial and because
+      // the weight reported here will be counted many times as it is present in
+      // many different state subcaches.
+      return 0;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private PrimitivePrecombineGroupingTable(
+      Cache<?, ?> cache,
+      PrimitiveCombiner combiner,
+      Coder<K> keyCoder,
+      boolean isGloballyWindowed) {
+    this.cache = (Cache<Key, PrimitivePrecombineGroupingTable<K, InputT, AccumT>>) cache;
+    this.combiner = combiner;
+    this.keyCoder = keyCoder;
+    this.isGloballyWindowed = isGloballyWindowed;
+    this.maxWeight = new AtomicLong();
+    this.keyOutputStream = new KeyOutputStream();
+    this.windowsSizer =
+        isGloballyWindowed
+            ? null
+            : new SamplingSizeEstimator<>(Caches::weigh, WINDOWS_SIZE_SAMPLE_RATE, 1.0);
+    this.keyBytes = new byte[INITIAL_KEY_BYTES];
+    allocate(INITIAL_CAPACITY);
+    this.cache.put(Key.INSTANCE, this);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void allocate(int capacity) {
+    keyOffsets = new int[capacity];
+    keyLengths = new int[capacity];
+    Arrays.fill(keyLengths, -1);
+    keyHashes = new int[capacity];
+    accumulators = new long[capacity];
+    outputTimestamps = isGloballyWindowed ? null : new long[capacity];
+    windows = isGloballyWindowed ? null : new Collection[capacity];
+  }
+
+  @Nullable
+  @Override
+  public PrimitivePrecombineGroupingTable<K, InputT, AccumT> shrink() {
+    long currentWeight = maxWeight.updateAndGet(operand -> operand >> 1);
+    // It is possible that we are shrunk multiple times until the requested max weight is too small.
+    // In this case we want to effectively stop shrinking since we can't effectively cache much
+    // at this time and the next insertion will likely evict all records.
+    if (currentWeight <= 100L) {
+      return null;
+    }
+    return this;
+  }
+
+  @Override
+  public long getWeight() {
+    return maxWeight.get();
+  }
+
+  /** Returns the number of bytes currently used by this table. */
+  long currentWeight() {
+    return keyBytes.length + keyOffsets.length * BYTES_PER_SLOT + windowsWeight;
+  }
+
+  @Override
+  public void put(
+      WindowedValue<KV<K, InputT>> value, FnDataReceiver<WindowedValue<KV<K, AccumT>>> receiver)
+      throws Exception {
+    // Encode the key directly after the existing keys, and discard it again if it is already
+    // present in the table.
+    int keyOffset = keyBytesSize;
+    keyCoder.encode(value.getValue().getKey(), keyOutputStream);
+    int keyLength = keyBytesSize - keyOffset;
+    Collection<? extends BoundedWindow> valueWindows =
+        isGloballyWindowed ? null : value.getWindows();
+    int hash = hash(keyBytes, keyOffset, keyLength, valueWindows);
+
+    int mask = keyOffsets.length - 1;
+    int slot = hash & mask;
+    while (keyLengths[slot] >= 0) {
+      if (keyHashes[slot] == hash
+          && keyLengths[slot] == keyLength
+          && rangeEquals(keyBytes, keyOffsets[slot], keyOffset, keyLength)
+          && (isGloballyWindowed || windows[slot].equals(valueWindows))) {
+        keyBytesSize = keyOffset;
+        accumulators[slot] = combiner.add(accumulators[slot], value.getValue().getValue());
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    keyOffsets[slot] = keyOffset;
+    keyLengths[slot] = keyLength;
+    keyHashes[slot] = hash;
+    accumulators[slot] = combiner.add(combiner.identity(), value.getValue().getValue());
+    if (!isGloballyWindowed) {
+      // The PGBK output will inherit the timestamp of one of its inputs.
+      outputTimestamps[slot] = value.getTimestamp().getMillis();
+      windows[slot] = valueWindows;
+      windowsWeight += windowsSizer.estimateSize(valueWindows);
+    }
+    if (++size * 4 > keyOffsets.length * 3) {
+      resize(keyOffsets.length * 2);
+    }
+
+    if (checkFlushCounter++ < checkFlushLimit) {
+      return;
+    } else {
+      checkFlushLimit = Math.min(checkFlushLimit + 1, 25);
+      checkFlushCounter = 0;
+      flushIfNeeded(receiver);
+    }
+  }
+
+  private void flushIfNeeded(FnDataReceiver<WindowedValue<KV<K, AccumT>>> receiver)
+      throws Exception {
+    long weight = currentWeight();
+    // Increase the maximum only if we require it
+    maxWeight.accumulateAndGet(weight, (current, update) -> current < update ? update : current);
+
+    // Update the cache to ensure that LRU is handled appropriately and for the cache to have an
+    // opportunity to shrink the maxWeight if necessary.
+    cache.put(Key.INSTANCE, this);
+
+    // Accumulators are already as small as they can be, so there is nothing to compact. If the
+    // table has grown beyond the allowed weight we output everything and start over.
+    if (weight > maxWeight.get()) {
+      outputAll(receiver);
+      keyBytes = new byte[INITIAL_KEY_BYTES];
+      allocate(INITIAL_CAPACITY);
+    }
+  }
+
+  @Override
+  public void flush(FnDataReceiver<WindowedValue<KV<K, AccumT>>> receiver) throws Exception {
+    cache.remove(Key.INSTANCE);
+    outputAll(receiver);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void outputAll(FnDataReceiver<WindowedValue<KV<K, AccumT>>> receiver) throws Exception {
+    for (int slot = 0; slot < keyOffsets.length; ++slot) {
+      if (keyLengths[slot] < 0) {
+        continue;
+      }
+      K key =
+          keyCoder.decode(new ByteArrayInputStream(keyBytes, keyOffsets[slot], keyLengths[slot]));
+      AccumT accumulator = (AccumT) combiner.toAccumulator(accumulators[slot]);
+      receiver.accept(
+          isGloballyWindowed
+              ? WindowedValue.valueInGlobalWindow(KV.of(key, accumulator))
+              : WindowedValue.of(
+                  KV.of(key, accumulator),
+                  new Instant(outputTimestamps[slot]),
+                  windows[slot],
+                  // The PaneInfo will always be overwritten by the GBK.
+                  PaneInfo.NO_FIRING));
+      keyLengths[slot] = -1;
+      if (!isGloballyWindowed) {
+        windows[slot] = null;
+      }
+    }
+    keyBytesSize = 0;
+    size = 0;
+    windowsWeight = 0;
+  }
+
+  private void resize(int newCapacity) {
+    int[] oldOffsets = keyOffsets;
+    int[] oldLengths = keyLengths;
+    int[] oldHashes = keyHashes;
+    long[] oldAccumulators = accumulators;
+    long[] oldTimestamps = outputTimestamps;
+    Collection<? extends BoundedWindow>[] oldWindows = windows;
+    allocate(newCapacity);
+    int mask = newCapacity - 1;
+    for (int oldSlot = 0; oldSlot < oldOffsets.length; ++oldSlot) {
+      if (oldLengths[oldSlot] < 0) {
+        continue;
+      }
+      int slot = oldHashes[oldSlot] & mask;
+      while (keyLengths[slot] >= 0) {
+        slot = (slot + 1) & mask;
+      }
+      keyOffsets[slot] = oldOffsets[oldSlot];
+      keyLengths[slot] = oldLengths[oldSlot];
+      keyHashes[slot] = oldHashes[oldSlot];
+      accumulators[slot] = oldAccumulators[oldSlot];
+      if (!isGloballyWindowed) {
+        outputTimestamps[slot] = oldTimestamps[oldSlot];
+        windows[slot] = oldWindows[oldSlot];
+      }
+    }
+  }
+
+  private static int hash(
+      byte[] bytes, int offset, int length, @Nullable Collection<? extends BoundedWindow> windows) {
+    int h = 1;
+    for (int i = offset; i < offset + length; ++i) {
+      h = 31 * h + bytes[i];
+    }
+    if (windows != null) {
+      h = 31 * h + windows.hashCode();
+    }
+    // Spread the bits so that the low bits used for the slot index are well mixed.
+    h *= 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private static boolean rangeEquals(byte[] bytes, int offsetA, int offsetB, int length) {
+    for (int i = 0; i < length; ++i) {
+      if (bytes[offsetA + i] != bytes[offsetB + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Appends the encoded key to {@link #keyBytes}, growing it as necessary. */
+  private class KeyOutputStream extends OutputStream {
+    private void ensureCapacity(int additional) {
+      if (keyBytesSize + additional > keyBytes.length) {
+        keyBytes =
+            Arrays.copyOf(keyBytes, Math.max(keyBytes.length * 2, keyBytesSize + additional));
+      }
+    }
+
+    @Override
+    public void write(int b) {
+      ensureCapacity(1);
+      keyBytes[keyBytesSize++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      ensureCapacity(len);
+      System.arraycopy(b, off, keyBytes, keyBytesSize, len);
+      keyBytesSize += len;
+    }
+  }
+
+  /**
+   * Combines inputs into an accumulator held as a {@code long}. Integer accumulators are stored
+   * widened and double accumulators as their raw bits.
+   */
+  private abstract static class PrimitiveCombiner {
+    abstract long identity();
+
+    abstract long add(long accumulator, Object input);
+
+    abstract Object toAccumulator(long accumulator);
+
+    @Nullable
+    static PrimitiveCombiner of(CombineFn<?, ?, ?> combineFn) {
+      if (combineFn.getClass() == Count.combineFn().getClass()) {
+        return new CountCombiner();
+      } else if (combineFn instanceof BinaryCombineLongFn
+          && usesDefaultAccumulation(
+              combineFn, BinaryCombineLongFn.class, long[].class, Long.class)) {
+        return new LongCombiner((BinaryCombineLongFn) combineFn);
+      } else if (combineFn instanceof BinaryCombineIntegerFn
+          && usesDefaultAccumulation(
+              combineFn, BinaryCombineIntegerFn.class, int[].class, Integer.class)) {
+        return new IntegerCombiner((BinaryCombineIntegerFn) combineFn);
+      } else if (combineFn instanceof BinaryCombineDoubleFn
+          && usesDefaultAccumulation(
+              combineFn, BinaryCombineDoubleFn.class, double[].class, Double.class)) {
+        return new DoubleCombiner((BinaryCombineDoubleFn) combineFn);
+      }
+      return null;
+    }
+
+    // A subclass that overrides createAccumulator or addInput may not be expressible in terms of
+    // identity and apply.
+    private static boolean usesDefaultAccumulation(
+        CombineFn<?, ?, ?> combineFn,
+        Class<?> baseClass,
+        Class<?> accumClass,
+        Class<?> inputClass) {
+      try {
+        return combineFn.getClass().getMethod("createAccumulator").getDeclaringClass() == baseClass
+            && combineFn
+                    .getClass()
+                    .getMethod("addInput", accumClass, inputClass)
+                    .getDeclaringClass()
+                == baseClass;
+      } catch (NoSuchMethodException e) {
+        return false;
+      }
+    }
+  }
+
+  private static class CountCombiner extends PrimitiveCombiner {
+    @Override
+    long identity() {
+      return 0L;
+    }
+
+    @Override
+    long add(long accumulator, Object input) {
+      return accumulator + 1;
+    }
+
+    @Override
+    Object toAccumulator(long accumulator) {
+      return new long[] {accumulator};
+    }
+  }
+
+  private static class LongCombiner extends PrimitiveCombiner {
+    private final BinaryCombineLongFn fn;
+
+    LongCombiner(BinaryCombineLongFn fn) {
+      this.fn = fn;
+    }
+
+    @Override
+    long identity() {
+      return fn.identity();
+    }
+
+    @Override
+    long add(long accumulator, Object input) {
+      return fn.apply(accumulator, (Long) input);
+    }
+
+    @Override
+    Object toAccumulator(long accumulator) {
+      return new long[] {accumulator};
+    }
+  }
+
+  private static class IntegerCombiner extends PrimitiveCombiner {
+    private final BinaryCombineIntegerFn fn;
+
+    IntegerCombiner(BinaryCombineIntegerFn fn) {
+      this.fn = fn;
+    }
+
+    @Override
+    long identity() {
+      return fn.identity();
+    }
+
+    @Override
+    long add(long accumulator, Object input) {
+      return fn.apply((int) accumulator, (Integer) input);
+    }
+
+    @Override
+    Object toAccumulator(long accumulator) {
+      return new int[] {(int) accumulator};
+    }
+  }
+
+  private static class DoubleCombiner extends PrimitiveCombiner {
+    private final BinaryCombineDoubleFn fn;
+
+    DoubleCombiner(BinaryCombineDoubleFn fn) {
+      this.fn = fn;
+    }
+
+    @Override
+    long identity() {
+      return Double.doubleToRawLongBits(fn.identity());
+    }
+
+    @Override
+    long add(long accumulator, Object input) {
+      return Double.doubleToRawLongBits(
+          fn.apply(Double.longBitsToDouble(accumulator), (Double) input));
+    }
+
+    @Override
+    Object toAccumulator(long accumulator) {
+      return new double[] {Double.longBitsToDouble(accumulator)};
+    }
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness.control;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
+import com.google.auto.value.AutoValue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableMap;
+
+/**
+ * A bounded record of the most recently processed bundles, describing where the time of each bundle
+ * went. Exported through the worker status page so that slow bundles can be diagnosed without
+ * attaching a profiler.
+ */
+public class BundleTimelines {
+  public static final int DEFAULT_CAPACITY = 256;
+
+  /** The timeline of a single processed bundle. */
+  @AutoValue
+  public abstract static class BundleTimeline {
+    public abstract String getInstructionId();
+
+    public abstract String getProcessBundleDescriptorId();
+
+    /** The wall time at which processing of the bundle started. */
+    public abstract long getStartTimeMillis();
+
+    public abstract long getDurationNanos();
+
+    /** Whether the bundle was processed successfully. */
+    public abstract boolean getSucceeded();
+
+    /** The number of state requests made while processing the bundle. */
+    public abstract long getStateRequestCount();
+
+    /**
+     * The sum of the latencies of the state requests, which may exceed the time spent waiting for
+     * them since requests can be made asynchronously.
+     */
+    public abstract long getStateRequestNanos();
+
+    public abstract long getMaxStateRequestNanos();
+
+    /** The time spent sending outputs, including time blocked waiting for the data stream. */
+    public abstract long getOutputSendNanos();
+
+    /**
+     * The sampled start, process and finish time of each PTransform. The resolution is that of the
+     * {@link org.apache.beam.runners.core.metrics.ExecutionStateSampler}.
+     */
+    public abstract Map<String, Long> getExecutionMillisByPTransform();
+
+    public static Builder builder() {
+      return new AutoValue_BundleTimelines_BundleTimeline.Builder()
+          .setSucceeded(true)
+          .setStateRequestCount(0L)
+          .setStateRequestNanos(0L)
+          .setMaxStateRequestNanos(0L)
+          .setOutputSendNanos(0L)
+          .setExecutionMillisByPTransform(ImmutableMap.of());
+    }
+
+    /** Builder for {@link BundleTimeline}. */
+    @AutoValue.Builder
+    public abstract static class Builder {
+      public abstract Builder setInstructionId(String value);
+
+      public abstract Builder setProcessBundleDescriptorId(String value);
+
+      public abstract Builder setStartTimeMillis(long value);
+
+      public abstract Builder setDurationNanos(long value);
+
+      public abstract Builder setSucceeded(boolean value);
+
+      public abstract Builder setStateRequestCount(long value);
+
+      public abstract Builder setStateRequestNanos(long value);
+
+      public abstract Builder setMaxStateRequestNanos(long value);
+
+      public abstract Builder setOutputSendNanos(long value);
+
+      public abstract Builder setExecutionMillisByPTransform(Map<String, Long> value);
+
+      public abstract BundleTimeline build();
+    }
+  }
+
+  private final BundleTimeline[] timelines;
+  private long recorded;
+
+  public BundleTimelines() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public BundleTimelines(int capacity) {
+    checkArgument(capacity > 0, "Capacity must be positive but was %s", capacity);
+    this.timelines = new BundleTimeline[capacity];
+  }
+
+  /** Records the timeline, replacing the oldest timeline once the capacity has been reached. */
+  public synchronized void record(BundleTimeline timeline) {
+    timelines[(int) (recorded % timelines.length)] = timeline;
+    recorded += 1;
+  }
+
+  /** Returns the total number of timelines recorded so far, including replaced ones. */
+  public synchronized long getRecordedCount() {
+    return recorded;
+  }
+
+  /** Returns the retained timelines, most recent first. */
+  public synchronized List<BundleTimeline> getRecent() {
+    int retained = (int) Math.min(recorded, timelines.length);
+    List<BundleTimeline> result = new ArrayList<>(retained);
+    for (int i = 1; i <= retained; ++i) {
+      result.add(timelines[(int) ((recorded - i) % timelines.length)]);
+    }
+    return result;
+  }
+}
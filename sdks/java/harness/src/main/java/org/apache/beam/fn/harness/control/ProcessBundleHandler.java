@@ -35,6 +35,7 @@ import java.util.WeakHashMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiConsumer;
@@ -486,6 +487,8 @@ public class ProcessBundleHandler {
   public BeamFnApi.InstructionResponse.Builder processBundle(BeamFnApi.InstructionRequest request)
       throws Exception {
     BeamFnApi.ProcessBundleResponse.Builder response = BeamFnApi.ProcessBundleResponse.newBuilder();
+    long startTimeMillis = System.currentTimeMillis();
+    long startNanos = System.nanoTime();
 
     BundleProcessor bundleProcessor =
         bundleProcessorCache.get(
@@ -569,17 +572,52 @@ public class ProcessBundleHandler {
         }
       }
 
+      recordBundleTimeline(request, bundleProcessor, startTimeMillis, startNanos, true);
       // Mark the bundle processor as re-usable.
       bundleProcessorCache.release(
           request.getProcessBundle().getProcessBundleDescriptorId(), bundleProcessor);
       return BeamFnApi.InstructionResponse.newBuilder().setProcessBundle(response);
     } catch (Exception e) {
+      recordBundleTimeline(request, bundleProcessor, startTimeMillis, startNanos, false);
       // Make sure we clean-up from the active set of bundle processors.
       bundleProcessorCache.discard(bundleProcessor);
       throw e;
     }
   }
 
+  private void recordBundleTimeline(
+      BeamFnApi.InstructionRequest request,
+      BundleProcessor bundleProcessor,
+      long startTimeMillis,
+      long startNanos,
+      boolean succeeded) {
+    BundleTimelines.BundleTimeline.Builder timeline =
+        BundleTimelines.BundleTimeline.builder()
+            .setInstructionId(request.getInstructionId())
+            .setProcessBundleDescriptorId(request.getProcessBundle().getProcessBundleDescriptorId())
+            .setStartTimeMillis(startTimeMillis)
+            .setDurationNanos(System.nanoTime() - startNanos)
+            .setSucceeded(succeeded);
+    bundleProcessor.getBeamFnStateClient().recordStateRequests(timeline);
+    long outputSendNanos = 0L;
+    for (BeamFnDataOutboundAggregator aggregator :
+        bundleProcessor.getOutboundAggregators().values()) {
+      outputSendNanos += aggregator.getAndResetSendNanos();
+    }
+    timeline.setOutputSendNanos(outputSendNanos);
+    Map<String, Long> executionMillis = new HashMap<>();
+    for (Map<String, Long> millisByPTransform :
+        ImmutableList.of(
+            bundleProcessor.getStartFunctionRegistry().getExecutionTimeMillisByPTransform(),
+            bundleProcessor.getpCollectionConsumerRegistry().getExecutionTimeMillisByPTransform(),
+            bundleProcessor.getFinishFunctionRegistry().getExecutionTimeMillisByPTransform())) {
+      millisByPTransform.forEach(
+          (pTransformId, millis) -> executionMillis.merge(pTransformId, millis, Long::sum));
+    }
+    timeline.setExecutionMillisByPTransform(executionMillis);
+    bundleProcessorCache.getBundleTimelines().record(timeline.build());
+  }
+
   private void embedOutboundElementsIfApplicable(
       ProcessBundleResponse.Builder response, BundleProcessor bundleProcessor) {
     if (bundleProcessor.getOutboundAggregators().isEmpty()) {
@@ -884,6 +922,7 @@ public class ProcessBundleHandler {
     private final LoadingCache<String, ConcurrentLinkedQueue<BundleProcessor>>
         cachedBundleProcessors;
     private final Map<String, BundleProcessor> activeBundleProcessors;
+    private final BundleTimelines bundleTimelines;
 
     @Override
     public int hashCode() {
@@ -912,6 +951,7 @@ public class ProcessBundleHandler {
       // We specifically use a weak hash map so that references will automatically go out of scope
       // and not need to be freed explicitly from the cache.
       this.activeBundleProcessors = Collections.synchronizedMap(new WeakHashMap<>());
+      this.bundleTimelines = new BundleTimelines();
     }
 
     @VisibleForTesting
@@ -923,6 +963,11 @@ public class ProcessBundleHandler {
       return ImmutableMap.copyOf(activeBundleProcessors);
     }
 
+    /** Returns the timelines of the bundles most recently processed with the cached processors. */
+    public BundleTimelines getBundleTimelines() {
+      return bundleTimelines;
+    }
+
     /**
      * Get a {@link BundleProcessor} from the cache if it's available. Otherwise, create one using
      * the specified {@code bundleProcessorSupplier}. The {@link BundleProcessor} that is returned
@@ -1169,11 +1214,25 @@ public class ProcessBundleHandler {
     private final BeamFnStateClient beamFnStateClient;
     private final Phaser phaser;
     private int currentPhase;
+    private final AtomicLong requestCount;
+    private final AtomicLong requestNanos;
+    private final AtomicLong maxRequestNanos;
 
     private BlockTillStateCallsFinish(BeamFnStateClient beamFnStateClient) {
       this.beamFnStateClient = beamFnStateClient;
       this.phaser = new Phaser(1 /* initial party is the process bundle handler */);
       this.currentPhase = phaser.getPhase();
+      this.requestCount = new AtomicLong();
+      this.requestNanos = new AtomicLong();
+      this.maxRequestNanos = new AtomicLong();
+    }
+
+    @Override
+    void recordStateRequests(BundleTimelines.BundleTimeline.Builder timeline) {
+      timeline
+          .setStateRequestCount(requestCount.getAndSet(0L))
+          .setStateRequestNanos(requestNanos.getAndSet(0L))
+          .setMaxStateRequestNanos(maxRequestNanos.getAndSet(0L));
     }
 
     @Override
@@ -1194,9 +1253,17 @@ public class ProcessBundleHandler {
     public CompletableFuture<StateResponse> handle(StateRequest.Builder requestBuilder) {
       // Register each request with the phaser and arrive and deregister each time a request
       // completes.
+      long startNanos = System.nanoTime();
       CompletableFuture<StateResponse> response = beamFnStateClient.handle(requestBuilder);
       phaser.register();
-      response.whenComplete((stateResponse, throwable) -> phaser.arriveAndDeregister());
+      response.whenComplete(
+          (stateResponse, throwable) -> {
+            long latencyNanos = System.nanoTime() - startNanos;
+            requestCount.incrementAndGet();
+            requestNanos.addAndGet(latencyNanos);
+            maxRequestNanos.accumulateAndGet(latencyNanos, Math::max);
+            phaser.arriveAndDeregister();
+          });
       return response;
     }
   }
@@ -1227,7 +1294,10 @@ public class ProcessBundleHandler {
     }
   }
 
-  abstract static class HandleStateCallsForBundle implements AutoCloseable, BeamFnStateClient {}
+  abstract static class HandleStateCallsForBundle implements AutoCloseable, BeamFnStateClient {
+    /** Adds the state requests made since the last call to the timeline. */
+    void recordStateRequests(BundleTimelines.BundleTimeline.Builder timeline) {}
+  }
 
   private static class UnknownPTransformRunnerFactory implements PTransformRunnerFactory<Object> {
     private final Set<String> knownUrns;
@@ -29,6 +29,7 @@ import org.apache.beam.model.pipeline.v1.Endpoints.ApiServiceDescriptor;
 import org.apache.beam.sdk.fn.data.BeamFnDataGrpcMultiplexer2;
 import org.apache.beam.sdk.fn.data.BeamFnDataOutboundAggregator;
 import org.apache.beam.sdk.fn.data.CloseableFnDataReceiver;
+import org.apache.beam.sdk.fn.data.SharedMemoryDataChannel;
 import org.apache.beam.sdk.fn.stream.OutboundObserverFactory;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.vendor.grpc.v1p43p2.io.grpc.ManagedChannel;
@@ -38,6 +39,9 @@ import org.slf4j.LoggerFactory;
 /**
  * A {@link BeamFnDataClient} that uses gRPC for sending and receiving data.
  *
+ * <p>Endpoints offered by the runner as a {@link SharedMemoryDataChannel} are connected to over
+ * shared memory instead.
+ *
  * <p>TODO: Handle closing clients that are currently not a consumer nor are being consumed.
  */
 public class BeamFnDataGrpcClient implements BeamFnDataClient {
@@ -102,6 +106,8 @@ public class BeamFnDataGrpcClient implements BeamFnDataClient {
             new BeamFnDataGrpcMultiplexer2(
                 descriptor,
                 outboundObserverFactory,
-                BeamFnDataGrpc.newStub(channelFactory.apply(apiServiceDescriptor))::data));
+                SharedMemoryDataChannel.isSharedMemory(descriptor)
+                    ? SharedMemoryDataChannel.clientFactory(descriptor)
+                    : BeamFnDataGrpc.newStub(channelFactory.apply(apiServiceDescriptor))::data));
   }
 }
@@ -220,6 +220,11 @@ public class PCollectionConsumerRegistry {
     return executionStates.getExecutionTimeMonitoringData(shortIds);
   }
 
+  /** @return The sampled execution time of the registered functions by PTransform id. */
+  public Map<String, Long> getExecutionTimeMillisByPTransform() {
+    return executionStates.getTotalMillisByLabel(MonitoringInfoConstants.Labels.PTRANSFORM);
+  }
+
   /** Reset the execution states of the registered functions. */
   public void reset() {
     executionStates.reset();
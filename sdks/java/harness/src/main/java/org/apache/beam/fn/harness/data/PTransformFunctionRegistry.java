@@ -130,6 +130,11 @@ public class PTransformFunctionRegistry {
     return executionStates.getExecutionTimeMonitoringData(shortIds);
   }
 
+  /** @return The sampled execution time of the registered functions by PTransform id. */
+  public Map<String, Long> getExecutionTimeMillisByPTransform() {
+    return executionStates.getTotalMillisByLabel(MonitoringInfoConstants.Labels.PTRANSFORM);
+  }
+
   /**
    * @return A list of wrapper functions which will invoke the registered functions indirectly. The
    *     order of registry is maintained.
@@ -66,6 +66,26 @@ public class BagUserState<T> {
       String instructionId,
       StateKey stateKey,
       Coder<T> valueCoder) {
+    this(
+        cache,
+        beamFnStateClient,
+        instructionId,
+        stateKey,
+        valueCoder,
+        StateFetchingIterators.NO_READ_AHEAD);
+  }
+
+  /**
+   * The cache must be namespaced for this state object accordingly. At most {@code readAheadPages}
+   * pages of the persisted values are requested ahead of the page being consumed.
+   */
+  public BagUserState(
+      Cache<?, ?> cache,
+      BeamFnStateClient beamFnStateClient,
+      String instructionId,
+      StateKey stateKey,
+      Coder<T> valueCoder,
+      int readAheadPages) {
     checkArgument(
         stateKey.hasBagUserState(), "Expected BagUserState StateKey but received %s.", stateKey);
     this.cache = cache;
@@ -76,7 +96,7 @@ public class BagUserState<T> {
 
     this.oldValues =
         StateFetchingIterators.readAllAndDecodeStartingFrom(
-            this.cache, beamFnStateClient, request, valueCoder);
+            this.cache, beamFnStateClient, request, valueCoder, readAheadPages);
     this.newValues = new ArrayList<>();
   }
 
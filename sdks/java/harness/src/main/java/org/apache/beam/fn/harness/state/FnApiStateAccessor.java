@@ -72,6 +72,7 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 })
 public class FnApiStateAccessor<K> implements SideInputReader, StateBinder {
   private final PipelineOptions pipelineOptions;
+  private final int readAheadPages;
   private final Map<StateKey, Object> stateKeyObjectCache;
   private final Map<TupleTag<?>, SideInputSpec> sideInputSpecMap;
   private final BeamFnStateClient beamFnStateClient;
@@ -101,6 +102,7 @@ public class FnApiStateAccessor<K> implements SideInputReader, StateBinder {
       Supplier<K> currentKeySupplier,
       Supplier<BoundedWindow> currentWindowSupplier) {
     this.pipelineOptions = pipelineOptions;
+    this.readAheadPages = StateFetchingIterators.getReadAheadPages(pipelineOptions);
     this.stateKeyObjectCache = Maps.newHashMap();
     this.sideInputSpecMap = sideInputSpecMap;
     this.beamFnStateClient = beamFnStateClient;
@@ -225,7 +227,8 @@ public class FnApiStateAccessor<K> implements SideInputReader, StateBinder {
                               beamFnStateClient,
                               processBundleInstructionId.get(),
                               key,
-                              sideInputSpec.getCoder()));
+                              sideInputSpec.getCoder(),
+                              readAheadPages));
                 case Materializations.MULTIMAP_MATERIALIZATION_URN:
                   return sideInputSpec
                       .getViewFn()
@@ -236,7 +239,8 @@ public class FnApiStateAccessor<K> implements SideInputReader, StateBinder {
                               processBundleInstructionId.get(),
                               key,
                               ((KvCoder) sideInputSpec.getCoder()).getKeyCoder(),
-                              ((KvCoder) sideInputSpec.getCoder()).getValueCoder()));
+                              ((KvCoder) sideInputSpec.getCoder()).getValueCoder(),
+                              readAheadPages));
                 default:
                   throw new IllegalStateException(
                       String.format(
@@ -787,7 +791,8 @@ public class FnApiStateAccessor<K> implements SideInputReader, StateBinder {
             beamFnStateClient,
             processBundleInstructionId.get(),
             stateKey,
-            valueCoder);
+            valueCoder,
+            readAheadPages);
     stateFinalizers.add(rval::asyncClose);
     return rval;
   }
@@ -812,7 +817,8 @@ public class FnApiStateAccessor<K> implements SideInputReader, StateBinder {
             processBundleInstructionId.get(),
             stateKey,
             keyCoder,
-            valueCoder);
+            valueCoder,
+            readAheadPages);
     stateFinalizers.add(rval::asyncClose);
     return rval;
   }
@@ -41,16 +41,33 @@ public class IterableSideInput<T> implements IterableView<T> {
       String instructionId,
       StateKey stateKey,
       Coder<T> valueCoder) {
+    this(
+        cache,
+        beamFnStateClient,
+        instructionId,
+        stateKey,
+        valueCoder,
+        StateFetchingIterators.NO_READ_AHEAD);
+  }
+
+  public IterableSideInput(
+      Cache<?, ?> cache,
+      BeamFnStateClient beamFnStateClient,
+      String instructionId,
+      StateKey stateKey,
+      Coder<T> valueCoder,
+      int readAheadPages) {
     checkArgument(
         stateKey.hasIterableSideInput(),
         "Expected IterableSideInput StateKey but received %s.",
         stateKey);
     this.values =
-        StateFetchingIterators.readAllAndDecodeStartingFrom(
+        StateFetchingIterators.readAllAndDecodeImmutableStartingFrom(
             cache,
             beamFnStateClient,
             StateRequest.newBuilder().setInstructionId(instructionId).setStateKey(stateKey).build(),
-            valueCoder);
+            valueCoder,
+            readAheadPages);
   }
 
   @Override
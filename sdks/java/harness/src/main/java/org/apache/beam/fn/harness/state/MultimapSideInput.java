@@ -42,6 +42,7 @@ public class MultimapSideInput<K, V> implements MultimapView<K, V> {
   private final StateRequest keysRequest;
   private final Coder<K> keyCoder;
   private final Coder<V> valueCoder;
+  private final int readAheadPages;
 
   public MultimapSideInput(
       Cache<?, ?> cache,
@@ -50,6 +51,24 @@ public class MultimapSideInput<K, V> implements MultimapView<K, V> {
       StateKey stateKey,
       Coder<K> keyCoder,
       Coder<V> valueCoder) {
+    this(
+        cache,
+        beamFnStateClient,
+        instructionId,
+        stateKey,
+        keyCoder,
+        valueCoder,
+        StateFetchingIterators.NO_READ_AHEAD);
+  }
+
+  public MultimapSideInput(
+      Cache<?, ?> cache,
+      BeamFnStateClient beamFnStateClient,
+      String instructionId,
+      StateKey stateKey,
+      Coder<K> keyCoder,
+      Coder<V> valueCoder,
+      int readAheadPages) {
     checkArgument(
         stateKey.hasMultimapKeysSideInput(),
         "Expected MultimapKeysSideInput StateKey but received %s.",
@@ -60,12 +79,13 @@ public class MultimapSideInput<K, V> implements MultimapView<K, V> {
         StateRequest.newBuilder().setInstructionId(instructionId).setStateKey(stateKey).build();
     this.keyCoder = keyCoder;
     this.valueCoder = valueCoder;
+    this.readAheadPages = readAheadPages;
   }
 
   @Override
   public Iterable<K> get() {
-    return StateFetchingIterators.readAllAndDecodeStartingFrom(
-        cache, beamFnStateClient, keysRequest, keyCoder);
+    return StateFetchingIterators.readAllAndDecodeImmutableStartingFrom(
+        cache, beamFnStateClient, keysRequest, keyCoder, readAheadPages);
   }
 
   @Override
@@ -94,7 +114,11 @@ public class MultimapSideInput<K, V> implements MultimapView<K, V> {
             .build();
 
     StateRequest request = keysRequest.toBuilder().setStateKey(stateKey).build();
-    return StateFetchingIterators.readAllAndDecodeStartingFrom(
-        Caches.subCache(cache, "ValuesForKey", encodedKey), beamFnStateClient, request, valueCoder);
+    return StateFetchingIterators.readAllAndDecodeImmutableStartingFrom(
+        Caches.subCache(cache, "ValuesForKey", encodedKey),
+        beamFnStateClient,
+        request,
+        valueCoder,
+        readAheadPages);
   }
 }
@@ -61,6 +61,7 @@ public class MultimapUserState<K, V> {
   private final BeamFnStateClient beamFnStateClient;
   private final Coder<K> mapKeyCoder;
   private final Coder<V> valueCoder;
+  private final int readAheadPages;
   private final StateRequest keysStateRequest;
   private final StateRequest userStateRequest;
   private final CachingStateIterable<K> persistedKeys;
@@ -80,6 +81,24 @@ public class MultimapUserState<K, V> {
       StateKey stateKey,
       Coder<K> mapKeyCoder,
       Coder<V> valueCoder) {
+    this(
+        cache,
+        beamFnStateClient,
+        instructionId,
+        stateKey,
+        mapKeyCoder,
+        valueCoder,
+        StateFetchingIterators.NO_READ_AHEAD);
+  }
+
+  public MultimapUserState(
+      Cache<?, ?> cache,
+      BeamFnStateClient beamFnStateClient,
+      String instructionId,
+      StateKey stateKey,
+      Coder<K> mapKeyCoder,
+      Coder<V> valueCoder,
+      int readAheadPages) {
     checkArgument(
         stateKey.hasMultimapKeysUserState(),
         "Expected MultimapKeysUserState StateKey but received %s.",
@@ -88,12 +107,13 @@ public class MultimapUserState<K, V> {
     this.beamFnStateClient = beamFnStateClient;
     this.mapKeyCoder = mapKeyCoder;
     this.valueCoder = valueCoder;
+    this.readAheadPages = readAheadPages;
 
     this.keysStateRequest =
         StateRequest.newBuilder().setInstructionId(instructionId).setStateKey(stateKey).build();
     this.persistedKeys =
         StateFetchingIterators.readAllAndDecodeStartingFrom(
-            cache, beamFnStateClient, keysStateRequest, mapKeyCoder);
+            cache, beamFnStateClient, keysStateRequest, mapKeyCoder, readAheadPages);
 
     StateRequest.Builder userStateRequestBuilder = StateRequest.newBuilder();
     userStateRequestBuilder
@@ -402,7 +422,8 @@ public class MultimapUserState<K, V> {
                           request.getStateKey().getMultimapUserState().getMapKey()),
                       beamFnStateClient,
                       request,
-                      valueCoder));
+                      valueCoder,
+                      readAheadPages));
             })
         .getValue();
   }
@@ -75,12 +75,34 @@ public class StateBackedIterable<T> implements Iterable<T>, Serializable {
       StateKey stateKey,
       org.apache.beam.sdk.coders.Coder<T> elemCoder,
       List<T> prefix) {
+    this(
+        cache,
+        beamFnStateClient,
+        instructionId,
+        stateKey,
+        elemCoder,
+        prefix,
+        StateFetchingIterators.NO_READ_AHEAD);
+  }
+
+  public StateBackedIterable(
+      Cache<?, ?> cache,
+      BeamFnStateClient beamFnStateClient,
+      String instructionId,
+      StateKey stateKey,
+      org.apache.beam.sdk.coders.Coder<T> elemCoder,
+      List<T> prefix,
+      int readAheadPages) {
     this.request =
         StateRequest.newBuilder().setInstructionId(instructionId).setStateKey(stateKey).build();
     this.prefix = prefix;
     this.suffix =
         StateFetchingIterators.readAllAndDecodeStartingFrom(
-            Caches.subCache(cache, stateKey), beamFnStateClient, request, elemCoder);
+            Caches.subCache(cache, stateKey),
+            beamFnStateClient,
+            request,
+            elemCoder,
+            readAheadPages);
   }
 
   @Override
@@ -102,16 +124,28 @@ public class StateBackedIterable<T> implements Iterable<T>, Serializable {
     private final Supplier<Cache<?, ?>> cache;
     private final BeamFnStateClient beamFnStateClient;
     private final Supplier<String> instructionId;
+    private final int readAheadPages;
 
     public Coder(
         Supplier<Cache<?, ?>> cache,
         BeamFnStateClient beamFnStateClient,
         Supplier<String> instructionId,
         org.apache.beam.sdk.coders.Coder<T> elemCoder) {
+      this(
+          cache, beamFnStateClient, instructionId, elemCoder, StateFetchingIterators.NO_READ_AHEAD);
+    }
+
+    public Coder(
+        Supplier<Cache<?, ?>> cache,
+        BeamFnStateClient beamFnStateClient,
+        Supplier<String> instructionId,
+        org.apache.beam.sdk.coders.Coder<T> elemCoder,
+        int readAheadPages) {
       super(elemCoder, "StateBackedIterable");
       this.cache = cache;
       this.beamFnStateClient = beamFnStateClient;
       this.instructionId = instructionId;
+      this.readAheadPages = readAheadPages;
     }
 
     @Override
@@ -131,7 +165,8 @@ public class StateBackedIterable<T> implements Iterable<T>, Serializable {
             instructionId.get(),
             StateKey.newBuilder().setRunner(StateKey.Runner.newBuilder().setKey(token)).build(),
             getElemCoder(),
-            decodedElements);
+            decodedElements,
+            readAheadPages);
       } else {
         throw new IllegalStateException(
             String.format(
@@ -179,6 +214,14 @@ public class StateBackedIterable<T> implements Iterable<T>, Serializable {
     BeamFnStateClient getStateClient();
 
     Supplier<String> getCurrentInstructionId();
+
+    /**
+     * The maximum number of pages of each state backed iterable requested ahead of the page being
+     * consumed.
+     */
+    default int getStateReadAheadPages() {
+      return StateFetchingIterators.NO_READ_AHEAD;
+    }
   }
 
   /** A {@link CoderTranslatorRegistrar} for {@code beam:coder:state_backed_iterable:v1}. */
@@ -224,7 +267,8 @@ public class StateBackedIterable<T> implements Iterable<T>, Serializable {
             ((StateBackedIterableTranslationContext) context).getCache(),
             ((StateBackedIterableTranslationContext) context).getStateClient(),
             ((StateBackedIterableTranslationContext) context).getCurrentInstructionId(),
-            Iterables.getOnlyElement(components));
+            Iterables.getOnlyElement(components),
+            ((StateBackedIterableTranslationContext) context).getStateReadAheadPages());
       } else {
         throw new IllegalStateException(
             String.format(
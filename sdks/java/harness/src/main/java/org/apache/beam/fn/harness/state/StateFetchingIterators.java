@@ -17,11 +17,16 @@
  */
 package org.apache.beam.fn.harness.state;
 
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
 import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkState;
 
 import com.google.auto.value.AutoValue;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -41,6 +46,9 @@ import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.fn.stream.DataStreams.DataStreamDecoder;
 import org.apache.beam.sdk.fn.stream.PrefetchableIterables;
 import org.apache.beam.sdk.fn.stream.PrefetchableIterator;
+import org.apache.beam.sdk.options.PipelineOptions;
+import org.apache.beam.sdk.options.SdkHarnessOptions;
+import org.apache.beam.sdk.util.VarInt;
 import org.apache.beam.sdk.util.Weighted;
 import org.apache.beam.vendor.grpc.v1p43p2.com.google.protobuf.ByteString;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
@@ -58,6 +66,22 @@ public class StateFetchingIterators {
   // do not instantiate
   private StateFetchingIterators() {}
 
+  /** Only the page being consumed is requested, the behavior without any read-ahead. */
+  static final int NO_READ_AHEAD = 1;
+
+  /**
+   * Returns the maximum number of pages of each state stream that are requested ahead of the page
+   * being consumed, see {@link SdkHarnessOptions#getStateReadAheadPages()}.
+   *
+   * @throws IllegalArgumentException if the configured value is not positive.
+   */
+  public static int getReadAheadPages(PipelineOptions options) {
+    int readAheadPages = options.as(SdkHarnessOptions.class).getStateReadAheadPages();
+    checkArgument(
+        readAheadPages > 0, "--stateReadAheadPages must be positive but was %s", readAheadPages);
+    return readAheadPages;
+  }
+
   /**
    * This adapter handles using the continuation token to provide iteration over all the elements
    * returned by the Beam Fn State API using the supplied state client, state request for the first
@@ -77,17 +101,45 @@ public class StateFetchingIterators {
    *     only) chunk of a state stream. This state request will be populated with a continuation
    *     token to request further chunks of the stream if required.
    * @param valueCoder A coder for decoding the state stream.
+   * @param readAheadPages The maximum number of pages requested ahead of the page being consumed.
    */
   public static <T> CachingStateIterable<T> readAllAndDecodeStartingFrom(
       Cache<?, ?> cache,
       BeamFnStateClient beamFnStateClient,
       StateRequest stateRequestForFirstChunk,
-      Coder<T> valueCoder) {
+      Coder<T> valueCoder,
+      int readAheadPages) {
     return new CachingStateIterable<>(
         (Cache<IterableCacheKey, Blocks<T>>) cache,
+        null,
         beamFnStateClient,
         stateRequestForFirstChunk,
-        valueCoder);
+        valueCoder,
+        readAheadPages);
+  }
+
+  /**
+   * Like {@link #readAllAndDecodeStartingFrom} but for state which is never mutated, such as side
+   * inputs.
+   *
+   * <p>If the cache has an {@link Caches#offHeapTier off-heap tier}, the encoded pages returned by
+   * the Beam Fn State API are additionally stored within it so that they can be decoded again
+   * without another request once the decoded values have been evicted. The returned iterable does
+   * not support mutation.
+   */
+  public static <T> CachingStateIterable<T> readAllAndDecodeImmutableStartingFrom(
+      Cache<?, ?> cache,
+      BeamFnStateClient beamFnStateClient,
+      StateRequest stateRequestForFirstChunk,
+      Coder<T> valueCoder,
+      int readAheadPages) {
+    return new CachingStateIterable<>(
+        (Cache<IterableCacheKey, Blocks<T>>) cache,
+        Caches.offHeapTier(cache),
+        beamFnStateClient,
+        stateRequestForFirstChunk,
+        valueCoder,
+        readAheadPages);
   }
 
   @VisibleForTesting
@@ -204,19 +256,34 @@ public class StateFetchingIterators {
     }
 
     private final Cache<IterableCacheKey, Blocks<T>> cache;
+    private final @Nullable Cache<ByteString, ByteString> pageCache;
     private final BeamFnStateClient beamFnStateClient;
     private final StateRequest stateRequestForFirstChunk;
     private final Coder<T> valueCoder;
+    private final int readAheadPages;
 
     public CachingStateIterable(
         Cache<IterableCacheKey, Blocks<T>> cache,
         BeamFnStateClient beamFnStateClient,
         StateRequest stateRequestForFirstChunk,
         Coder<T> valueCoder) {
+      this(cache, null, beamFnStateClient, stateRequestForFirstChunk, valueCoder, NO_READ_AHEAD);
+    }
+
+    CachingStateIterable(
+        Cache<IterableCacheKey, Blocks<T>> cache,
+        @Nullable Cache<ByteString, ByteString> pageCache,
+        BeamFnStateClient beamFnStateClient,
+        StateRequest stateRequestForFirstChunk,
+        Coder<T> valueCoder,
+        int readAheadPages) {
+      checkArgument(readAheadPages > 0, "readAheadPages must be positive: %s", readAheadPages);
       this.cache = cache;
+      this.pageCache = pageCache;
       this.beamFnStateClient = beamFnStateClient;
       this.stateRequestForFirstChunk = stateRequestForFirstChunk;
       this.valueCoder = valueCoder;
+      this.readAheadPages = readAheadPages;
     }
 
     /**
@@ -229,6 +296,7 @@ public class StateFetchingIterators {
      * cache.
      */
     public void remove(Set<Object> toRemoveStructuralValues) {
+      checkMutable();
       if (toRemoveStructuralValues.isEmpty()) {
         return;
       }
@@ -285,6 +353,7 @@ public class StateFetchingIterators {
      * requesting data from the state cache.
      */
     public void clearAndAppend(List<T> values) {
+      checkMutable();
       cache.put(
           IterableCacheKey.INSTANCE,
           new MutatedBlocks<>(Block.mutatedBlock(values, Caches.weigh(values))));
@@ -295,6 +364,11 @@ public class StateFetchingIterators {
       return new CachingStateIterator();
     }
 
+    // Pages stored in the off-heap tier cannot be invalidated by a mutation.
+    private void checkMutable() {
+      checkState(pageCache == null, "Immutable state cannot be mutated.");
+    }
+
     /**
      * Appends the values to the cached iterable.
      *
@@ -304,6 +378,7 @@ public class StateFetchingIterators {
      * cache.
      */
     public void append(List<T> values) {
+      checkMutable();
       if (values.isEmpty()) {
         return;
       }
@@ -346,7 +421,8 @@ public class StateFetchingIterators {
 
       public CachingStateIterator() {
         this.underlyingStateFetchingIterator =
-            new LazyBlockingStateFetchingIterator(beamFnStateClient, stateRequestForFirstChunk);
+            new LazyBlockingStateFetchingIterator(
+                beamFnStateClient, stateRequestForFirstChunk, pageCache, readAheadPages);
         this.dataStreamDecoder =
             new DataStreamDecoder<>(valueCoder, underlyingStateFetchingIterator);
         this.currentBlock =
@@ -486,20 +562,47 @@ public class StateFetchingIterators {
    * An {@link Iterator} which fetches {@link ByteString} chunks using the State API.
    *
    * <p>This iterator will only request a chunk on first access. Subsequently it eagerly pre-fetches
-   * one future chunk at a time.
+   * up to {@code readAheadPages} future chunks. Since the request for a chunk requires the
+   * continuation token returned with the previous chunk, the request for each further chunk is
+   * issued as soon as the response for the chunk before it arrives.
+   *
+   * <p>If a page cache is provided, each chunk is stored in it keyed by the continuation token used
+   * to request it, together with the continuation token of the following chunk. Chunks found in the
+   * page cache are not requested again.
    */
   @VisibleForTesting
   static class LazyBlockingStateFetchingIterator implements PrefetchableIterator<ByteString> {
 
     private final BeamFnStateClient beamFnStateClient;
     private final StateRequest stateRequestForFirstChunk;
+    private final @Nullable Cache<ByteString, ByteString> pageCache;
+    private final int readAheadPages;
+
+    // The responses are ordered by continuation token, the first is for the current continuation
+    // token. Responses are added from the threads completing the previous response and are guarded
+    // by this.
+    private final Deque<CompletableFuture<StateResponse>> prefetchedResponses;
     private ByteString continuationToken;
-    private CompletableFuture<StateResponse> prefetchedResponse;
+    private ByteString prefetchedPage;
+    // Incremented when seeking so that responses for a previous position stop the read-ahead.
+    private int generation;
 
     LazyBlockingStateFetchingIterator(
         BeamFnStateClient beamFnStateClient, StateRequest stateRequestForFirstChunk) {
+      this(beamFnStateClient, stateRequestForFirstChunk, null, NO_READ_AHEAD);
+    }
+
+    LazyBlockingStateFetchingIterator(
+        BeamFnStateClient beamFnStateClient,
+        StateRequest stateRequestForFirstChunk,
+        @Nullable Cache<ByteString, ByteString> pageCache,
+        int readAheadPages) {
+      checkArgument(readAheadPages > 0, "readAheadPages must be positive: %s", readAheadPages);
       this.beamFnStateClient = beamFnStateClient;
       this.stateRequestForFirstChunk = stateRequestForFirstChunk;
+      this.pageCache = pageCache;
+      this.readAheadPages = readAheadPages;
+      this.prefetchedResponses = new ArrayDeque<>(readAheadPages);
       this.continuationToken = stateRequestForFirstChunk.getGet().getContinuationToken();
     }
 
@@ -507,7 +610,7 @@ public class StateFetchingIterators {
      * Returns the continuation token used to load the value returned by the previous call to {@link
      * #next}. Returns {@code null} if there are no more values.
      */
-    public @Nullable ByteString getContinuationToken() {
+    public synchronized @Nullable ByteString getContinuationToken() {
       return continuationToken;
     }
 
@@ -520,17 +623,23 @@ public class StateFetchingIterators {
      * <p>This is a no-op if the continuation token passed in is the same as the current
      * continuation token.
      */
-    public void seekToContinuationToken(@Nullable ByteString continuationToken) {
-      // Don't clear the prefetched response if no seeking is required.
+    public synchronized void seekToContinuationToken(@Nullable ByteString continuationToken) {
+      // Don't clear the prefetched responses if no seeking is required.
       if (Objects.equals(this.continuationToken, continuationToken)) {
         return;
       }
       this.continuationToken = continuationToken;
-      this.prefetchedResponse = null;
+      this.prefetchedResponses.clear();
+      this.prefetchedPage = null;
+      this.generation += 1;
     }
 
     @Override
-    public boolean isReady() {
+    public synchronized boolean isReady() {
+      if (prefetchedPage != null) {
+        return true;
+      }
+      CompletableFuture<StateResponse> prefetchedResponse = prefetchedResponses.peekFirst();
       if (prefetchedResponse == null) {
         return continuationToken == null;
       }
@@ -538,9 +647,50 @@ public class StateFetchingIterators {
     }
 
     @Override
-    public void prefetch() {
-      if (continuationToken != null && prefetchedResponse == null) {
-        prefetchedResponse = loadPrefetchedResponse(continuationToken);
+    public synchronized void prefetch() {
+      if (continuationToken == null || prefetchedPage != null) {
+        return;
+      }
+      if (prefetchedResponses.isEmpty()) {
+        if (pageCache != null) {
+          prefetchedPage = pageCache.peek(continuationToken);
+          if (prefetchedPage != null) {
+            return;
+          }
+        }
+        readAhead(continuationToken);
+      }
+      while (prefetchedResponses.size() < readAheadPages) {
+        CompletableFuture<StateResponse> last = prefetchedResponses.getLast();
+        if (!last.isDone() || last.isCompletedExceptionally()) {
+          // Continued once the response arrives.
+          return;
+        }
+        ByteString nextContinuationToken = last.join().getGet().getContinuationToken();
+        if (ByteString.EMPTY.equals(nextContinuationToken)
+            || (pageCache != null && pageCache.peek(nextContinuationToken) != null)) {
+          return;
+        }
+        readAhead(nextContinuationToken);
+      }
+    }
+
+    @SuppressWarnings("FutureReturnValueIgnored") // failures are surfaced by next().
+    private void readAhead(ByteString continuationToken) {
+      CompletableFuture<StateResponse> response = loadPrefetchedResponse(continuationToken);
+      prefetchedResponses.addLast(response);
+      if (readAheadPages > 1) {
+        int expectedGeneration = generation;
+        // The next request is issued asynchronously since the response may be completed on a
+        // thread of the state client which must not block on sending the next request.
+        response.whenCompleteAsync(
+            (stateResponse, throwable) -> {
+              synchronized (this) {
+                if (expectedGeneration == generation && throwable == null) {
+                  prefetch();
+                }
+              }
+            });
       }
     }
 
@@ -551,18 +701,36 @@ public class StateFetchingIterators {
               .setGet(StateGetRequest.newBuilder().setContinuationToken(continuationToken)));
     }
 
+    @VisibleForTesting
+    synchronized int getPrefetchedResponseCount() {
+      return prefetchedResponses.size();
+    }
+
     @Override
-    public boolean hasNext() {
+    public synchronized boolean hasNext() {
       return continuationToken != null;
     }
 
     @Override
     public ByteString next() {
-      if (!hasNext()) {
-        throw new NoSuchElementException();
+      CompletableFuture<StateResponse> prefetchedResponse;
+      ByteString requestedContinuationToken;
+      synchronized (this) {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+
+        prefetch();
+        if (prefetchedPage != null) {
+          ByteString page = prefetchedPage;
+          prefetchedPage = null;
+          return nextFromPage(page);
+        }
+        prefetchedResponse = prefetchedResponses.getFirst();
+        requestedContinuationToken = continuationToken;
       }
 
-      prefetch();
+      // Block outside of the lock so that responses arriving meanwhile can extend the read-ahead.
       StateResponse stateResponse;
       try {
         stateResponse = prefetchedResponse.get();
@@ -576,16 +744,54 @@ public class StateFetchingIterators {
         Throwables.throwIfUnchecked(e.getCause());
         throw new IllegalStateException(e.getCause());
       }
-      prefetchedResponse = null;
 
+      if (pageCache != null) {
+        pageCache.put(
+            requestedContinuationToken,
+            encodePage(
+                stateResponse.getGet().getContinuationToken(), stateResponse.getGet().getData()));
+      }
+      synchronized (this) {
+        prefetchedResponses.removeFirst();
+        return advance(
+            stateResponse.getGet().getContinuationToken(), stateResponse.getGet().getData());
+      }
+    }
+
+    private ByteString advance(ByteString nextContinuationToken, ByteString data) {
       // If the continuation token is empty, that means we have reached EOF.
-      if (ByteString.EMPTY.equals(stateResponse.getGet().getContinuationToken())) {
+      if (ByteString.EMPTY.equals(nextContinuationToken)) {
         continuationToken = null;
       } else {
-        continuationToken = stateResponse.getGet().getContinuationToken();
+        continuationToken = nextContinuationToken;
         prefetch();
       }
-      return stateResponse.getGet().getData();
+      return data;
+    }
+
+    // A page is the varint length of the next continuation token, the token and then the data.
+    private static ByteString encodePage(ByteString nextContinuationToken, ByteString data) {
+      ByteString.Output header =
+          ByteString.newOutput(VarInt.getLength(nextContinuationToken.size()));
+      try {
+        VarInt.encode(nextContinuationToken.size(), header);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+      return header.toByteString().concat(nextContinuationToken).concat(data);
+    }
+
+    private ByteString nextFromPage(ByteString page) {
+      int tokenLength;
+      try (InputStream input = page.newInput()) {
+        tokenLength = VarInt.decodeInt(input);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+      int tokenStart = VarInt.getLength(tokenLength);
+      return advance(
+          page.substring(tokenStart, tokenStart + tokenLength),
+          page.substring(tokenStart + tokenLength));
     }
   }
 }
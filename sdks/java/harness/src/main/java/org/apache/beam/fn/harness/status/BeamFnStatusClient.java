@@ -17,6 +17,7 @@
  */
 package org.apache.beam.fn.harness.status;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -29,6 +30,8 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import org.apache.beam.fn.harness.Cache;
+import org.apache.beam.fn.harness.control.BundleTimelines;
+import org.apache.beam.fn.harness.control.BundleTimelines.BundleTimeline;
 import org.apache.beam.fn.harness.control.ProcessBundleHandler.BundleProcessor;
 import org.apache.beam.fn.harness.control.ProcessBundleHandler.BundleProcessorCache;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi;
@@ -238,6 +241,64 @@ public class BeamFnStatusClient implements AutoCloseable {
     return activeBundlesState.toString();
   }
 
+  @VisibleForTesting
+  String getBundleTimelines() {
+    StringJoiner timelines = new StringJoiner("\n");
+    timelines.add("========== SLOWEST RECENT BUNDLES ==========");
+    BundleTimelines bundleTimelines = processBundleCache.getBundleTimelines();
+    List<BundleTimeline> recent = bundleTimelines.getRecent();
+    if (recent.isEmpty()) {
+      timelines.add("No processed bundles.");
+      return timelines.toString();
+    }
+    timelines.add(
+        String.format(
+            "Processed bundles: %d, retained: %d",
+            bundleTimelines.getRecordedCount(), recent.size()));
+    recent.stream()
+        // sort retained bundles by duration, longest first.
+        .sorted(Comparator.comparingLong(BundleTimeline::getDurationNanos).reversed())
+        .limit(10) // only keep top 10
+        .forEachOrdered(
+            timeline -> {
+              timelines.add(
+                  String.format(
+                      "---- Instruction %s (descriptor %s)%s ----",
+                      timeline.getInstructionId(),
+                      timeline.getProcessBundleDescriptorId(),
+                      timeline.getSucceeded() ? "" : " FAILED"));
+              timelines.add(
+                  String.format(
+                      "Started: %s, duration: %.3f seconds",
+                      Instant.ofEpochMilli(timeline.getStartTimeMillis()),
+                      nanosToSeconds(timeline.getDurationNanos())));
+              timelines.add(
+                  String.format(
+                      "State requests: %d, total latency: %.3f seconds, max latency: %.3f seconds",
+                      timeline.getStateRequestCount(),
+                      nanosToSeconds(timeline.getStateRequestNanos()),
+                      nanosToSeconds(timeline.getMaxStateRequestNanos())));
+              timelines.add(
+                  String.format(
+                      "Sending output: %.3f seconds",
+                      nanosToSeconds(timeline.getOutputSendNanos())));
+              timeline.getExecutionMillisByPTransform().entrySet().stream()
+                  .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                  .forEachOrdered(
+                      entry ->
+                          timelines.add(
+                              String.format(
+                                  "PTransform %s: %.3f seconds",
+                                  entry.getKey(), entry.getValue() / 1000.0)));
+              timelines.add("");
+            });
+    return timelines.toString();
+  }
+
+  private static double nanosToSeconds(long nanos) {
+    return nanos / 1e9;
+  }
+
   private class InboundObserver implements StreamObserver<BeamFnApi.WorkerStatusRequest> {
     @Override
     public void onNext(WorkerStatusRequest workerStatusRequest) {
@@ -248,6 +309,8 @@ public class BeamFnStatusClient implements AutoCloseable {
       status.add("\n");
       status.add(getActiveProcessBundleState());
       status.add("\n");
+      status.add(getBundleTimelines());
+      status.add("\n");
       status.add(getThreadDump());
       outboundObserver.onNext(
           WorkerStatusResponse.newBuilder()
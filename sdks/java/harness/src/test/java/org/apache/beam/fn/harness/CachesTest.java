@@ -28,6 +28,7 @@ import org.apache.beam.fn.harness.Caches.ClearableCache;
 import org.apache.beam.sdk.options.PipelineOptionsFactory;
 import org.apache.beam.sdk.util.Weighted;
 import org.apache.beam.sdk.util.WeightedValue;
+import org.apache.beam.vendor.grpc.v1p43p2.com.google.protobuf.ByteString;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -125,6 +126,32 @@ public class CachesTest {
     assertNull(childOfChild.peek("keyB"));
   }
 
+  @Test
+  public void testOffHeapTier() throws Exception {
+    assertNull(Caches.offHeapTier(Caches.eternal()));
+
+    Cache<String, String> parent =
+        Caches.forMaximumBytes(MB, new OffHeapCache(MB, 1024, OffHeapCache.DIRECT));
+    Cache<String, ByteString> tierA = Caches.offHeapTier(Caches.subCache(parent, "prefixA"));
+    Cache<String, ByteString> tierACopy = Caches.offHeapTier(Caches.subCache(parent, "prefixA"));
+    Cache<String, ByteString> tierB = Caches.offHeapTier(Caches.subCache(parent, "prefixB"));
+
+    tierA.put("key", ByteString.copyFromUtf8("valueA"));
+    assertEquals(ByteString.copyFromUtf8("valueA"), tierACopy.peek("key"));
+    assertNull(tierB.peek("key"));
+    // The off-heap tier does not share entries with the on-heap cache.
+    assertNull(Caches.subCache(parent, "prefixA").peek("key"));
+
+    assertEquals(
+        ByteString.copyFromUtf8("valueB"),
+        tierB.computeIfAbsent("key", (unused) -> ByteString.copyFromUtf8("valueB")));
+    assertEquals(ByteString.copyFromUtf8("valueB"), tierB.peek("key"));
+
+    tierA.remove("key");
+    assertNull(tierACopy.peek("key"));
+    assertThat(parent.describeStats(), containsString("off-heap used/max"));
+  }
+
   @Test
   public void testClearableCache() {
     ClearableCache<String, String> cache = new ClearableCache<>(Caches.eternal());
@@ -49,6 +49,7 @@ import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -593,6 +594,69 @@ public class FnApiDoFnRunnerTest implements Serializable {
       assertThat(mainOutputValues, empty());
     }
 
+    private static final CyclicBarrier PARALLEL_BARRIER = new CyclicBarrier(2);
+
+    @DoFn.ParallelProcessElement(maxParallelism = 2)
+    private static class TestParallelDoFn extends DoFn<String, String> {
+      @ProcessElement
+      public void processElement(@Element String element, OutputReceiver<String> output)
+          throws Exception {
+        // Only completes if both elements of the bundle are processed at the same time.
+        PARALLEL_BARRIER.await(60, TimeUnit.SECONDS);
+        output.output(element + ":main");
+      }
+    }
+
+    @Test
+    public void testProcessElementInParallel() throws Exception {
+      Pipeline p = Pipeline.create();
+      addExperiment(p.getOptions().as(ExperimentalOptions.class), "beam_fn_api");
+      PCollection<String> valuePCollection = p.apply(Create.of("unused"));
+      TupleTag<String> mainOutput = new TupleTag<String>("main") {};
+      PCollection<String> outputPCollection =
+          valuePCollection
+              .apply(
+                  TEST_TRANSFORM_ID,
+                  ParDo.of(new TestParallelDoFn()).withOutputTags(mainOutput, TupleTagList.empty()))
+              .get(mainOutput);
+
+      SdkComponents sdkComponents = SdkComponents.create(p.getOptions());
+      RunnerApi.Pipeline pProto = PipelineTranslation.toProto(p, sdkComponents, true);
+      String inputPCollectionId = sdkComponents.registerPCollection(valuePCollection);
+      String outputPCollectionId = sdkComponents.registerPCollection(outputPCollection);
+
+      RunnerApi.PTransform pTransform =
+          pProto.getComponents().getTransformsOrThrow(TEST_TRANSFORM_ID);
+
+      PTransformRunnerFactoryTestContext context =
+          PTransformRunnerFactoryTestContext.builder(TEST_TRANSFORM_ID, pTransform)
+              .processBundleInstructionId("57")
+              .pCollections(pProto.getComponents().getPcollectionsMap())
+              .coders(pProto.getComponents().getCodersMap())
+              .windowingStrategies(pProto.getComponents().getWindowingStrategiesMap())
+              .build();
+      List<WindowedValue<String>> mainOutputValues = new ArrayList<>();
+      context.addPCollectionConsumer(
+          outputPCollectionId,
+          (FnDataReceiver) (FnDataReceiver<WindowedValue<String>>) mainOutputValues::add);
+
+      new FnApiDoFnRunner.Factory<>().createRunnerForPTransform(context);
+
+      Iterables.getOnlyElement(context.getStartBundleFunctions()).run();
+      FnDataReceiver<WindowedValue<?>> mainInput =
+          context.getPCollectionConsumer(inputPCollectionId);
+      mainInput.accept(valueInGlobalWindow("X"));
+      mainInput.accept(valueInGlobalWindow("Y"));
+
+      // Finishing the bundle waits for all elements and outputs them on the calling thread.
+      Iterables.getOnlyElement(context.getFinishBundleFunctions()).run();
+      assertThat(
+          mainOutputValues,
+          containsInAnyOrder(valueInGlobalWindow("X:main"), valueInGlobalWindow("Y:main")));
+
+      Iterables.getOnlyElement(context.getTearDownFunctions()).run();
+    }
+
     private static class TestSideInputIsAccessibleForDownstreamCallersDoFn
         extends DoFn<String, Iterable<String>> {
       public static final String USER_COUNTER_NAME = "userCountedElems";
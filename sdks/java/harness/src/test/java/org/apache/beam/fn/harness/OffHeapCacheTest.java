@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.apache.beam.sdk.options.SdkHarnessOptions;
+import org.apache.beam.vendor.grpc.v1p43p2.com.google.protobuf.ByteString;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link OffHeapCache}. */
+@RunWith(JUnit4.class)
+public class OffHeapCacheTest {
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test
+  public void testPutGetRemove() throws Exception {
+    OffHeapCache cache = new OffHeapCache(1024, 256, OffHeapCache.DIRECT);
+    assertNull(cache.get("key"));
+
+    cache.put("key", ByteString.copyFromUtf8("value"));
+    assertEquals(ByteString.copyFromUtf8("value"), cache.get("key"));
+    assertEquals(5, cache.getUsedBytes());
+
+    cache.put("key", ByteString.copyFromUtf8("otherValue"));
+    assertEquals(ByteString.copyFromUtf8("otherValue"), cache.get("key"));
+    assertEquals(10, cache.getUsedBytes());
+
+    cache.remove("key");
+    assertNull(cache.get("key"));
+    assertEquals(0, cache.getUsedBytes());
+    assertEquals(2, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+  }
+
+  @Test
+  public void testEvictsOldestSegment() throws Exception {
+    OffHeapCache cache = new OffHeapCache(1024, 256, OffHeapCache.DIRECT);
+    for (int i = 0; i < 100; ++i) {
+      cache.put(i, ByteString.copyFrom(new byte[100]));
+      assertThat(cache.getUsedBytes(), lessThanOrEqualTo(1024L));
+    }
+    // The most recent values are retained and the oldest have been evicted.
+    assertEquals(100, cache.get(99).size());
+    assertNull(cache.get(0));
+    assertTrue(cache.getEvictionCount() > 0);
+  }
+
+  @Test
+  public void testAccessedValuesAreGivenSecondChance() throws Exception {
+    OffHeapCache cache = new OffHeapCache(1024, 256, OffHeapCache.DIRECT);
+    cache.put("accessed", ByteString.copyFromUtf8("accessedValue"));
+    cache.put("notAccessed", ByteString.copyFromUtf8("notAccessedValue"));
+    cache.get("accessed");
+    // Fill every segment so that the first segment is recycled once.
+    for (int i = 0; i < 8; ++i) {
+      cache.put(i, ByteString.copyFrom(new byte[128]));
+    }
+    assertEquals(ByteString.copyFromUtf8("accessedValue"), cache.get("accessed"));
+    assertNull(cache.get("notAccessed"));
+  }
+
+  @Test
+  public void testValuesLargerThanSegmentAreNotStored() throws Exception {
+    OffHeapCache cache = new OffHeapCache(1024, 256, OffHeapCache.DIRECT);
+    cache.put("key", ByteString.copyFrom(new byte[257]));
+    assertNull(cache.get("key"));
+    assertEquals(0, cache.getUsedBytes());
+  }
+
+  @Test
+  public void testMappedSegments() throws Exception {
+    File directory = tmpFolder.newFolder();
+    OffHeapCache cache = new OffHeapCache(1024, 256, OffHeapCache.mapped(directory.toPath()));
+    for (int i = 0; i < 10; ++i) {
+      cache.put(i, ByteString.copyFromUtf8("value" + i));
+    }
+    for (int i = 0; i < 10; ++i) {
+      assertEquals(ByteString.copyFromUtf8("value" + i), cache.get(i));
+    }
+    // The backing files are unlinked once mapped.
+    assertEquals(0, directory.list().length);
+  }
+
+  @Test
+  public void testFromOptions() throws Exception {
+    SdkHarnessOptions options = PipelineOptionsFactory.as(SdkHarnessOptions.class);
+    assertNull(OffHeapCache.fromOptions(options));
+
+    options.setMaxOffHeapCacheMemoryUsageMb(8);
+    OffHeapCache cache = OffHeapCache.fromOptions(options);
+    cache.put("key", ByteString.copyFromUtf8("value"));
+    cache.get("key");
+    cache.get("missing");
+    assertThat(cache.describeStats(), containsString("off-heap used/max 0/8 MB, hit 50.00%"));
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.beam.runners.core.metrics.MetricsContainerImpl;
+import org.apache.beam.sdk.function.ThrowingRunnable;
+import org.apache.beam.sdk.metrics.MetricName;
+import org.apache.beam.sdk.metrics.Metrics;
+import org.apache.beam.sdk.metrics.MetricsEnvironment;
+import org.apache.beam.sdk.util.UserCodeException;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link ParallelElementProcessor}. */
+@RunWith(JUnit4.class)
+public class ParallelElementProcessorTest {
+  private final ParallelElementProcessor processor =
+      new ParallelElementProcessor(Executors.newCachedThreadPool(), 2);
+
+  @After
+  public void tearDown() {
+    processor.shutdown();
+  }
+
+  @Test
+  public void testOutputsAreRunOnCallingThread() throws Exception {
+    Thread bundleThread = Thread.currentThread();
+    List<String> outputs = new ArrayList<>();
+    for (int i = 0; i < 10; ++i) {
+      String element = "element" + i;
+      processor.submit(
+          () ->
+              Collections.singletonList(
+                  () -> {
+                    assertSame(bundleThread, Thread.currentThread());
+                    outputs.add(element);
+                  }));
+    }
+    processor.finish();
+    assertEquals(0, processor.getInFlightCount());
+    assertEquals(10, outputs.size());
+  }
+
+  @Test
+  public void testSubmitBlocksAtMaxParallelism() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    List<String> outputs = new ArrayList<>();
+    processor.submit(
+        () -> {
+          release.await();
+          return Collections.<ThrowingRunnable>singletonList(() -> outputs.add("blocked"));
+        });
+    assertEquals(1, processor.getInFlightCount());
+
+    Thread releaser =
+        new Thread(
+            () -> {
+              try {
+                Thread.sleep(100);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              release.countDown();
+            });
+    releaser.start();
+    // The second element reaches the maximum parallelism so submit waits for one to complete.
+    processor.submit(
+        () -> {
+          release.await();
+          return Collections.<ThrowingRunnable>singletonList(() -> outputs.add("alsoBlocked"));
+        });
+    assertEquals(0, release.getCount());
+    processor.finish();
+    assertThat(outputs, containsInAnyOrder("blocked", "alsoBlocked"));
+  }
+
+  @Test
+  public void testFailureIsRethrownOnCallingThread() throws Exception {
+    RuntimeException failure = new RuntimeException("failure");
+    processor.submit(
+        () -> {
+          throw failure;
+        });
+    try {
+      processor.finish();
+      fail("Expected exception");
+    } catch (UserCodeException e) {
+      assertSame(failure, e.getCause());
+    }
+  }
+
+  @Test
+  public void testResetDiscardsInFlightElements() throws Exception {
+    List<String> outputs = new ArrayList<>();
+    processor.submit(
+        () -> {
+          TimeUnit.MINUTES.sleep(1);
+          return Collections.<ThrowingRunnable>singletonList(() -> outputs.add("discarded"));
+        });
+    processor.reset();
+    assertEquals(0, processor.getInFlightCount());
+    processor.finish();
+    assertThat(outputs, empty());
+  }
+
+  @Test
+  public void testMetricsContainerIsPropagated() throws Exception {
+    MetricsContainerImpl container = new MetricsContainerImpl("step");
+    MetricName name = MetricName.named(ParallelElementProcessorTest.class, "counter");
+    try (AutoCloseable closeable = MetricsEnvironment.scopedMetricsContainer(container)) {
+      for (int i = 0; i < 5; ++i) {
+        processor.submit(
+            () -> {
+              Metrics.counter(ParallelElementProcessorTest.class, "counter").inc();
+              return Collections.emptyList();
+            });
+      }
+      processor.finish();
+    }
+    assertEquals(5L, (long) container.getCounter(name).getCumulative());
+  }
+}
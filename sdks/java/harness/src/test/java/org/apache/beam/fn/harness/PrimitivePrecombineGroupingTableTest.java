@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness;
+
+import static org.apache.beam.sdk.util.WindowedValue.timestampedValueInGlobalWindow;
+import static org.apache.beam.sdk.util.WindowedValue.valueInGlobalWindow;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.beam.sdk.coders.DoubleCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.coders.VarLongCoder;
+import org.apache.beam.sdk.fn.data.FnDataReceiver;
+import org.apache.beam.sdk.transforms.Combine.BinaryCombineLongFn;
+import org.apache.beam.sdk.transforms.Combine.CombineFn;
+import org.apache.beam.sdk.transforms.Count;
+import org.apache.beam.sdk.transforms.Max;
+import org.apache.beam.sdk.transforms.Mean;
+import org.apache.beam.sdk.transforms.Sum;
+import org.apache.beam.sdk.transforms.windowing.GlobalWindow;
+import org.apache.beam.sdk.transforms.windowing.IntervalWindow;
+import org.apache.beam.sdk.transforms.windowing.PaneInfo;
+import org.apache.beam.sdk.util.WindowedValue;
+import org.apache.beam.sdk.values.KV;
+import org.joda.time.Instant;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link PrimitivePrecombineGroupingTable}. */
+@RunWith(JUnit4.class)
+public class PrimitivePrecombineGroupingTableTest {
+
+  private static class TestOutputReceiver<T> implements FnDataReceiver<T> {
+    final List<T> outputElems = new ArrayList<>();
+
+    @Override
+    public void accept(T elem) {
+      outputElems.add(elem);
+    }
+  }
+
+  private static class SumWithOverriddenAddInput extends BinaryCombineLongFn {
+    @Override
+    public long apply(long left, long right) {
+      return left + right;
+    }
+
+    @Override
+    public long identity() {
+      return 0;
+    }
+
+    @Override
+    public long[] addInput(long[] accumulator, Long input) {
+      accumulator[0] += 2 * input;
+      return accumulator;
+    }
+  }
+
+  @Test
+  public void testIsSupported() {
+    assertTrue(PrimitivePrecombineGroupingTable.isSupported(Sum.ofLongs(), StringUtf8Coder.of()));
+    assertTrue(PrimitivePrecombineGroupingTable.isSupported(Sum.ofIntegers(), VarLongCoder.of()));
+    assertTrue(PrimitivePrecombineGroupingTable.isSupported(Max.ofDoubles(), VarLongCoder.of()));
+    assertTrue(
+        PrimitivePrecombineGroupingTable.isSupported(Count.combineFn(), StringUtf8Coder.of()));
+
+    assertFalse(PrimitivePrecombineGroupingTable.isSupported(Mean.of(), StringUtf8Coder.of()));
+    assertFalse(
+        PrimitivePrecombineGroupingTable.isSupported(
+            new SumWithOverriddenAddInput(), StringUtf8Coder.of()));
+    // Keys are grouped by their encoding, which requires a deterministic coder.
+    assertFalse(PrimitivePrecombineGroupingTable.isSupported(Sum.ofLongs(), DoubleCoder.of()));
+  }
+
+  @Test
+  public void testCombiningGloballyWindowed() throws Exception {
+    GroupingTable<Long, Long, long[]> table =
+        PrimitivePrecombineGroupingTable.combining(
+            Caches.eternal(), Sum.ofLongs(), VarLongCoder.of(), true);
+    TestOutputReceiver<WindowedValue<KV<Long, long[]>>> receiver = new TestOutputReceiver<>();
+
+    // Enough distinct keys to force the table to be resized several times.
+    Map<Long, Long> expected = new HashMap<>();
+    for (long i = 0; i < 10000; ++i) {
+      long key = i % 1000;
+      table.put(valueInGlobalWindow(KV.of(key, i)), receiver);
+      expected.merge(key, i, Long::sum);
+    }
+    assertThat(receiver.outputElems, empty());
+
+    table.flush(receiver);
+    Map<Long, Long> actual = new HashMap<>();
+    for (WindowedValue<KV<Long, long[]>> output : receiver.outputElems) {
+      assertEquals(Collections.singletonList(GlobalWindow.INSTANCE), output.getWindows());
+      assertEquals(1, output.getValue().getValue().length);
+      assertEquals(null, actual.put(output.getValue().getKey(), output.getValue().getValue()[0]));
+    }
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testCombiningWindowed() throws Exception {
+    GroupingTable<String, Integer, int[]> table =
+        PrimitivePrecombineGroupingTable.combining(
+            Caches.eternal(), Max.ofIntegers(), StringUtf8Coder.of(), false);
+    TestOutputReceiver<WindowedValue<KV<String, int[]>>> receiver = new TestOutputReceiver<>();
+
+    IntervalWindow first = new IntervalWindow(new Instant(0), new Instant(10));
+    IntervalWindow second = new IntervalWindow(new Instant(10), new Instant(20));
+    table.put(WindowedValue.of(KV.of("A", 3), new Instant(1), first, PaneInfo.NO_FIRING), receiver);
+    table.put(WindowedValue.of(KV.of("A", 7), new Instant(2), first, PaneInfo.NO_FIRING), receiver);
+    table.put(
+        WindowedValue.of(KV.of("A", 5), new Instant(12), second, PaneInfo.NO_FIRING), receiver);
+    table.flush(receiver);
+
+    assertEquals(2, receiver.outputElems.size());
+    for (WindowedValue<KV<String, int[]>> output : receiver.outputElems) {
+      assertEquals("A", output.getValue().getKey());
+      if (output.getWindows().contains(first)) {
+        assertEquals(7, output.getValue().getValue()[0]);
+        // The output inherits the timestamp of the first input.
+        assertEquals(new Instant(1), output.getTimestamp());
+      } else {
+        assertEquals(Collections.singletonList(second), output.getWindows());
+        assertEquals(5, output.getValue().getValue()[0]);
+        assertEquals(new Instant(12), output.getTimestamp());
+      }
+    }
+  }
+
+  @Test
+  public void testWeightIncludesWindows() throws Exception {
+    PrimitivePrecombineGroupingTable<Long, Long, long[]> globallyWindowed =
+        PrimitivePrecombineGroupingTable.combining(
+            Caches.eternal(), Sum.ofLongs(), VarLongCoder.of(), true);
+    PrimitivePrecombineGroupingTable<Long, Long, long[]> windowed =
+        PrimitivePrecombineGroupingTable.combining(
+            Caches.eternal(), Sum.ofLongs(), VarLongCoder.of(), false);
+    TestOutputReceiver<WindowedValue<KV<Long, long[]>>> receiver = new TestOutputReceiver<>();
+
+    IntervalWindow window = new IntervalWindow(new Instant(0), new Instant(10));
+    for (long i = 0; i < 1000; ++i) {
+      globallyWindowed.put(valueInGlobalWindow(KV.of(i, i)), receiver);
+      windowed.put(
+          WindowedValue.of(KV.of(i, i), new Instant(1), window, PaneInfo.NO_FIRING), receiver);
+    }
+
+    assertThat(windowed.currentWeight(), greaterThan(globallyWindowed.currentWeight()));
+  }
+
+  @Test
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public void testCombiningDoublesAndCount() throws Exception {
+    GroupingTable<String, Double, double[]> sums =
+        PrimitivePrecombineGroupingTable.combining(
+            Caches.eternal(), Sum.ofDoubles(), StringUtf8Coder.of(), true);
+    GroupingTable<String, String, long[]> counts =
+        PrimitivePrecombineGroupingTable.combining(
+            Caches.eternal(),
+            (CombineFn<String, long[], Long>) (CombineFn) Count.<String>combineFn(),
+            StringUtf8Coder.of(),
+            true);
+    TestOutputReceiver<WindowedValue<KV<String, double[]>>> sumReceiver =
+        new TestOutputReceiver<>();
+    TestOutputReceiver<WindowedValue<KV<String, long[]>>> countReceiver =
+        new TestOutputReceiver<>();
+
+    sums.put(timestampedValueInGlobalWindow(KV.of("A", 1.5), new Instant(1)), sumReceiver);
+    sums.put(timestampedValueInGlobalWindow(KV.of("A", 2.25), new Instant(2)), sumReceiver);
+    counts.put(valueInGlobalWindow(KV.of("A", "x")), countReceiver);
+    counts.put(valueInGlobalWindow(KV.of("A", "y")), countReceiver);
+    counts.put(valueInGlobalWindow(KV.of("B", "z")), countReceiver);
+    sums.flush(sumReceiver);
+    counts.flush(countReceiver);
+
+    assertEquals(1, sumReceiver.outputElems.size());
+    assertEquals(3.75, sumReceiver.outputElems.get(0).getValue().getValue()[0], 0.0);
+    Map<String, Long> actualCounts = new HashMap<>();
+    for (WindowedValue<KV<String, long[]>> output : countReceiver.outputElems) {
+      actualCounts.put(output.getValue().getKey(), output.getValue().getValue()[0]);
+    }
+    Map<String, Long> expectedCounts = new HashMap<>();
+    expectedCounts.put("A", 2L);
+    expectedCounts.put("B", 1L);
+    assertEquals(expectedCounts, actualCounts);
+  }
+
+  @Test
+  public void testCombiningFlushesWhenCacheIsFull() throws Exception {
+    GroupingTable<Long, Long, long[]> table =
+        PrimitivePrecombineGroupingTable.combining(
+            Caches.forMaximumBytes(2500L), Sum.ofLongs(), VarLongCoder.of(), true);
+    TestOutputReceiver<WindowedValue<KV<Long, long[]>>> receiver = new TestOutputReceiver<>();
+
+    Map<Long, Long> expected = new HashMap<>();
+    for (long i = 0; i < 10000; ++i) {
+      table.put(valueInGlobalWindow(KV.of(i, 1L)), receiver);
+      expected.put(i, 1L);
+    }
+    assertThat(receiver.outputElems, not(empty()));
+
+    table.flush(receiver);
+    Map<Long, Long> actual = new HashMap<>();
+    for (WindowedValue<KV<Long, long[]>> output : receiver.outputElems) {
+      actual.merge(output.getValue().getKey(), output.getValue().getValue()[0], Long::sum);
+    }
+    assertEquals(expected, actual);
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness.control;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+
+import java.util.stream.Collectors;
+import org.apache.beam.fn.harness.control.BundleTimelines.BundleTimeline;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link BundleTimelines}. */
+@RunWith(JUnit4.class)
+public class BundleTimelinesTest {
+  private static BundleTimeline timeline(String instructionId) {
+    return BundleTimeline.builder()
+        .setInstructionId(instructionId)
+        .setProcessBundleDescriptorId("descriptor")
+        .setStartTimeMillis(0L)
+        .setDurationNanos(0L)
+        .build();
+  }
+
+  @Test
+  public void testRetainsMostRecentTimelines() {
+    BundleTimelines timelines = new BundleTimelines(3);
+    assertThat(timelines.getRecent(), empty());
+
+    timelines.record(timeline("1"));
+    timelines.record(timeline("2"));
+    assertThat(
+        timelines.getRecent().stream()
+            .map(BundleTimeline::getInstructionId)
+            .collect(Collectors.toList()),
+        contains("2", "1"));
+
+    timelines.record(timeline("3"));
+    timelines.record(timeline("4"));
+    timelines.record(timeline("5"));
+    assertThat(
+        timelines.getRecent().stream()
+            .map(BundleTimeline::getInstructionId)
+            .collect(Collectors.toList()),
+        contains("5", "4", "3"));
+    assertEquals(5L, timelines.getRecordedCount());
+  }
+}
@@ -25,6 +25,7 @@ import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.emptyIterable;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.collection.IsEmptyCollection.empty;
 import static org.junit.Assert.assertEquals;
@@ -1585,6 +1586,7 @@ public class ProcessBundleHandlerTest {
         .when(mockBeamFnStateClient)
         .handle(any());
 
+    BundleProcessorCache bundleProcessorCache = new BundleProcessorCache();
     ProcessBundleHandler handler =
         new ProcessBundleHandler(
             PipelineOptionsFactory.create(),
@@ -1614,7 +1616,7 @@ public class ProcessBundleHandlerTest {
                   }
                 }),
             Caches.noop(),
-            new BundleProcessorCache());
+            bundleProcessorCache);
     handler.processBundle(
         BeamFnApi.InstructionRequest.newBuilder()
             .setProcessBundle(
@@ -1623,6 +1625,20 @@ public class ProcessBundleHandlerTest {
 
     assertTrue(successfulResponse[0].isDone());
     assertTrue(unsuccessfulResponse[0].isDone());
+
+    // The completed state requests are part of the recorded timeline of the bundle.
+    List<BundleTimelines.BundleTimeline> timelines =
+        bundleProcessorCache.getBundleTimelines().getRecent();
+    assertEquals(1, timelines.size());
+    assertEquals("1L", timelines.get(0).getProcessBundleDescriptorId());
+    assertTrue(timelines.get(0).getSucceeded());
+    assertEquals(2L, timelines.get(0).getStateRequestCount());
+    assertThat(
+        timelines.get(0).getMaxStateRequestNanos(),
+        greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(500)));
+    assertThat(
+        timelines.get(0).getDurationNanos(),
+        greaterThanOrEqualTo(timelines.get(0).getMaxStateRequestNanos()));
   }
 
   @Test
@@ -23,7 +23,9 @@ import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -32,7 +34,10 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.beam.fn.harness.Cache;
 import org.apache.beam.fn.harness.Caches;
@@ -48,6 +53,8 @@ import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateRequest;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateResponse;
 import org.apache.beam.sdk.coders.BigEndianIntegerCoder;
 import org.apache.beam.sdk.fn.stream.PrefetchableIterator;
+import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.apache.beam.sdk.options.SdkHarnessOptions;
 import org.apache.beam.vendor.grpc.v1p43p2.com.google.protobuf.ByteString;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableMap;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.primitives.Ints;
@@ -371,6 +378,17 @@ public class StateFetchingIteratorsTest {
   @RunWith(JUnit4.class)
   public static class LazyBlockingStateFetchingIteratorTest {
 
+    @Test
+    public void testReadAheadPagesFromOptions() {
+      SdkHarnessOptions options = PipelineOptionsFactory.as(SdkHarnessOptions.class);
+      assertEquals(1, StateFetchingIterators.getReadAheadPages(options));
+      options.setStateReadAheadPages(4);
+      assertEquals(4, StateFetchingIterators.getReadAheadPages(options));
+      options.setStateReadAheadPages(0);
+      assertThrows(
+          IllegalArgumentException.class, () -> StateFetchingIterators.getReadAheadPages(options));
+    }
+
     @Test
     public void testEmpty() throws Exception {
       testFetch(ByteString.EMPTY);
@@ -422,6 +440,72 @@ public class StateFetchingIteratorsTest {
       assertEquals(1, callCount.get()); // subsequent is ignored
     }
 
+    @Test
+    public void testReadAheadIsBounded() throws Exception {
+      BlockingQueue<StateRequest.Builder> requests = new LinkedBlockingQueue<>();
+      List<CompletableFuture<StateResponse>> responses = new ArrayList<>();
+      BeamFnStateClient fakeStateClient =
+          new BeamFnStateClient() {
+            @Override
+            public synchronized CompletableFuture<StateResponse> handle(
+                StateRequest.Builder requestBuilder) {
+              CompletableFuture<StateResponse> response = new CompletableFuture<>();
+              responses.add(response);
+              requests.add(requestBuilder);
+              return response;
+            }
+          };
+      LazyBlockingStateFetchingIterator byteStrings =
+          new LazyBlockingStateFetchingIterator(
+              fakeStateClient, StateRequest.getDefaultInstance(), null, 3);
+
+      byteStrings.prefetch();
+      assertEquals(ByteString.EMPTY, takeContinuationToken(requests));
+      // Each response triggers the request for the following page until three are outstanding.
+      completeWithToken(responses.get(0), "1");
+      assertEquals(ByteString.copyFromUtf8("1"), takeContinuationToken(requests));
+      completeWithToken(responses.get(1), "2");
+      assertEquals(ByteString.copyFromUtf8("2"), takeContinuationToken(requests));
+      completeWithToken(responses.get(2), "3");
+      assertNull(requests.poll(100, TimeUnit.MILLISECONDS));
+      assertEquals(3, byteStrings.getPrefetchedResponseCount());
+
+      // Consuming a page allows the next one to be requested.
+      assertEquals(ByteString.copyFromUtf8("data"), byteStrings.next());
+      assertEquals(ByteString.copyFromUtf8("3"), takeContinuationToken(requests));
+      assertEquals(3, byteStrings.getPrefetchedResponseCount());
+
+      // Seeking discards the read-ahead and responses for the previous position are ignored.
+      byteStrings.seekToContinuationToken(ByteString.copyFromUtf8("42"));
+      assertEquals(0, byteStrings.getPrefetchedResponseCount());
+      completeWithToken(responses.get(3), "4");
+      assertNull(requests.poll(100, TimeUnit.MILLISECONDS));
+      byteStrings.prefetch();
+      assertEquals(ByteString.copyFromUtf8("42"), takeContinuationToken(requests));
+      completeWithToken(responses.get(4), "");
+      assertEquals(ByteString.copyFromUtf8("data"), byteStrings.next());
+      assertFalse(byteStrings.hasNext());
+      assertNull(requests.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    private static ByteString takeContinuationToken(BlockingQueue<StateRequest.Builder> requests)
+        throws Exception {
+      StateRequest.Builder request = requests.poll(10, TimeUnit.SECONDS);
+      assertNotNull(request);
+      return request.getGet().getContinuationToken();
+    }
+
+    private static void completeWithToken(
+        CompletableFuture<StateResponse> response, String continuationToken) {
+      response.complete(
+          StateResponse.newBuilder()
+              .setGet(
+                  StateGetResponse.newBuilder()
+                      .setData(ByteString.copyFromUtf8("data"))
+                      .setContinuationToken(ByteString.copyFromUtf8(continuationToken)))
+              .build());
+    }
+
     @Test
     public void testSeekToContinuationToken() throws Exception {
       BeamFnStateClient fakeStateClient =
@@ -462,6 +546,45 @@ public class StateFetchingIteratorsTest {
       assertEquals(ByteString.copyFromUtf8("value" + 44), byteStrings.next());
     }
 
+    @Test
+    public void testFetchUsingPageCache() throws Exception {
+      ByteString[] expected =
+          new ByteString[] {
+            ByteString.copyFromUtf8("ABC"), ByteString.EMPTY, ByteString.copyFromUtf8("DEF")
+          };
+      AtomicInteger callCount = new AtomicInteger();
+      BeamFnStateClient fakeStateClient = fakeStateClient(callCount, expected);
+      Cache<ByteString, ByteString> pageCache = Caches.eternal();
+
+      List<ByteString> results = new ArrayList<>();
+      new LazyBlockingStateFetchingIterator(
+              fakeStateClient, StateRequest.getDefaultInstance(), pageCache, 1)
+          .forEachRemaining(results::add);
+      assertEquals(Arrays.asList(expected), results);
+      assertEquals(3, callCount.get());
+
+      // A second iterator is served entirely from the page cache.
+      results.clear();
+      LazyBlockingStateFetchingIterator byteStrings =
+          new LazyBlockingStateFetchingIterator(
+              fakeStateClient, StateRequest.getDefaultInstance(), pageCache, 1);
+      assertFalse(byteStrings.isReady());
+      byteStrings.prefetch();
+      assertTrue(byteStrings.isReady());
+      byteStrings.forEachRemaining(results::add);
+      assertEquals(Arrays.asList(expected), results);
+      assertEquals(3, callCount.get());
+
+      // Missing pages are fetched again.
+      pageCache.remove(ByteString.copyFromUtf8("1"));
+      results.clear();
+      new LazyBlockingStateFetchingIterator(
+              fakeStateClient, StateRequest.getDefaultInstance(), pageCache, 1)
+          .forEachRemaining(results::add);
+      assertEquals(Arrays.asList(expected), results);
+      assertEquals(4, callCount.get());
+    }
+
     private void testFetch(ByteString... expected) {
       AtomicInteger callCount = new AtomicInteger();
       BeamFnStateClient fakeStateClient = fakeStateClient(callCount, expected);
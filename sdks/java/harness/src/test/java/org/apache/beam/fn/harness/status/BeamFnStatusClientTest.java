@@ -35,6 +35,8 @@ import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import org.apache.beam.fn.harness.Caches;
+import org.apache.beam.fn.harness.control.BundleTimelines;
+import org.apache.beam.fn.harness.control.BundleTimelines.BundleTimeline;
 import org.apache.beam.fn.harness.control.ProcessBundleHandler;
 import org.apache.beam.fn.harness.control.ProcessBundleHandler.BundleProcessor;
 import org.apache.beam.fn.harness.control.ProcessBundleHandler.BundleProcessorCache;
@@ -49,6 +51,7 @@ import org.apache.beam.sdk.options.PipelineOptionsFactory;
 import org.apache.beam.vendor.grpc.v1p43p2.io.grpc.Server;
 import org.apache.beam.vendor.grpc.v1p43p2.io.grpc.inprocess.InProcessServerBuilder;
 import org.apache.beam.vendor.grpc.v1p43p2.io.grpc.stub.StreamObserver;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableMap;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.Uninterruptibles;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -100,6 +103,55 @@ public class BeamFnStatusClientTest {
     assertThat(actualState, not(containsString("Instruction 10")));
   }
 
+  @Test
+  public void testBundleTimelines() {
+    BundleTimelines timelines = new BundleTimelines(5);
+    for (int i = 0; i < 12; i++) {
+      timelines.record(
+          BundleTimeline.builder()
+              .setInstructionId(Integer.toString(i))
+              .setProcessBundleDescriptorId("descriptor")
+              .setStartTimeMillis(0L)
+              // Bundle 9 is the slowest of the retained bundles 7 to 11.
+              .setDurationNanos(i == 9 ? 5_000_000_000L : i * 1_000_000L)
+              .setSucceeded(i != 8)
+              .setStateRequestCount(3L)
+              .setStateRequestNanos(1_500_000_000L)
+              .setMaxStateRequestNanos(1_000_000_000L)
+              .setOutputSendNanos(250_000_000L)
+              .setExecutionMillisByPTransform(ImmutableMap.of("fast", 100L, "slow", 4000L))
+              .build());
+    }
+    BundleProcessorCache processorCache = mock(BundleProcessorCache.class);
+    when(processorCache.getBundleTimelines()).thenReturn(timelines);
+
+    ManagedChannelFactory channelFactory = ManagedChannelFactory.createInProcess();
+    BeamFnStatusClient client =
+        new BeamFnStatusClient(
+            apiServiceDescriptor,
+            channelFactory::forDescriptor,
+            processorCache,
+            PipelineOptionsFactory.create(),
+            Caches.noop());
+    String actualTimelines = client.getBundleTimelines();
+
+    assertThat(actualTimelines, containsString("Processed bundles: 12, retained: 5"));
+    assertThat(
+        actualTimelines,
+        stringContainsInOrder(
+            "Instruction 9 (descriptor descriptor)",
+            "duration: 5.000 seconds",
+            "State requests: 3, total latency: 1.500 seconds, max latency: 1.000 seconds",
+            "Sending output: 0.250 seconds",
+            "PTransform slow: 4.000 seconds",
+            "PTransform fast: 0.100 seconds",
+            "Instruction 11",
+            "Instruction 10",
+            "Instruction 8 (descriptor descriptor) FAILED",
+            "Instruction 7"));
+    assertThat(actualTimelines, not(containsString("Instruction 6")));
+  }
+
   @Test
   public void testWorkerStatusResponse() throws Exception {
     BlockingQueue<WorkerStatusResponse> values = new LinkedBlockingQueue<>();
@@ -124,6 +176,7 @@ public class BeamFnStatusClientTest {
     try {
       BundleProcessorCache processorCache = mock(BundleProcessorCache.class);
       when(processorCache.getActiveBundleProcessors()).thenReturn(Collections.emptyMap());
+      when(processorCache.getBundleTimelines()).thenReturn(new BundleTimelines());
       ManagedChannelFactory channelFactory = ManagedChannelFactory.createInProcess();
       new BeamFnStatusClient(
           apiServiceDescriptor,
@@ -135,6 +188,7 @@ public class BeamFnStatusClientTest {
       requestObserver.onNext(WorkerStatusRequest.newBuilder().setId("id").build());
       WorkerStatusResponse response = values.take();
       assertThat(response.getStatusInfo(), containsString("No active processing bundles."));
+      assertThat(response.getStatusInfo(), containsString("No processed bundles."));
       assertThat(response.getId(), is("id"));
     } finally {
       server.shutdownNow();
@@ -70,6 +70,7 @@ include(":playground:terraform")
 include(":runners:core-construction-java")
 include(":runners:core-java")
 include(":runners:direct-java")
+include(":runners:direct-java:jmh")
 include(":runners:extensions-java:metrics")
 /* Begin Flink Runner related settings */
 // Flink 1.12
@@ -97,6 +98,7 @@ include(":runners:java-fn-execution")
 include(":runners:java-job-service")
 include(":runners:jet")
 include(":runners:local-java")
+include(":runners:local-java:portable")
 include(":runners:portability:java")
 include(":runners:spark:2")
 include(":runners:spark:2:job-server")
@@ -119,6 +121,7 @@ include(":sdks:java:container:java8")
 include(":sdks:java:container:java11")
 include(":sdks:java:container:java17")
 include(":sdks:java:core")
+include(":sdks:java:core:jmh")
 include(":sdks:java:expansion-service")
 include(":sdks:java:expansion-service:app")
 include(":sdks:java:extensions:arrow")